@@ -1,17 +1,29 @@
 package com.example.pfm;
 
-import com.example.pfm.dao.BudgetDAO;
-import com.example.pfm.dao.ExpenseDAO;
-import com.example.pfm.dao.IncomeDAO;
+import com.example.pfm.dao.UsernameIndex;
+import com.example.pfm.model.DataChangeEvent;
+import com.example.pfm.model.User;
 import com.example.pfm.screens.*;
+import com.example.pfm.service.SessionContext;
 import com.example.pfm.service.UserService;
+import com.example.pfm.service.WriteBehindQueue;
+import com.example.pfm.util.MySQLConnection;
+import com.example.pfm.util.SchemaMigrator;
+import com.example.pfm.util.StartupProfile;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Main application class for the Personal Finance Manager (PFM) application.
@@ -20,19 +32,29 @@ import java.util.List;
  */
 
 public class PFMApp extends Application {
+    private static final System.Logger LOGGER = System.getLogger(PFMApp.class.getName());
+    // A training run shows the login and main screen once and exits, so the build can record the classes for the CDS archive.
+    private static final boolean TRAINING_RUN = Boolean.getBoolean("pfm.trainingRun");
 
     private Stage primaryStage;
     private UserService userService;
-    private IncomeDAO incomeDAO;
-    private ExpenseDAO expenseDAO;
-    private BudgetDAO budgetDAO;
+    // Runs the work outside of a session, like the warmup, logins and registrations. The screens of a logged-in user
+    // use the data service of their session instead.
+    private final ExecutorService backgroundExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    // The main screen of the logged-in user and its scene, shown again when returning from the entry screens
     private MainScreen mainScreen;
-    private IncomeScreen incomeScreen;
-    private ExpenseScreen expenseScreen;
-    private BudgetScreen budgetScreen;
-    private DashboardScreen dashboardScreen;
-    private ReportScreen reportScreen;
-    private List<DataRefresh> refreshListeners = new ArrayList<>();
+    private Scene mainScene;
+    private DataChangeBus dataChangeBus = new DataChangeBus();
+    // Migrates the database and warms up the connections and password hashing while the login screen is shown
+    private CompletableFuture<Void> warmup;
+
+    /**
+     * Called by JavaFX before start(), on the launcher thread.
+     */
+    @Override
+    public void init() {
+        StartupProfile.mark("init");
+    }
 
     /**
      * Start method called by JavaFX during application start. Initializes the application's
@@ -41,34 +63,84 @@ public class PFMApp extends Application {
      */
     @Override
     public void start(Stage primaryStage) {
+        StartupProfile.mark("start");
         Font.loadFont(getClass().getResourceAsStream("/fonts/OpenSans-VariableFont_wdth,wght.ttf"), 14);
 
         userService = new UserService();
         this.primaryStage = primaryStage;
         this.primaryStage.setTitle("PFM - Login");
 
-        this.incomeDAO = new IncomeDAO();
-        this.expenseDAO = new ExpenseDAO();
-        this.budgetDAO = new BudgetDAO(expenseDAO);
-
-        this.incomeScreen = new IncomeScreen(this, incomeDAO, userService.getCurrentUserId());
-        this.expenseScreen = new ExpenseScreen(this, expenseDAO, userService.getCurrentUserId());
-        this.budgetScreen = new BudgetScreen(this, budgetDAO, expenseDAO, userService.getCurrentUserId());
-        this.dashboardScreen = new DashboardScreen(this, incomeDAO, expenseDAO, budgetDAO, userService.getCurrentUserId());
-        this.reportScreen = new ReportScreen(this, incomeDAO, expenseDAO, primaryStage);
-        this.mainScreen = new MainScreen(this,
-                incomeDAO,
-                expenseDAO,
-                budgetDAO,
-                userService.getCurrentUserId(),
-                incomeScreen,
-                expenseScreen,
-                budgetScreen,
-                dashboardScreen,
-                reportScreen,
-                primaryStage);
+        // The services of the screens are created by the login, in the session of the user
 
         showLoginScreen();
+        // The database is only needed once the user logs in, so it isn't waited for before the login screen is shown
+        onFirstFrame(primaryStage.getScene(), () -> {
+            StartupProfile.mark("login screen shown");
+            startWarmup();
+        });
+    }
+
+    /**
+     * Migrates the database in the background, which also opens the first pooled connections, loads the username
+     * index and then warms up the password hashing for the first login.
+     */
+    private void startWarmup() {
+        warmup = CompletableFuture.<Void>supplyAsync(() -> {
+            SchemaMigrator.migrate();
+            StartupProfile.mark("database ready");
+            try {
+                UsernameIndex.getDefault().load();
+                StartupProfile.mark("usernames loaded");
+            } catch (SQLException e) {
+                e.printStackTrace(); // Without the index every username lookup goes to the database
+            }
+            userService.warmUp();
+            StartupProfile.mark("password hashing ready");
+            return null;
+        }, backgroundExecutor).exceptionally(e -> {
+            // A failed warmup only makes the first login slower, it must not keep the user from logging in
+            e.printStackTrace();
+            return null;
+        });
+        if (TRAINING_RUN) {
+            afterWarmup(() -> {
+                // Nobody logs in during a training run, so the main screen gets a session of a user without data
+                SessionContext session = SessionContext.open(new User());
+                showMainScreen(session);
+                onFirstFrame(mainScene, () -> {
+                    session.close();
+                    Platform.exit();
+                });
+            });
+        }
+    }
+
+    /**
+     * Runs an action on the JavaFX thread once the startup warmup has finished, right away if it already has.
+     * @param action The action that needs the migrated database.
+     */
+    public void afterWarmup(Runnable action) {
+        if (warmup == null || warmup.isDone()) {
+            action.run();
+        } else {
+            warmup.thenRunAsync(action, Platform::runLater);
+        }
+    }
+
+    /**
+     * Runs work that doesn't belong to a session, like a login, in the background and hands its result to the
+     * JavaFX thread.
+     * @param work The work to run.
+     * @param onResult Called on the JavaFX thread with the result.
+     */
+    public <T> void runInBackground(Supplier<T> work, Consumer<T> onResult) {
+        CompletableFuture.supplyAsync(work, backgroundExecutor).whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+            } else {
+                onResult.accept(result);
+            }
+        }, Platform::runLater);
     }
 
     public UserService getUserService() {
@@ -80,6 +152,7 @@ public class PFMApp extends Application {
      */
 
     public void showLoginScreen() {
+        disposeMainScreen();
         LoginScreen loginScreen = new LoginScreen(this, userService);
         Scene scene = new Scene(loginScreen.getView(), 807, 500);
         primaryStage.setScene(scene);
@@ -105,8 +178,7 @@ public class PFMApp extends Application {
      */
 
     public void showIncomeEntryScreen() {
-        int currentUserId = userService.getCurrentUserId();
-        IncomeEntryScreen incomeEntryScreen = new IncomeEntryScreen(this, currentUserId);
+        IncomeEntryScreen incomeEntryScreen = new IncomeEntryScreen(this, userService.getSession());
         Scene scene = new Scene(incomeEntryScreen.getView(), 400, 275);
         primaryStage.setScene(scene);
         primaryStage.setTitle("PFM - Add Income");
@@ -116,53 +188,126 @@ public class PFMApp extends Application {
      * Displays the Expense Entry screen.
      */
     public void showExpenseEntryScreen() {
-        int currentUserId = userService.getCurrentUserId();
-        ExpenseEntryScreen expenseEntryScreen = new ExpenseEntryScreen(this, currentUserId);
+        ExpenseEntryScreen expenseEntryScreen = new ExpenseEntryScreen(this, userService.getSession());
         Scene scene = new Scene(expenseEntryScreen.getView(), 400, 275);
         primaryStage.setScene(scene);
         primaryStage.setTitle("PFM - Add Expense");
     }
 
     /**
-     * Displays the Main screen.
+     * Displays the Main screen. The main screen of a session is built once and shown again on later calls,
+     * a new session gets a new one. The time until the first frame of the main screen is logged.
      */
     public void showMainScreen() {
-        int currentUserId = userService.getCurrentUserId();
-        MainScreen mainScreen = new MainScreen(this,
-                incomeDAO,
-                expenseDAO,
-                budgetDAO,
-                currentUserId,
-                incomeScreen,
-                expenseScreen,
-                budgetScreen,
-                dashboardScreen,
-                reportScreen,
-                primaryStage);
-        Scene scene = new Scene(mainScreen.getView(), 1204, 768);
-        primaryStage.setScene(scene);
-        scene.getStylesheets().add(getClass().getResource("/com/example/pfm/stylesheets/mainscreen.css").toExternalForm());
+        showMainScreen(userService.getSession());
+    }
+
+    private void showMainScreen(SessionContext session) {
+        long start = System.nanoTime();
+        boolean reused = mainScreen != null && mainScreen.getSession() == session;
+        if (!reused) {
+            disposeMainScreen();
+            // The screens refresh when the entries saved on the entry screens have reached the database
+            session.getEntryQueue().setListener(this::onDataChanged);
+            session.getEntryQueue().setRejectionListener(entry -> Platform.runLater(() -> showRejectedEntry(entry)));
+            mainScreen = new MainScreen(this, session, primaryStage);
+            mainScene = new Scene(mainScreen.getView(), 1204, 768);
+            mainScene.getStylesheets().add(getClass().getResource("/com/example/pfm/stylesheets/mainscreen.css").toExternalForm());
+        }
+        primaryStage.setScene(mainScene);
         primaryStage.setTitle("PFM");
+        onFirstFrame(mainScene, () -> {
+            LOGGER.log(System.Logger.Level.INFO, String.format("Main screen %s, first frame after %d ms",
+                    reused ? "reused" : "built", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            if (!reused) {
+                StartupProfile.mark("main screen shown");
+                StartupProfile.report();
+            }
+        });
     }
 
     /**
-     * Registers a listener to be notified of data changes.
+     * Tells the user that the database refused an entry they saved earlier, and where it was kept.
+     */
+    private void showRejectedEntry(WriteBehindQueue.RejectedEntry entry) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.initOwner(primaryStage);
+        alert.setTitle("Entry Not Saved");
+        alert.setHeaderText(null);
+        alert.setContentText(entry.description() + " could not be saved: " + entry.reason()
+                + "\nIt was kept in " + entry.deadLetterFile() + ", please enter it again.");
+        alert.show();
+    }
+
+    private void disposeMainScreen() {
+        if (mainScreen != null) {
+            mainScreen.dispose();
+            mainScreen = null;
+            mainScene = null;
+        }
+    }
+
+    /**
+     * Runs an action once, after the next frame of a scene has been laid out.
+     */
+    private static void onFirstFrame(Scene scene, Runnable action) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            action.run();
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    /**
+     * Registers a listener to be notified of data changes. The listener is held weakly and registered only once.
      * @param listener The listener that wants to be notified of data changes.
      */
     public void registerListener(DataRefresh listener) {
-        refreshListeners.add(listener);
+        dataChangeBus.register(listener);
     }
 
     /**
-     * Notifies all registered listeners that data has changed, and they should refresh their data.
+     * Removes a listener, so it is no longer notified of data changes.
+     * @param listener The listener to remove.
+     */
+    public void unregisterListener(DataRefresh listener) {
+        dataChangeBus.unregister(listener);
+    }
+
+    /**
+     * Notifies the listeners that any data of the current user may have changed.
      */
     public void onDataChanged() {
-        for (DataRefresh listener : refreshListeners) {
-            listener.refreshData();
+        onDataChanged(DataChangeEvent.all(userService.getCurrentUserId()));
+    }
+
+    /**
+     * Notifies the listeners affected by a change that they should refresh their data.
+     * Changes made shortly after each other are delivered together.
+     * @param event The change.
+     */
+    public void onDataChanged(DataChangeEvent event) {
+        dataChangeBus.post(event);
+    }
+
+    /**
+     * Called by JavaFX when the application closes. Closes the session of the logged-in user, stops the background
+     * work and releases the pooled database connections.
+     */
+    @Override
+    public void stop() {
+        if (userService != null) {
+            userService.logoutUser();
+            userService.getPasswordHasher().shutdown();
         }
+        backgroundExecutor.shutdown();
+        dataChangeBus.shutdown();
+        MySQLConnection.shutdown();
     }
 
     public static void main(String[] args) {
+        StartupProfile.mark("main");
         launch(args);
     }
 }
@@ -4,8 +4,8 @@ import java.util.Arrays;
 import java.util.List;
 
 /**
- * This class provides a configuration for expense and budget categories within the application.
- * It is a list of predefined categories that can be used for categorizing expenses and budgets.
+ * This class provides a configuration for expense and budget categories and income sources within the application.
+ * It contains the predefined categories that can be used for categorizing expenses and budgets, and the sources of incomes.
  */
 public class CategoryConfig {
     public static final List<String> CATEGORIES = Arrays.asList(
@@ -18,4 +18,12 @@ public class CategoryConfig {
             "Travel", // Expenses related to travel and vacations.
             "Other" // For any expenses that don't fit into the above categories.
     );
+
+    public static final List<String> INCOME_SOURCES = Arrays.asList(
+            "Salary",
+            "Freelance",
+            "Investment",
+            "Allowance",
+            "Other"
+    );
 }
@@ -0,0 +1,265 @@
+package com.example.pfm.dao;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache for the aggregate queries of the DAOs (monthly totals, per-category totals and budgets).
+ * Entries are kept per user, month and category. The cache holds a bounded amount of entries, evicting the
+ * least recently used one when full, and entries expire after a fixed time.
+ * The DAOs invalidate exactly the affected user and month whenever they write an expense, income or budget.
+ */
+public class AggregateCache {
+    private static final int DEFAULT_MAX_ENTRIES = 512;
+    static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000;
+
+    private static final AggregateCache DEFAULT = new AggregateCache(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+
+    /**
+     * The kinds of aggregates that can be cached, with the table they are computed from.
+     * Yearly aggregates are stored under January of their year.
+     */
+    public enum Kind {
+        EXPENSE_TOTAL(Source.EXPENSE, false),
+        EXPENSE_CATEGORY_TOTALS(Source.EXPENSE, false),
+        EXPENSE_CATEGORY_TOTAL(Source.EXPENSE, false),
+        EXPENSE_MONTHLY_TOTALS(Source.EXPENSE, true),
+        INCOME_TOTAL(Source.INCOME, false),
+        INCOME_MONTHLY_TOTALS(Source.INCOME, true),
+        BUDGETS(Source.BUDGET, false),
+        // The budget rows without their spent amounts, which don't change when an expense is written.
+        BUDGET_ROWS(Source.BUDGET_ROWS, false);
+
+        private final Source source;
+        private final boolean yearly;
+
+        Kind(Source source, boolean yearly) {
+            this.source = source;
+            this.yearly = yearly;
+        }
+    }
+
+    private enum Source { EXPENSE, INCOME, BUDGET, BUDGET_ROWS }
+
+    /**
+     * Loads a value from the database when it is not cached.
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    private record Key(Kind kind, int userId, YearMonth month, String category) {
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expiresAt;
+
+        private Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<Key, Entry> entries;
+    // Increased on every invalidation, so a value loaded while an invalidation happened is not stored.
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Creates a cache with the default size and expiry, e.g. for the DAOs of one session.
+     */
+    public AggregateCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries The maximum amount of entries before the least recently used one is evicted.
+     * @param ttlMillis How long an entry stays valid after it was loaded.
+     */
+    public AggregateCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > AggregateCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache shared by all DAOs that were created without an explicit cache.
+     *
+     * @return The shared cache.
+     */
+    public static AggregateCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the cached value for the key, or loads and caches it when it is missing or expired.
+     *
+     * @param kind The kind of aggregate.
+     * @param userId The user the aggregate belongs to.
+     * @param month The month of the aggregate, or January of the year for yearly aggregates. May be null.
+     * @param category The category of the aggregate, or null if it covers all categories.
+     * @param loader Loads the value from the database.
+     * @return The cached or freshly loaded value.
+     * @throws SQLException If loading the value fails. Failures are never cached.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Kind kind, int userId, YearMonth month, String category, Loader<T> loader) throws SQLException {
+        Key key = new Key(kind, userId, month, category);
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAt < 0) {
+                    hits.incrementAndGet();
+                    return (T) entry.value;
+                }
+                entries.remove(key);
+            }
+            loadGeneration = generation;
+        }
+
+        misses.incrementAndGet();
+        T value = loader.load(); // Outside the lock, so a slow query doesn't block other lookups.
+
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                entries.put(key, new Entry(value, System.nanoTime() + ttlNanos));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Invalidates the expense aggregates of a user for the month of the given date, and the user's budgets,
+     * since their spent amounts depend on the expenses.
+     *
+     * @param userId The user whose expenses changed.
+     * @param date The date of the expense that was written.
+     */
+    public void invalidateExpenses(int userId, LocalDate date) {
+        invalidate(userId, Source.EXPENSE, date);
+        invalidate(userId, Source.BUDGET, null);
+    }
+
+    /**
+     * Invalidates the income aggregates of a user for the month of the given date.
+     *
+     * @param userId The user whose incomes changed.
+     * @param date The date of the income that was written.
+     */
+    public void invalidateIncomes(int userId, LocalDate date) {
+        invalidate(userId, Source.INCOME, date);
+    }
+
+    /**
+     * Invalidates the cached budgets of a user.
+     *
+     * @param userId The user whose budgets changed.
+     */
+    public void invalidateBudgets(int userId) {
+        invalidate(userId, Source.BUDGET, null);
+        invalidate(userId, Source.BUDGET_ROWS, null);
+    }
+
+    /**
+     * Invalidates everything that is cached for a user.
+     *
+     * @param userId The user whose entries are removed.
+     */
+    public synchronized void invalidateUser(int userId) {
+        generation++;
+        entries.keySet().removeIf(key -> key.userId() == userId);
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Removes the entries of one source for a user. When a date is given only the entries of its month
+     * (or its year, for yearly aggregates) are removed, otherwise all entries of that source.
+     */
+    private synchronized void invalidate(int userId, Source source, LocalDate date) {
+        generation++;
+        YearMonth month = date != null ? YearMonth.from(date) : null;
+        Iterator<Key> iterator = entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            Key key = iterator.next();
+            if (key.userId() != userId || key.kind().source != source) {
+                continue;
+            }
+            if (month == null || key.month() == null || covers(key, month)) {
+                iterator.remove();
+            }
+        }
+        invalidations.incrementAndGet();
+    }
+
+    private static boolean covers(Key key, YearMonth month) {
+        return key.kind().yearly ? key.month().getYear() == month.getYear() : Objects.equals(key.month(), month);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    // Metrics
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : hits.get() / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AggregateCache[size=%d/%d, hits=%d, misses=%d, hitRate=%.2f, evictions=%d, invalidations=%d]",
+                size(), maxEntries, getHitCount(), getMissCount(), getHitRate(), getEvictionCount(), getInvalidationCount());
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.pfm.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The idempotency keys of the entries that were written from the write-behind journal. The DAOs record the keys of
+ * a batch in the same transaction as its rows, so an entry whose key is recorded is in the database exactly once.
+ */
+final class AppliedEntries {
+    // The amount of keys per IN list, well below the parameter limits of the drivers.
+    private static final int LOOKUP_SIZE = 500;
+
+    private AppliedEntries() {
+    }
+
+    /**
+     * @param conn The connection to read with.
+     * @param keys The keys to look up.
+     * @return The keys that were applied before.
+     * @throws SQLException If the keys can't be read.
+     */
+    static Set<String> find(Connection conn, Collection<String> keys) throws SQLException {
+        Set<String> applied = new HashSet<>();
+        List<String> remaining = new ArrayList<>(keys);
+        for (int from = 0; from < remaining.size(); from += LOOKUP_SIZE) {
+            List<String> chunk = remaining.subList(from, Math.min(remaining.size(), from + LOOKUP_SIZE));
+            String sql = "SELECT entry_key FROM applied_entry WHERE entry_key IN ("
+                    + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                Jdbc.bind(stmt, chunk.toArray());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        applied.add(rs.getString(1));
+                    }
+                }
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Records keys in the transaction of the connection. A key that is already recorded fails the insert on the
+     * primary key, which rolls the whole transaction back.
+     *
+     * @param conn The connection of the transaction.
+     * @param keys The keys of the inserted entries.
+     * @throws SQLException If the keys can't be inserted.
+     */
+    static void record(Connection conn, Collection<String> keys) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO applied_entry (entry_key) VALUES (?)")) {
+            for (String key : keys) {
+                stmt.setString(1, key);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package com.example.pfm.dao;
 
 import com.example.pfm.model.Budget;
+import com.example.pfm.model.BudgetSnapshot;
+import com.example.pfm.model.Category;
+import com.example.pfm.model.Money;
 import com.example.pfm.util.MySQLConnection;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Data Access Object for managing budget records in the database.
@@ -14,16 +16,34 @@ import java.util.Map;
  */
 
 public class BudgetDAO {
-    private ExpenseDAO expenseDAO;
+    private final AggregateCache cache;
+    private final LocalLedger ledger;
 
     /**
-     * Constructs a BudgetDAO with a reference to an ExpenseDAO.
-     * The ExpenseDAO is used for calculating spent amounts in budget categories.
+     * Constructs a BudgetDAO that uses the shared aggregate cache.
+     */
+    public BudgetDAO() {
+        this(AggregateCache.getDefault());
+    }
+
+    /**
+     * Constructs a BudgetDAO that uses the given aggregate cache and the shared local ledger.
+     *
+     * @param cache The cache for budgets, invalidated whenever a budget or expense is written.
+     */
+    public BudgetDAO(AggregateCache cache) {
+        this(cache, LocalLedger.getDefault());
+    }
+
+    /**
+     * Constructs a BudgetDAO that uses the given aggregate cache and local ledger.
      *
-     * @param expenseDAO An instance of ExpenseDAO for expense-related operations.
+     * @param cache The cache for budgets, invalidated whenever a budget or expense is written.
+     * @param ledger The in-memory expenses of the logged-in users, used for the spent amounts when loaded.
      */
-    public BudgetDAO(ExpenseDAO expenseDAO) {
-        this.expenseDAO = expenseDAO;
+    public BudgetDAO(AggregateCache cache, LocalLedger ledger) {
+        this.cache = cache;
+        this.ledger = ledger;
     }
 
     /**
@@ -38,10 +58,7 @@ public class BudgetDAO {
         try (Connection conn = MySQLConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
-                 stmt.setInt(1, budget.getUserId());
-                 stmt.setString(2, budget.getCategory());
-                 stmt.setDouble(3, budget.getBudgetLimit());
-                 stmt.setDate(4, Date.valueOf(budget.getDate()));
+                 Jdbc.bind(stmt, budget.getUserId(), budget.getCategory(), budget.getBudgetLimit(), budget.getDate());
 
                  int affectedRows = stmt.executeUpdate();
 
@@ -56,6 +73,7 @@ public class BudgetDAO {
                          throw new SQLException("Creating budget failed, no ID obtained");
                      }
                  }
+                 cache.invalidateBudgets(budget.getUserId());
                  return true;
         } catch (SQLException e) {
                  e.printStackTrace();
@@ -64,36 +82,58 @@ public class BudgetDAO {
     }
 
     /**
-     * Retrieves all budget records for a specific user.
+     * Retrieves all budget records for a specific user, together with the amount spent in each budget.
+     * The spent amount is the total of the user's expenses in the budget's category from the budget's date until one month later.
+     * Budgets and spent amounts are fetched together in a single query. When the user's expenses are in the
+     * local ledger, only the budget rows are fetched (and cached until a budget changes) and the spent amounts
+     * are computed from memory.
      *
      * @param userId The ID of the user whose budgets are to be retrieved.
-     * @return A list of Budget objects for the specified user.
+     * @return A list of Budget objects for the specified user, with their spent amount filled in.
      */
     public List<Budget> getAllBudgetsByUserId(int userId) {
-        List<Budget> budgets = new ArrayList<>();
-
-        Map<String, Double> spentTotals = expenseDAO.getTotalSpentPerCategory(userId);
-
-        String sql = "SELECT * FROM budget WHERE user_id = ?";
-
-        try (Connection conn = MySQLConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setInt(1, userId);
-            ResultSet rs = stmt.executeQuery();
+        LocalLedger.UserLedger loaded = ledger.get(userId);
+        if (loaded != null) {
+            return getBudgetsFromLedger(userId, loaded);
+        }
 
-            while (rs.next()) {
-                Budget budget = new Budget();
-                budget.setId(rs.getInt("id"));
-                budget.setUserId(rs.getInt("user_id"));
-                budget.setCategory(rs.getString("category"));
-                budget.setBudgetLimit(rs.getDouble("budget_limit"));
-                budget.setDate(rs.getDate("date").toLocalDate());
+        String sql = "SELECT b.id, b.user_id, b.category, b.budget_limit, b.date, COALESCE(SUM(e.amount), 0) AS spent " +
+                "FROM budget b " +
+                "LEFT JOIN expense e ON e.user_id = b.user_id AND e.category = b.category " +
+                "AND e.date >= b.date AND e.date < DATE_ADD(b.date, INTERVAL 1 MONTH) " +
+                "WHERE b.user_id = ? " +
+                "GROUP BY b.id, b.user_id, b.category, b.budget_limit, b.date " +
+                "ORDER BY b.id";
+
+        try {
+            List<Budget> cached = cache.get(AggregateCache.Kind.BUDGETS, userId, null, null,
+                    () -> Jdbc.queryList(sql, RowMappers.BUDGET, userId));
+            // Copies of the budgets, so callers can't change the cached ones
+            List<Budget> budgets = new ArrayList<>(cached.size());
+            for (Budget row : cached) {
+                Budget budget = copyOf(row);
+                budget.setSpentAmount(row.getSpentAmount());
+                budgets.add(budget);
+            }
+            return budgets;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
 
-                String category = budget.getCategory();
-                double spentAmount = spentTotals.getOrDefault(category, 0.0);
-                budget.setSpentAmount(spentAmount);
+    private List<Budget> getBudgetsFromLedger(int userId, LocalLedger.UserLedger loaded) {
+        String sql = "SELECT " + RowMappers.BUDGET_COLUMNS + " FROM budget WHERE user_id = ? ORDER BY id";
 
+        List<Budget> budgets = new ArrayList<>();
+        try {
+            List<Budget> rows = cache.get(AggregateCache.Kind.BUDGET_ROWS, userId, null, null,
+                    () -> Jdbc.queryList(sql, RowMappers.BUDGET, userId));
+            // New instances, since the cached rows are shared and the spent amounts change with every expense
+            for (Budget row : rows) {
+                Budget budget = copyOf(row);
+                // The same window as the query: from the budget's date until one month later
+                budget.setSpentAmount(loaded.expenseTotal(row.getDate(), row.getDate().plusMonths(1), Category.of(row.getCategory())));
                 budgets.add(budget);
             }
         } catch (SQLException e) {
@@ -102,6 +142,21 @@ public class BudgetDAO {
         return budgets;
     }
 
+    private static Budget copyOf(Budget row) {
+        return new Budget(row.getId(), row.getUserId(), row.getCategory(), row.getBudgetLimit(), row.getDate());
+    }
+
+    /**
+     * Retrieves a snapshot of the user's budgets with their limit, spent and remaining amounts.
+     * Screens can use one snapshot for their table, charts and axis bounds instead of querying for each.
+     *
+     * @param userId The ID of the user whose budgets are to be retrieved.
+     * @return A BudgetSnapshot of the user's budgets.
+     */
+    public BudgetSnapshot getBudgetSnapshot(int userId) {
+        return new BudgetSnapshot(getAllBudgetsByUserId(userId));
+    }
+
     /**
      * Updates an existing budget record in the database.
      *
@@ -112,16 +167,9 @@ public class BudgetDAO {
     public boolean updateBudget(Budget budget) {
         String sql = "UPDATE budget SET category = ?, budget_limit = ?, date = ? WHERE id = ? AND user_id = ?";
 
-        try (Connection conn = MySQLConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, budget.getCategory());
-            stmt.setDouble(2, budget.getBudgetLimit());
-            stmt.setDate(3, Date.valueOf(budget.getDate()));
-            stmt.setInt(4, budget.getId());
-            stmt.setInt(5, budget.getUserId());
-
-            int affectedRows = stmt.executeUpdate();
+        try {
+            int affectedRows = Jdbc.update(sql, budget.getCategory(), budget.getBudgetLimit(), budget.getDate(), budget.getId(), budget.getUserId());
+            cache.invalidateBudgets(budget.getUserId());
             return affectedRows > 0;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -138,15 +186,11 @@ public class BudgetDAO {
      */
 
     public boolean deleteBudget(int id, int userId) {
-        String sql = "DELETE FROM budget WHERE id = ? AnD user_id = ?";
-
-        try (Connection conn = MySQLConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setInt(1, id);
-            stmt.setInt(2, userId);
+        String sql = "DELETE FROM budget WHERE id = ? AND user_id = ?";
 
-            int affectedRows = stmt.executeUpdate();
+        try {
+            int affectedRows = Jdbc.update(sql, id, userId);
+            cache.invalidateBudgets(userId);
             return affectedRows > 0;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -1,14 +1,24 @@
 package com.example.pfm.dao;
 
+import com.example.pfm.model.Category;
+import com.example.pfm.model.CategoryTotals;
 import com.example.pfm.model.Expense;
+import com.example.pfm.model.Money;
+import com.example.pfm.model.PageKey;
 import com.example.pfm.util.MySQLConnection;
 
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Data Access Object for managing expenses in the database.
@@ -16,8 +26,54 @@ import java.util.Map;
  */
 
 public class ExpenseDAO {
+    // The amount of rows sent to the database per batch.
+    static final int BATCH_SIZE = 500;
+
+    private final AggregateCache cache;
+    private final LocalLedger ledger;
+    private final RunningTotals runningTotals;
+
+    /**
+     * Constructs an ExpenseDAO that uses the shared aggregate cache.
+     */
+    public ExpenseDAO() {
+        this(AggregateCache.getDefault());
+    }
+
+    /**
+     * Constructs an ExpenseDAO that uses the given aggregate cache and the shared local ledger.
+     *
+     * @param cache The cache for totals, invalidated whenever an expense is written.
+     */
+    public ExpenseDAO(AggregateCache cache) {
+        this(cache, LocalLedger.getDefault());
+    }
+
+    /**
+     * Constructs an ExpenseDAO that uses the given aggregate cache and local ledger.
+     *
+     * @param cache The cache for totals, invalidated whenever an expense is written.
+     * @param ledger The in-memory rows of the logged-in users, updated whenever an expense is written.
+     */
+    public ExpenseDAO(AggregateCache cache, LocalLedger ledger) {
+        this(cache, ledger, RunningTotals.getDefault());
+    }
+
+    /**
+     * Constructs an ExpenseDAO that uses the given aggregate cache, local ledger and running totals.
+     *
+     * @param cache The cache for totals, invalidated whenever an expense is written.
+     * @param ledger The in-memory rows of the logged-in users, updated whenever an expense is written.
+     * @param runningTotals The monthly totals, updated in the same transaction as every expense write.
+     */
+    public ExpenseDAO(AggregateCache cache, LocalLedger ledger, RunningTotals runningTotals) {
+        this.cache = cache;
+        this.ledger = ledger;
+        this.runningTotals = runningTotals;
+    }
+
     /**
-     * Inserts a new expense record into the database.
+     * Inserts a new expense record into the database. The generated id is set on the expense.
      *
      * @param expense The Expense object containing expense details.
      * @return true if the expense is successfully inserted, false if not.
@@ -26,14 +82,21 @@ public class ExpenseDAO {
         String sql = "INSERT INTO expense (user_id, amount, date, category) VALUES (?, ?, ?, ?)";
 
         try (Connection conn = MySQLConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setInt(1, expense.getUserId());
-            stmt.setDouble(2, expense.getAmount());
-            stmt.setDate(3, Date.valueOf(expense.getDate()));
-            stmt.setString(4, expense.getCategory());
-
-            int affectedRows = stmt.executeUpdate();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            Jdbc.bind(stmt, expense.getUserId(), expense.getAmount(), expense.getDate(), expense.getCategory());
+
+            int affectedRows = runningTotals.write(conn, deltas -> {
+                deltas.add(RunningTotals.Table.EXPENSE, expense.getUserId(), expense.getDate(), expense.getCategory(), expense.getAmount());
+                return stmt.executeUpdate();
+            });
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    expense.setId(keys.getInt(1));
+                    ledger.expenseWritten(expense);
+                }
+            }
+            cache.invalidateExpenses(expense.getUserId(), expense.getDate());
             return affectedRows == 1;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -41,6 +104,159 @@ public class ExpenseDAO {
         return false;
     }
 
+    /**
+     * Inserts a list of expenses in a single transaction, sending them to the database in batches.
+     * Either all expenses are inserted or none of them.
+     *
+     * @param expenses The expenses to insert.
+     * @return The amount of inserted expenses, 0 if the insert failed.
+     */
+    public int insertExpenses(List<Expense> expenses) {
+        return insertExpenses(expenses.iterator());
+    }
+
+    /**
+     * Inserts the expenses produced by an iterator in a single transaction. The expenses are sent to the database in
+     * batches of {@value #BATCH_SIZE} as they are produced, so the iterator can stream them from a source of any size.
+     * Either all expenses are inserted or none of them.
+     *
+     * @param expenses The expenses to insert.
+     * @return The amount of inserted expenses, 0 if the insert failed.
+     */
+    public int insertExpenses(Iterator<Expense> expenses) {
+        try (Connection conn = MySQLConnection.getConnection()) {
+            return insertExpenses(conn, expenses);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Inserts the expenses of the write-behind journal that haven't been inserted yet, in a single transaction.
+     * The idempotency keys of the inserted expenses are recorded in the same transaction, so a batch that is retried
+     * after an error skips the expenses that were inserted by an earlier attempt.
+     *
+     * @param expenses The expenses by their idempotency key.
+     * @return The amount of inserted expenses, without the ones that were inserted before.
+     * @throws SQLException If the insert fails. Nothing is inserted and the batch can be retried.
+     */
+    public int insertExpensesOnce(Map<String, Expense> expenses) throws SQLException {
+        try (Connection conn = MySQLConnection.getConnection()) {
+            return insertExpensesOnce(conn, expenses);
+        }
+    }
+
+    /**
+     * Inserts the expenses whose key isn't applied yet on the given connection.
+     * Package-private, so the idempotency can be tested against another database.
+     */
+    int insertExpensesOnce(Connection conn, Map<String, Expense> expenses) throws SQLException {
+        Set<String> applied = AppliedEntries.find(conn, expenses.keySet());
+        List<String> keys = new ArrayList<>();
+        List<Expense> pending = new ArrayList<>();
+        expenses.forEach((key, expense) -> {
+            if (!applied.contains(key)) {
+                keys.add(key);
+                pending.add(expense);
+            }
+        });
+        return pending.isEmpty() ? 0 : insertExpenses(conn, pending.iterator(), keys);
+    }
+
+    /**
+     * Inserts expenses in a single transaction on the given connection.
+     * Package-private, so the batching can be tested against another database.
+     */
+    int insertExpenses(Connection conn, Iterator<Expense> expenses) throws SQLException {
+        return insertExpenses(conn, expenses, List.of());
+    }
+
+    /**
+     * Inserts expenses and records the idempotency keys of the journal entries they came from in one transaction.
+     */
+    private int insertExpenses(Connection conn, Iterator<Expense> expenses, List<String> entryKeys) throws SQLException {
+        String sql = "INSERT INTO expense (user_id, amount, date, category) VALUES (?, ?, ?, ?)";
+        Map<Integer, Set<YearMonth>> changedMonths = new HashMap<>(); // Per user, to invalidate the cache afterwards
+        RunningTotals.Deltas deltas = new RunningTotals.Deltas();
+        List<Expense> written = new ArrayList<>(); // With their generated ids, for the users in the ledger
+        Set<Integer> reloaded = new HashSet<>(); // Users with rows that are not in written
+        int inserted = 0;
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            List<Expense> batch = new ArrayList<>(BATCH_SIZE);
+            while (expenses.hasNext()) {
+                Expense expense = expenses.next();
+                Jdbc.bind(stmt, expense.getUserId(), expense.getAmount(), expense.getDate(), expense.getCategory());
+                stmt.addBatch();
+                batch.add(expense);
+                deltas.add(RunningTotals.Table.EXPENSE, expense.getUserId(), expense.getDate(), expense.getCategory(), expense.getAmount());
+                changedMonths.computeIfAbsent(expense.getUserId(), id -> new HashSet<>()).add(YearMonth.from(expense.getDate()));
+
+                if (batch.size() == BATCH_SIZE) {
+                    inserted += executeBatch(stmt, batch, written, reloaded);
+                }
+            }
+            if (!batch.isEmpty()) {
+                inserted += executeBatch(stmt, batch, written, reloaded);
+            }
+            if (!entryKeys.isEmpty()) {
+                AppliedEntries.record(conn, entryKeys);
+            }
+            runningTotals.commit(conn, deltas);
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+
+        changedMonths.forEach((userId, months) -> months.forEach(month -> cache.invalidateExpenses(userId, month.atDay(1))));
+        written.forEach(ledger::expenseWritten);
+        reloaded.forEach(ledger::reload); // Only reloads users loaded since, who may have read the table before the commit
+        return inserted;
+    }
+
+    /**
+     * Executes a batch and sets the generated ids on its rows. Rows of users in the ledger are added to written,
+     * the users of the other rows to reloaded.
+     */
+    private int executeBatch(PreparedStatement stmt, List<Expense> batch, List<Expense> written, Set<Integer> reloaded) throws SQLException {
+        int inserted = countInserted(stmt.executeBatch());
+        try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+            for (Expense expense : batch) {
+                if (generatedKeys.next()) {
+                    expense.setId(generatedKeys.getInt(1));
+                }
+                if (expense.getId() > 0 && ledger.holds(expense.getUserId())) {
+                    written.add(expense);
+                } else {
+                    reloaded.add(expense.getUserId());
+                }
+            }
+        }
+        batch.clear();
+        return inserted;
+    }
+
+    /**
+     * Counts the inserted rows of an executed batch. With rewriteBatchedStatements the driver may report
+     * SUCCESS_NO_INFO instead of a row count, which still means the row was inserted.
+     */
+    private static int countInserted(int[] results) {
+        int count = 0;
+        for (int result : results) {
+            if (result > 0) {
+                count += result;
+            } else if (result == Statement.SUCCESS_NO_INFO) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Retrieves all expenses for a specific user.
      *
@@ -48,29 +264,79 @@ public class ExpenseDAO {
      * @return A list of Expense objects for the specified user.
      */
     public List<Expense> getAllExpensesByUserId(int userId) {
-        List<Expense> expenses = new ArrayList<>();
+        String sql = "SELECT " + RowMappers.EXPENSE_COLUMNS + " FROM expense WHERE user_id = ?";
 
-        String sql = "SELECT * FROM expense WHERE user_id = ?";
+        try {
+            return Jdbc.queryList(sql, RowMappers.EXPENSE, userId);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
 
-        try (Connection conn = MySQLConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql)) {
+    /**
+     * Counts the expenses of a specific user.
+     *
+     * @param userId The ID of the user.
+     * @return The amount of expenses of the user.
+     */
+    public int countExpensesByUserId(int userId) {
+        String sql = "SELECT COUNT(*) FROM expense WHERE user_id = ?";
 
-            stmt.setInt(1, userId);
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                Expense expense = new Expense();
-                expense.setId(rs.getInt("id"));
-                expense.setUserId(rs.getInt("user_id"));
-                expense.setAmount(rs.getDouble("amount"));
-                expense.setCategory(rs.getString("category"));
-                expense.setDate(rs.getDate("date").toLocalDate());
-                expenses.add(expense);
-            }
+        try {
+            Integer count = Jdbc.queryOne(sql, RowMappers.INT, userId);
+            return count != null ? count : 0;
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return expenses;
+        return 0;
+    }
+
+    /**
+     * Retrieves one page of the expenses of a specific user, ordered by date and id.
+     * The page starts after the given key, so the rows before it don't have to be read again. To jump ahead, skip
+     * can be used to pass over rows after the key, which is still cheaper than an OFFSET from the first row.
+     *
+     * @param userId The ID of the user.
+     * @param after The key of the row before the page, or null to start at the first expense.
+     * @param skip The amount of rows after the key to pass over before the page starts.
+     * @param limit The maximum amount of expenses in the page.
+     * @return The expenses of the page, at most limit.
+     */
+    public List<Expense> getExpensesPage(int userId, PageKey after, int skip, int limit) {
+        // The expanded comparison instead of (date, id) > (?, ?), because MySQL only seeks through the index with this form
+        String sql = after == null
+                ? "SELECT " + RowMappers.EXPENSE_COLUMNS + " FROM expense WHERE user_id = ? ORDER BY date, id LIMIT ? OFFSET ?"
+                : "SELECT " + RowMappers.EXPENSE_COLUMNS + " FROM expense WHERE user_id = ? AND (date > ? OR (date = ? AND id > ?)) ORDER BY date, id LIMIT ? OFFSET ?";
+        Object[] params = after == null
+                ? new Object[]{userId, limit, skip}
+                : new Object[]{userId, after.date(), after.date(), after.id(), limit, skip};
+
+        try {
+            return Jdbc.queryList(sql, RowMappers.EXPENSE, params);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Reads the expenses of a specific user between two dates one row at a time, ordered by date and id.
+     * The rows are streamed from the database instead of collected in a list, so any range fits in memory.
+     *
+     * @param userId The ID of the user.
+     * @param start The first day of the range (inclusive).
+     * @param end The end of the range (exclusive).
+     * @param action Called with each expense as it is read.
+     * @return The amount of expenses read.
+     * @throws SQLException If the query fails. The action may have been called for some rows already.
+     */
+    public int forEachExpense(int userId, LocalDate start, LocalDate end, Consumer<? super Expense> action) throws SQLException {
+        String sql = "SELECT " + RowMappers.EXPENSE_COLUMNS + " FROM expense WHERE user_id = ? AND date >= ? AND date < ? ORDER BY date, id";
+
+        try (Connection conn = MySQLConnection.getConnection()) {
+            return Jdbc.stream(conn, sql, RowMappers.EXPENSE, action, userId, start, end);
+        }
     }
 
     /**
@@ -80,23 +346,10 @@ public class ExpenseDAO {
      * @return An Expense object if found, null if not found.
      */
     public Expense getExpenseById(int id) {
-        String sql = "SELECT * FROM Expense WHERE id = ?";
+        String sql = "SELECT " + RowMappers.EXPENSE_COLUMNS + " FROM expense WHERE id = ?";
 
-        try (Connection conn = MySQLConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setInt(1, id);
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                Expense expense = new Expense();
-                expense.setId(rs.getInt("id"));
-                expense.setUserId(rs.getInt("user_id"));
-                expense.setAmount(rs.getDouble("amount"));
-                expense.setCategory(rs.getString("category"));
-                expense.setDate(rs.getDate("date").toLocalDate());
-                return expense;
-            }
+        try {
+            return Jdbc.queryOne(sql, RowMappers.EXPENSE, id);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -115,13 +368,25 @@ public class ExpenseDAO {
         try (Connection conn = MySQLConnection.getConnection();
             PreparedStatement stmt = conn.prepareStatement(sql)) {
 
-            stmt.setDouble(1, expense.getAmount());
-            stmt.setString(2, expense.getCategory());
-            stmt.setDate(3, Date.valueOf(expense.getDate()));
-            stmt.setInt(4, expense.getId());
-            stmt.setInt(5, expense.getUserId());
-
-            int affectedRows = stmt.executeUpdate();
+            Jdbc.bind(stmt, expense.getAmount(), expense.getCategory(), expense.getDate(), expense.getId(), expense.getUserId());
+
+            // Set by the write, as the month of the old row is invalidated after the commit
+            Expense[] found = new Expense[1];
+            int affectedRows = runningTotals.write(conn, deltas -> {
+                Expense old = found[0] = findExpense(conn, expense.getId(), expense.getUserId());
+                int rows = stmt.executeUpdate();
+                if (rows == 1 && old != null) {
+                    deltas.add(RunningTotals.Table.EXPENSE, old.getUserId(), old.getDate(), old.getCategory(), Money.ZERO.minus(old.getAmount()));
+                    deltas.add(RunningTotals.Table.EXPENSE, expense.getUserId(), expense.getDate(), expense.getCategory(), expense.getAmount());
+                }
+                return rows;
+            });
+            if (affectedRows == 1) {
+                ledger.expenseWritten(expense);
+            }
+            // The expense may have moved to another month, so both months are invalidated
+            cache.invalidateExpenses(expense.getUserId(), found[0] != null ? found[0].getDate() : null);
+            cache.invalidateExpenses(expense.getUserId(), expense.getDate());
             return affectedRows == 1;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -142,41 +407,49 @@ public class ExpenseDAO {
         try (Connection conn = MySQLConnection.getConnection();
             PreparedStatement stmt = conn.prepareStatement(sql)) {
 
-            stmt.setInt(1, id);
-            stmt.setInt(2, userId);
-
-            int affectedRows = stmt.executeUpdate();
+            Jdbc.bind(stmt, id, userId);
+
+            // Set by the write, as the month of the old row is invalidated after the commit
+            Expense[] found = new Expense[1];
+            int affectedRows = runningTotals.write(conn, deltas -> {
+                Expense old = found[0] = findExpense(conn, id, userId);
+                int rows = stmt.executeUpdate();
+                if (rows == 1 && old != null) {
+                    deltas.add(RunningTotals.Table.EXPENSE, userId, old.getDate(), old.getCategory(), Money.ZERO.minus(old.getAmount()));
+                }
+                return rows;
+            });
+            if (affectedRows == 1) {
+                ledger.expenseDeleted(userId, id);
+            }
+            cache.invalidateExpenses(userId, found[0] != null ? found[0].getDate() : null);
             return affectedRows == 1;
         } catch (SQLException e) {
             e.printStackTrace();
         }
         return false;
     }
+
+    /**
+     * Looks up an expense before it is changed, so its old month can be invalidated in the cache and its old amount
+     * can be subtracted from the running totals. Called in the transaction of the change: the row stays locked until
+     * the commit, so a concurrent change can't make the subtracted amount stale.
+     *
+     * @return The expense with its date, amount and category, or null if it doesn't exist (then all months of the user are invalidated).
+     */
+    private Expense findExpense(Connection conn, int id, int userId) throws SQLException {
+        String sql = "SELECT " + RowMappers.EXPENSE_COLUMNS + " FROM expense WHERE id = ? AND user_id = ? FOR UPDATE";
+        return Jdbc.queryOne(conn, sql, RowMappers.EXPENSE, id, userId);
+    }
     /**
      * Calculates the total expenses for the current month for a specific user.
      *
      * @param userId The ID of the user.
      * @return The total amount of expenses for the current month.
      */
-    public double getTotalExpenseForCurrentMonth(int userId) {
-        String sql = "SELECT SUM(amount) AS total FROM expense WHERE user_id = ? AND MONTH(date) = ? AND YEAR(date) = ?";
-
-        try (Connection conn = MySQLConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            LocalDate now = LocalDate.now();
-            stmt.setInt(1, userId);
-            stmt.setInt(2, now.getMonthValue());
-            stmt.setInt(3, now.getYear());
-
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getDouble("total");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0.0;
+    public Money getTotalExpenseForCurrentMonth(int userId) {
+        LocalDate now = LocalDate.now();
+        return getTotalExpenseForMonth(userId, now.getMonthValue(), now.getYear());
     }
 
     /**
@@ -185,57 +458,50 @@ public class ExpenseDAO {
      * @param userId The ID of the user.
      * @param month The month for which to calculate expenses.
      * @param year The year for which to calculate expenses.
+     * The total is read from the running totals instead of summing the rows of the month, see {@link RunningTotals}.
      * @return The total amount of expenses for the specified month and year.
      */
-    public double getTotalExpenseForMonth(int userId, int month, int year) {
-        String sql = "SELECT SUM(amount) AS total FROM expense WHERE user_id = ? AND MONTH(date) = ? AND YEAR(date) = ?";
-
-        try(Connection conn = MySQLConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setInt(1, userId);
-            stmt.setInt(2, month);
-            stmt.setInt(3, year);
+    public Money getTotalExpenseForMonth(int userId, int month, int year) {
+        YearMonth yearMonth = YearMonth.of(year, month);
+        LocalLedger.UserLedger loaded = ledger.get(userId);
+        if (loaded != null) {
+            return loaded.expenseTotal(yearMonth);
+        }
 
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getDouble("total");
-            }
+        try {
+            return runningTotals.getTotal(RunningTotals.Table.EXPENSE, userId, yearMonth);
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return 0.0;
+        return Money.ZERO;
     }
 
     /**
      * Retrieves the total amount spent per category for the current month for a specific user.
+     * Rows with a category that is no longer configured are counted as {@link Category#OTHER}.
      *
      * @param userId The ID of the user.
-     * @return A Map with categories as keys and the total spent as values.
+     * @return The total spent per category, shared with other callers as it is immutable.
      */
-    public Map<String, Double> getTotalSpentPerCategory(int userId) {
-        Map<String, Double> categoryTotals = new HashMap<>();
-
-        String sql = "SELECT category, SUM(amount) AS total FROM expense WHERE user_id = ? AND MONTH(date) = ? AND YEAR(date) = ? GROUP BY category";
-
-        try (Connection conn = MySQLConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            LocalDate now = LocalDate.now();
-            stmt.setInt(1, userId);
-            stmt.setInt(2, now.getMonthValue());
-            stmt.setInt(3, now.getYear());
+    public CategoryTotals getTotalSpentPerCategory(int userId) {
+        String sql = "SELECT category, SUM(amount) AS total FROM expense WHERE user_id = ? AND date >= ? AND date < ? GROUP BY category";
+        YearMonth currentMonth = YearMonth.now();
+        LocalLedger.UserLedger loaded = ledger.get(userId);
+        if (loaded != null) {
+            return loaded.expenseCategoryTotals(currentMonth);
+        }
 
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                String category = rs.getString("category");
-                double total = rs.getDouble("total");
-                categoryTotals.put(category, total);
-            }
+        try {
+            return cache.get(AggregateCache.Kind.EXPENSE_CATEGORY_TOTALS, userId, currentMonth, null, () -> {
+                CategoryTotals.Builder categoryTotals = new CategoryTotals.Builder();
+                Jdbc.forEachRow(sql, rs -> categoryTotals.add(Category.of(rs.getString(1)), Money.of(rs.getBigDecimal(2))),
+                        userId, currentMonth.atDay(1), currentMonth.plusMonths(1).atDay(1));
+                return categoryTotals.build();
+            });
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return categoryTotals; //returns map of category totals
+        return CategoryTotals.EMPTY;
     }
 
     /**
@@ -246,24 +512,81 @@ public class ExpenseDAO {
      * @return The total amount spent in the specified category for the current month.
      */
 
-    public double getTotalSpentForCategory(int userId, String category) {
-        double totalSpent = 0.0;
-
-        String sql = "SELECT SUM(amount) AS total FROM expense WHERE user_id = ? AND category = ? AND MONTH(date) = MONTH(CURRENT_DATE) AND YEAR(date) = YEAR(CURRENT_DATE)";
+    public Money getTotalSpentForCategory(int userId, String category) {
+        String sql = "SELECT SUM(amount) AS total FROM expense WHERE user_id = ? AND category = ? AND date >= ? AND date < ?";
+        YearMonth currentMonth = YearMonth.now();
+        LocalLedger.UserLedger loaded = ledger.get(userId);
+        if (loaded != null) {
+            return loaded.expenseTotal(currentMonth, Category.of(category));
+        }
 
-        try (Connection conn = MySQLConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try {
+            return cache.get(AggregateCache.Kind.EXPENSE_CATEGORY_TOTAL, userId, currentMonth, category,
+                    () -> Jdbc.queryOne(sql, RowMappers.MONEY, userId, category, currentMonth.atDay(1), currentMonth.plusMonths(1).atDay(1)));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return Money.ZERO;
+    }
 
-            stmt.setInt(1, userId);
-            stmt.setString(2, category);
+    /**
+     * Calculates the total expenses of every month in a year for a specific user with a single query.
+     *
+     * @param userId The ID of the user.
+     * @param year The year for which to calculate the monthly totals.
+     * @return An array of 12 totals in cents, where index 0 is January and index 11 is December.
+     */
+    public long[] getMonthlyTotalsForYear(int userId, int year) {
+        LocalLedger.UserLedger loaded = ledger.get(userId);
+        if (loaded != null) {
+            return loaded.monthlyExpenseTotals(LocalDate.of(year, 1, 1), LocalDate.of(year + 1, 1, 1));
+        }
+        try {
+            long[] totals = cache.get(AggregateCache.Kind.EXPENSE_MONTHLY_TOTALS, userId, YearMonth.of(year, 1), null,
+                    () -> queryMonthlyTotals(userId, LocalDate.of(year, 1, 1), LocalDate.of(year + 1, 1, 1)));
+            return totals.clone(); // a copy, so callers can't change the cached array
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new long[12];
+    }
 
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                totalSpent = rs.getDouble("total");
-            }
+    /**
+     * Calculates the total expenses per month between two dates for a specific user with a single query.
+     *
+     * @param userId The ID of the user.
+     * @param start The first day of the range (inclusive). Only its year and month are used.
+     * @param end The end of the range (exclusive). Only its year and month are used.
+     * @return An array with one total in cents per month, where index 0 is the month of the start date.
+     */
+    public long[] getMonthlyTotals(int userId, LocalDate start, LocalDate end) {
+        LocalLedger.UserLedger loaded = ledger.get(userId);
+        if (loaded != null) {
+            return loaded.monthlyExpenseTotals(start, end);
+        }
+        try {
+            return queryMonthlyTotals(userId, start, end);
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return totalSpent;
+        return new long[Math.max((int) ChronoUnit.MONTHS.between(start.withDayOfMonth(1), end.withDayOfMonth(1)), 0)];
+    }
+
+    private long[] queryMonthlyTotals(int userId, LocalDate start, LocalDate end) throws SQLException {
+        LocalDate firstMonth = start.withDayOfMonth(1);
+        LocalDate endMonth = end.withDayOfMonth(1);
+        int months = (int) ChronoUnit.MONTHS.between(firstMonth, endMonth);
+        long[] totals = new long[Math.max(months, 0)];
+        if (months <= 0) {
+            return totals;
+        }
+
+        String sql = "SELECT YEAR(date) AS year, MONTH(date) AS month, SUM(amount) AS total FROM expense " +
+                "WHERE user_id = ? AND date >= ? AND date < ? GROUP BY YEAR(date), MONTH(date)";
+
+        int startIndex = firstMonth.getYear() * 12 + firstMonth.getMonthValue() - 1;
+        Jdbc.forEachRow(sql, rs -> totals[rs.getInt(1) * 12 + rs.getInt(2) - 1 - startIndex] = Money.of(rs.getBigDecimal(3)).getCents(),
+                userId, firstMonth, endMonth);
+        return totals;
     }
 }
@@ -1,19 +1,75 @@
 package com.example.pfm.dao;
 
 import com.example.pfm.model.Income;
+import com.example.pfm.model.Money;
+import com.example.pfm.model.PageKey;
 import com.example.pfm.util.MySQLConnection;
 
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Data Access Object for managing income related database operations.
  */
 public class IncomeDAO {
+    // The amount of rows sent to the database per batch.
+    static final int BATCH_SIZE = 500;
+
+    private final AggregateCache cache;
+    private final LocalLedger ledger;
+    private final RunningTotals runningTotals;
+
+    /**
+     * Constructs an IncomeDAO that uses the shared aggregate cache.
+     */
+    public IncomeDAO() {
+        this(AggregateCache.getDefault());
+    }
+
+    /**
+     * Constructs an IncomeDAO that uses the given aggregate cache and the shared local ledger.
+     *
+     * @param cache The cache for totals, invalidated whenever an income is written.
+     */
+    public IncomeDAO(AggregateCache cache) {
+        this(cache, LocalLedger.getDefault());
+    }
+
     /**
-     * Inserts a new income record into the database.
+     * Constructs an IncomeDAO that uses the given aggregate cache and local ledger.
+     *
+     * @param cache The cache for totals, invalidated whenever an income is written.
+     * @param ledger The in-memory rows of the logged-in users, updated whenever an income is written.
+     */
+    public IncomeDAO(AggregateCache cache, LocalLedger ledger) {
+        this(cache, ledger, RunningTotals.getDefault());
+    }
+
+    /**
+     * Constructs an IncomeDAO that uses the given aggregate cache, local ledger and running totals.
+     *
+     * @param cache The cache for totals, invalidated whenever an income is written.
+     * @param ledger The in-memory rows of the logged-in users, updated whenever an income is written.
+     * @param runningTotals The monthly totals, updated in the same transaction as every income write.
+     */
+    public IncomeDAO(AggregateCache cache, LocalLedger ledger, RunningTotals runningTotals) {
+        this.cache = cache;
+        this.ledger = ledger;
+        this.runningTotals = runningTotals;
+    }
+
+    /**
+     * Inserts a new income record into the database. The generated id is set on the income.
      *
      * @param income The Income object containing details to be added.
      * @return true if the operation was successful, false if not.
@@ -22,14 +78,21 @@ public class IncomeDAO {
         String sql = "INSERT INTO income (user_id, amount, source, date) VALUES (?, ?, ?, ?)";
 
         try (Connection conn = MySQLConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
-            stmt.setInt(1, income.getUserId());
-            stmt.setDouble(2, income.getAmount());
-            stmt.setString(3, income.getSource());
-            stmt.setDate(4, Date.valueOf(income.getDate()));
+            Jdbc.bind(stmt, income.getUserId(), income.getAmount(), income.getSource(), income.getDate());
 
-            int affectedRows = stmt.executeUpdate();
+            int affectedRows = runningTotals.write(conn, deltas -> {
+                deltas.add(RunningTotals.Table.INCOME, income.getUserId(), income.getDate(), income.getSource(), income.getAmount());
+                return stmt.executeUpdate();
+            });
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    income.setId(keys.getInt(1));
+                    ledger.incomeWritten(income);
+                }
+            }
+            cache.invalidateIncomes(income.getUserId(), income.getDate());
             return affectedRows == 1;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -37,6 +100,159 @@ public class IncomeDAO {
         return false;
     }
 
+    /**
+     * Inserts a list of incomes in a single transaction, sending them to the database in batches.
+     * Either all incomes are inserted or none of them.
+     *
+     * @param incomes The incomes to insert.
+     * @return The amount of inserted incomes, 0 if the insert failed.
+     */
+    public int insertIncomes(List<Income> incomes) {
+        return insertIncomes(incomes.iterator());
+    }
+
+    /**
+     * Inserts the incomes produced by an iterator in a single transaction. The incomes are sent to the database in
+     * batches of {@value #BATCH_SIZE} as they are produced, so the iterator can stream them from a source of any size.
+     * Either all incomes are inserted or none of them.
+     *
+     * @param incomes The incomes to insert.
+     * @return The amount of inserted incomes, 0 if the insert failed.
+     */
+    public int insertIncomes(Iterator<Income> incomes) {
+        try (Connection conn = MySQLConnection.getConnection()) {
+            return insertIncomes(conn, incomes);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Inserts the incomes of the write-behind journal that haven't been inserted yet, in a single transaction.
+     * The idempotency keys of the inserted incomes are recorded in the same transaction, so a batch that is retried
+     * after an error skips the incomes that were inserted by an earlier attempt.
+     *
+     * @param incomes The incomes by their idempotency key.
+     * @return The amount of inserted incomes, without the ones that were inserted before.
+     * @throws SQLException If the insert fails. Nothing is inserted and the batch can be retried.
+     */
+    public int insertIncomesOnce(Map<String, Income> incomes) throws SQLException {
+        try (Connection conn = MySQLConnection.getConnection()) {
+            return insertIncomesOnce(conn, incomes);
+        }
+    }
+
+    /**
+     * Inserts the incomes whose key isn't applied yet on the given connection.
+     * Package-private, so the idempotency can be tested against another database.
+     */
+    int insertIncomesOnce(Connection conn, Map<String, Income> incomes) throws SQLException {
+        Set<String> applied = AppliedEntries.find(conn, incomes.keySet());
+        List<String> keys = new ArrayList<>();
+        List<Income> pending = new ArrayList<>();
+        incomes.forEach((key, income) -> {
+            if (!applied.contains(key)) {
+                keys.add(key);
+                pending.add(income);
+            }
+        });
+        return pending.isEmpty() ? 0 : insertIncomes(conn, pending.iterator(), keys);
+    }
+
+    /**
+     * Inserts incomes in a single transaction on the given connection.
+     * Package-private, so the batching can be tested against another database.
+     */
+    int insertIncomes(Connection conn, Iterator<Income> incomes) throws SQLException {
+        return insertIncomes(conn, incomes, List.of());
+    }
+
+    /**
+     * Inserts incomes and records the idempotency keys of the journal entries they came from in one transaction.
+     */
+    private int insertIncomes(Connection conn, Iterator<Income> incomes, List<String> entryKeys) throws SQLException {
+        String sql = "INSERT INTO income (user_id, amount, source, date) VALUES (?, ?, ?, ?)";
+        Map<Integer, Set<YearMonth>> changedMonths = new HashMap<>(); // Per user, to invalidate the cache afterwards
+        RunningTotals.Deltas deltas = new RunningTotals.Deltas();
+        List<Income> written = new ArrayList<>(); // With their generated ids, for the users in the ledger
+        Set<Integer> reloaded = new HashSet<>(); // Users with rows that are not in written
+        int inserted = 0;
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            List<Income> batch = new ArrayList<>(BATCH_SIZE);
+            while (incomes.hasNext()) {
+                Income income = incomes.next();
+                Jdbc.bind(stmt, income.getUserId(), income.getAmount(), income.getSource(), income.getDate());
+                stmt.addBatch();
+                batch.add(income);
+                deltas.add(RunningTotals.Table.INCOME, income.getUserId(), income.getDate(), income.getSource(), income.getAmount());
+                changedMonths.computeIfAbsent(income.getUserId(), id -> new HashSet<>()).add(YearMonth.from(income.getDate()));
+
+                if (batch.size() == BATCH_SIZE) {
+                    inserted += executeBatch(stmt, batch, written, reloaded);
+                }
+            }
+            if (!batch.isEmpty()) {
+                inserted += executeBatch(stmt, batch, written, reloaded);
+            }
+            if (!entryKeys.isEmpty()) {
+                AppliedEntries.record(conn, entryKeys);
+            }
+            runningTotals.commit(conn, deltas);
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+
+        changedMonths.forEach((userId, months) -> months.forEach(month -> cache.invalidateIncomes(userId, month.atDay(1))));
+        written.forEach(ledger::incomeWritten);
+        reloaded.forEach(ledger::reload); // Only reloads users loaded since, who may have read the table before the commit
+        return inserted;
+    }
+
+    /**
+     * Executes a batch and sets the generated ids on its rows. Rows of users in the ledger are added to written,
+     * the users of the other rows to reloaded.
+     */
+    private int executeBatch(PreparedStatement stmt, List<Income> batch, List<Income> written, Set<Integer> reloaded) throws SQLException {
+        int inserted = countInserted(stmt.executeBatch());
+        try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+            for (Income income : batch) {
+                if (generatedKeys.next()) {
+                    income.setId(generatedKeys.getInt(1));
+                }
+                if (income.getId() > 0 && ledger.holds(income.getUserId())) {
+                    written.add(income);
+                } else {
+                    reloaded.add(income.getUserId());
+                }
+            }
+        }
+        batch.clear();
+        return inserted;
+    }
+
+    /**
+     * Counts the inserted rows of an executed batch. With rewriteBatchedStatements the driver may report
+     * SUCCESS_NO_INFO instead of a row count, which still means the row was inserted.
+     */
+    private static int countInserted(int[] results) {
+        int count = 0;
+        for (int result : results) {
+            if (result > 0) {
+                count += result;
+            } else if (result == Statement.SUCCESS_NO_INFO) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Retrieves all income records for a specific user.
      *
@@ -45,29 +261,79 @@ public class IncomeDAO {
      */
 
     public List<Income> getAllIncomesByUserId(int userId) {
-        List<Income> incomes = new ArrayList<>();
+        String sql = "SELECT " + RowMappers.INCOME_COLUMNS + " FROM income WHERE user_id = ?";
 
-        String sql = "SELECT * FROM income WHERE user_id = ?";
+        try {
+            return Jdbc.queryList(sql, RowMappers.INCOME, userId);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
 
-        try (Connection conn = MySQLConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql)) {
+    /**
+     * Counts the incomes of a specific user.
+     *
+     * @param userId The ID of the user.
+     * @return The amount of incomes of the user.
+     */
+    public int countIncomesByUserId(int userId) {
+        String sql = "SELECT COUNT(*) FROM income WHERE user_id = ?";
 
-            stmt.setInt(1, userId);
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                Income income = new Income();
-                income.setId(rs.getInt("id"));
-                income.setUserId(rs.getInt("user_id"));
-                income.setAmount(rs.getDouble("amount"));
-                income.setSource(rs.getString("source"));
-                income.setDate(rs.getDate("date").toLocalDate());
-                incomes.add(income);
-            }
+        try {
+            Integer count = Jdbc.queryOne(sql, RowMappers.INT, userId);
+            return count != null ? count : 0;
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return incomes;
+        return 0;
+    }
+
+    /**
+     * Retrieves one page of the incomes of a specific user, ordered by date and id.
+     * The page starts after the given key, so the rows before it don't have to be read again. To jump ahead, skip
+     * can be used to pass over rows after the key, which is still cheaper than an OFFSET from the first row.
+     *
+     * @param userId The ID of the user.
+     * @param after The key of the row before the page, or null to start at the first income.
+     * @param skip The amount of rows after the key to pass over before the page starts.
+     * @param limit The maximum amount of incomes in the page.
+     * @return The incomes of the page, at most limit.
+     */
+    public List<Income> getIncomesPage(int userId, PageKey after, int skip, int limit) {
+        // The expanded comparison instead of (date, id) > (?, ?), because MySQL only seeks through the index with this form
+        String sql = after == null
+                ? "SELECT " + RowMappers.INCOME_COLUMNS + " FROM income WHERE user_id = ? ORDER BY date, id LIMIT ? OFFSET ?"
+                : "SELECT " + RowMappers.INCOME_COLUMNS + " FROM income WHERE user_id = ? AND (date > ? OR (date = ? AND id > ?)) ORDER BY date, id LIMIT ? OFFSET ?";
+        Object[] params = after == null
+                ? new Object[]{userId, limit, skip}
+                : new Object[]{userId, after.date(), after.date(), after.id(), limit, skip};
+
+        try {
+            return Jdbc.queryList(sql, RowMappers.INCOME, params);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Reads the incomes of a specific user between two dates one row at a time, ordered by date and id.
+     * The rows are streamed from the database instead of collected in a list, so any range fits in memory.
+     *
+     * @param userId The ID of the user.
+     * @param start The first day of the range (inclusive).
+     * @param end The end of the range (exclusive).
+     * @param action Called with each income as it is read.
+     * @return The amount of incomes read.
+     * @throws SQLException If the query fails. The action may have been called for some rows already.
+     */
+    public int forEachIncome(int userId, LocalDate start, LocalDate end, Consumer<? super Income> action) throws SQLException {
+        String sql = "SELECT " + RowMappers.INCOME_COLUMNS + " FROM income WHERE user_id = ? AND date >= ? AND date < ? ORDER BY date, id";
+
+        try (Connection conn = MySQLConnection.getConnection()) {
+            return Jdbc.stream(conn, sql, RowMappers.INCOME, action, userId, start, end);
+        }
     }
 
     /**
@@ -82,13 +348,25 @@ public class IncomeDAO {
         try (Connection conn = MySQLConnection.getConnection();
             PreparedStatement stmt = conn.prepareStatement(sql)) {
 
-            stmt.setDouble(1, income.getAmount());
-            stmt.setString(2, income.getSource());
-            stmt.setDate(3, Date.valueOf(income.getDate()));
-            stmt.setInt(4, income.getId());
-            stmt.setInt(5, income.getUserId());
+            Jdbc.bind(stmt, income.getAmount(), income.getSource(), income.getDate(), income.getId(), income.getUserId());
 
-            int affectedRows = stmt.executeUpdate();
+            // Set by the write, as the month of the old row is invalidated after the commit
+            Income[] found = new Income[1];
+            int affectedRows = runningTotals.write(conn, deltas -> {
+                Income old = found[0] = findIncome(conn, income.getId(), income.getUserId());
+                int rows = stmt.executeUpdate();
+                if (rows == 1 && old != null) {
+                    deltas.add(RunningTotals.Table.INCOME, old.getUserId(), old.getDate(), old.getSource(), Money.ZERO.minus(old.getAmount()));
+                    deltas.add(RunningTotals.Table.INCOME, income.getUserId(), income.getDate(), income.getSource(), income.getAmount());
+                }
+                return rows;
+            });
+            if (affectedRows == 1) {
+                ledger.incomeWritten(income);
+            }
+            // The income may have moved to another month, so both months are invalidated
+            cache.invalidateIncomes(income.getUserId(), found[0] != null ? found[0].getDate() : null);
+            cache.invalidateIncomes(income.getUserId(), income.getDate());
             return affectedRows == 1;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -109,10 +387,22 @@ public class IncomeDAO {
         try (Connection conn = MySQLConnection.getConnection();
             PreparedStatement stmt = conn.prepareStatement(sql)) {
 
-            stmt.setInt(1, id);
-            stmt.setInt(2, userId);
+            Jdbc.bind(stmt, id, userId);
 
-            int affectedRows = stmt.executeUpdate();
+            // Set by the write, as the month of the old row is invalidated after the commit
+            Income[] found = new Income[1];
+            int affectedRows = runningTotals.write(conn, deltas -> {
+                Income old = found[0] = findIncome(conn, id, userId);
+                int rows = stmt.executeUpdate();
+                if (rows == 1 && old != null) {
+                    deltas.add(RunningTotals.Table.INCOME, userId, old.getDate(), old.getSource(), Money.ZERO.minus(old.getAmount()));
+                }
+                return rows;
+            });
+            if (affectedRows == 1) {
+                ledger.incomeDeleted(userId, id);
+            }
+            cache.invalidateIncomes(userId, found[0] != null ? found[0].getDate() : null);
             return affectedRows == 1;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -120,31 +410,27 @@ public class IncomeDAO {
         return false;
     }
 
+    /**
+     * Looks up an income before it is changed, so its old month can be invalidated in the cache and its old amount
+     * can be subtracted from the running totals. Called in the transaction of the change: the row stays locked until
+     * the commit, so a concurrent change can't make the subtracted amount stale.
+     *
+     * @return The income with its date, amount and source, or null if it doesn't exist (then all months of the user are invalidated).
+     */
+    private Income findIncome(Connection conn, int id, int userId) throws SQLException {
+        String sql = "SELECT " + RowMappers.INCOME_COLUMNS + " FROM income WHERE id = ? AND user_id = ? FOR UPDATE";
+        return Jdbc.queryOne(conn, sql, RowMappers.INCOME, id, userId);
+    }
+
     /**
      * Calculates the total income for the current month for a specific user.
      *
      * @param userId The ID of the user whose total income is calculated.
      * @return The total income amount for the current month.
      */
-    public double getTotalIncomeForCurrentMonth(int userId) {
-        String sql = "SELECT SUM(amount) AS total FROM income WHERE user_id = ? AND MONTH(date) = ? AND YEAR(date) = ?";
-
-        try (Connection conn = MySQLConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            LocalDate now = LocalDate.now();
-            stmt.setInt(1, userId);
-            stmt.setInt(2, now.getMonthValue()); // Current month
-            stmt.setInt(3, now.getYear()); // Current year
-
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getDouble("total");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return 0.0; //if error or no incomes found
+    public Money getTotalIncomeForCurrentMonth(int userId) {
+        LocalDate now = LocalDate.now();
+        return getTotalIncomeForMonth(userId, now.getMonthValue(), now.getYear());
     }
 
     /**
@@ -153,25 +439,82 @@ public class IncomeDAO {
      * @param userId The ID of the user whose total income is calculated.
      * @param month  The month for which the total income is calculated.
      * @param year   The year for which the total income is calculated.
+     * The total is read from the running totals instead of summing the rows of the month, see {@link RunningTotals}.
      * @return The total income amount for the specified month and year.
      */
-    public double getTotalIncomeForMonth(int userId, int month, int year) {
-        String sql = "SELECT SUM(amount) AS total FROM income WHERE user_id = ? AND MONTH(date) = ? AND YEAR(date) = ?";
+    public Money getTotalIncomeForMonth(int userId, int month, int year) {
+        YearMonth yearMonth = YearMonth.of(year, month);
+        LocalLedger.UserLedger loaded = ledger.get(userId);
+        if (loaded != null) {
+            return loaded.incomeTotal(yearMonth);
+        }
 
-        try(Connection conn = MySQLConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try {
+            return runningTotals.getTotal(RunningTotals.Table.INCOME, userId, yearMonth);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return Money.ZERO;
+    }
 
-            stmt.setInt(1, userId);
-            stmt.setInt(2, month);
-            stmt.setInt(3, year);
+    /**
+     * Calculates the total incomes of every month in a year for a specific user with a single query.
+     *
+     * @param userId The ID of the user.
+     * @param year The year for which to calculate the monthly totals.
+     * @return An array of 12 totals in cents, where index 0 is January and index 11 is December.
+     */
+    public long[] getMonthlyTotalsForYear(int userId, int year) {
+        LocalLedger.UserLedger loaded = ledger.get(userId);
+        if (loaded != null) {
+            return loaded.monthlyIncomeTotals(LocalDate.of(year, 1, 1), LocalDate.of(year + 1, 1, 1));
+        }
+        try {
+            long[] totals = cache.get(AggregateCache.Kind.INCOME_MONTHLY_TOTALS, userId, YearMonth.of(year, 1), null,
+                    () -> queryMonthlyTotals(userId, LocalDate.of(year, 1, 1), LocalDate.of(year + 1, 1, 1)));
+            return totals.clone(); // a copy, so callers can't change the cached array
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new long[12];
+    }
 
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getDouble("total");
-            }
+    /**
+     * Calculates the total incomes per month between two dates for a specific user with a single query.
+     *
+     * @param userId The ID of the user.
+     * @param start The first day of the range (inclusive). Only its year and month are used.
+     * @param end The end of the range (exclusive). Only its year and month are used.
+     * @return An array with one total in cents per month, where index 0 is the month of the start date.
+     */
+    public long[] getMonthlyTotals(int userId, LocalDate start, LocalDate end) {
+        LocalLedger.UserLedger loaded = ledger.get(userId);
+        if (loaded != null) {
+            return loaded.monthlyIncomeTotals(start, end);
+        }
+        try {
+            return queryMonthlyTotals(userId, start, end);
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return 0.0;
+        return new long[Math.max((int) ChronoUnit.MONTHS.between(start.withDayOfMonth(1), end.withDayOfMonth(1)), 0)];
+    }
+
+    private long[] queryMonthlyTotals(int userId, LocalDate start, LocalDate end) throws SQLException {
+        LocalDate firstMonth = start.withDayOfMonth(1);
+        LocalDate endMonth = end.withDayOfMonth(1);
+        int months = (int) ChronoUnit.MONTHS.between(firstMonth, endMonth);
+        long[] totals = new long[Math.max(months, 0)];
+        if (months <= 0) {
+            return totals;
+        }
+
+        String sql = "SELECT YEAR(date) AS year, MONTH(date) AS month, SUM(amount) AS total FROM income " +
+                "WHERE user_id = ? AND date >= ? AND date < ? GROUP BY YEAR(date), MONTH(date)";
+
+        int startIndex = firstMonth.getYear() * 12 + firstMonth.getMonthValue() - 1;
+        Jdbc.forEachRow(sql, rs -> totals[rs.getInt(1) * 12 + rs.getInt(2) - 1 - startIndex] = Money.of(rs.getBigDecimal(3)).getCents(),
+                userId, firstMonth, endMonth);
+        return totals;
     }
 }
@@ -0,0 +1,176 @@
+package com.example.pfm.dao;
+
+import com.example.pfm.model.Money;
+import com.example.pfm.util.MySQLConnection;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The shared JDBC plumbing of the DAOs: binding parameters, running a statement and mapping its rows, with the
+ * Connection, PreparedStatement and ResultSet always closed by try-with-resources.
+ * Preparing the same SQL again on a pooled connection is cheap, since the driver caches the server-side prepared
+ * statements of each connection (see the URL in {@link MySQLConnection}).
+ */
+final class Jdbc {
+    // The amount of rows a streamed query fetches per round trip. With useCursorFetch the driver reads the result
+    // through a server-side cursor in chunks of this size, instead of loading all rows into memory first.
+    static final int STREAM_FETCH_SIZE = 1000;
+
+    /**
+     * Reads the current row of a result set.
+     */
+    @FunctionalInterface
+    interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    private Jdbc() {
+    }
+
+    /**
+     * Runs a query on a pooled connection and maps all rows.
+     *
+     * @param sql The query.
+     * @param mapper The mapper of the rows.
+     * @param params The parameters, bound with {@link #bind}.
+     * @return The mapped rows, empty if there are none.
+     * @throws SQLException If the query fails.
+     */
+    static <T> List<T> queryList(String sql, RowMapper.Factory<T> mapper, Object... params) throws SQLException {
+        try (Connection conn = MySQLConnection.getConnection()) {
+            return queryList(conn, sql, mapper, params);
+        }
+    }
+
+    static <T> List<T> queryList(Connection conn, String sql, RowMapper.Factory<T> mapper, Object... params) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            bind(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                RowMapper<T> rowMapper = mapper.forColumns(rs);
+                List<T> rows = new ArrayList<>();
+                while (rs.next()) {
+                    rows.add(rowMapper.mapRow(rs));
+                }
+                return rows;
+            }
+        }
+    }
+
+    /**
+     * Runs a query on a pooled connection and maps the first row.
+     *
+     * @param sql The query.
+     * @param mapper The mapper of the row.
+     * @param params The parameters, bound with {@link #bind}.
+     * @return The mapped row, or null if there is none.
+     * @throws SQLException If the query fails.
+     */
+    static <T> T queryOne(String sql, RowMapper.Factory<T> mapper, Object... params) throws SQLException {
+        try (Connection conn = MySQLConnection.getConnection()) {
+            return queryOne(conn, sql, mapper, params);
+        }
+    }
+
+    static <T> T queryOne(Connection conn, String sql, RowMapper.Factory<T> mapper, Object... params) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            bind(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapper.forColumns(rs).mapRow(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Runs a query on a pooled connection and hands every row to the handler, for results that are not mapped to
+     * objects, like grouped totals.
+     *
+     * @param sql The query.
+     * @param handler Reads the current row.
+     * @param params The parameters, bound with {@link #bind}.
+     * @throws SQLException If the query fails.
+     */
+    static void forEachRow(String sql, RowHandler handler, Object... params) throws SQLException {
+        try (Connection conn = MySQLConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            bind(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(rs);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a query on a forward-only, read-only result set and hands every mapped row to the action as it is read,
+     * so the rows are never all held in memory.
+     *
+     * @param conn The connection to query on.
+     * @param sql The query.
+     * @param mapper The mapper of the rows.
+     * @param action Called with each row, in the order of the query.
+     * @param params The parameters, bound with {@link #bind}.
+     * @return The amount of rows.
+     * @throws SQLException If the query fails.
+     */
+    static <T> int stream(Connection conn, String sql, RowMapper.Factory<T> mapper, Consumer<? super T> action,
+                          Object... params) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            bind(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                RowMapper<T> rowMapper = mapper.forColumns(rs);
+                int rows = 0;
+                while (rs.next()) {
+                    action.accept(rowMapper.mapRow(rs));
+                    rows++;
+                }
+                return rows;
+            }
+        }
+    }
+
+    /**
+     * Runs an INSERT, UPDATE or DELETE on a pooled connection.
+     *
+     * @param sql The statement.
+     * @param params The parameters, bound with {@link #bind}.
+     * @return The amount of affected rows.
+     * @throws SQLException If the statement fails.
+     */
+    static int update(String sql, Object... params) throws SQLException {
+        try (Connection conn = MySQLConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            bind(stmt, params);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Binds parameters by position. LocalDate is bound as a DATE and Money as a DECIMAL, other values as they are.
+     *
+     * @param stmt The statement.
+     * @param params The parameters, in the order of the placeholders.
+     * @throws SQLException If a parameter can't be bound.
+     */
+    static void bind(PreparedStatement stmt, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object param = params[i];
+            if (param instanceof LocalDate date) {
+                stmt.setDate(i + 1, Date.valueOf(date));
+            } else if (param instanceof Money money) {
+                stmt.setBigDecimal(i + 1, money.toBigDecimal());
+            } else {
+                stmt.setObject(i + 1, param);
+            }
+        }
+    }
+}
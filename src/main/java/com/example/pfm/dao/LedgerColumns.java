@@ -0,0 +1,171 @@
+package com.example.pfm.dao;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+/**
+ * The rows of one table of one user, stored column by column in primitive arrays and sorted by date and id.
+ * A date range is found with a binary search and summed in a tight loop over the amounts, without any objects per row.
+ * Not thread-safe, {@link LocalLedger} guards every instance with a lock.
+ */
+class LedgerColumns {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int size;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] epochDays = new int[INITIAL_CAPACITY]; // The date of each row as LocalDate.toEpochDay()
+    private long[] cents = new long[INITIAL_CAPACITY];
+    private byte[] categories = new byte[INITIAL_CAPACITY]; // The Category id of an expense, 0 for incomes
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Adds a row, or replaces the row with the same id. Replacing makes every write idempotent, so a write that
+     * was already part of the loaded rows can safely be applied again.
+     */
+    void upsert(int id, LocalDate date, long amountCents, int category) {
+        remove(id);
+        int epochDay = (int) date.toEpochDay();
+        int index = size;
+        // Rows are mostly added with the latest date, so the position is searched from the end
+        while (index > 0 && (epochDays[index - 1] > epochDay || (epochDays[index - 1] == epochDay && ids[index - 1] > id))) {
+            index--;
+        }
+        ensureCapacity(size + 1);
+        int moved = size - index;
+        System.arraycopy(ids, index, ids, index + 1, moved);
+        System.arraycopy(epochDays, index, epochDays, index + 1, moved);
+        System.arraycopy(cents, index, cents, index + 1, moved);
+        System.arraycopy(categories, index, categories, index + 1, moved);
+        set(index, id, epochDay, amountCents, category);
+        size++;
+    }
+
+    /**
+     * Adds a row after all other rows. Only used while loading rows that are ordered by date and id.
+     */
+    void append(int id, LocalDate date, long amountCents, int category) {
+        ensureCapacity(size + 1);
+        set(size++, id, (int) date.toEpochDay(), amountCents, category);
+    }
+
+    /**
+     * Removes the row with the given id.
+     *
+     * @return true if the row existed.
+     */
+    boolean remove(int id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                int moved = size - i - 1;
+                System.arraycopy(ids, i + 1, ids, i, moved);
+                System.arraycopy(epochDays, i + 1, epochDays, i, moved);
+                System.arraycopy(cents, i + 1, cents, i, moved);
+                System.arraycopy(categories, i + 1, categories, i, moved);
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The sum in cents of the rows in the month.
+     */
+    long sum(YearMonth month) {
+        long total = 0;
+        for (int i = firstIndex(month.atDay(1)), end = firstIndex(month.plusMonths(1).atDay(1)); i < end; i++) {
+            total += cents[i];
+        }
+        return total;
+    }
+
+    /**
+     * @return The sum in cents of the rows in the month with the given category.
+     */
+    long sum(YearMonth month, int category) {
+        return sum(month.atDay(1), month.plusMonths(1).atDay(1), category);
+    }
+
+    /**
+     * @param start The first day, inclusive.
+     * @param end The last day, exclusive.
+     * @return The sum in cents of the rows from start until end with the given category.
+     */
+    long sum(LocalDate start, LocalDate end, int category) {
+        long total = 0;
+        for (int i = firstIndex(start), last = firstIndex(end); i < last; i++) {
+            if (categories[i] == category) {
+                total += cents[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @param categoryCount The amount of categories, the length of the returned array.
+     * @return The sum in cents of the rows in the month per category, indexed by category id.
+     */
+    long[] sumPerCategory(YearMonth month, int categoryCount) {
+        long[] totals = new long[categoryCount];
+        for (int i = firstIndex(month.atDay(1)), end = firstIndex(month.plusMonths(1).atDay(1)); i < end; i++) {
+            totals[categories[i]] += cents[i];
+        }
+        return totals;
+    }
+
+    /**
+     * @param firstMonth The month of index 0.
+     * @param months The amount of months, the length of the returned array.
+     * @return The sum in cents of the rows per month.
+     */
+    long[] sumPerMonth(YearMonth firstMonth, int months) {
+        long[] totals = new long[months];
+        for (int m = 0; m < months; m++) {
+            totals[m] = sum(firstMonth.plusMonths(m));
+        }
+        return totals;
+    }
+
+    /**
+     * @return The index of the first row on or after the date, or the size if there is none.
+     */
+    private int firstIndex(LocalDate date) {
+        int epochDay = (int) date.toEpochDay();
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (epochDays[middle] < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void set(int index, int id, int epochDay, long amountCents, int category) {
+        ids[index] = id;
+        epochDays[index] = epochDay;
+        cents[index] = amountCents;
+        categories[index] = (byte) category;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            int newCapacity = Math.max(capacity, ids.length * 2);
+            ids = Arrays.copyOf(ids, newCapacity);
+            epochDays = Arrays.copyOf(epochDays, newCapacity);
+            cents = Arrays.copyOf(cents, newCapacity);
+            categories = Arrays.copyOf(categories, newCapacity);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.pfm.dao;
+
+import com.example.pfm.model.Category;
+import com.example.pfm.model.CategoryTotals;
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Income;
+import com.example.pfm.model.Money;
+import com.example.pfm.util.MySQLConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional in-memory copy of the expenses and incomes of the logged-in users ("local ledger" mode).
+ * When a user logs in their rows are loaded once into {@link LedgerColumns}, after which the DAOs answer the
+ * monthly, per-category, yearly and budget totals of that user from memory instead of querying the database.
+ * The DAOs apply every write they make to the ledger, so it stays in sync with the database as long as the
+ * user's rows are only written through this application.
+ *
+ * The mode is enabled with the system property {@code pfm.localLedger=true}. When it is disabled, or a user's
+ * rows are not loaded, the DAOs query the database as before.
+ */
+public class LocalLedger {
+    private static final LocalLedger DEFAULT = new LocalLedger(Boolean.getBoolean("pfm.localLedger"));
+
+    private final boolean enabled;
+    private final Map<Integer, UserLedger> users = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a ledger.
+     *
+     * @param enabled Whether {@link #load(int)} loads anything. A disabled ledger never answers a query.
+     */
+    public LocalLedger(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the ledger shared by all DAOs that were created without an explicit ledger.
+     *
+     * @return The shared ledger.
+     */
+    public static LocalLedger getDefault() {
+        return DEFAULT;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Loads the expenses and incomes of a user, replacing what was loaded before. Does nothing when the ledger is disabled.
+     * If loading fails the user is left unloaded, so the DAOs keep querying the database.
+     *
+     * @param userId The user that logged in.
+     */
+    public void load(int userId) {
+        if (!enabled) {
+            return;
+        }
+        try (Connection conn = MySQLConnection.getConnection()) {
+            load(conn, userId);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Loads the rows of a user on the given connection.
+     * Package-private, so the ledger can be tested against another database.
+     */
+    void load(Connection conn, int userId) throws SQLException {
+        UserLedger ledger = users.computeIfAbsent(userId, id -> new UserLedger());
+        ledger.lock.writeLock().lock();
+        try {
+            // Writes made while the rows are read wait for the lock and are applied afterwards, which is
+            // harmless for rows that were already read since every write replaces the row with the same id.
+            ledger.ready = false;
+            loadRows(conn, "SELECT id, date, amount, category FROM expense WHERE user_id = ? ORDER BY date, id", userId, ledger.expenses, true);
+            loadRows(conn, "SELECT id, date, amount FROM income WHERE user_id = ? ORDER BY date, id", userId, ledger.incomes, false);
+            ledger.ready = true;
+        } catch (SQLException | RuntimeException e) {
+            users.remove(userId, ledger);
+            throw e;
+        } finally {
+            ledger.lock.writeLock().unlock();
+        }
+    }
+
+    private static void loadRows(Connection conn, String sql, int userId, LedgerColumns columns, boolean withCategory) throws SQLException {
+        columns.clear();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int category = withCategory ? Category.of(rs.getString("category")).getId() : 0;
+                    columns.append(rs.getInt("id"), rs.getDate("date").toLocalDate(),
+                            Money.of(rs.getBigDecimal("amount")).getCents(), category);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the rows of a user, for example when they log out.
+     *
+     * @param userId The user whose rows are dropped.
+     */
+    public void unload(int userId) {
+        users.remove(userId);
+    }
+
+    /**
+     * @param userId The user to check.
+     * @return Whether the queries of the user are answered from memory.
+     */
+    public boolean isLoaded(int userId) {
+        UserLedger ledger = users.get(userId);
+        return ledger != null && ledger.ready;
+    }
+
+    /**
+     * @param userId The user to check.
+     * @return Whether writes of the user are applied, which is also the case while their rows are loaded.
+     */
+    boolean holds(int userId) {
+        return users.containsKey(userId);
+    }
+
+    /**
+     * Returns the loaded rows of a user, or null if the DAOs have to query the database.
+     */
+    UserLedger get(int userId) {
+        UserLedger ledger = users.get(userId);
+        return ledger != null && ledger.ready ? ledger : null;
+    }
+
+    // Write paths, called by the DAOs after a write succeeded. They do nothing for users that are not loaded.
+
+    void expenseWritten(Expense expense) {
+        UserLedger ledger = users.get(expense.getUserId());
+        if (ledger != null) {
+            ledger.write(ledger.expenses, expense.getId(), expense.getDate(), expense.getAmount(), Category.of(expense.getCategory()).getId());
+        }
+    }
+
+    void expenseDeleted(int userId, int id) {
+        UserLedger ledger = users.get(userId);
+        if (ledger != null) {
+            ledger.delete(ledger.expenses, id);
+        }
+    }
+
+    void incomeWritten(Income income) {
+        UserLedger ledger = users.get(income.getUserId());
+        if (ledger != null) {
+            ledger.write(ledger.incomes, income.getId(), income.getDate(), income.getAmount(), 0);
+        }
+    }
+
+    void incomeDeleted(int userId, int id) {
+        UserLedger ledger = users.get(userId);
+        if (ledger != null) {
+            ledger.delete(ledger.incomes, id);
+        }
+    }
+
+    /**
+     * Reloads a user after a write whose ids are not known. Does nothing for users that are not loaded.
+     */
+    void reload(int userId) {
+        if (users.containsKey(userId)) {
+            load(userId);
+        }
+    }
+
+    /**
+     * The loaded expenses and incomes of one user.
+     */
+    static final class UserLedger {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final LedgerColumns expenses = new LedgerColumns();
+        private final LedgerColumns incomes = new LedgerColumns();
+        private volatile boolean ready; // false while the rows are loaded
+
+        private void write(LedgerColumns columns, int id, LocalDate date, Money amount, int category) {
+            lock.writeLock().lock();
+            try {
+                columns.upsert(id, date, amount.getCents(), category);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void delete(LedgerColumns columns, int id) {
+            lock.writeLock().lock();
+            try {
+                columns.remove(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        Money expenseTotal(YearMonth month) {
+            lock.readLock().lock();
+            try {
+                return Money.ofCents(expenses.sum(month));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Money incomeTotal(YearMonth month) {
+            lock.readLock().lock();
+            try {
+                return Money.ofCents(incomes.sum(month));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Money expenseTotal(YearMonth month, Category category) {
+            lock.readLock().lock();
+            try {
+                return Money.ofCents(expenses.sum(month, category.getId()));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Money expenseTotal(LocalDate start, LocalDate end, Category category) {
+            lock.readLock().lock();
+            try {
+                return Money.ofCents(expenses.sum(start, end, category.getId()));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        CategoryTotals expenseCategoryTotals(YearMonth month) {
+            long[] totals;
+            lock.readLock().lock();
+            try {
+                totals = expenses.sumPerCategory(month, Category.count());
+            } finally {
+                lock.readLock().unlock();
+            }
+            CategoryTotals.Builder builder = new CategoryTotals.Builder();
+            for (Category category : Category.values()) {
+                builder.add(category, Money.ofCents(totals[category.getId()]));
+            }
+            return builder.build();
+        }
+
+        long[] monthlyExpenseTotals(LocalDate start, LocalDate end) {
+            return monthlyTotals(expenses, start, end);
+        }
+
+        long[] monthlyIncomeTotals(LocalDate start, LocalDate end) {
+            return monthlyTotals(incomes, start, end);
+        }
+
+        private long[] monthlyTotals(LedgerColumns columns, LocalDate start, LocalDate end) {
+            int months = (int) ChronoUnit.MONTHS.between(start.withDayOfMonth(1), end.withDayOfMonth(1));
+            lock.readLock().lock();
+            try {
+                return columns.sumPerMonth(YearMonth.from(start), Math.max(months, 0));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
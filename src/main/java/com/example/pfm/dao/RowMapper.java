@@ -0,0 +1,34 @@
+package com.example.pfm.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a ResultSet to an object.
+ * A mapper is created per ResultSet by its {@link Factory}, which looks up the column positions by name once,
+ * so mapping each row reads the columns by index instead of searching them by name again.
+ *
+ * @param <T> The type of the mapped objects.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Maps the current row. Does not move the cursor.
+     *
+     * @param rs The result set, positioned on a row.
+     * @return The mapped object.
+     * @throws SQLException If a column can't be read.
+     */
+    T mapRow(ResultSet rs) throws SQLException;
+
+    /**
+     * Creates a mapper for the columns of a result set.
+     *
+     * @param <T> The type of the mapped objects.
+     */
+    @FunctionalInterface
+    interface Factory<T> {
+        RowMapper<T> forColumns(ResultSet rs) throws SQLException;
+    }
+}
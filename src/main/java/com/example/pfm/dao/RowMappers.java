@@ -0,0 +1,124 @@
+package com.example.pfm.dao;
+
+import com.example.pfm.model.Budget;
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Income;
+import com.example.pfm.model.Money;
+import com.example.pfm.model.User;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * The row mappers of the entities, shared by the DAOs. Each one resolves its column positions once per result set.
+ */
+public final class RowMappers {
+    // The columns to select for the mappers, instead of SELECT *
+    static final String EXPENSE_COLUMNS = "id, user_id, amount, date, category";
+    static final String INCOME_COLUMNS = "id, user_id, amount, source, date";
+    static final String BUDGET_COLUMNS = "id, user_id, category, budget_limit, date";
+    static final String USER_COLUMNS = "id, username, password";
+
+    /**
+     * Maps the columns of {@link #EXPENSE_COLUMNS} to an Expense.
+     */
+    public static final RowMapper.Factory<Expense> EXPENSE = rs -> {
+        int id = rs.findColumn("id");
+        int userId = rs.findColumn("user_id");
+        int amount = rs.findColumn("amount");
+        int date = rs.findColumn("date");
+        int category = rs.findColumn("category");
+        return row -> {
+            Expense expense = new Expense(row.getInt(userId), Money.of(row.getBigDecimal(amount)),
+                    row.getString(category), row.getDate(date).toLocalDate());
+            expense.setId(row.getInt(id));
+            return expense;
+        };
+    };
+
+    /**
+     * Maps the columns of {@link #INCOME_COLUMNS} to an Income.
+     */
+    public static final RowMapper.Factory<Income> INCOME = rs -> {
+        int id = rs.findColumn("id");
+        int userId = rs.findColumn("user_id");
+        int amount = rs.findColumn("amount");
+        int source = rs.findColumn("source");
+        int date = rs.findColumn("date");
+        return row -> {
+            Income income = new Income(row.getInt(userId), Money.of(row.getBigDecimal(amount)),
+                    row.getString(source), row.getDate(date).toLocalDate());
+            income.setId(row.getInt(id));
+            return income;
+        };
+    };
+
+    /**
+     * Maps the columns of {@link #BUDGET_COLUMNS} to a Budget. When the result set has a "spent" column,
+     * it is used as the spent amount.
+     */
+    public static final RowMapper.Factory<Budget> BUDGET = rs -> {
+        int id = rs.findColumn("id");
+        int userId = rs.findColumn("user_id");
+        int category = rs.findColumn("category");
+        int budgetLimit = rs.findColumn("budget_limit");
+        int date = rs.findColumn("date");
+        int spent = findOptionalColumn(rs, "spent");
+        return row -> {
+            Budget budget = new Budget(row.getInt(id), row.getInt(userId), row.getString(category),
+                    Money.of(row.getBigDecimal(budgetLimit)), row.getDate(date).toLocalDate());
+            if (spent > 0) {
+                budget.setSpentAmount(Money.of(row.getBigDecimal(spent)));
+            }
+            return budget;
+        };
+    };
+
+    /**
+     * Maps the columns of {@link #USER_COLUMNS} to a User.
+     */
+    public static final RowMapper.Factory<User> USER = rs -> {
+        int id = rs.findColumn("id");
+        int username = rs.findColumn("username");
+        int password = rs.findColumn("password");
+        return row -> {
+            User user = new User();
+            user.setId(row.getInt(id));
+            user.setUsername(row.getString(username));
+            user.setPassword(row.getString(password));
+            return user;
+        };
+    };
+
+    /**
+     * Maps the first column to an amount, e.g. a SUM. A SUM over no rows is ZERO.
+     */
+    public static final RowMapper.Factory<Money> MONEY = rs -> row -> Money.of(row.getBigDecimal(1));
+
+    /**
+     * Maps the first column to an int, e.g. a COUNT.
+     */
+    public static final RowMapper.Factory<Integer> INT = rs -> row -> row.getInt(1);
+
+    /**
+     * Maps the first column to a string, e.g. a single selected column.
+     */
+    public static final RowMapper.Factory<String> STRING = rs -> row -> row.getString(1);
+
+    private RowMappers() {
+    }
+
+    /**
+     * @return The position of the column, or 0 if the result set doesn't have it.
+     */
+    private static int findOptionalColumn(ResultSet rs, String column) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (metaData.getColumnLabel(i).equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,347 @@
+package com.example.pfm.dao;
+
+import com.example.pfm.model.Money;
+import com.example.pfm.util.MySQLConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Maintains the monthly totals per user and category in the expense_monthly_total and income_monthly_total tables,
+ * so the total of a month is read from a handful of summary rows instead of summing all rows of the month.
+ * The DAOs add the change of every write to the summary rows as a delta, in the same transaction as the write.
+ * The month totals that were read are mirrored in memory for the same time as the entries of the
+ * {@link AggregateCache}, so a repeated read doesn't touch the database, while the writes of other clients of the
+ * database show up once a mirrored total expires. A write drops the mirrored totals of its months after its commit.
+ * Writes don't wait for each other in the application: a summary row is updated with a single upsert, so
+ * concurrent writes, also from other clients, are serialized by the row lock of the database.
+ *
+ * Summary rows can only drift from the raw rows when those are changed outside the DAOs.
+ * {@link #verify(Connection)} reports such drift and {@link #rebuild(Connection)} recomputes all summary rows.
+ */
+public class RunningTotals {
+    private static final RunningTotals DEFAULT = new RunningTotals();
+
+    /**
+     * The raw tables that have a summary table. The summary rows of incomes use the source as category.
+     */
+    public enum Table {
+        EXPENSE("expense", "category", "expense_monthly_total"),
+        INCOME("income", "source", "income_monthly_total");
+
+        private final String rawTable;
+        private final String categoryColumn;
+        private final String summaryTable;
+
+        Table(String rawTable, String categoryColumn, String summaryTable) {
+            this.rawTable = rawTable;
+            this.categoryColumn = categoryColumn;
+            this.summaryTable = summaryTable;
+        }
+    }
+
+    /**
+     * A summary row that doesn't match the sum of the raw rows.
+     *
+     * @param table The raw table.
+     * @param userId The user of the row.
+     * @param month The month of the row.
+     * @param category The category or income source of the row.
+     * @param expected The sum of the raw rows in cents.
+     * @param actual The total of the summary row in cents, 0 if it is missing.
+     */
+    public record Drift(Table table, int userId, YearMonth month, String category, long expected, long actual) {
+    }
+
+    /**
+     * A write that records the changes of the totals in the deltas it is given.
+     */
+    @FunctionalInterface
+    public interface Write {
+        int run(Deltas deltas) throws SQLException;
+    }
+
+    private record MonthKey(Table table, int userId, YearMonth month) {
+    }
+
+    private record RowKey(MonthKey month, String category) {
+    }
+
+    /**
+     * The changes to the totals made by one transaction.
+     */
+    public static final class Deltas {
+        private final Map<RowKey, Long> cents = new HashMap<>();
+
+        /**
+         * Adds an amount to the total of a category in the month of the date. Use a negative amount for removed rows.
+         */
+        public void add(Table table, int userId, LocalDate date, String category, Money amount) {
+            RowKey key = new RowKey(new MonthKey(table, userId, YearMonth.from(date)), category);
+            cents.merge(key, amount.getCents(), Math::addExact);
+        }
+
+        public boolean isEmpty() {
+            return cents.isEmpty();
+        }
+    }
+
+    private record Mirrored(long cents, long expiresAt) {
+    }
+
+    // The month totals read so far, across all categories in cents.
+    private final Map<MonthKey, Mirrored> mirror = new ConcurrentHashMap<>();
+    // Increased after every commit, so a total read while a write committed is not mirrored.
+    private final AtomicLong generation = new AtomicLong();
+    private final LongSupplier clock;
+    private final long ttlNanos;
+
+    /**
+     * Constructs running totals whose mirrored totals expire like the entries of the aggregate cache.
+     */
+    public RunningTotals() {
+        this(System::nanoTime, AggregateCache.DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Constructs running totals with a given clock and time to live of the mirrored totals.
+     *
+     * @param clock Monotonic time in nanoseconds.
+     * @param ttlMillis How long a mirrored total is used before it is read again.
+     */
+    public RunningTotals(LongSupplier clock, long ttlMillis) {
+        this.clock = clock;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /**
+     * Returns the running totals shared by all DAOs that were created without explicit running totals.
+     *
+     * @return The shared running totals.
+     */
+    public static RunningTotals getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Runs a write and its delta updates in one transaction on the given connection.
+     *
+     * @param conn The connection to write on. Its auto-commit mode is restored afterwards.
+     * @param write The write, which adds its changes to the deltas.
+     * @return The result of the write, usually the amount of affected rows.
+     * @throws SQLException If the write fails, after rolling back both the write and the deltas.
+     */
+    public int write(Connection conn, Write write) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            Deltas deltas = new Deltas();
+            int result = write.run(deltas);
+            commit(conn, deltas);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Adds the deltas to the summary rows and commits the transaction of the connection, then drops the mirrored
+     * totals of the changed months. They are dropped rather than updated with the deltas, since a concurrent read
+     * may already have mirrored a total that contains them.
+     *
+     * @param conn The connection of the transaction, with auto-commit disabled.
+     * @param deltas The changes made in the transaction.
+     * @throws SQLException If updating the summary rows or committing fails. The caller rolls back.
+     */
+    public void commit(Connection conn, Deltas deltas) throws SQLException {
+        for (Map.Entry<RowKey, Long> delta : deltas.cents.entrySet()) {
+            if (delta.getValue() != 0) {
+                addToRow(conn, delta.getKey(), delta.getValue());
+            }
+        }
+        conn.commit();
+        generation.incrementAndGet();
+        for (RowKey key : deltas.cents.keySet()) {
+            mirror.remove(key.month());
+        }
+    }
+
+    /**
+     * Adds an amount to a summary row, inserting the row when it doesn't exist yet, in one statement.
+     */
+    private static void addToRow(Connection conn, RowKey key, long cents) throws SQLException {
+        MonthKey month = key.month();
+        String table = month.table().summaryTable;
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO " + table + " (user_id, period_year, period_month, category, total) VALUES (?, ?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE total = total + VALUES(total)")) {
+            insert.setInt(1, month.userId());
+            insert.setInt(2, month.month().getYear());
+            insert.setInt(3, month.month().getMonthValue());
+            insert.setString(4, key.category());
+            insert.setBigDecimal(5, Money.ofCents(cents).toBigDecimal());
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Returns the total of a user's month, from the mirror or else from the summary rows.
+     *
+     * @param table The raw table to total.
+     * @param userId The user.
+     * @param month The month.
+     * @return The total of all categories in the month.
+     * @throws SQLException If the summary rows can't be read.
+     */
+    public Money getTotal(Table table, int userId, YearMonth month) throws SQLException {
+        MonthKey key = new MonthKey(table, userId, month);
+        Mirrored mirrored = mirror.get(key);
+        if (mirrored != null && clock.getAsLong() - mirrored.expiresAt() < 0) {
+            return Money.ofCents(mirrored.cents());
+        }
+        long readGeneration = generation.get();
+        long total;
+        try (Connection conn = MySQLConnection.getConnection()) {
+            total = readTotal(conn, key);
+        }
+        // Checked in the same atomic step as the store, so a commit that drops the key after its increment can't be missed
+        mirror.compute(key, (k, current) -> generation.get() == readGeneration
+                ? new Mirrored(total, clock.getAsLong() + ttlNanos) : current);
+        return Money.ofCents(total);
+    }
+
+    private static long readTotal(Connection conn, MonthKey key) throws SQLException {
+        String sql = "SELECT SUM(total) AS total FROM " + key.table().summaryTable + " WHERE user_id = ? AND period_year = ? AND period_month = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, key.userId());
+            stmt.setInt(2, key.month().getYear());
+            stmt.setInt(3, key.month().getMonthValue());
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? Money.of(rs.getBigDecimal("total")).getCents() : 0;
+            }
+        }
+    }
+
+    /**
+     * Drops the mirrored totals of a user, for example when they log out.
+     *
+     * @param userId The user whose totals are dropped.
+     */
+    public void forgetUser(int userId) {
+        mirror.keySet().removeIf(key -> key.userId() == userId);
+    }
+
+    /**
+     * Recomputes the totals from the raw rows and compares them with the summary rows.
+     *
+     * @param conn The connection to read on.
+     * @return The summary rows that don't match, empty if there is no drift.
+     * @throws SQLException If the tables can't be read.
+     */
+    public List<Drift> verify(Connection conn) throws SQLException {
+        List<Drift> drift = new ArrayList<>();
+        for (Table table : Table.values()) {
+            Map<RowKey, Long> expected = sumRawRows(conn, table);
+            Map<RowKey, Long> actual = readSummaryRows(conn, table);
+            Set<RowKey> keys = new HashSet<>(expected.keySet());
+            keys.addAll(actual.keySet());
+            for (RowKey key : keys) {
+                long expectedCents = expected.getOrDefault(key, 0L);
+                long actualCents = actual.getOrDefault(key, 0L);
+                if (expectedCents != actualCents) {
+                    drift.add(new Drift(table, key.month().userId(), key.month().month(), key.category(), expectedCents, actualCents));
+                }
+            }
+        }
+        return drift;
+    }
+
+    /**
+     * Replaces all summary rows with totals recomputed from the raw rows, in one transaction.
+     *
+     * @param conn The connection to write on.
+     * @return The amount of summary rows written.
+     * @throws SQLException If the rebuild fails, after rolling it back.
+     */
+    public synchronized int rebuild(Connection conn) throws SQLException {
+        int written = write(conn, deltas -> {
+            int rows = 0;
+            for (Table table : Table.values()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("DELETE FROM " + table.summaryTable);
+                }
+                for (Map.Entry<RowKey, Long> row : sumRawRows(conn, table).entrySet()) {
+                    addToRow(conn, row.getKey(), row.getValue());
+                    rows++;
+                }
+            }
+            return rows;
+        });
+        generation.incrementAndGet();
+        mirror.clear();
+        return written;
+    }
+
+    private static Map<RowKey, Long> sumRawRows(Connection conn, Table table) throws SQLException {
+        String sql = "SELECT user_id, YEAR(date) AS y, MONTH(date) AS m, " + table.categoryColumn + " AS category, SUM(amount) AS total " +
+                "FROM " + table.rawTable + " GROUP BY user_id, YEAR(date), MONTH(date), " + table.categoryColumn;
+        Map<RowKey, Long> totals = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                MonthKey month = new MonthKey(table, rs.getInt("user_id"), YearMonth.of(rs.getInt("y"), rs.getInt("m")));
+                totals.put(new RowKey(month, rs.getString("category")), Money.of(rs.getBigDecimal("total")).getCents());
+            }
+        }
+        return totals;
+    }
+
+    private static Map<RowKey, Long> readSummaryRows(Connection conn, Table table) throws SQLException {
+        Map<RowKey, Long> totals = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT user_id, period_year, period_month, category, total FROM " + table.summaryTable)) {
+            while (rs.next()) {
+                MonthKey month = new MonthKey(table, rs.getInt("user_id"), YearMonth.of(rs.getInt("period_year"), rs.getInt("period_month")));
+                totals.put(new RowKey(month, rs.getString("category")), Money.of(rs.getBigDecimal("total")).getCents());
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Command line tool that reports the drift between the summary rows and the raw rows.
+     * With the argument "--rebuild" the summary rows are recomputed afterwards.
+     */
+    public static void main(String[] args) throws SQLException {
+        boolean rebuild = args.length > 0 && args[0].equals("--rebuild");
+        try (Connection conn = MySQLConnection.getConnection()) {
+            List<Drift> drift = getDefault().verify(conn);
+            for (Drift row : drift) {
+                System.out.printf("%s user %d %s %s: expected %s but was %s%n", row.table(), row.userId(), row.month(),
+                        row.category(), Money.ofCents(row.expected()), Money.ofCents(row.actual()));
+            }
+            System.out.println(drift.size() + " summary rows drifted");
+            if (rebuild) {
+                System.out.println(getDefault().rebuild(conn) + " summary rows rebuilt");
+            }
+        }
+    }
+}
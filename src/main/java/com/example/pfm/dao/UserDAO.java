@@ -1,11 +1,7 @@
 package com.example.pfm.dao;
 
-import com.example.pfm.util.MySQLConnection;
 import com.example.pfm.model.User;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 
 /**
@@ -14,33 +10,73 @@ import java.sql.SQLException;
  */
 
 public class UserDAO {
+    private final UsernameIndex usernameIndex;
 
     /**
-     * Retrieves a User object by their username.
+     * Constructs a UserDAO that uses the shared username index.
+     */
+    public UserDAO() {
+        this(UsernameIndex.getDefault());
+    }
+
+    /**
+     * Constructs a UserDAO with its own username index.
+     *
+     * @param usernameIndex Answers checks of usernames that certainly don't exist without a query.
+     */
+    public UserDAO(UsernameIndex usernameIndex) {
+        this.usernameIndex = usernameIndex;
+    }
+
+    /**
+     * Retrieves a User object by their username. Always asks the database, since a login must not fail on the
+     * username index missing a user that another client added since it was loaded.
      *
      * @param username The username of the user to be retrieved.
      * @return A User object if found, or null if not found.
      */
     public User getUserByUsername(String username) {
-        final String query = "SELECT * FROM users WHERE username = ?";
+        final String query = "SELECT " + RowMappers.USER_COLUMNS + " FROM users WHERE username = ?";
 
-        try (Connection conn = MySQLConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+        usernameIndex.reloadIfStale();
+        try {
+            User user = Jdbc.queryOne(query, RowMappers.USER, username);
+            if (user == null) {
+                usernameIndex.recordAbsent(username);
+            } else {
+                usernameIndex.recordAdded(username); // In case the index ruled the user out
+            }
+            return user;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
 
-            stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
+    /**
+     * Checks whether a username is taken, without reading the user. Unknown usernames are mostly answered by the
+     * username index without a query.
+     *
+     * @param username The username to check.
+     * @return true if a user with the username exists, false if not or if the check failed.
+     */
+    public boolean usernameExists(String username) {
+        final String query = "SELECT 1 FROM users WHERE username = ? LIMIT 1";
 
-            if (rs.next()) {
-                User user = new User();
-                user.setId(rs.getInt("id"));
-                user.setUsername(rs.getString("username"));
-                user.setPassword(rs.getString("password"));
-                return user;
+        if (!usernameIndex.mightExist(username)) {
+            return false;
+        }
+        usernameIndex.reloadIfStale();
+        try {
+            boolean exists = Jdbc.queryOne(query, RowMappers.INT, username) != null;
+            if (!exists) {
+                usernameIndex.recordAbsent(username);
             }
+            return exists;
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return null;
+        return false;
     }
 
     /**
@@ -53,12 +89,31 @@ public class UserDAO {
     public boolean insertUser(User user) {
         final String query = "INSERT INTO users (username, password) VALUES (?, ?)";
 
-        try (Connection conn = MySQLConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, user.getUsername());
-            stmt.setString(2, user.getPassword());
-            int affectedRows = stmt.executeUpdate();
-            return affectedRows == 1;
+        try {
+            boolean inserted = Jdbc.update(query, user.getUsername(), user.getPassword()) == 1;
+            if (inserted) {
+                usernameIndex.recordAdded(user.getUsername());
+            }
+            return inserted;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the password hash of a user, unless it was changed since it was read.
+     *
+     * @param username The username of the user.
+     * @param oldHash The hash that was read.
+     * @param newHash The new hash.
+     * @return true if the hash was replaced, false if not.
+     */
+    public boolean updatePassword(String username, String oldHash, String newHash) {
+        final String query = "UPDATE users SET password = ? WHERE username = ? AND password = ?";
+
+        try {
+            return Jdbc.update(query, newHash, username, oldHash) == 1;
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -74,13 +129,13 @@ public class UserDAO {
 
     public boolean deleteUser(String username) {
         final String query = "DELETE FROM users WHERE username = ?";
-        try (Connection conn = MySQLConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
 
-            stmt.setString(1, username);
-            int affectedRows = stmt.executeUpdate();
-
-            return affectedRows > 0;
+        try {
+            boolean deleted = Jdbc.update(query, username) > 0;
+            if (deleted) {
+                usernameIndex.recordAbsent(username);
+            }
+            return deleted;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
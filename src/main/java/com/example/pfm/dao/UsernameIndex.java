@@ -0,0 +1,315 @@
+package com.example.pfm.dao;
+
+import com.example.pfm.util.MySQLConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Answers whether a username can exist without asking the database, so checks of unknown usernames, like
+ * registrations of new names, mostly never leave the application. Logins don't rely on it: the index can be wrong
+ * about a user that another client added recently, so they always read the user from the database.
+ * A Bloom filter of all usernames is loaded at startup and kept up to date with the users this application inserts.
+ * It never rules out a username that exists, and rules out about 99% of the ones that don't. Usernames the database
+ * confirmed to be missing are also kept for a short time in a small negative cache.
+ *
+ * Other clients of the database can add users as well, so the filter is only trusted for a limited time after it was
+ * loaded. After that every lookup goes to the database again until a reload in the background has finished.
+ * Usernames are folded like the database's case and accent insensitive collation before they are looked up, so the
+ * filter never rules out a name that the database would match.
+ */
+public class UsernameIndex {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int MIN_EXPECTED_USERNAMES = 1024;
+    private static final int DEFAULT_MAX_ABSENT = 1024;
+    private static final long DEFAULT_FRESHNESS_MILLIS = 5 * 60 * 1000;
+    private static final long DEFAULT_ABSENT_TTL_MILLIS = 60 * 1000;
+
+    private static final UsernameIndex DEFAULT = new UsernameIndex(System::nanoTime, DEFAULT_MAX_ABSENT,
+            DEFAULT_FRESHNESS_MILLIS, DEFAULT_ABSENT_TTL_MILLIS);
+
+    private final LongSupplier clock;
+    private final int maxAbsent;
+    private final long freshnessNanos;
+    private final long absentTtlNanos;
+
+    // Null until loaded. Replaced as a whole by a reload.
+    private volatile BloomFilter filter;
+    private volatile long loadedAt;
+    // Usernames added while a load is running, which the new filter has to contain as well.
+    private Set<String> addedWhileLoading;
+    private final AtomicBoolean reloading = new AtomicBoolean();
+    // Held during a load, so two loads don't replace each other's usernames that were added meanwhile.
+    private final Object loadLock = new Object();
+    // Folded usernames the database confirmed to be missing, with the time they stop being trusted.
+    private final LinkedHashMap<String, Long> absent;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong filteredLookups = new AtomicLong();
+    private final AtomicLong absentHits = new AtomicLong();
+
+    /**
+     * Creates an index that is empty until it is loaded, and sends every lookup to the database until then.
+     *
+     * @param clock Monotonic time in nanoseconds.
+     * @param maxAbsent The amount of missing usernames that are remembered.
+     * @param freshnessMillis How long the filter is trusted after it was loaded.
+     * @param absentTtlMillis How long a missing username is remembered.
+     */
+    public UsernameIndex(LongSupplier clock, int maxAbsent, long freshnessMillis, long absentTtlMillis) {
+        this.clock = clock;
+        this.maxAbsent = maxAbsent;
+        this.freshnessNanos = TimeUnit.MILLISECONDS.toNanos(freshnessMillis);
+        this.absentTtlNanos = TimeUnit.MILLISECONDS.toNanos(absentTtlMillis);
+        this.absent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > UsernameIndex.this.maxAbsent;
+            }
+        };
+    }
+
+    /**
+     * Returns the index shared by all UserDAOs that were created without an explicit index.
+     *
+     * @return The shared index.
+     */
+    public static UsernameIndex getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Loads the filter with all usernames in the database, on a pooled connection.
+     *
+     * @throws SQLException If the usernames can't be read. The previous filter stays in use.
+     */
+    public void load() throws SQLException {
+        try (Connection conn = MySQLConnection.getConnection()) {
+            load(conn);
+        }
+    }
+
+    /**
+     * Loads the filter with all usernames in the database.
+     *
+     * @param conn The connection to read the usernames with.
+     * @throws SQLException If the usernames can't be read. The previous filter stays in use.
+     */
+    public void load(Connection conn) throws SQLException {
+        synchronized (loadLock) {
+            synchronized (this) {
+                addedWhileLoading = new HashSet<>();
+            }
+            long startedAt = clock.getAsLong();
+            try {
+                Integer count = Jdbc.queryOne(conn, "SELECT COUNT(*) FROM users", RowMappers.INT);
+                // Sized for twice the current users, so it stays accurate while users are added
+                BloomFilter loaded = new BloomFilter(Math.max(MIN_EXPECTED_USERNAMES, count * 2));
+                Jdbc.stream(conn, "SELECT username FROM users", RowMappers.STRING, username -> loaded.add(fold(username)));
+                synchronized (this) {
+                    addedWhileLoading.forEach(loaded::add);
+                    filter = loaded;
+                    loadedAt = startedAt;
+                }
+            } finally {
+                synchronized (this) {
+                    addedWhileLoading = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reloads the filter on the common pool if it is no longer trusted. Does nothing before the first load, or while
+     * a reload is running.
+     */
+    public void reloadIfStale() {
+        if (filter == null || isFresh() || !reloading.compareAndSet(false, true)) {
+            return;
+        }
+        CompletableFuture.runAsync(() -> {
+            try {
+                load();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                reloading.set(false);
+            }
+        });
+    }
+
+    /**
+     * @param username The username to look up.
+     * @return false if the username certainly doesn't exist, true if the database has to be asked.
+     */
+    public boolean mightExist(String username) {
+        lookups.incrementAndGet();
+        String key = fold(username);
+        long now = clock.getAsLong();
+        synchronized (absent) {
+            Long expiresAt = absent.get(key);
+            if (expiresAt != null) {
+                if (now - expiresAt < 0) {
+                    absentHits.incrementAndGet();
+                    return false;
+                }
+                absent.remove(key);
+            }
+        }
+        BloomFilter current = filter;
+        if (current == null || !isFresh()) {
+            return true;
+        }
+        if (!current.mightContain(key)) {
+            filteredLookups.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remembers that the database has no user with the username, after a lookup found none or the user was deleted.
+     * A Bloom filter can't remove a username, so a deleted one stays a possible match until the filter is reloaded.
+     *
+     * @param username The username that is missing.
+     */
+    public void recordAbsent(String username) {
+        synchronized (absent) {
+            absent.put(fold(username), clock.getAsLong() + absentTtlNanos);
+        }
+    }
+
+    /**
+     * Adds a username after a user was inserted.
+     *
+     * @param username The username of the new user.
+     */
+    public void recordAdded(String username) {
+        String key = fold(username);
+        synchronized (absent) {
+            absent.remove(key);
+        }
+        synchronized (this) {
+            if (addedWhileLoading != null) {
+                addedWhileLoading.add(key);
+            }
+            if (filter != null) {
+                filter.add(key);
+            }
+        }
+    }
+
+    private boolean isFresh() {
+        return filter != null && clock.getAsLong() - loadedAt < freshnessNanos;
+    }
+
+    /**
+     * Folds a username like a case and accent insensitive collation that ignores trailing spaces.
+     * Names that fold to the same key are the same user to the database.
+     *
+     * @param username The username as typed.
+     * @return The folded username.
+     */
+    public static String fold(String username) {
+        String stripped = username.stripTrailing();
+        String decomposed = Normalizer.normalize(stripped, Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    public long getLookupCount() {
+        return lookups.get();
+    }
+
+    /**
+     * @return The amount of lookups the Bloom filter answered without the database.
+     */
+    public long getFilteredCount() {
+        return filteredLookups.get();
+    }
+
+    /**
+     * @return The amount of lookups the negative cache answered without the database.
+     */
+    public long getAbsentHitCount() {
+        return absentHits.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("UsernameIndex[loaded=%b, lookups=%d, filtered=%d, absentHits=%d]",
+                filter != null, getLookupCount(), getFilteredCount(), getAbsentHitCount());
+    }
+
+    /**
+     * A Bloom filter of strings on an atomic bit array, so usernames can be added while others are looked up.
+     */
+    private static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final int bitCount;
+        private final int hashCount;
+
+        BloomFilter(int expected) {
+            double ln2 = Math.log(2);
+            bitCount = (int) Math.max(64, Math.ceil(-expected * Math.log(FALSE_POSITIVE_RATE) / (ln2 * ln2)));
+            hashCount = (int) Math.max(1, Math.round((double) bitCount / expected * ln2));
+            bits = new AtomicLongArray((bitCount + 63) / 64);
+        }
+
+        void add(String key) {
+            long hash = hash(key);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = bitIndex(hash, i);
+                long mask = 1L << bit;
+                int word = bit >>> 6;
+                long current;
+                do {
+                    current = bits.get(word);
+                } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(String key) {
+            long hash = hash(key);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = bitIndex(hash, i);
+                if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Double hashing: the i-th index is h1 + i * h2, from the two halves of one 64-bit hash
+        private int bitIndex(long hash, int i) {
+            int combined = (int) hash + i * (int) (hash >>> 32);
+            return (combined & Integer.MAX_VALUE) % bitCount;
+        }
+
+        // FNV-1a over the characters, mixed with the finalizer of MurmurHash3 to spread the bits
+        private static long hash(String key) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                hash ^= key.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
@@ -10,8 +10,8 @@ public class Budget {
     private int id; // Unique identifier for the budget.
     private int userId; // Identifier of the user to whom the budget belongs.
     private String category; // The category the budget is set for.
-    private double budgetLimit; // The limit set for this budget
-    private double spentAmount; // The amount already spent within this budget's category.
+    private Money budgetLimit; // The limit set for this budget
+    private Money spentAmount = Money.ZERO; // The amount already spent within this budget's category.
     private LocalDate date; // The date representing the month and year the budget is set for.
 
     /**
@@ -29,7 +29,7 @@ public class Budget {
      * @param budgetLimit The limit set for the budget.
      * @param date The date the budget is set for, representing a month and year.
      */
-    public Budget(int id, int userId, String category, double budgetLimit, LocalDate date) {
+    public Budget(int id, int userId, String category, Money budgetLimit, LocalDate date) {
         this.id = id;
         this.userId = userId;
         this.category = category;
@@ -50,7 +50,7 @@ public class Budget {
         return category;
     }
 
-    public double getBudgetLimit() {
+    public Money getBudgetLimit() {
         return budgetLimit;
     }
 
@@ -58,10 +58,14 @@ public class Budget {
         return date;
     }
 
-    public double getSpentAmount() {
+    public Money getSpentAmount() {
         return spentAmount;
     }
 
+    public Money getRemainingAmount() {
+        return budgetLimit.minus(spentAmount);
+    }
+
 
     //Budget setters
 
@@ -77,7 +81,7 @@ public class Budget {
         this.category = category;
     }
 
-    public void setBudgetLimit(double budgetLimit) {
+    public void setBudgetLimit(Money budgetLimit) {
         this.budgetLimit = budgetLimit;
     }
 
@@ -85,7 +89,7 @@ public class Budget {
         this.date = date;
     }
 
-    public void setSpentAmount(double spentAmount) {
+    public void setSpentAmount(Money spentAmount) {
         this.spentAmount = spentAmount;
     }
 }
@@ -0,0 +1,40 @@
+package com.example.pfm.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A read-only view of a user's budgets at one moment, with their limit, spent and remaining amounts.
+ * It is loaded once per refresh, so the budget table, the bar chart and its axis bounds all show the same data.
+ */
+public class BudgetSnapshot {
+    private final List<Budget> budgets; // The user's budgets with their spent amount filled in.
+    private final Money maxBudgetLimit; // The highest limit of all budgets, 0 when there are none.
+
+    /**
+     * Constructs a BudgetSnapshot from budgets whose spent amount has already been filled in.
+     *
+     * @param budgets The budgets of the user.
+     */
+    public BudgetSnapshot(List<Budget> budgets) {
+        this.budgets = Collections.unmodifiableList(budgets);
+
+        long max = 0;
+        for (Budget budget : budgets) {
+            max = Math.max(max, budget.getBudgetLimit().getCents());
+        }
+        this.maxBudgetLimit = Money.ofCents(max);
+    }
+
+    public List<Budget> getBudgets() {
+        return budgets;
+    }
+
+    public Money getMaxBudgetLimit() {
+        return maxBudgetLimit;
+    }
+
+    public boolean isEmpty() {
+        return budgets.isEmpty();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.pfm.model;
+
+import com.example.pfm.config.CategoryConfig;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An expense and budget category, one interned instance per entry of {@link CategoryConfig#CATEGORIES}.
+ * Each category has a dense id, its position in that list, so per-category values can be kept in a plain array
+ * indexed by {@link #getId()} instead of a map keyed by name. Instances can be compared with ==.
+ */
+public final class Category {
+    private static final List<Category> VALUES;
+    private static final Map<String, Category> BY_NAME = new HashMap<>();
+
+    static {
+        Category[] values = new Category[CategoryConfig.CATEGORIES.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new Category(i, CategoryConfig.CATEGORIES.get(i));
+            BY_NAME.put(values[i].name, values[i]);
+        }
+        VALUES = List.of(values);
+    }
+
+    public static final Category OTHER = BY_NAME.get("Other");
+
+    private final int id; // The position of the category in CategoryConfig.CATEGORIES.
+    private final String name; // The name as stored in the category columns.
+
+    private Category(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    /**
+     * Looks up the category with the given name. Rows written before a category was removed from the configuration
+     * still carry the old name, those are counted as {@link #OTHER} instead of being dropped from the totals.
+     *
+     * @param name The name as stored in the database.
+     * @return The category with that name, or OTHER for an unknown name.
+     */
+    public static Category of(String name) {
+        return BY_NAME.getOrDefault(name, OTHER);
+    }
+
+    /**
+     * @return All categories, ordered by id.
+     */
+    public static List<Category> values() {
+        return VALUES;
+    }
+
+    /**
+     * @return The amount of categories, the length of an array indexed by category id.
+     */
+    public static int count() {
+        return VALUES.size();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.pfm.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The amount spent per category, kept as a dense array of cents indexed by {@link Category#getId()}.
+ * A lookup is an array access without hashing or boxing. Instances are immutable, so the instance held by the
+ * aggregate cache is handed to every screen as is.
+ */
+public final class CategoryTotals {
+    public static final CategoryTotals EMPTY = new CategoryTotals(new long[Category.count()]);
+
+    private final long[] cents; // The total of each category in cents, indexed by category id.
+
+    private CategoryTotals(long[] cents) {
+        this.cents = cents;
+    }
+
+    public long getCents(Category category) {
+        return cents[category.getId()];
+    }
+
+    public Money get(Category category) {
+        return Money.ofCents(cents[category.getId()]);
+    }
+
+    /**
+     * @return The sum over all categories.
+     */
+    public Money getTotal() {
+        long total = 0;
+        for (long value : cents) {
+            total = Math.addExact(total, value);
+        }
+        return Money.ofCents(total);
+    }
+
+    /**
+     * @return The categories with a non-zero total, the largest total first.
+     */
+    public List<Category> byAmountDescending() {
+        List<Category> categories = new ArrayList<>();
+        for (Category category : Category.values()) {
+            if (cents[category.getId()] != 0) {
+                categories.add(category);
+            }
+        }
+        categories.sort(Comparator.comparingLong(this::getCents).reversed());
+        return categories;
+    }
+
+    /**
+     * Collects per-category totals before they are frozen into a CategoryTotals.
+     */
+    public static final class Builder {
+        private long[] cents = new long[Category.count()];
+
+        /**
+         * Adds an amount to the total of a category.
+         *
+         * @param category The category the amount belongs to.
+         * @param amount The amount to add.
+         * @return This builder.
+         */
+        public Builder add(Category category, Money amount) {
+            cents[category.getId()] = Math.addExact(cents[category.getId()], amount.getCents());
+            return this;
+        }
+
+        /**
+         * Adds all totals of another CategoryTotals, for example to merge months.
+         *
+         * @param totals The totals to add.
+         * @return This builder.
+         */
+        public Builder addAll(CategoryTotals totals) {
+            for (int i = 0; i < cents.length; i++) {
+                cents[i] = Math.addExact(cents[i], totals.cents[i]);
+            }
+            return this;
+        }
+
+        /**
+         * @return The collected totals. The builder can't be used afterwards.
+         */
+        public CategoryTotals build() {
+            CategoryTotals totals = new CategoryTotals(cents);
+            cents = null;
+            return totals;
+        }
+    }
+}
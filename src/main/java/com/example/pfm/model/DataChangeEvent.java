@@ -0,0 +1,73 @@
+package com.example.pfm.model;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Describes a change to the data of a user, so screens can decide whether they need to reload.
+ *
+ * @param type What kind of record changed, or null if any kind may have changed.
+ * @param userId The user whose data changed.
+ * @param month The month of the changed record, or null if any month may have changed.
+ */
+public record DataChangeEvent(Type type, int userId, YearMonth month) {
+
+    /**
+     * The kinds of records a change can be about.
+     */
+    public enum Type { EXPENSE, INCOME, BUDGET }
+
+    public static DataChangeEvent expense(int userId, LocalDate date) {
+        return new DataChangeEvent(Type.EXPENSE, userId, YearMonth.from(date));
+    }
+
+    public static DataChangeEvent income(int userId, LocalDate date) {
+        return new DataChangeEvent(Type.INCOME, userId, YearMonth.from(date));
+    }
+
+    public static DataChangeEvent budget(int userId, LocalDate date) {
+        return new DataChangeEvent(Type.BUDGET, userId, YearMonth.from(date));
+    }
+
+    /**
+     * Creates an event saying that any data of the user may have changed.
+     *
+     * @param userId The user whose data changed.
+     * @return The event.
+     */
+    public static DataChangeEvent all(int userId) {
+        return new DataChangeEvent(null, userId, null);
+    }
+
+    /**
+     * Checks whether this change is about the given user and kind of record.
+     *
+     * @param userId The user a screen shows the data of.
+     * @param type The kind of record a screen shows.
+     * @return true if the change may affect that data.
+     */
+    public boolean concerns(int userId, Type type) {
+        return this.userId == userId && (this.type == null || this.type == type);
+    }
+
+    /**
+     * Checks whether this change may affect the given month.
+     *
+     * @param month The month a screen shows the data of.
+     * @return true if the change is in that month, or in an unknown month.
+     */
+    public boolean covers(YearMonth month) {
+        return this.month == null || this.month.equals(month);
+    }
+
+    /**
+     * Checks whether this change may affect a range of months.
+     *
+     * @param first The first month a screen shows the data of.
+     * @param last The last month a screen shows the data of (inclusive).
+     * @return true if the change is in the range, or in an unknown month.
+     */
+    public boolean covers(YearMonth first, YearMonth last) {
+        return this.month == null || (!this.month.isBefore(first) && !this.month.isAfter(last));
+    }
+}
@@ -10,7 +10,7 @@ import java.time.LocalDate;
 public class Expense {
     private int id; // Unique identifier for the expense.
     private int userId;  // Identifier of the user to whom the expense belongs.
-    private double amount; // The value of the expense.
+    private Money amount; // The value of the expense.
     private String category; // The category this expense is allocated to.
     private LocalDate date; // The date of the expense.
 
@@ -29,7 +29,7 @@ public class Expense {
      * @param date The date of the expense.
      */
 
-    public Expense(int userId, double amount, String category, LocalDate date){
+    public Expense(int userId, Money amount, String category, LocalDate date){
         this.userId = userId;
         this.amount = amount;
         this.category = category;
@@ -53,11 +53,11 @@ public class Expense {
         this.userId = userId;
     }
 
-    public double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
@@ -10,7 +10,7 @@ import java.time.LocalDate;
 public class Income {
     private int id; // Unique identifier for the income record.
     private int userId; // Identifier of the user to whom the income belongs.
-    private double amount; // The value of the income.
+    private Money amount; // The value of the income.
     private String source; // Description of the income source.
     private LocalDate date; // The date on which the income was received.
 
@@ -28,7 +28,7 @@ public class Income {
      * @param source The description of the income source.
      * @param date The date on which the income was received.
      */
-    public Income(int userId, double amount, String source, LocalDate date) {
+    public Income(int userId, Money amount, String source, LocalDate date) {
         this.userId = userId;
         this.amount = amount;
         this.source = source;
@@ -52,11 +52,11 @@ public class Income {
         this.userId = userId;
     }
 
-    public double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
@@ -0,0 +1,128 @@
+package com.example.pfm.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An immutable amount of money, stored as a whole number of cents.
+ * Unlike a double, sums of amounts are exact, so totals never drift and can be shown without rounding tricks.
+ * Code that adds up many amounts should sum {@link #getCents()} in a long and create a Money once at the end,
+ * which needs no allocation per amount. Amounts are mapped to the DECIMAL(10,2) columns with {@link #toBigDecimal()}
+ * and {@link #of(BigDecimal)}.
+ */
+public final class Money implements Comparable<Money> {
+    public static final Money ZERO = new Money(0);
+    // The largest amount the DECIMAL(10,2) columns hold, 99999999.99
+    public static final Money MAX_AMOUNT = new Money(9_999_999_999L);
+
+    private final long cents; // The amount in cents, negative for a loss or shortfall.
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    /**
+     * Creates an amount from a number of cents.
+     *
+     * @param cents The amount in cents.
+     * @return The amount.
+     */
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * Creates an amount from a DECIMAL column value, rounding half up to whole cents.
+     *
+     * @param amount The amount, or null for a SUM over no rows.
+     * @return The amount, ZERO if the value is null.
+     */
+    public static Money of(BigDecimal amount) {
+        if (amount == null) {
+            return ZERO;
+        }
+        return ofCents(amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Parses an amount typed by the user, like "12", "12.5" or "12.50".
+     *
+     * @param text The amount as text.
+     * @return The amount.
+     * @throws NumberFormatException If the text is not a number or has more than two decimals.
+     */
+    public static Money parse(String text) {
+        try {
+            return ofCents(new BigDecimal(text.trim()).setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Not a valid amount: " + text);
+        }
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money abs() {
+        return cents < 0 ? ofCents(-cents) : this;
+    }
+
+    public boolean isPositive() {
+        return cents > 0;
+    }
+
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    public boolean isZero() {
+        return cents == 0;
+    }
+
+    /**
+     * @return The amount as a DECIMAL value with two decimals.
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * @return The amount as a double, only meant for drawing charts.
+     */
+    public double toDouble() {
+        return cents / 100.0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Money money && money.cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    /**
+     * @return The amount with two decimals, like "12.50" or "-3.05".
+     */
+    @Override
+    public String toString() {
+        long whole = Math.abs(cents / 100);
+        long fraction = Math.abs(cents % 100);
+        return (cents < 0 ? "-" : "") + whole + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
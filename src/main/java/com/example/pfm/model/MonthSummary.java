@@ -0,0 +1,40 @@
+package com.example.pfm.model;
+
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The totals of one month of a user's report.
+ *
+ * @param month The month.
+ * @param income The total income of the month.
+ * @param expenses The total expenses of the month.
+ * @param expensesPerCategory The expenses of the month per category.
+ * @param incomePerSource The income of the month per source, ordered by source.
+ */
+public record MonthSummary(YearMonth month, Money income, Money expenses, CategoryTotals expensesPerCategory,
+                           Map<String, Money> incomePerSource) {
+
+    public MonthSummary {
+        incomePerSource = Collections.unmodifiableMap(new TreeMap<>(incomePerSource));
+    }
+
+    /**
+     * Creates the summary of a month without entries.
+     *
+     * @param month The month.
+     * @return The summary with all totals zero.
+     */
+    public static MonthSummary empty(YearMonth month) {
+        return new MonthSummary(month, Money.ZERO, Money.ZERO, CategoryTotals.EMPTY, Map.of());
+    }
+
+    /**
+     * @return The income minus the expenses of the month.
+     */
+    public Money netSavings() {
+        return income.minus(expenses);
+    }
+}
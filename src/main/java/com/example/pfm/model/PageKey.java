@@ -0,0 +1,14 @@
+package com.example.pfm.model;
+
+import java.time.LocalDate;
+
+/**
+ * The position of a row in a list of expenses or incomes ordered by date and id.
+ * A page is requested as the rows after a key, so the database can seek to it through the (user_id, date) index
+ * instead of counting past all earlier rows with OFFSET.
+ *
+ * @param date The date of the row.
+ * @param id The id of the row, which orders rows with the same date.
+ */
+public record PageKey(LocalDate date, int id) {
+}
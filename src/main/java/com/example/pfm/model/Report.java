@@ -0,0 +1,161 @@
+package com.example.pfm.model;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable report of a user's income and expenses over a range of consecutive months.
+ * The totals of the whole range are computed once when the report is created. Parts of the range, like a quarter
+ * or the same months a year earlier, are taken from the month summaries with {@link #slice} instead of being loaded again.
+ */
+public final class Report {
+    private final List<MonthSummary> months;
+    private final Money income;
+    private final Money expenses;
+    private final CategoryTotals expensesPerCategory;
+    private final Map<String, Money> incomePerSource;
+
+    /**
+     * Creates a report from the summaries of consecutive months.
+     *
+     * @param months The summaries, one per month in order, without gaps.
+     * @throws IllegalArgumentException If there are no months or they are not consecutive.
+     */
+    public Report(List<MonthSummary> months) {
+        if (months.isEmpty()) {
+            throw new IllegalArgumentException("A report needs at least one month");
+        }
+        for (int i = 1; i < months.size(); i++) {
+            if (!months.get(i).month().equals(months.get(i - 1).month().plusMonths(1))) {
+                throw new IllegalArgumentException("The months of a report must be consecutive");
+            }
+        }
+        this.months = List.copyOf(months);
+
+        long incomeCents = 0;
+        long expenseCents = 0;
+        CategoryTotals.Builder categories = new CategoryTotals.Builder();
+        Map<String, Long> sources = new TreeMap<>();
+        for (MonthSummary month : this.months) {
+            incomeCents = Math.addExact(incomeCents, month.income().getCents());
+            expenseCents = Math.addExact(expenseCents, month.expenses().getCents());
+            categories.addAll(month.expensesPerCategory());
+            month.incomePerSource().forEach((source, amount) -> sources.merge(source, amount.getCents(), Math::addExact));
+        }
+        this.income = Money.ofCents(incomeCents);
+        this.expenses = Money.ofCents(expenseCents);
+        this.expensesPerCategory = categories.build();
+        Map<String, Money> sourceTotals = new TreeMap<>();
+        sources.forEach((source, cents) -> sourceTotals.put(source, Money.ofCents(cents)));
+        this.incomePerSource = Collections.unmodifiableMap(sourceTotals);
+    }
+
+    /**
+     * Creates a report of a range without entries.
+     *
+     * @param first The first month.
+     * @param last The last month (inclusive).
+     * @return The report with all totals zero.
+     */
+    public static Report empty(YearMonth first, YearMonth last) {
+        List<MonthSummary> months = new ArrayList<>();
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            months.add(MonthSummary.empty(month));
+        }
+        return new Report(months);
+    }
+
+    public YearMonth getFirstMonth() {
+        return months.get(0).month();
+    }
+
+    public YearMonth getLastMonth() {
+        return months.get(months.size() - 1).month();
+    }
+
+    /**
+     * @return The summaries of all months of the range, in order.
+     */
+    public List<MonthSummary> getMonths() {
+        return months;
+    }
+
+    /**
+     * @param month A month within the range.
+     * @return The summary of the month.
+     * @throws IllegalArgumentException If the month is outside the range.
+     */
+    public MonthSummary getMonth(YearMonth month) {
+        int index = indexOf(month);
+        if (index < 0 || index >= months.size()) {
+            throw new IllegalArgumentException(month + " is outside the report");
+        }
+        return months.get(index);
+    }
+
+    public Money getIncome() {
+        return income;
+    }
+
+    public Money getExpenses() {
+        return expenses;
+    }
+
+    public Money getNetSavings() {
+        return income.minus(expenses);
+    }
+
+    public CategoryTotals getExpensesPerCategory() {
+        return expensesPerCategory;
+    }
+
+    /**
+     * @return The income per source, ordered by source.
+     */
+    public Map<String, Money> getIncomePerSource() {
+        return incomePerSource;
+    }
+
+    /**
+     * Creates the report of a part of the range from the month summaries.
+     *
+     * @param first The first month of the part.
+     * @param last The last month of the part (inclusive).
+     * @return The report of the part.
+     * @throws IllegalArgumentException If the part is empty or not within the range.
+     */
+    public Report slice(YearMonth first, YearMonth last) {
+        int from = indexOf(first);
+        int to = indexOf(last);
+        if (from < 0 || to >= months.size() || from > to) {
+            throw new IllegalArgumentException(first + " to " + last + " is not within the report");
+        }
+        return new Report(months.subList(from, to + 1));
+    }
+
+    /**
+     * Splits the report into calendar quarters. The first and last quarter only contain the months within the range.
+     *
+     * @return The reports of the quarters, in order.
+     */
+    public List<Report> quarters() {
+        List<Report> quarters = new ArrayList<>();
+        int from = 0;
+        for (int i = 0; i < months.size(); i++) {
+            boolean lastOfQuarter = months.get(i).month().getMonthValue() % 3 == 0;
+            if (lastOfQuarter || i == months.size() - 1) {
+                quarters.add(new Report(months.subList(from, i + 1)));
+                from = i + 1;
+            }
+        }
+        return quarters;
+    }
+
+    private int indexOf(YearMonth month) {
+        return (month.getYear() - getFirstMonth().getYear()) * 12 + month.getMonthValue() - getFirstMonth().getMonthValue();
+    }
+}
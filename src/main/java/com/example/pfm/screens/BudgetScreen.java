@@ -2,11 +2,14 @@ package com.example.pfm.screens;
 
 import com.example.pfm.PFMApp;
 import com.example.pfm.config.CategoryConfig;
-import com.example.pfm.dao.BudgetDAO;
-import com.example.pfm.dao.ExpenseDAO;
 import com.example.pfm.model.Budget;
+import com.example.pfm.model.BudgetSnapshot;
+import com.example.pfm.model.DataChangeEvent;
+import com.example.pfm.model.Money;
+import com.example.pfm.service.AsyncDataService;
+import com.example.pfm.service.SessionContext;
 import javafx.application.Platform;
-import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -22,9 +25,12 @@ import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Represents the budget screen in the Personal Finance Management (PFM) application.
@@ -34,17 +40,51 @@ import java.util.Optional;
  */
 public class BudgetScreen implements DataRefresh {
     private PFMApp app;
-    private BudgetDAO budgetDAO;
-    private ExpenseDAO expenseDAO;
+    private AsyncDataService dataService;
     private VBox view;
     private TableView<Budget> budgetTableView;
     private StackedBarChart<String, Number> budgetBarChart;
+    private final XYChart.Series<String, Number> spentSeries = new XYChart.Series<>();
+    private final XYChart.Series<String, Number> limitSeries = new XYChart.Series<>();
     private int userId;
+    private BudgetSnapshot snapshot; // The budgets shown by the table and the bar chart.
 
+    /**
+     * The bars of the budget chart, computed on the background thread that loaded the snapshot.
+     *
+     * @param snapshot The budgets the bars are computed from.
+     * @param spent One bar per category with the amount spent.
+     * @param remaining One bar per category with the amount left, stacked on the spent bar.
+     * @param upperBound The upper bound of the y-axis.
+     */
+    record BudgetChartModel(BudgetSnapshot snapshot, List<ChartUpdater.Point> spent, List<ChartUpdater.Point> remaining,
+                            double upperBound) {
+    }
+
+    /**
+     * Loads the user's budgets once in the background and shows them in both the table and the bar chart.
+     */
     @Override
     public void refreshData() {
-        refreshBudgetData();
-        refreshBudgetBarChart();
+        dataService.deliver(this, "budgets",
+                dataService.getBudgetSnapshot(userId).thenApply(BudgetScreen::createBudgetChartModel), model -> {
+            snapshot = model.snapshot();
+            budgetTableView.setPlaceholder(new Label("No budgets yet."));
+            budgetTableView.setItems(FXCollections.observableArrayList(snapshot.getBudgets()));
+            budgetBarChart.setTitle(null);
+            refreshBudgetBarChart(model);
+        }, error -> {
+            budgetTableView.setPlaceholder(new Label("Could not load the budgets. Please try again later."));
+            budgetBarChart.setTitle("The budgets could not be loaded");
+        });
+    }
+
+    /**
+     * The budgets and their spent amounts change with both budget and expense writes of this user.
+     */
+    @Override
+    public boolean isAffectedBy(DataChangeEvent event) {
+        return event.concerns(userId, DataChangeEvent.Type.BUDGET) || event.concerns(userId, DataChangeEvent.Type.EXPENSE);
     }
 
     /**
@@ -52,16 +92,13 @@ public class BudgetScreen implements DataRefresh {
      * This screen allows the user to visualize their budget allocations and spending, add new budgets, edit existing ones, and delete budgets as needed.
      *
      * @param app The main application instance, providing access to shared resources and functionality.
-     * @param budgetDAO The data access object for budget-related operations, allowing interaction with the database for budget data.
-     * @param expenseDAO The data access object for expense-related operations, used to calculate the total spent amount in each budget category.
-     * @param userId The unique identifier of the currently logged-in user, used to fetch and manage budgets specific to the user.
+     * @param session The session of the logged-in user, whose data service loads and writes the budgets.
      */
-    public BudgetScreen(PFMApp app, BudgetDAO budgetDAO, ExpenseDAO expenseDAO, int userId) {
+    public BudgetScreen(PFMApp app, SessionContext session) {
         this.app = app;
         app.registerListener(this); // Registering this screen to listen for data changes
-        this.budgetDAO = budgetDAO;
-        this.expenseDAO = expenseDAO;
-        this.userId = userId;
+        this.dataService = session.getDataService();
+        this.userId = session.getUserId();
 
         // Initializes and sets up the bar chart to display budgeted vs. spent amounts.
         createBudgetBarChart();
@@ -69,8 +106,8 @@ public class BudgetScreen implements DataRefresh {
         createview();
         // Adds the budget bar chart to the screen's layout.
         addBudgetBarChart();
-        // Fetches the latest budget and expense data from the database and refreshes the bar chart.
-        refreshBudgetBarChart();
+        // Fetches the latest budget data from the database and shows it in the table and the bar chart.
+        refreshData();
 
         // Applies the CSS stylesheet to the screen for consistent styling.
         view.getStylesheets().add(getClass().getResource("/com/example/pfm/stylesheets/budget.css").toExternalForm());
@@ -81,6 +118,7 @@ public class BudgetScreen implements DataRefresh {
     private void createview() {
         view = new VBox();
         budgetTableView = new TableView<>();
+        budgetTableView.setPlaceholder(new Label("Loading budgets..."));
         createBudgetTable();
         Node customLegend = createCustomLegend();
 
@@ -97,10 +135,10 @@ public class BudgetScreen implements DataRefresh {
         TableColumn<Budget, String> categoryColumn = new TableColumn<>("Category");
         categoryColumn.setCellValueFactory(new PropertyValueFactory<>("category"));
 
-        TableColumn<Budget, Double> limitColumn = new TableColumn<>("Budget Limit");
+        TableColumn<Budget, Money> limitColumn = new TableColumn<>("Budget Limit");
         limitColumn.setCellValueFactory(new PropertyValueFactory<>("budgetLimit"));
 
-        TableColumn<Budget, Number> overBudgetColumn = getBudgetNumberTableColumn();
+        TableColumn<Budget, Money> overBudgetColumn = getBudgetNumberTableColumn();
 
         TableColumn<Budget, Void> actionsColumn = new TableColumn<>("Actions");
         actionsColumn.setCellFactory(col -> new TableCell<Budget, Void>() {
@@ -133,33 +171,30 @@ public class BudgetScreen implements DataRefresh {
 
 
         budgetTableView.getColumns().addAll(categoryColumn, limitColumn, overBudgetColumn, actionsColumn);
-
-        refreshBudgetTable();
-        refreshBudgetBarChart();
     }
 
     /**
      * Returns an over budget column.
      * This column displays how much the user went over their set budget.
      */
-    private static TableColumn<Budget, Number> getBudgetNumberTableColumn() {
-        TableColumn<Budget, Number> overBudgetColumn = new TableColumn<>("Over Budget");
+    private static TableColumn<Budget, Money> getBudgetNumberTableColumn() {
+        TableColumn<Budget, Money> overBudgetColumn = new TableColumn<>("Over Budget");
         overBudgetColumn.setCellValueFactory(cellData -> {
             Budget budget = cellData.getValue();
-            double overAmount = budget.getSpentAmount() - budget.getBudgetLimit();
-            return overAmount > 0 ? new SimpleDoubleProperty(overAmount) : new SimpleDoubleProperty(0);
+            Money overAmount = budget.getSpentAmount().minus(budget.getBudgetLimit());
+            return new ReadOnlyObjectWrapper<>(overAmount.isPositive() ? overAmount : Money.ZERO);
         });
 
-        overBudgetColumn.setCellFactory(column -> new TableCell<Budget, Number>() {
+        overBudgetColumn.setCellFactory(column -> new TableCell<Budget, Money>() {
             @Override
-            protected void updateItem(Number item, boolean empty) {
+            protected void updateItem(Money item, boolean empty) {
                 super.updateItem(item, empty);
                 if (empty || item == null) {
                     setText(null);
                     setStyle("");
                 } else {
-                    setText(String.format("€%.2f", item.doubleValue()));
-                    if (item.doubleValue() > 0) {
+                    setText("€" + item);
+                    if (item.isPositive()) {
                         setTextFill((Color.RED));
                         setStyle("-fx-font-weight: bold;");
                     } else {
@@ -179,31 +214,15 @@ public class BudgetScreen implements DataRefresh {
         CategoryAxis xAxis = new CategoryAxis();
         NumberAxis yAxis = new NumberAxis();
         budgetBarChart = new StackedBarChart<>(xAxis, yAxis);
+        budgetBarChart.setAnimated(false); //this is set to false because the animation misaligned the xAis labels
+        budgetBarChart.setLegendVisible(false);
+        yAxis.setAutoRanging(false);
+        yAxis.setTickUnit(50);
 
-        XYChart.Series<String, Number> spentSeries = new XYChart.Series<>();
+        // The series stay for the lifetime of the screen, refreshes only change their bars
         spentSeries.setName("Spent");
-
-        XYChart.Series<String, Number> remainingSeries = new XYChart.Series<>();
-        remainingSeries.setName("Remaining");
-
-        List<Budget> budgets = budgetDAO.getAllBudgetsByUserId(userId);
-        for (Budget budget : budgets) {
-            double spent = expenseDAO.getTotalSpentForCategory(userId, budget.getCategory());
-            double remaining = budget.getBudgetLimit() - spent;
-            spentSeries.getData().add(new XYChart.Data<>(budget.getCategory(), spent));
-            remainingSeries.getData().add(new XYChart.Data<>(budget.getCategory(), remaining));
-        }
-
-        budgetBarChart.getData().addAll(spentSeries, remainingSeries);
-    }
-
-    /**
-     * Fetches the latest budget and expense data from the database and refreshes the bar chart.
-     */
-    private void refreshBudgetTable() {
-        List<Budget> budgets = budgetDAO.getAllBudgetsByUserId(userId);
-        budgetTableView.setItems(FXCollections.observableArrayList(budgets));
-        refreshBudgetData();
+        limitSeries.setName("Limit");
+        budgetBarChart.getData().addAll(spentSeries, limitSeries);
     }
 
     /**
@@ -255,7 +274,7 @@ public class BudgetScreen implements DataRefresh {
             if (dialogButton == saveButtonType) {
                 try {
                     String budgetCategory = categoryDropdown.getValue();
-                    double budgetLimit = Double.parseDouble(limitField.getText());
+                    Money budgetLimit = Money.parse(limitField.getText());
 
                     if (budgetCategory == null) {
                         showAlert("Invalid Input", "Please select a category");
@@ -275,13 +294,14 @@ public class BudgetScreen implements DataRefresh {
         Optional<Budget> result = dialog.showAndWait();
 
         result.ifPresent(newBudget -> {
-            if (budget == null) {
-                budgetDAO.insertBudget(newBudget);
-            } else {
-                budgetDAO.updateBudget(newBudget);
-            }
-            refreshBudgetTable();
-            app.onDataChanged();
+            CompletableFuture<Boolean> write = budget == null ? dataService.insertBudget(newBudget) : dataService.updateBudget(newBudget);
+            dataService.whenDone(write, success -> {
+                if (success) {
+                    app.onDataChanged(DataChangeEvent.budget(userId, newBudget.getDate())); // Also refreshes this screen
+                } else {
+                    showAlert("Save Error", "Could not save the budget.");
+                }
+            });
         });
     }
 
@@ -310,76 +330,58 @@ public class BudgetScreen implements DataRefresh {
 
         Optional<ButtonType> result = confirmationAlert.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            boolean deleteSuccess = budgetDAO.deleteBudget(budget.getId(), budget.getUserId());
-            if (deleteSuccess) {
-                refreshBudgetTable();
-            } else {
-                showAlert("Deletion Error", "Could not delete the budget record.");
-            }
+            dataService.whenDone(dataService.deleteBudget(budget.getId(), budget.getUserId()), deleteSuccess -> {
+                if (deleteSuccess) {
+                    app.onDataChanged(DataChangeEvent.budget(userId, budget.getDate())); // Also refreshes this screen
+                } else {
+                    showAlert("Deletion Error", "Could not delete the budget record.");
+                }
+            });
         }
-        refreshBudgetData();
-        refreshBudgetBarChart();
     }
 
 
     //Refresh methods..
-    private void refreshBudgetData() {
-        Map<String, Double> spentTotals = expenseDAO.getTotalSpentPerCategory(userId);
 
-        List<Budget> budgets = budgetDAO.getAllBudgetsByUserId(userId);
-        budgets.forEach(budget -> {
-            Double spentAmount = spentTotals.getOrDefault(budget.getCategory(), 0.0);
-            budget.setSpentAmount(spentAmount);
-        });
-
-        budgetTableView.setItems(FXCollections.observableArrayList(budgets));
-        refreshBudgetBarChart();
-    }
-
-    private void refreshBudgetBarChart() {
-        budgetBarChart.getData().clear();
-        CategoryAxis xAxis = (CategoryAxis) budgetBarChart.getXAxis();
-        xAxis.getCategories().clear();
-
-        XYChart.Series<String, Number> spentSeries = new XYChart.Series<>();
-        spentSeries.setName("Spent");
-        XYChart.Series<String, Number> limitSeries = new XYChart.Series<>();
-        limitSeries.setName("Limit");
-
-        List<Budget> budgets = budgetDAO.getAllBudgetsByUserId(userId);
-        for (Budget budget : budgets) {
-            double spent = expenseDAO.getTotalSpentForCategory(userId, budget.getCategory());
-            double limit = budget.getBudgetLimit() - spent;
-            spentSeries.getData().add(new XYChart.Data<>(budget.getCategory(), spent));
-            limitSeries.getData().add(new XYChart.Data<>(budget.getCategory(), limit));
-            xAxis.getCategories().add(budget.getCategory());
-        }
-
-        budgetBarChart.getData().addAll(spentSeries, limitSeries);
-        budgetBarChart.setLegendVisible(false);
+    /**
+     * Applies a chart model to the bar chart, changing only the bars that differ from what is shown.
+     */
+    private void refreshBudgetBarChart(BudgetChartModel model) {
+        ChartUpdater.updateBars(spentSeries, model.spent());
+        ChartUpdater.updateBars(limitSeries, model.remaining());
 
         //Adjusting the Y-axis upper bound
         NumberAxis yAxis = (NumberAxis) budgetBarChart.getYAxis();
-        double maxLimit = getMaxBudgetLimit();
-        yAxis.setAutoRanging(false);
-        yAxis.setUpperBound(maxLimit + 50); // +50 for padding
-        yAxis.setTickUnit(50);
-
-        Platform.runLater(() -> applyBarChartStyles(spentSeries, limitSeries));
-        budgetBarChart.setAnimated(false); //this is set to false because the animation misaligned the xAis labels
+        if (yAxis.getUpperBound() != model.upperBound()) {
+            yAxis.setUpperBound(model.upperBound());
+        }
     }
 
     /**
-     * Sets the upperbound of the Y-axis to the highest budget limit
+     * Computes the bars of the budget chart, with one spent and one remaining bar per category. Budgets of the same
+     * category in different months are added up, the way the stacked chart would draw them on top of each other.
+     * A spent bar above its limit gets the "budget-over-spent" pseudo-class instead of "budget-spent".
+     *
+     * @param snapshot The budgets to show.
+     * @return The chart model.
      */
-    private double getMaxBudgetLimit() {
-        double maxLimit = 0;
-        for (Budget budget : budgetDAO.getAllBudgetsByUserId(userId)) {
-            if (budget.getBudgetLimit() > maxLimit) {
-                maxLimit = budget.getBudgetLimit();
-            }
+    static BudgetChartModel createBudgetChartModel(BudgetSnapshot snapshot) {
+        Map<String, long[]> perCategory = new LinkedHashMap<>(); // spent and limit in cents, in the order of the budgets
+        for (Budget budget : snapshot.getBudgets()) {
+            long[] amounts = perCategory.computeIfAbsent(budget.getCategory(), category -> new long[2]);
+            amounts[0] += budget.getSpentAmount().getCents();
+            amounts[1] += budget.getBudgetLimit().getCents();
         }
-        return maxLimit;
+
+        List<ChartUpdater.Point> spent = new ArrayList<>(perCategory.size());
+        List<ChartUpdater.Point> remaining = new ArrayList<>(perCategory.size());
+        perCategory.forEach((category, amounts) -> {
+            String pseudoClass = amounts[0] > amounts[1] ? "budget-over-spent" : "budget-spent";
+            spent.add(ChartUpdater.Point.bar(category, amounts[0] / 100.0, pseudoClass));
+            remaining.add(ChartUpdater.Point.bar(category, (amounts[1] - amounts[0]) / 100.0, "budget-limit"));
+        });
+        double upperBound = snapshot.getMaxBudgetLimit().toDouble() + 50; // +50 for padding
+        return new BudgetChartModel(snapshot, spent, remaining, upperBound);
     }
 
     // Legend for the Barchart
@@ -409,38 +411,6 @@ public class BudgetScreen implements DataRefresh {
         return legendItem;
     }
 
-    // Styling for the Bar Chart
-
-    private void applyBarChartStyles(XYChart.Series<String, Number> spentSeries, XYChart.Series<String, Number> limitSeries) {
-        for (XYChart.Data<String, Number> data : spentSeries.getData()) {
-            Node node = data.getNode();
-            if (node != null) {
-                node.getStyleClass().add("budget-spent-bar");
-            }
-        }
-        for (XYChart.Data<String, Number> data : limitSeries.getData()) {
-            Node node = data.getNode();
-            if (node != null) {
-                node.getStyleClass().add("budget-limit-bar");
-            }
-        }
-        for (int i = 0; i < spentSeries.getData().size(); i++) {
-            XYChart.Data<String, Number> spentData = spentSeries.getData().get(i);
-            XYChart.Data<String, Number> limitData = limitSeries.getData().get(i);
-            Node spentNode = spentData.getNode();
-            double spentAmount = spentData.getYValue().doubleValue();
-            double limitAmount = limitData.getYValue().doubleValue() + spentAmount;
-
-            if (spentNode != null) {
-                if (spentAmount > limitAmount) {
-                    spentNode.getStyleClass().add("budget-over-spent-bar");
-                } else {
-                    spentNode.getStyleClass().add("budget-spent-bar");
-                }
-            }
-        }
-    }
-
     private void addBudgetBarChart() {
         Platform.runLater(() -> {
             view.getChildren().add(budgetBarChart);
@@ -0,0 +1,187 @@
+package com.example.pfm.screens;
+
+import javafx.css.PseudoClass;
+import javafx.scene.Node;
+import javafx.scene.chart.PieChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.layout.StackPane;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies chart models to charts that are already on screen. The models are lists of {@link Point}s, which hold no
+ * JavaFX objects, so the screens compute them on the background thread that loaded the data.
+ * Only the differences are applied: values of existing points are updated in place, and points are only added or
+ * removed when their key appears or disappears. The charts then animate or relayout only what changed.
+ *
+ * The look of a point is set with a CSS pseudo-class instead of a style class, because the charts reset the style
+ * classes of their nodes whenever the data is reindexed. Bars get their node from {@link #createBarNode} when they are
+ * created, and slices get their pseudo-class as soon as the chart creates their node, so nothing has to be restyled
+ * after a layout pass.
+ */
+final class ChartUpdater {
+    // The key under which a node remembers its current pseudo-class.
+    private static final String PSEUDO_CLASS_KEY = "pfm.pseudoClass";
+    // The key under which a pie chart remembers the key of each slice.
+    private static final String SLICE_KEYS_KEY = "pfm.sliceKeys";
+
+    /**
+     * A data point of a chart model.
+     *
+     * @param key Identifies the point between updates: the category of a bar, or the id of a slice.
+     * @param name The name shown for a slice, the same as the key for bars.
+     * @param value The value of the point.
+     * @param pseudoClass The CSS pseudo-class of the point's node, or null for none.
+     */
+    record Point(String key, String name, double value, String pseudoClass) {
+
+        static Point bar(String key, double value, String pseudoClass) {
+            return new Point(key, key, value, pseudoClass);
+        }
+    }
+
+    private ChartUpdater() {
+    }
+
+    /**
+     * Updates a series with its categories on the x-axis, like a vertical bar chart.
+     *
+     * @param series The series to update.
+     * @param points The new points, in the order they should be added in.
+     */
+    static void updateBars(XYChart.Series<String, Number> series, List<Point> points) {
+        Map<String, XYChart.Data<String, Number>> existing = new HashMap<>();
+        for (XYChart.Data<String, Number> data : series.getData()) {
+            existing.put(data.getXValue(), data);
+        }
+        Set<String> keys = keysOf(points);
+        series.getData().removeIf(data -> !keys.contains(data.getXValue()));
+
+        for (Point point : points) {
+            XYChart.Data<String, Number> data = existing.get(point.key());
+            if (data == null) {
+                data = new XYChart.Data<>(point.key(), point.value());
+                data.setNode(createBarNode(point.pseudoClass()));
+                series.getData().add(data);
+            } else {
+                if (data.getYValue().doubleValue() != point.value()) {
+                    data.setYValue(point.value());
+                }
+                setPseudoClass(data.getNode(), point.pseudoClass());
+            }
+        }
+    }
+
+    /**
+     * Updates a series with its categories on the y-axis, like a horizontal bar chart.
+     *
+     * @param series The series to update.
+     * @param points The new points, in the order they should be added in.
+     */
+    static void updateHorizontalBars(XYChart.Series<Number, String> series, List<Point> points) {
+        Map<String, XYChart.Data<Number, String>> existing = new HashMap<>();
+        for (XYChart.Data<Number, String> data : series.getData()) {
+            existing.put(data.getYValue(), data);
+        }
+        Set<String> keys = keysOf(points);
+        series.getData().removeIf(data -> !keys.contains(data.getYValue()));
+
+        for (Point point : points) {
+            XYChart.Data<Number, String> data = existing.get(point.key());
+            if (data == null) {
+                data = new XYChart.Data<>(point.value(), point.key());
+                data.setNode(createBarNode(point.pseudoClass()));
+                series.getData().add(data);
+            } else {
+                if (data.getXValue().doubleValue() != point.value()) {
+                    data.setXValue(point.value());
+                }
+                setPseudoClass(data.getNode(), point.pseudoClass());
+            }
+        }
+    }
+
+    /**
+     * Updates the slices of a pie chart. A slice keeps its node while its key stays, so its colour doesn't jump.
+     *
+     * @param chart The chart to update.
+     * @param points The new slices.
+     */
+    @SuppressWarnings("unchecked")
+    static void updateSlices(PieChart chart, List<Point> points) {
+        Map<PieChart.Data, String> sliceKeys = (Map<PieChart.Data, String>)
+                chart.getProperties().computeIfAbsent(SLICE_KEYS_KEY, key -> new HashMap<PieChart.Data, String>());
+        Map<String, PieChart.Data> existing = new HashMap<>();
+        sliceKeys.forEach((slice, key) -> existing.put(key, slice));
+        Set<String> keys = keysOf(points);
+        chart.getData().removeIf(slice -> !keys.contains(sliceKeys.get(slice)));
+        sliceKeys.values().retainAll(keys);
+
+        for (Point point : points) {
+            PieChart.Data slice = existing.get(point.key());
+            if (slice == null) {
+                slice = new PieChart.Data(point.name(), point.value());
+                sliceKeys.put(slice, point.key());
+                // The chart creates the node of a slice when it is added, after which its pseudo-class is set once
+                slice.nodeProperty().addListener((obs, oldNode, newNode) -> setPseudoClass(newNode, point.pseudoClass()));
+                chart.getData().add(slice);
+            } else {
+                if (!slice.getName().equals(point.name())) {
+                    slice.setName(point.name());
+                }
+                if (slice.getPieValue() != point.value()) {
+                    slice.setPieValue(point.value());
+                }
+                setPseudoClass(slice.getNode(), point.pseudoClass());
+            }
+        }
+    }
+
+    /**
+     * Creates the node of a bar with its pseudo-class already set. The chart uses a node that is set on the data
+     * instead of creating its own.
+     *
+     * @param pseudoClass The pseudo-class of the bar, or null for none.
+     * @return The node.
+     */
+    static Node createBarNode(String pseudoClass) {
+        StackPane bar = new StackPane();
+        setPseudoClass(bar, pseudoClass);
+        return bar;
+    }
+
+    /**
+     * Replaces the pseudo-class a node got from this class. Does nothing if the node doesn't exist yet or already
+     * has the pseudo-class.
+     */
+    private static void setPseudoClass(Node node, String pseudoClass) {
+        if (node == null) {
+            return;
+        }
+        Object current = node.getProperties().get(PSEUDO_CLASS_KEY);
+        if (current == null ? pseudoClass == null : current.equals(pseudoClass)) {
+            return;
+        }
+        if (current != null) {
+            node.pseudoClassStateChanged(PseudoClass.getPseudoClass((String) current), false);
+        }
+        if (pseudoClass != null) {
+            node.pseudoClassStateChanged(PseudoClass.getPseudoClass(pseudoClass), true);
+            node.getProperties().put(PSEUDO_CLASS_KEY, pseudoClass);
+        } else {
+            node.getProperties().remove(PSEUDO_CLASS_KEY);
+        }
+    }
+
+    private static Set<String> keysOf(List<Point> points) {
+        Set<String> keys = new HashSet<>();
+        for (Point point : points) {
+            keys.add(point.key());
+        }
+        return keys;
+    }
+}
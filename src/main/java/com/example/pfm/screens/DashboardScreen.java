@@ -1,17 +1,22 @@
 package com.example.pfm.screens;
 
 import com.example.pfm.PFMApp;
-import com.example.pfm.dao.BudgetDAO;
-import com.example.pfm.dao.ExpenseDAO;
-import com.example.pfm.dao.IncomeDAO;
-import javafx.application.Platform;
+import com.example.pfm.model.Budget;
+import com.example.pfm.model.Category;
+import com.example.pfm.model.DataChangeEvent;
+import com.example.pfm.model.Money;
+import com.example.pfm.service.AsyncDataService;
+import com.example.pfm.service.SessionContext;
 import javafx.geometry.Insets;
-import javafx.scene.Node;
 import javafx.scene.chart.*;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.layout.VBox;
 
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Represents the dashboard screen in the Personal Finance Management (PFM) application.
  * This is the first screen the user sees after logging in.
@@ -19,14 +24,20 @@ import javafx.scene.layout.VBox;
  */
 
 public class DashboardScreen implements DataRefresh{
+    private static final String FINANCE_CHART_TITLE = "Financial Summary - Current Month";
+    private static final String BUDGET_CHART_TITLE = "Expenses Budgets";
+
     private VBox view;
     private PFMApp app;
     private Label welcomeLabel;
     private StackedBarChart<Number, String> financeChart;
-    private IncomeDAO incomeDAO;
-    private ExpenseDAO expenseDAO;
-    private BudgetDAO budgetDAO;
+    private final XYChart.Series<Number, String> incomeSeries = new XYChart.Series<>();
+    private final XYChart.Series<Number, String> expenseSeries = new XYChart.Series<>();
+    private final XYChart.Series<Number, String> profitSeries = new XYChart.Series<>();
+    private PieChart budgetPieChart;
+    private AsyncDataService dataService;
     private int userId;
+    private String username;
 
 
     /**
@@ -34,18 +45,14 @@ public class DashboardScreen implements DataRefresh{
      * This screen allows the user to visualize their budget allocations and spending, add new budgets, edit existing ones, and delete budgets as needed.
      *
      * @param app The main application instance, providing access to shared resources and functionality.
-     * @param incomeDAO The data access object for income-related operations, used to track and calculate the user's total income for the month.
-     * @param expenseDAO The data access object for expense-related operations, used to calculate the total spent amount in each budget category.
-     * @param budgetDAO The data access object for budget-related operations, allowing interaction with the database for budget data.
-     * @param userId The unique identifier of the currently logged-in user, used to fetch and manage budgets specific to the user.
+     * @param session The session of the logged-in user, whose data service loads the monthly totals and the budgets.
      */
-    public DashboardScreen(PFMApp app, IncomeDAO incomeDAO, ExpenseDAO expenseDAO, BudgetDAO budgetDAO, int userId) {
+    public DashboardScreen(PFMApp app, SessionContext session) {
         this.app = app;
         app.registerListener(this); // Registering this screen to listen for data changes
-        this.incomeDAO = incomeDAO;
-        this.expenseDAO = expenseDAO;
-        this.budgetDAO = budgetDAO;
-        this.userId = userId;
+        this.dataService = session.getDataService();
+        this.userId = session.getUserId();
+        this.username = session.getUsername();
 
         // Sets up the overall layout and UI components of the Budget screen.
         createView();
@@ -53,17 +60,39 @@ public class DashboardScreen implements DataRefresh{
         createFinanceChart();
         // Displays a pie chart that displays the expense totals for the categories of set budgets.
         addBudgetPieChartToDashBoard();
-        // Updates/Refreshes the totals of the finance chart.
-        updateTotals();
+        // Loads the totals of the finance chart and the budgets of the pie chart in the background.
+        refreshData();
         // Applies the CSS stylesheet to the screen for consistent styling.
         view.getStylesheets().add(getClass().getResource("/com/example/pfm/stylesheets/dashboard.css").toExternalForm());
 
     }
 
+    /**
+     * The totals only cover the current month, the pie chart shows the budgets and their spent amounts.
+     */
+    @Override
+    public boolean isAffectedBy(DataChangeEvent event) {
+        return event.concerns(userId, DataChangeEvent.Type.BUDGET)
+                || event.concerns(userId, DataChangeEvent.Type.EXPENSE)
+                || (event.concerns(userId, DataChangeEvent.Type.INCOME) && event.covers(YearMonth.now()));
+    }
+
     @Override
     public void refreshData() {
-        updateTotals();
-        updatePieChart();
+        // The chart models are computed on the background threads, the JavaFX thread only applies the differences
+        dataService.deliver(this, "totals",
+                dataService.getTotalIncomeForCurrentMonth(userId)
+                        .thenCombine(dataService.getTotalExpenseForCurrentMonth(userId), DashboardScreen::createFinanceBars),
+                bars -> {
+                    financeChart.setTitle(FINANCE_CHART_TITLE);
+                    updateTotals(bars);
+                }, error -> financeChart.setTitle(FINANCE_CHART_TITLE + " (could not be loaded)"));
+        dataService.deliver(this, "budgets",
+                dataService.getAllBudgetsByUserId(userId).thenApply(DashboardScreen::createBudgetSlices),
+                slices -> {
+                    budgetPieChart.setTitle(BUDGET_CHART_TITLE);
+                    ChartUpdater.updateSlices(budgetPieChart, slices);
+                }, error -> budgetPieChart.setTitle(BUDGET_CHART_TITLE + " (could not be loaded)"));
     }
 
 
@@ -72,7 +101,6 @@ public class DashboardScreen implements DataRefresh{
 
         //Welcome Label
         welcomeLabel = new Label();
-        String username = app.getUserService().getCurrentUsername();
         if (username != null) {
             welcomeLabel.setText("Welcome, " + username + "!");
         } else {
@@ -107,7 +135,7 @@ public class DashboardScreen implements DataRefresh{
 
 
         financeChart = new StackedBarChart<>(xAxis, yAxis);
-        financeChart.setTitle("Financial Summary - Current Month");
+        financeChart.setTitle(FINANCE_CHART_TITLE);
         financeChart.setLegendVisible(false);
         financeChart.setCategoryGap(0);
 
@@ -123,144 +151,85 @@ public class DashboardScreen implements DataRefresh{
         financeChart.setHorizontalGridLinesVisible(false);
         financeChart.setVerticalGridLinesVisible(false);
 
+        // The series stay for the lifetime of the screen, refreshes only change their values
+        incomeSeries.setName("Income");
+        expenseSeries.setName("Expenses");
+        profitSeries.setName("Profit/Loss");
+        financeChart.getData().addAll(profitSeries, expenseSeries, incomeSeries);
+
         view.getChildren().add(financeChart);
     }
 
     /**
-     * Creates and configures a PieChart to display the breakdown of expenses by category.
-     * Each slice represents a category's total spent amount, styled with specific CSS classes based on the category.
-     * The pie chart is configured without a legend and with a fixed title.
-     *
-     * @return The configured PieChart instance with data slices for each budget category.
+     * Creates and configures the PieChart that displays the breakdown of expenses by category.
+     * Each slice represents a budget's spent amount, coloured by its category through a CSS pseudo-class.
+     * The pie chart is configured without a legend and with a fixed title, its slices are filled in by refreshData.
      */
-    private PieChart createBudgetPieChart() {
-       PieChart pieChart = new PieChart();
+    private void addBudgetPieChartToDashBoard() {
+        budgetPieChart = new PieChart();
+        budgetPieChart.setLegendVisible(false);
+        budgetPieChart.setTitle(BUDGET_CHART_TITLE);
+        view.getChildren().add(budgetPieChart);
+    }
 
-        // Populates the pie chart with slices representing each budget category and its total spent amount.
-        budgetDAO.getAllBudgetsByUserId(userId).forEach(budget -> {
-            PieChart.Data slice = new PieChart.Data(
+    /**
+     * Computes the slices of the pie chart, one per budget with its spent amount.
+     *
+     * @param budgets The budgets of the user, with their spent amount filled in.
+     * @return The slices, keyed by budget id.
+     */
+    static List<ChartUpdater.Point> createBudgetSlices(List<Budget> budgets) {
+        List<ChartUpdater.Point> slices = new ArrayList<>(budgets.size());
+        for (Budget budget : budgets) {
+            slices.add(new ChartUpdater.Point(String.valueOf(budget.getId()),
                     budget.getCategory() + ": €" + budget.getSpentAmount(),
-                    budget.getSpentAmount()
-            );
-            pieChart.getData().add(slice);
-        });
-
-        // Applies CSS styling to each slice based on its category after the chart is rendered.
-        Platform.runLater(() -> {
-            for (PieChart.Data data : pieChart.getData()) {
-                Node sliceNode = data.getNode();
-                String category = data.getName().split(":")[0];
-                String styleClass = getCategoryStyleClass(category);
-                if (sliceNode != null && styleClass != null) {
-                    sliceNode.getStyleClass().add(styleClass);
-                }
-            }
-        });
-
-        pieChart.setLegendVisible(false);
-        pieChart.setTitle("Expenses Budgets");
-
-        return pieChart;
+                    budget.getSpentAmount().toDouble(),
+                    getCategoryPseudoClass(Category.of(budget.getCategory()))));
+        }
+        return slices;
     }
 
-
-    private String getCategoryStyleClass(String category) {
-        switch (category) {
+    private static String getCategoryPseudoClass(Category category) {
+        switch (category.getName()) {
             case "Shopping":
-                return "shopping-slice";
+                return "shopping";
             case "Travel":
-                return "travel-slice";
+                return "travel";
             case "Groceries":
-                return "groceries-slice";
+                return "groceries";
             case "Insurance":
-                return "insurance-slice";
+                return "insurance";
             case "Utilities":
-                return "utilities-slice";
+                return "utilities";
             case "Entertainment":
-                return "entertainment-slice";
+                return "entertainment";
             case "Hobbies":
-                return "hobbies-slice";
+                return "hobbies";
             case "Other":
-                return "other-slice";
+                return "other";
             default:
                 return null;
         }
     }
 
-    private void addBudgetPieChartToDashBoard() {
-        PieChart budgetPieChart = createBudgetPieChart();
-        view.getChildren().add(budgetPieChart);
-    }
-
-    private void updatePieChart() {
-        PieChart pieChart = createBudgetPieChart();
-        for (Node node : view.getChildren()) {
-            if (node instanceof PieChart) {
-                view.getChildren().remove(node);
-                break;
-            }
-        }
-        view.getChildren().add(pieChart);
-    }
-
-    private void updateTotals() {
-        int userId = app.getUserService().getCurrentUserId();
-        double totalIncome = incomeDAO.getTotalIncomeForCurrentMonth(userId);
-        double totalExpense = expenseDAO.getTotalExpenseForCurrentMonth(userId);
-
-        double profitOrLoss = Math.abs(totalIncome - totalExpense);
-
-        XYChart.Series<Number, String> incomeSeries = new XYChart.Series<>();
-        incomeSeries.setName("Income");
-        incomeSeries.getData().add(new XYChart.Data<>(totalIncome, "Income"));
-
-
-        XYChart.Series<Number, String> expenseSeries = new XYChart.Series<>();
-        expenseSeries.setName("Expenses");
-        expenseSeries.getData().add(new XYChart.Data<>(totalExpense, "Expenses"));
-
-        XYChart.Series<Number, String> profitSeries = new XYChart.Series<>();
-        profitSeries.setName("Profit/Loss");
-        profitSeries.getData().add(new XYChart.Data<>(profitOrLoss, "Profit/Loss"));
-
-        financeChart.getData().clear();
-        financeChart.getData().addAll(profitSeries, expenseSeries, incomeSeries);
-
-        Platform.runLater(() -> {
-            applyCssStyles();
-        });
+    /**
+     * The bars of the finance chart.
+     */
+    record FinanceBars(ChartUpdater.Point income, ChartUpdater.Point expenses, ChartUpdater.Point profitOrLoss) {
     }
 
-    private void applyCssStyles() {
-        for (XYChart.Series<Number, String> series : financeChart.getData()) {
-            for (XYChart.Data<Number, String> data : series.getData()) {
-                Node node = data.getNode();
-                if (node != null) {
-                    String color = getColorForSeries(series.getName());
-                    node.setStyle("-fx-bar-fill: " + color + ";");
-                } else {
-                    data.nodeProperty().addListener((obs, oldNode, newNode) -> {
-                        if (newNode != null) {
-                            String color = getColorForSeries(series.getName());
-                            newNode.setStyle("-fx-bar-fill: " + color + ";");
-                        }
-                    });
-                }
-            }
-        }
+    static FinanceBars createFinanceBars(Money totalIncome, Money totalExpense) {
+        Money profitOrLoss = totalIncome.minus(totalExpense).abs();
+        return new FinanceBars(
+                ChartUpdater.Point.bar("Income", totalIncome.toDouble(), "income"),
+                ChartUpdater.Point.bar("Expenses", totalExpense.toDouble(), "expenses"),
+                ChartUpdater.Point.bar("Profit/Loss", profitOrLoss.toDouble(), "profit-loss"));
     }
 
-    private String getColorForSeries(String seriesName) {
-        switch (seriesName) {
-            case "Income":
-                return "#5D3587";
-            case "Expenses":
-                return "#2A5694";
-            case "Profit/Loss":
-                return "#00B4D8";
-            default:
-                return "gray";
-        }
+    private void updateTotals(FinanceBars bars) {
+        ChartUpdater.updateHorizontalBars(incomeSeries, List.of(bars.income()));
+        ChartUpdater.updateHorizontalBars(expenseSeries, List.of(bars.expenses()));
+        ChartUpdater.updateHorizontalBars(profitSeries, List.of(bars.profitOrLoss()));
     }
 
     /**
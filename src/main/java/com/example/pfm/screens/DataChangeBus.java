@@ -0,0 +1,169 @@
+package com.example.pfm.screens;
+
+import com.example.pfm.model.DataChangeEvent;
+import javafx.application.Platform;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers data change events to the screens that show the changed data.
+ * Events posted within a short window are collected and delivered together, so a burst of writes makes
+ * every affected screen refresh once instead of once per write. Screens that are not affected by any of the
+ * events are not woken up at all.
+ * Listeners are held weakly and registered at most once, so screens that are no longer shown can be garbage collected.
+ */
+public class DataChangeBus {
+    private static final long DEFAULT_WINDOW_MILLIS = 50;
+
+    private final List<WeakReference<DataRefresh>> listeners = new ArrayList<>();
+    private final Set<DataChangeEvent> pendingEvents = new LinkedHashSet<>();
+    private boolean flushScheduled;
+
+    private final long windowMillis;
+    private final Executor uiExecutor;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong postedEvents = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    /**
+     * Creates a bus that delivers on the JavaFX Application Thread after the default window.
+     */
+    public DataChangeBus() {
+        this(DEFAULT_WINDOW_MILLIS, Platform::runLater);
+    }
+
+    /**
+     * Creates a bus.
+     *
+     * @param windowMillis How long to collect events before delivering them.
+     * @param uiExecutor Executor that runs the refreshes, normally Platform::runLater.
+     */
+    public DataChangeBus(long windowMillis, Executor uiExecutor) {
+        this.windowMillis = windowMillis;
+        this.uiExecutor = uiExecutor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pfm-data-change-bus");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers a listener. Registering the same listener again has no effect.
+     *
+     * @param listener The listener to notify of changes.
+     * @return true if the listener was not registered yet.
+     */
+    public synchronized boolean register(DataRefresh listener) {
+        Iterator<WeakReference<DataRefresh>> iterator = listeners.iterator();
+        while (iterator.hasNext()) {
+            DataRefresh registered = iterator.next().get();
+            if (registered == null) {
+                iterator.remove();
+            } else if (registered == listener) {
+                return false;
+            }
+        }
+        listeners.add(new WeakReference<>(listener));
+        return true;
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener The listener to remove.
+     */
+    public synchronized void unregister(DataRefresh listener) {
+        listeners.removeIf(reference -> {
+            DataRefresh registered = reference.get();
+            return registered == null || registered == listener;
+        });
+    }
+
+    /**
+     * Posts a change. It is delivered together with the other changes posted within the window.
+     *
+     * @param event The change.
+     */
+    public void post(DataChangeEvent event) {
+        postedEvents.incrementAndGet();
+        synchronized (this) {
+            pendingEvents.add(event);
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        scheduler.schedule(() -> uiExecutor.execute(this::flush), windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Delivers the pending changes. Each listener affected by at least one of them is refreshed once.
+     */
+    private void flush() {
+        List<DataChangeEvent> events;
+        List<DataRefresh> targets = new ArrayList<>();
+        synchronized (this) {
+            events = new ArrayList<>(pendingEvents);
+            pendingEvents.clear();
+            flushScheduled = false;
+
+            Iterator<WeakReference<DataRefresh>> iterator = listeners.iterator();
+            while (iterator.hasNext()) {
+                DataRefresh listener = iterator.next().get();
+                if (listener == null) {
+                    iterator.remove();
+                } else {
+                    targets.add(listener);
+                }
+            }
+        }
+        flushes.incrementAndGet();
+
+        // Refreshing outside the lock, a listener may post or register while refreshing.
+        for (DataRefresh listener : targets) {
+            if (events.stream().anyMatch(listener::isAffectedBy)) {
+                refreshes.incrementAndGet();
+                listener.refreshData();
+            }
+        }
+    }
+
+    /**
+     * Stops the scheduler. Pending changes are not delivered anymore.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // Metrics
+
+    public synchronized int getListenerCount() {
+        listeners.removeIf(reference -> reference.get() == null);
+        return listeners.size();
+    }
+
+    public long getPostedEventCount() {
+        return postedEvents.get();
+    }
+
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.pfm.screens;
 
+import com.example.pfm.model.DataChangeEvent;
+
 /**
  * The DataRefresh interface provides a contract for implementing data refresh functionality across various screens in the application.
  * This is particularly useful for ensuring that UI components show the most current data after changes are made elsewhere in the application,
@@ -7,4 +9,14 @@ package com.example.pfm.screens;
  */
 public interface DataRefresh {
     void refreshData();
+
+    /**
+     * Tells whether a change affects the data shown by this screen. Screens that are not affected are not refreshed.
+     *
+     * @param event The change.
+     * @return true if the screen should refresh, which is the default.
+     */
+    default boolean isAffectedBy(DataChangeEvent event) {
+        return true;
+    }
 }
@@ -3,6 +3,9 @@ package com.example.pfm.screens;
 import com.example.pfm.PFMApp;
 import com.example.pfm.config.CategoryConfig;
 import com.example.pfm.model.Expense;
+import com.example.pfm.model.Money;
+import com.example.pfm.service.SessionContext;
+import com.example.pfm.service.WriteBehindQueue;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
@@ -18,6 +21,7 @@ import java.time.LocalDate;
 public class ExpenseEntryScreen {
     private GridPane view;
     private PFMApp app;
+    private WriteBehindQueue entryQueue;
     private int userId;
     private TextField amountField;
     private ComboBox<String> categoryDropdown;
@@ -28,12 +32,13 @@ public class ExpenseEntryScreen {
      * Initializes the UI components and stylesheets.
      *
      * @param app Reference to the main application object.
-     * @param userId The ID of the currently logged-in user.
+     * @param session The session of the logged-in user, which the expense is saved for.
      */
 
-    public ExpenseEntryScreen(PFMApp app, int userId) {
+    public ExpenseEntryScreen(PFMApp app, SessionContext session) {
         this.app = app;
-        this.userId = userId;
+        this.entryQueue = session.getEntryQueue();
+        this.userId = session.getUserId();
 
         createView();
         view.getStylesheets().add(getClass().getResource("/com/example/pfm/stylesheets/expense-entry.css").toExternalForm());
@@ -84,18 +89,17 @@ public class ExpenseEntryScreen {
             LocalDate date = datePicker.getValue();
 
             if (validateExpenseData(amountText, category, date)) {
-                double amount = Double.parseDouble(amountText);
+                Money amount = Money.parse(amountText);
                 Expense expense = new Expense(userId, amount, category, date);
-                boolean success = app.getUserService().addExpense(expense);
-
-                if (success) {
+                // Saved to the journal right away, the screens refresh once it has reached the database
+                if (entryQueue.submit(expense)) {
                     clearForm();
                     showAlert(Alert.AlertType.INFORMATION, "Expense Added", "Expense has been successfully added.", true);
                 } else {
-                    showAlert(Alert.AlertType.ERROR, "Save Failed", "Failed to add expense. Please try again.", false);
+                    showAlert(Alert.AlertType.ERROR, "Save Failed", "Too many entries are waiting to be saved. Please try again in a moment.", false);
                 }
             } else {
-                showAlert(Alert.AlertType.ERROR, "Invalid Input", "Please check your input and try again.", false);
+                showAlert(Alert.AlertType.ERROR, "Invalid Input", "Please check your input and try again. Amounts can be at most " + Money.MAX_AMOUNT + ".", false);
             }
         });
         Button backButton = new Button("Back");
@@ -139,7 +143,7 @@ public class ExpenseEntryScreen {
     }
 
     /**
-     * Validates the user input for a new expense entry. Ensures that the amount is a positive number, the category is selected,
+     * Validates the user input for a new expense entry. Ensures that the amount is a positive number that fits the database, the category is selected,
      * and the date is not null.
      *
      * @param amountText The entered amount as text.
@@ -150,8 +154,8 @@ public class ExpenseEntryScreen {
 
     private boolean validateExpenseData(String amountText, String category, LocalDate date) {
         try {
-            double amount = Double.parseDouble(amountText);
-            return amount > 0 && category != null && date != null;
+            Money amount = Money.parse(amountText);
+            return amount.isPositive() && amount.compareTo(Money.MAX_AMOUNT) <= 0 && category != null && date != null;
         } catch (NumberFormatException e) {
             return false;
         }
@@ -2,9 +2,12 @@ package com.example.pfm.screens;
 
 import com.example.pfm.PFMApp;
 import com.example.pfm.config.CategoryConfig;
-import com.example.pfm.dao.ExpenseDAO;
+import com.example.pfm.model.DataChangeEvent;
 import com.example.pfm.model.Expense;
-import javafx.collections.FXCollections;
+import com.example.pfm.model.Money;
+import com.example.pfm.model.PageKey;
+import com.example.pfm.service.AsyncDataService;
+import com.example.pfm.service.SessionContext;
 import javafx.fxml.FXML;
 import javafx.scene.chart.BarChart;
 import javafx.scene.chart.CategoryAxis;
@@ -19,6 +22,7 @@ import javafx.scene.layout.VBox;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.format.TextStyle;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
@@ -27,28 +31,34 @@ import java.util.Optional;
  * It includes a table for viewing individual expenses and a bar chart for visualizing monthly expenses.
  */
 public class ExpenseScreen implements DataRefresh {
+    // The amount of expenses loaded per page, and the amount of pages kept in memory.
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_PAGES = 5;
+
     private VBox view;
     private PFMApp app;
-    private ExpenseDAO expenseDAO;
+    private AsyncDataService dataService;
     private int userId;
+    private TableView<Expense> expenseTableView;
 
     private BarChart<String, Number> expenseChart;
+    private final XYChart.Series<String, Number> monthlySeries = new XYChart.Series<>();
 
     /**
      * Constructs an ExpenseScreen with necessary dependencies and initializes the UI components.
      *
      * @param app Reference to the main application object.
-     * @param expenseDAO Data access object for expense operations.
-     * @param userId ID of the currently logged-in user.
+     * @param session The session of the logged-in user, whose data service runs the expense queries.
      */
 
-    public ExpenseScreen(PFMApp app, ExpenseDAO expenseDAO, int userId) {
+    public ExpenseScreen(PFMApp app, SessionContext session) {
         this.app = app;
         app.registerListener(this); // Registering this screen to listen for data changes
-        this.expenseDAO = expenseDAO;
-        this.userId = userId;
+        this.dataService = session.getDataService();
+        this.userId = session.getUserId();
         createView();
         setupExpenseChart();
+        refreshData(); // Loads the table and chart in the background
         view.getStylesheets().add(getClass().getResource("/com/example/pfm/stylesheets/expense.css").toExternalForm());
     }
 
@@ -59,8 +69,9 @@ public class ExpenseScreen implements DataRefresh {
         view = new VBox();
 
         //Table view that displays the expense amount, category, date and actions.
-        TableView<Expense> ExpenseTableView = new TableView<>();
-        TableColumn<Expense, Double> amountColumn = new TableColumn<>("Amount");
+        expenseTableView = new TableView<>();
+        expenseTableView.setPlaceholder(new Label("Loading expenses..."));
+        TableColumn<Expense, Money> amountColumn = new TableColumn<>("Amount");
         amountColumn.setCellValueFactory(new PropertyValueFactory<>("amount"));
 
         TableColumn<Expense, String> categoryColumn = new TableColumn<>("Category");
@@ -69,10 +80,7 @@ public class ExpenseScreen implements DataRefresh {
         TableColumn<Expense, LocalDate> dateColumn = new TableColumn<>("Date");
         dateColumn.setCellValueFactory(new PropertyValueFactory<>("date"));
 
-        ExpenseTableView.getColumns().addAll(amountColumn, categoryColumn, dateColumn);
-
-        List<Expense> Expenses = expenseDAO.getAllExpensesByUserId(userId);
-        ExpenseTableView.setItems(FXCollections.observableArrayList(Expenses));
+        expenseTableView.getColumns().addAll(amountColumn, categoryColumn, dateColumn);
 
         // Action column which allows the user to edit or delete each expense in the tableview.
         TableColumn<Expense, Void> actionsColumn = new TableColumn<>("Actions");
@@ -94,6 +102,7 @@ public class ExpenseScreen implements DataRefresh {
             }
             // Opens a dialog that allow the user to edit an expense.
             private void openExpenseEditForm(Expense selectedExpense) {
+                LocalDate oldDate = selectedExpense.getDate(); // The dialog changes the expense in place
                 // Dialog setup
                 Dialog<Expense> dialog = new Dialog<>();
                 dialog.setTitle("Edit Expense");
@@ -126,7 +135,7 @@ public class ExpenseScreen implements DataRefresh {
                 dialog.setResultConverter(dialogButton -> {
                     if (dialogButton == saveButtonType) {
                         try {
-                            selectedExpense.setAmount(Double.parseDouble((amountField.getText())));
+                            selectedExpense.setAmount(Money.parse(amountField.getText()));
                             selectedExpense.setCategory(categoryField.getValue());
                             selectedExpense.setDate(datePicker.getValue());
                             return selectedExpense;
@@ -139,20 +148,15 @@ public class ExpenseScreen implements DataRefresh {
                 });
 
                 Optional<Expense> result = dialog.showAndWait();
-                result.ifPresent(newExpense -> {
-                    boolean updateSuccess = expenseDAO.updateExpense(newExpense);
+                result.ifPresent(newExpense -> dataService.whenDone(dataService.updateExpense(newExpense), updateSuccess -> {
                     if (updateSuccess) {
-                        refreshExpenseTable();
-                        app.onDataChanged();
+                        // Also reloads this screen's table and chart
+                        app.onDataChanged(DataChangeEvent.expense(userId, oldDate));
+                        app.onDataChanged(DataChangeEvent.expense(userId, newExpense.getDate()));
                     } else {
                         showAlert("Update Error", "Could not update the Expense information.");
                     }
-                });
-            }
-
-            private void refreshExpenseTable() {
-                ExpenseTableView.setItems(FXCollections.observableArrayList(expenseDAO.getAllExpensesByUserId(userId)));
-                updateExpenseChart();
+                }));
             }
 
             private void showAlert(String title, String message) {
@@ -177,31 +181,34 @@ public class ExpenseScreen implements DataRefresh {
                 Optional<ButtonType> result = confirmationAlert.showAndWait();
                 if (result.isPresent() && result.get() == ButtonType.OK) {
                     // When the user confirms the expense deletion
-                    boolean deleteSuccess = expenseDAO.deleteExpense(selectedExpense.getId(), selectedExpense.getUserId());
-                    if (deleteSuccess) {
-                        // When the deletion was successful, the table updates
-                        refreshExpenseTable();
-                        app.onDataChanged();
-                    } else {
-                        // When the deletion fails, it shows an error message
-                        showAlert("Deletion Error", "Could not delete the expense record.");
-                    }
+                    dataService.whenDone(dataService.deleteExpense(selectedExpense.getId(), selectedExpense.getUserId()), deleteSuccess -> {
+                        if (deleteSuccess) {
+                            // When the deletion was successful, the table and chart are reloaded
+                            app.onDataChanged(DataChangeEvent.expense(userId, selectedExpense.getDate()));
+                        } else {
+                            // When the deletion fails, it shows an error message
+                            showAlert("Deletion Error", "Could not delete the expense record.");
+                        }
+                    });
                 }
             }
 
             @Override
             protected void updateItem(Void item, boolean empty) {
                 super.updateItem(item, empty);
-                if (empty) {
+                // No buttons while the row is still loading
+                if (empty || getTableRow() == null || getTableRow().getItem() == null) {
                     setGraphic(null);
                 } else {
                     setGraphic(new HBox(10, editButton, deleteButton));
                 }
             }
         });
-        ExpenseTableView.getColumns().add(actionsColumn);
+        expenseTableView.getColumns().add(actionsColumn);
+        // The rows come ordered by date from the database page by page, so they can't be sorted in the table
+        expenseTableView.getColumns().forEach(column -> column.setSortable(false));
 
-        view.getChildren().add(ExpenseTableView);
+        view.getChildren().add(expenseTableView);
     }
 
     /**
@@ -215,41 +222,62 @@ public class ExpenseScreen implements DataRefresh {
         xAxis.setLabel("Month");
         yAxis.setLabel("Total Expense");
 
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        series.setName("Monthly Expense");
-
-        for (int month = 1; month <= 12; month++) {
-            double total = expenseDAO.getTotalExpenseForMonth(userId, month, LocalDate.now().getYear());
-            String monthName = Month.of(month).getDisplayName(TextStyle.FULL, Locale.getDefault());
-            series.getData().add(new XYChart.Data<>(monthName, total));
-        }
+        // The series stays for the lifetime of the screen, refreshes only change its values
+        monthlySeries.setName("Monthly Expense");
+        expenseChart.getData().add(monthlySeries);
 
-        expenseChart.getData().add(series);
         view.getChildren().add(expenseChart);
     }
 
     /**
-     * Updates the expense chart with current data. This method is called whenever there is a change
-     * in the expense data.
+     * Updates the expense chart with the points computed by the background load.
      */
-    private void updateExpenseChart() {
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        series.setName("Monthly Expense");
+    private void updateExpenseChart(List<ChartUpdater.Point> bars) {
+        ChartUpdater.updateBars(monthlySeries, bars);
+    }
 
+    /**
+     * Computes the bars with the expense total of every month of the current year.
+     * Holds no JavaFX objects, so it runs on the thread that loaded the totals.
+     *
+     * @param totals The twelve monthly totals in cents, where index 0 is January.
+     * @return The bars, keyed by the name of the month.
+     */
+    static List<ChartUpdater.Point> createMonthlyBars(long[] totals) {
+        List<ChartUpdater.Point> bars = new ArrayList<>(12);
         for (int month = 1; month <= 12; month++) {
-            double total = expenseDAO.getTotalExpenseForMonth(userId, month, LocalDate.now().getYear());
             String monthName = Month.of(month).getDisplayName(TextStyle.FULL, Locale.getDefault());
-            series.getData().add((new XYChart.Data<>(monthName, total)));
+            bars.add(ChartUpdater.Point.bar(monthName, totals[month - 1] / 100.0, null));
         }
-
-        expenseChart.getData().clear();
-        expenseChart.getData().add(series);
+        return bars;
     }
 
 
+    /**
+     * Reloads the table and the chart in the background. Older loads that are still running are superseded.
+     */
     @Override
     public void refreshData() {
-        updateExpenseChart();
+        dataService.deliver(this, "table", dataService.countExpensesByUserId(userId), count -> {
+            expenseTableView.setPlaceholder(new Label("No expenses yet."));
+            // The rows are loaded page by page while scrolling, instead of all at once
+            expenseTableView.setItems(new PagedList<>(count, PAGE_SIZE, MAX_PAGES,
+                    (after, skip, limit) -> dataService.getExpensesPage(userId, after, skip, limit),
+                    expense -> new PageKey(expense.getDate(), expense.getId()), dataService.getUiExecutor()));
+        }, error -> expenseTableView.setPlaceholder(new Label("Could not load the expenses. Please try again later.")));
+        dataService.deliver(this, "chart", dataService.getMonthlyExpenseTotalsForYear(userId, LocalDate.now().getYear())
+                .thenApply(ExpenseScreen::createMonthlyBars), bars -> {
+            expenseChart.setTitle(null);
+            updateExpenseChart(bars);
+        }, error -> expenseChart.setTitle("The monthly totals could not be loaded"));
+    }
+
+    /**
+     * Only changes to the expenses of this user affect the table and the chart.
+     */
+    @Override
+    public boolean isAffectedBy(DataChangeEvent event) {
+        return event.concerns(userId, DataChangeEvent.Type.EXPENSE);
     }
 
     /**
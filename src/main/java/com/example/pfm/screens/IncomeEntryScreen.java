@@ -1,7 +1,11 @@
 package com.example.pfm.screens;
 
 import com.example.pfm.PFMApp;
+import com.example.pfm.config.CategoryConfig;
 import com.example.pfm.model.Income;
+import com.example.pfm.model.Money;
+import com.example.pfm.service.SessionContext;
+import com.example.pfm.service.WriteBehindQueue;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
@@ -16,6 +20,7 @@ import java.time.LocalDate;
 public class IncomeEntryScreen {
     private GridPane view;
     private PFMApp app;
+    private WriteBehindQueue entryQueue;
     private int userId;
     private TextField amountField;
     private ComboBox<String> sourceDropdown;
@@ -25,12 +30,13 @@ public class IncomeEntryScreen {
      * Constructs an IncomeEntryScreen with necessary dependencies and initializes the UI components.
      *
      * @param app Reference to the main application object.
-     * @param userId ID of the currently logged-in user.
+     * @param session The session of the logged-in user, whose entry queue saves the income.
      */
 
-    public IncomeEntryScreen(PFMApp app, int userId) {
+    public IncomeEntryScreen(PFMApp app, SessionContext session) {
         this.app = app;
-        this.userId = userId;
+        this.entryQueue = session.getEntryQueue();
+        this.userId = session.getUserId();
         createView();
         view.getStylesheets().add(getClass().getResource("/com/example/pfm/stylesheets/income-entry.css").toExternalForm());
     }
@@ -59,7 +65,7 @@ public class IncomeEntryScreen {
 
         // Source Select
         sourceDropdown = new ComboBox<>();
-        sourceDropdown.getItems().addAll("Salary", "Freelance", "Investment", "Allowance", "Other");
+        sourceDropdown.getItems().addAll(CategoryConfig.INCOME_SOURCES);
         sourceDropdown.setPromptText("Select Source");
         GridPane.setConstraints(sourceDropdown, 1, 1);
 
@@ -80,18 +86,17 @@ public class IncomeEntryScreen {
             LocalDate date = datePicker.getValue();
 
             if (validateIncomeData(amountText, source, date)) {
-                double amount = Double.parseDouble(amountText);
+                Money amount = Money.parse(amountText);
                 Income income = new Income(userId, amount, source, date);
-                boolean success = app.getUserService().addIncome(income);
-
-                if (success) {
+                // Saved to the journal right away, the screens refresh once it has reached the database
+                if (entryQueue.submit(income)) {
                     clearForm();
                     showAlert(Alert.AlertType.INFORMATION, "Income Added", "Income has been successfully added.", true);
                 } else {
-                    showAlert(Alert.AlertType.ERROR, "Save Failed", "Failed to add income. Please try again.", false);
+                    showAlert(Alert.AlertType.ERROR, "Save Failed", "Too many entries are waiting to be saved. Please try again in a moment.", false);
                 }
             } else {
-                showAlert(Alert.AlertType.ERROR, "Invalid Input", "Please check your input and try again.", false);
+                showAlert(Alert.AlertType.ERROR, "Invalid Input", "Please check your input and try again. Amounts can be at most " + Money.MAX_AMOUNT + ".", false);
             }
         });
 
@@ -112,8 +117,8 @@ public class IncomeEntryScreen {
      */
     private boolean validateIncomeData(String amountText, String source, LocalDate date) {
         try {
-            double amount = Double.parseDouble(amountText);
-            return amount > 0 && source != null && date != null;
+            Money amount = Money.parse(amountText);
+            return amount.isPositive() && amount.compareTo(Money.MAX_AMOUNT) <= 0 && source != null && date != null;
         } catch (NumberFormatException e) {
             return false;
         }
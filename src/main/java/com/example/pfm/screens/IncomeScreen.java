@@ -1,9 +1,13 @@
 package com.example.pfm.screens;
 
 import com.example.pfm.PFMApp;
-import com.example.pfm.dao.IncomeDAO;
+import com.example.pfm.config.CategoryConfig;
+import com.example.pfm.model.DataChangeEvent;
 import com.example.pfm.model.Income;
-import javafx.collections.FXCollections;
+import com.example.pfm.model.Money;
+import com.example.pfm.model.PageKey;
+import com.example.pfm.service.AsyncDataService;
+import com.example.pfm.service.SessionContext;
 import javafx.fxml.FXML;
 import javafx.scene.chart.BarChart;
 import javafx.scene.chart.CategoryAxis;
@@ -18,6 +22,7 @@ import javafx.scene.layout.VBox;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.format.TextStyle;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
@@ -29,36 +34,43 @@ import java.util.Optional;
  * The IncomeScreen class follows a similar structure and functionality.
  */
 public class IncomeScreen implements DataRefresh{
+    // The amount of incomes loaded per page, and the amount of pages kept in memory.
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_PAGES = 5;
+
     private VBox view;
     private PFMApp app;
-    private IncomeDAO incomeDAO;
+    private AsyncDataService dataService;
     private int userId;
+    private TableView<Income> incomeTableView;
 
     private BarChart<String, Number> incomeChart;
+    private final XYChart.Series<String, Number> monthlySeries = new XYChart.Series<>();
 
     /**
      * Constructs an IncomeScreen with necessary dependencies and initializes the UI components.
      *
      * @param app Reference to the main application object.
-     * @param incomeDAO Data access object for income records.
-     * @param userId ID of the currently logged-in user.
+     * @param session The session of the logged-in user, whose data service runs the income queries.
      */
 
-    public IncomeScreen(PFMApp app, IncomeDAO incomeDAO, int userId) {
+    public IncomeScreen(PFMApp app, SessionContext session) {
         this.app = app;
         app.registerListener(this); // Registering this screen to listen for data changes
-        this.incomeDAO = incomeDAO;
-        this.userId = userId;
+        this.dataService = session.getDataService();
+        this.userId = session.getUserId();
         createView();
         setupIncomeChart();
+        refreshData(); // Loads the table and chart in the background
 
         view.getStylesheets().add(getClass().getResource("/com/example/pfm/stylesheets/income.css").toExternalForm());
     }
 
     private void createView() {
         view = new VBox();
-        TableView<Income> incomeTableView = new TableView<>();
-        TableColumn<Income, Double> amountColumn = new TableColumn<>("Amount");
+        incomeTableView = new TableView<>();
+        incomeTableView.setPlaceholder(new Label("Loading incomes..."));
+        TableColumn<Income, Money> amountColumn = new TableColumn<>("Amount");
         amountColumn.setCellValueFactory(new PropertyValueFactory<>("amount"));
 
         TableColumn<Income, String> sourceColumn = new TableColumn<>("Source");
@@ -69,10 +81,6 @@ public class IncomeScreen implements DataRefresh{
 
         incomeTableView.getColumns().addAll(amountColumn, sourceColumn, dateColumn);
 
-        List<Income> incomes = incomeDAO.getAllIncomesByUserId(userId);
-        incomeTableView.setItems(FXCollections.observableArrayList(incomes));
-
-
         TableColumn<Income, Void> actionsColumn = new TableColumn<>("Actions");
         actionsColumn.setCellFactory(col -> new TableCell<Income, Void>() {
             private final Button editButton = new Button("Edit");
@@ -91,6 +99,7 @@ public class IncomeScreen implements DataRefresh{
             }
 
             private void openIncomeEditForm(Income selectedIncome) {
+                LocalDate oldDate = selectedIncome.getDate(); // The dialog changes the income in place
                 Dialog<Income> dialog = new Dialog<>();
                 dialog.setTitle("Edit Income");
                 dialog.setHeight(275);
@@ -103,7 +112,7 @@ public class IncomeScreen implements DataRefresh{
                 amountField.getStyleClass().add("amount-field");
 
                 ComboBox<String> sourceField = new ComboBox<>();
-                sourceField.getItems().addAll("Salary", "Freelance", "Investment", "Allowance", "Other");
+                sourceField.getItems().addAll(CategoryConfig.INCOME_SOURCES);
                 sourceField.setValue(selectedIncome.getSource());
                 sourceField.getStyleClass().add("source-field");
 
@@ -124,7 +133,7 @@ public class IncomeScreen implements DataRefresh{
                 dialog.setResultConverter(dialogButton -> {
                     if (dialogButton == saveButtonType) {
                         try {
-                            selectedIncome.setAmount(Double.parseDouble((amountField.getText())));
+                            selectedIncome.setAmount(Money.parse(amountField.getText()));
                             selectedIncome.setSource(sourceField.getValue());
                             selectedIncome.setDate(datePicker.getValue());
                             return selectedIncome;
@@ -137,21 +146,15 @@ public class IncomeScreen implements DataRefresh{
                 });
 
                 Optional<Income> result = dialog.showAndWait();
-                result.ifPresent(newIncome -> {
-                    boolean updateSuccess = incomeDAO.updateIncome(newIncome);
+                result.ifPresent(newIncome -> dataService.whenDone(dataService.updateIncome(newIncome), updateSuccess -> {
                     if (updateSuccess) {
-                        refreshIncomeTable();
-                        app.onDataChanged();
+                        // Also reloads this screen's table and chart
+                        app.onDataChanged(DataChangeEvent.income(userId, oldDate));
+                        app.onDataChanged(DataChangeEvent.income(userId, newIncome.getDate()));
                     } else {
                         showAlert("Update Error", "Could not update the income information.");
                     }
-                });
-            }
-
-            private void refreshIncomeTable() {
-                incomeTableView.setItems(FXCollections.observableArrayList(incomeDAO.getAllIncomesByUserId(userId)));
-                updateIncomeChart();
-                app.onDataChanged();
+                }));
             }
 
             private void showAlert(String title, String message) {
@@ -176,22 +179,23 @@ public class IncomeScreen implements DataRefresh{
                 Optional<ButtonType> result = confirmationAlert.showAndWait();
                 if (result.isPresent() && result.get() == ButtonType.OK) {
                     // When the user confirms the income deletion
-                    boolean deleteSuccess = incomeDAO.deleteIncome(selectedIncome.getId(), selectedIncome.getUserId());
-                    if (deleteSuccess) {
-                        // When the deletion was successful, the table updates
-                        refreshIncomeTable();
-                        app.onDataChanged();
-                    } else {
-                        // When the deletion fails, it shows an error message
-                        showAlert("Deletion Error", "Could not delete the income record.");
-                    }
+                    dataService.whenDone(dataService.deleteIncome(selectedIncome.getId(), selectedIncome.getUserId()), deleteSuccess -> {
+                        if (deleteSuccess) {
+                            // When the deletion was successful, the table and chart are reloaded
+                            app.onDataChanged(DataChangeEvent.income(userId, selectedIncome.getDate()));
+                        } else {
+                            // When the deletion fails, it shows an error message
+                            showAlert("Deletion Error", "Could not delete the income record.");
+                        }
+                    });
                 }
             }
 
             @Override
             protected void updateItem(Void item, boolean empty) {
                 super.updateItem(item, empty);
-                if (empty) {
+                // No buttons while the row is still loading
+                if (empty || getTableRow() == null || getTableRow().getItem() == null) {
                     setGraphic(null);
                 } else {
                     setGraphic(new HBox(10, editButton, deleteButton));
@@ -199,6 +203,8 @@ public class IncomeScreen implements DataRefresh{
             }
         });
         incomeTableView.getColumns().add(actionsColumn);
+        // The rows come ordered by date from the database page by page, so they can't be sorted in the table
+        incomeTableView.getColumns().forEach(column -> column.setSortable(false));
 
         view.getChildren().add(incomeTableView);
     }
@@ -212,36 +218,61 @@ public class IncomeScreen implements DataRefresh{
         xAxis.setLabel("Month");
         yAxis.setLabel("Total Income");
 
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        series.setName("Monthly Income");
+        // The series stays for the lifetime of the screen, refreshes only change its values
+        monthlySeries.setName("Monthly Income");
+        incomeChart.getData().add(monthlySeries);
 
-        for (int month = 1; month <= 12; month++) {
-            double total = incomeDAO.getTotalIncomeForMonth(userId, month, LocalDate.now().getYear());
-            String monthName = Month.of(month).getDisplayName(TextStyle.FULL, Locale.getDefault());
-            series.getData().add(new XYChart.Data<>(monthName, total));
-        }
-
-        incomeChart.getData().add(series);
         view.getChildren().add(incomeChart);
     }
 
-    private void updateIncomeChart() {
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        series.setName("Monthly Income");
+    /**
+     * Updates the income chart with the points computed by the background load.
+     */
+    private void updateIncomeChart(List<ChartUpdater.Point> bars) {
+        ChartUpdater.updateBars(monthlySeries, bars);
+    }
 
+    /**
+     * Computes the bars with the income total of every month of the current year.
+     * Holds no JavaFX objects, so it runs on the thread that loaded the totals.
+     *
+     * @param totals The twelve monthly totals in cents, where index 0 is January.
+     * @return The bars, keyed by the name of the month.
+     */
+    static List<ChartUpdater.Point> createMonthlyBars(long[] totals) {
+        List<ChartUpdater.Point> bars = new ArrayList<>(12);
         for (int month = 1; month <= 12; month++) {
-            double total = incomeDAO.getTotalIncomeForMonth(userId, month, LocalDate.now().getYear());
             String monthName = Month.of(month).getDisplayName(TextStyle.FULL, Locale.getDefault());
-            series.getData().add((new XYChart.Data<>(monthName, total)));
+            bars.add(ChartUpdater.Point.bar(monthName, totals[month - 1] / 100.0, null));
         }
-
-        incomeChart.getData().clear();
-        incomeChart.getData().add(series);
+        return bars;
     }
 
+    /**
+     * Reloads the table and the chart in the background. Older loads that are still running are superseded.
+     */
     @Override
     public void refreshData() {
-        updateIncomeChart();
+        dataService.deliver(this, "table", dataService.countIncomesByUserId(userId), count -> {
+            incomeTableView.setPlaceholder(new Label("No incomes yet."));
+            // The rows are loaded page by page while scrolling, instead of all at once
+            incomeTableView.setItems(new PagedList<>(count, PAGE_SIZE, MAX_PAGES,
+                    (after, skip, limit) -> dataService.getIncomesPage(userId, after, skip, limit),
+                    income -> new PageKey(income.getDate(), income.getId()), dataService.getUiExecutor()));
+        }, error -> incomeTableView.setPlaceholder(new Label("Could not load the incomes. Please try again later.")));
+        dataService.deliver(this, "chart", dataService.getMonthlyIncomeTotalsForYear(userId, LocalDate.now().getYear())
+                .thenApply(IncomeScreen::createMonthlyBars), bars -> {
+            incomeChart.setTitle(null);
+            updateIncomeChart(bars);
+        }, error -> incomeChart.setTitle("The monthly totals could not be loaded"));
+    }
+
+    /**
+     * Only changes to the incomes of this user affect the table and the chart.
+     */
+    @Override
+    public boolean isAffectedBy(DataChangeEvent event) {
+        return event.concerns(userId, DataChangeEvent.Type.INCOME);
     }
 
     /**
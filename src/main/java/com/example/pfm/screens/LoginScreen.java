@@ -2,6 +2,7 @@ package com.example.pfm.screens;
 
 import com.example.pfm.PFMApp;
 import com.example.pfm.service.UserService;
+import com.example.pfm.util.StartupProfile;
 import javafx.geometry.HPos;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -85,12 +86,20 @@ public class LoginScreen {
      * @param password The entered password.
      */
     private void handleLogin(String username, String password) {
-        String result = userService.authenticateUser(username, password);
-        if (result == null) {
-           app.showMainScreen(); // Navigation to main screen on successful login
-        } else {
-            showErrorDialog(result); // Display error dialog on failed login
-        }
+        // The first login waits until the database is migrated, which happens while the login screen is shown
+        app.afterWarmup(() -> login(username, password));
+    }
+
+    private void login(String username, String password) {
+        StartupProfile.mark("login");
+        // Checking the password takes a while, so it runs in the background
+        app.runInBackground(() -> userService.authenticateUser(username, password), result -> {
+            if (result == null) {
+               app.showMainScreen(); // Navigation to main screen on successful login
+            } else {
+                showErrorDialog(result); // Display error dialog on failed login
+            }
+        });
     }
 
     /**
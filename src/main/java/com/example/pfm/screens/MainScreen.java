@@ -1,11 +1,9 @@
 package com.example.pfm.screens;
 
 import com.example.pfm.PFMApp;
-import com.example.pfm.dao.BudgetDAO;
-import com.example.pfm.dao.ExpenseDAO;
-import com.example.pfm.dao.IncomeDAO;
-import com.example.pfm.model.User;
+import com.example.pfm.service.SessionContext;
 import javafx.geometry.Side;
+import javafx.scene.Parent;
 import javafx.scene.control.ContextMenu;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.Tab;
@@ -18,10 +16,17 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
 /**
  * MainScreen class serves as the central hub of the Personal Finance Manager (PFM) application,
  * hosting various functional tabs like Dashboard, Incomes, Expenses, Budgets, and Report.
  * It also provides a user context menu for actions such as logging out.
+ * The screen of a tab is only built when the tab is selected for the first time, as every screen starts loading its
+ * data when it is built. The screens share the services of the session of the logged-in user. The application keeps
+ * the main screen of the session and shows it again instead of building a new one.
  */
 
 public class MainScreen{
@@ -31,54 +36,25 @@ public class MainScreen{
     private ImageView userIcon;
     private ContextMenu contextMenu;
     private PFMApp app;
-    private IncomeDAO incomeDAO;
-    private ExpenseDAO expenseDAO;
-    private BudgetDAO budgetDAO;
-    private IncomeScreen incomeScreen;
-    private ExpenseScreen expenseScreen;
-    private BudgetScreen budgetScreen;
-    private DashboardScreen dashboardScreen;
-    private ReportScreen reportScreen;
+    private SessionContext session;
     private Stage primaryStage;
-    private int userId;
+    // The screens of the tabs that have been built so far
+    private final List<DataRefresh> screens = new ArrayList<>();
 
     /**
      * Constructs the MainScreen with necessary dependencies and initializes the UI components.
+     * Only the dashboard is built right away, the other tabs are built when they are first selected.
      *
      * @param app               The main application instance for navigation and data handling.
-     * @param incomeDAO         Data access object for income-related operations.
-     * @param expenseDAO        Data access object for expense-related operations.
-     * @param budgetDAO         Data access object for budget-related operations.
-     * @param userId            The ID of the currently logged-in user.
-     * @param incomeScreen      The income screen for income management.
-     * @param expenseScreen     The expense screen for expense management.
-     * @param budgetScreen      The budget screen for budget management.
-     * @param dashboardScreen   The dashboard screen for displaying summary information.
-     * @param reportScreen      The report screen for generating financial reports.
+     * @param session           The session of the logged-in user, with the services of the screens.
      * @param primaryStage      The primary stage of the application.
      */
 
     public MainScreen(PFMApp app,
-                      IncomeDAO incomeDAO,
-                      ExpenseDAO expenseDAO,
-                      BudgetDAO budgetDAO,
-                      int userId,
-                      IncomeScreen incomeScreen,
-                      ExpenseScreen expenseScreen,
-                      BudgetScreen budgetScreen,
-                      DashboardScreen dashboardScreen,
-                      ReportScreen reportScreen,
+                      SessionContext session,
                       Stage primaryStage) {
         this.app = app;
-        this.incomeDAO = incomeDAO;
-        this.expenseDAO = expenseDAO;
-        this.budgetDAO = budgetDAO;
-        this.userId = userId;
-        this.incomeScreen = incomeScreen;
-        this.expenseScreen = expenseScreen;
-        this.budgetScreen = budgetScreen;
-        this.dashboardScreen = dashboardScreen;
-        this.reportScreen = reportScreen;
+        this.session = session;
         this.primaryStage = primaryStage;
         createView();
     }
@@ -96,26 +72,35 @@ public class MainScreen{
 
         // Setup for each application tab (Dashboard, Incomes, Expenses, etc.)
 
-        Tab dashboardTab = new Tab("Dashboard");
-        dashboardTab.setContent(new DashboardScreen(app, incomeDAO, expenseDAO, budgetDAO, userId).getView());
-        dashboardTab.setClosable(false);
-
-        Tab incomesTab = new Tab("Incomes");
-        incomesTab.setContent(new IncomeScreen(app, new IncomeDAO(), app.getUserService().getCurrentUserId()).getView());
-        incomesTab.setClosable(false);
+        Tab dashboardTab = createLazyTab("Dashboard", () -> {
+            DashboardScreen dashboardScreen = new DashboardScreen(app, session);
+            screens.add(dashboardScreen);
+            return dashboardScreen.getView();
+        });
 
+        Tab incomesTab = createLazyTab("Incomes", () -> {
+            IncomeScreen incomeScreen = new IncomeScreen(app, session);
+            screens.add(incomeScreen);
+            return incomeScreen.getView();
+        });
 
-        Tab expensesTab = new Tab("Expenses");
-        expensesTab.setContent(new ExpenseScreen(app, new ExpenseDAO(), app.getUserService().getCurrentUserId()).getView());
-        expensesTab.setClosable(false);
+        Tab expensesTab = createLazyTab("Expenses", () -> {
+            ExpenseScreen expenseScreen = new ExpenseScreen(app, session);
+            screens.add(expenseScreen);
+            return expenseScreen.getView();
+        });
 
-        Tab budgetTab = new Tab("Budgets");
-        budgetTab.setContent(new BudgetScreen(app, budgetDAO, expenseDAO, userId).getView());
-        budgetTab.setClosable(false);
+        Tab budgetTab = createLazyTab("Budgets", () -> {
+            BudgetScreen budgetScreen = new BudgetScreen(app, session);
+            screens.add(budgetScreen);
+            return budgetScreen.getView();
+        });
 
-        Tab reportTab = new Tab("Report");
-        reportTab.setContent(new ReportScreen(app, incomeDAO, expenseDAO, primaryStage).getView());
-        reportTab.setClosable(false);
+        Tab reportTab = createLazyTab("Report", () -> {
+            ReportScreen reportScreen = new ReportScreen(app, session, primaryStage);
+            screens.add(reportScreen);
+            return reportScreen.getView();
+        });
 
         tabPane.getTabs().addAll(dashboardTab, incomesTab, expensesTab, budgetTab, reportTab);
         view.getChildren().add(tabPane);
@@ -139,6 +124,25 @@ public class MainScreen{
         borderPane.setRight(userIconVBox);
     }
 
+    /**
+     * Creates a tab whose content is built when the tab is selected for the first time.
+     * The first tab of a TabPane is selected when it is added, so its content is built right away.
+     *
+     * @param title The title of the tab.
+     * @param content Builds the screen of the tab and returns its view.
+     * @return The tab.
+     */
+    private Tab createLazyTab(String title, Supplier<Parent> content) {
+        Tab tab = new Tab(title);
+        tab.setClosable(false);
+        tab.selectedProperty().addListener((obs, wasSelected, isSelected) -> {
+            if (isSelected && tab.getContent() == null) {
+                tab.setContent(content.get());
+            }
+        });
+        return tab;
+    }
+
     /**
      * Handles the opening and closing of the context menu upon clicking the user icon. This menu provides
      * user-specific actions such as logging out.
@@ -169,6 +173,25 @@ public class MainScreen{
         app.showLoginScreen();
     }
 
+    /**
+     * @return The session this main screen was built for.
+     */
+    public SessionContext getSession() {
+        return session;
+    }
+
+    /**
+     * Stops the screens that have been built from loading and refreshing data. Called when the main screen is
+     * no longer going to be shown, like after a logout.
+     */
+    public void dispose() {
+        for (DataRefresh screen : screens) {
+            app.unregisterListener(screen);
+            session.getDataService().cancelAll(screen);
+        }
+        screens.clear();
+    }
+
     /**
      * Provides access to the main screen's view component, which includes all UI elements.
      *
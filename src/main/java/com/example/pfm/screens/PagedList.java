@@ -0,0 +1,149 @@
+package com.example.pfm.screens;
+
+import com.example.pfm.model.PageKey;
+import javafx.collections.ObservableListBase;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * A read-only list for a TableView that loads its rows a page at a time while the user scrolls.
+ * The size is known up front, so the table can show its full scroll range. A row that isn't loaded yet is null
+ * until its page arrives, after which the table is told to redraw those rows. Only the most recently used pages
+ * are kept, so the memory use stays the same however long the history is.
+ * Pages are requested by the key of the row before them. The keys of visited page boundaries are remembered,
+ * so a jump is served from the nearest known key.
+ * The list must only be used on the JavaFX thread.
+ *
+ * @param <T> The type of the rows.
+ */
+public class PagedList<T> extends ObservableListBase<T> {
+
+    /**
+     * Loads a page of rows in the background.
+     */
+    public interface PageLoader<T> {
+        /**
+         * Loads the rows that follow a key.
+         *
+         * @param after The key of the row before the rows to skip, or null to start at the first row.
+         * @param skip The amount of rows after the key to pass over.
+         * @param limit The maximum amount of rows to load.
+         * @return A future that completes with the rows.
+         */
+        CompletableFuture<List<T>> load(PageKey after, int skip, int limit);
+    }
+
+    private final int size;
+    private final int pageSize;
+    private final PageLoader<T> loader;
+    private final Function<T, PageKey> keyOf;
+    private final Executor uiExecutor;
+
+    // The loaded pages by page number, in least recently used order.
+    private final LinkedHashMap<Integer, List<T>> pages;
+    // The key of the row before each known page. Page 0 starts at the beginning.
+    private final TreeMap<Integer, PageKey> pageStarts = new TreeMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+
+    /**
+     * Constructs a PagedList.
+     *
+     * @param size The total amount of rows.
+     * @param pageSize The amount of rows per page.
+     * @param maxPages The maximum amount of pages kept in memory. It should cover more rows than the table shows at once.
+     * @param loader Loads the rows of a page.
+     * @param keyOf Gives the key of a row.
+     * @param uiExecutor Executor that applies loaded pages on the JavaFX thread, normally Platform::runLater.
+     */
+    public PagedList(int size, int pageSize, int maxPages, PageLoader<T> loader, Function<T, PageKey> keyOf, Executor uiExecutor) {
+        this.size = size;
+        this.pageSize = pageSize;
+        this.loader = loader;
+        this.keyOf = keyOf;
+        this.uiExecutor = uiExecutor;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > maxPages;
+            }
+        };
+        pageStarts.put(0, null);
+    }
+
+    /**
+     * Returns the row at the index, or null while its page is still loading.
+     */
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int page = index / pageSize;
+        List<T> rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            // The loader may have completed right away, for instance when its rows were already at hand
+            rows = pages.get(page);
+            if (rows == null) {
+                return null;
+            }
+        }
+        int offset = index - page * pageSize;
+        // Rows added since the size was counted can make a page shorter than expected
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The amount of pages currently kept in memory.
+     */
+    public int getLoadedPageCount() {
+        return pages.size();
+    }
+
+    private void requestPage(int page) {
+        if (!loading.add(page)) {
+            return;
+        }
+        Map.Entry<Integer, PageKey> start = pageStarts.floorEntry(page);
+        int skip = (page - start.getKey()) * pageSize;
+
+        loader.load(start.getValue(), skip, pageSize).whenCompleteAsync((rows, error) -> {
+            loading.remove(page);
+            if (error != null) {
+                error.printStackTrace();
+                return;
+            }
+            pages.put(page, rows);
+            if (rows.size() == pageSize) {
+                pageStarts.put(page + 1, keyOf.apply(rows.get(rows.size() - 1)));
+            }
+            fireRowsLoaded(page);
+        }, uiExecutor);
+    }
+
+    /**
+     * Tells the table that the rows of a page changed from null to their values.
+     */
+    private void fireRowsLoaded(int page) {
+        int from = page * pageSize;
+        int to = Math.min(from + pageSize, size);
+        beginChange();
+        for (int index = from; index < to; index++) {
+            nextSet(index, null);
+        }
+        endChange();
+    }
+}
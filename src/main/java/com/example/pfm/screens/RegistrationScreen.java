@@ -91,14 +91,16 @@ public class RegistrationScreen {
      * @param password The entered password.
      */
     private void handleRegister(String username, String password) {
-        String result = userService.registerUser(username, password);
-        if (result == null) {
-            // Registration successful
-            showSuccessDialog("Registration successful!");
-        } else {
-            // Registration failed, show an error message
-            showErrorDialog(result);
-        }
+        // Hashing the password takes a while, so it runs in the background
+        app.runInBackground(() -> userService.registerUser(username, password), result -> {
+            if (result == null) {
+                // Registration successful
+                showSuccessDialog("Registration successful!");
+            } else {
+                // Registration failed, show an error message
+                showErrorDialog(result);
+            }
+        });
     }
 
     /**
@@ -1,8 +1,15 @@
 package com.example.pfm.screens;
 
 import com.example.pfm.PFMApp;
-import com.example.pfm.dao.ExpenseDAO;
-import com.example.pfm.dao.IncomeDAO;
+import com.example.pfm.model.Category;
+import com.example.pfm.model.CategoryTotals;
+import com.example.pfm.model.DataChangeEvent;
+import com.example.pfm.model.Money;
+import com.example.pfm.model.Report;
+import com.example.pfm.service.AsyncDataService;
+import com.example.pfm.service.ReportEngine;
+import com.example.pfm.service.ReportExportService;
+import com.example.pfm.service.SessionContext;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -11,61 +18,155 @@ import javafx.print.*;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.transform.Scale;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.TextStyle;
-import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * ReportScreen class is responsible for generating and displaying financial reports within the Personal
  * Finance Manager (PFM) application. It includes a summary of total income, expenses, net savings, and
- * a detailed breakdown of spending by category.
+ * a detailed breakdown of spending by category, for the current month or a longer period, compared with
+ * the same period a year earlier.
  */
 public class ReportScreen implements DataRefresh {
+
+    /**
+     * The periods a report can cover, all ending with the current month.
+     */
+    private enum Period {
+        MONTH("This Month"),
+        QUARTER("This Quarter"),
+        TRAILING_12_MONTHS("The Last 12 Months"),
+        YEAR("This Year");
+
+        private final String label;
+
+        Period(String label) {
+            this.label = label;
+        }
+
+        YearMonth firstMonth(YearMonth now) {
+            return switch (this) {
+                case MONTH -> now;
+                case QUARTER -> now.withMonth((now.getMonthValue() - 1) / 3 * 3 + 1);
+                case TRAILING_12_MONTHS -> now.minusMonths(11);
+                case YEAR -> now.withMonth(1);
+            };
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
     private PFMApp app;
     private VBox view;
+    private Label reportTitle;
+    private ComboBox<Period> periodPicker;
+    private Label comparisonLabel;
     private Label totalIncomeLabel;
     private Label totalExpenseLabel;
     private Label netSavingsLabel;
     private Label financialAdviceText;
-    private ObservableList<String> spendingBreakdown;
-    private ListView<String> listView;
-
-    private IncomeDAO incomeDAO;
-    private ExpenseDAO expenseDAO;
+    private ObservableList<Category> spendingBreakdown;
+    private ListView<Category> listView;
+    private CategoryTotals categoryTotals = CategoryTotals.EMPTY; // The totals the list entries are shown with
+    private final Image[] categoryIcons = new Image[Category.count()]; // Loaded on first use, indexed by category id
+
+    private AsyncDataService dataService;
+    private ReportEngine reportEngine;
+    private ReportExportService exportService;
     private Stage primaryStage;
+    private int userId;
 
     /**
      * Constructs a ReportScreen with necessary dependencies for generating and displaying reports.
      *
      * @param app Reference to the main application instance.
-     * @param incomeDAO Data access object for income-related operations.
-     * @param expenseDAO Data access object for expense-related operations.
+     * @param session The session of the logged-in user, with the services that load, build and export the report.
      * @param primaryStage The primary stage of the application.
      */
-    public ReportScreen(PFMApp app, IncomeDAO incomeDAO, ExpenseDAO expenseDAO, Stage primaryStage) {
+    public ReportScreen(PFMApp app, SessionContext session, Stage primaryStage) {
         this.app = app;
         app.registerListener(this); // Registering this screen to listen for data changes
-        this.incomeDAO = incomeDAO;
-        this.expenseDAO = expenseDAO;
+        this.dataService = session.getDataService();
+        this.reportEngine = session.getReportEngine();
+        this.exportService = session.getExportService();
+        this.userId = session.getUserId();
         this.primaryStage = primaryStage;
         createView();  // Initializes the UI components for the report screen
         setupSummarySection();  // Sets up the summary section displaying income, expenses, and net savings
         setupCategorySection(); // Sets up the section displaying spending breakdown by category
         addPrintButton(); // Adds a print button to enable printing the report
+        addExportSection(); // Adds the export of any date range to a CSV or JSON Lines file
+        refreshData(); // Loads the report data in the background
 
         view.getStylesheets().add(getClass().getResource("/com/example/pfm/stylesheets/report.css").toExternalForm());
     }
 
+    /**
+     * The report covers the incomes and expenses of the chosen period and of the same period a year earlier.
+     */
+    @Override
+    public boolean isAffectedBy(DataChangeEvent event) {
+        YearMonth now = YearMonth.now();
+        return (event.concerns(userId, DataChangeEvent.Type.INCOME) || event.concerns(userId, DataChangeEvent.Type.EXPENSE))
+                && event.covers(periodPicker.getValue().firstMonth(now).minusYears(1), now);
+    }
+
     @Override
     public void refreshData() {
-        updateSummaryValues(); // Updates the summary values whenever data changes
-        updateCategorySpending(); // Updates the category-wise spending breakdown
+        Period period = periodPicker.getValue();
+        YearMonth now = YearMonth.now();
+        // Both years are fetched in one go and the screen is rendered from the resulting report
+        dataService.deliver(this, "report",
+                dataService.supply(() -> reportEngine.yearOverYear(userId, period.firstMonth(now), now)),
+                comparison -> showReport(period, comparison), error -> {
+                    reportTitle.setText("THE REPORT COULD NOT BE LOADED");
+                    comparisonLabel.setText("Please try again later.");
+                });
+    }
+
+    private void showReport(Period period, ReportEngine.Comparison comparison) {
+        Report report = comparison.current();
+        reportTitle.setText(getReportTitle(period, report));
+        updateSummaryValues(period, report.getIncome(), report.getExpenses());
+        updateCategorySpending(report.getExpensesPerCategory());
+        comparisonLabel.setText("Compared To A Year Earlier: income " + formatChange(comparison.incomeChangePercent())
+                + ", expenses " + formatChange(comparison.expenseChangePercent()));
+    }
+
+    private static String getReportTitle(Period period, Report report) {
+        YearMonth first = report.getFirstMonth();
+        return switch (period) {
+            case MONTH -> "MONTHLY REPORT " + monthName(first) + " " + first.getYear();
+            case QUARTER -> "QUARTERLY REPORT Q" + ((first.getMonthValue() - 1) / 3 + 1) + " " + first.getYear();
+            case TRAILING_12_MONTHS -> "REPORT " + monthName(first) + " " + first.getYear() + " - "
+                    + monthName(report.getLastMonth()) + " " + report.getLastMonth().getYear();
+            case YEAR -> "YEARLY REPORT " + first.getYear();
+        };
+    }
+
+    private static String monthName(YearMonth month) {
+        return month.getMonth().getDisplayName(TextStyle.FULL, Locale.getDefault()).toUpperCase();
+    }
+
+    private static String formatChange(Double percent) {
+        if (percent == null) {
+            return "n/a";
+        }
+        return String.format(Locale.ROOT, "%+.1f%%", percent);
     }
 
     private void createView() {
@@ -75,26 +176,22 @@ public class ReportScreen implements DataRefresh {
     }
 
     private void setupSummarySection() {
-        // Report Title Label
-        LocalDate currentDate = LocalDate.now();
-        String currentMonth = currentDate.getMonth().getDisplayName(TextStyle.FULL, Locale.getDefault()).toUpperCase();
-        int currentYear = currentDate.getYear();
-
-        Label reportTitle = new Label("MONTHLY REPORT " + currentMonth + " " + currentYear);
+        // Report Title Label, filled in with the period once the report is loaded
+        reportTitle = new Label("MONTHLY REPORT " + monthName(YearMonth.now()) + " " + YearMonth.now().getYear());
         reportTitle.setId("report-title");
 
-        // Income and expense label
-        int userId = app.getUserService().getCurrentUserId();
-        double totalIncome = incomeDAO.getTotalIncomeForCurrentMonth(userId);
-        double totalExpense = expenseDAO.getTotalExpenseForCurrentMonth(userId);
+        periodPicker = new ComboBox<>(FXCollections.observableArrayList(Period.values()));
+        periodPicker.setValue(Period.MONTH);
+        periodPicker.setOnAction(e -> refreshData());
 
+        // Income and expense label, filled in by updateSummaryValues once the totals are loaded
         Image incomeIcon = new Image(getClass().getResourceAsStream("/images/icons/income-euro.png"));
         ImageView incomeIconView = new ImageView(incomeIcon);
         incomeIconView.setFitWidth(22);
         incomeIconView.setPreserveRatio(true);
 
         totalIncomeLabel = new Label();
-        totalIncomeLabel.setText("Total Income For This Month: €" + totalIncome);
+        totalIncomeLabel.setText("Total Income For This Month: loading...");
         totalIncomeLabel.setGraphic(incomeIconView);
         totalIncomeLabel.setContentDisplay(ContentDisplay.LEFT);
 
@@ -104,68 +201,69 @@ public class ReportScreen implements DataRefresh {
         expenseIconView.setPreserveRatio(true);
 
         totalExpenseLabel = new Label();
-        totalExpenseLabel.setText("Total Expenses For This Month: €" + totalExpense);
+        totalExpenseLabel.setText("Total Expenses For This Month: loading...");
         totalExpenseLabel.setGraphic(expenseIconView);
         totalExpenseLabel.setContentDisplay(ContentDisplay.LEFT);
 
         //Net Savings Label
-        double netSavings = totalIncome - totalExpense;
-
         Image netSavingsIcon = new Image(getClass().getResourceAsStream("/images/icons/netsavings.png"));
         ImageView netSavingsIconView = new ImageView(netSavingsIcon);
         netSavingsIconView.setFitWidth(22);
         netSavingsIconView.setPreserveRatio(true);
 
         netSavingsLabel = new Label();
-        netSavingsLabel.setText("Total Net Savings For This Month: €" + netSavings);
+        netSavingsLabel.setText("Total Net Savings For This Month: loading...");
         netSavingsLabel.setGraphic(netSavingsIconView);
 
+        comparisonLabel = new Label();
+
         financialAdviceText = new Label();
-        financialAdviceText.setText(getFinancialAdvice(netSavings, totalIncome, totalExpense));
         financialAdviceText.setId("financial-advice-text");
         VBox.setMargin(financialAdviceText, new Insets(20, 0, 20, 0));
 
 
-        view.getChildren().addAll(reportTitle, totalIncomeLabel, totalExpenseLabel, netSavingsLabel, financialAdviceText);
+        view.getChildren().addAll(reportTitle, periodPicker, totalIncomeLabel, totalExpenseLabel, netSavingsLabel,
+                comparisonLabel, financialAdviceText);
     }
 
     /**
      * Generates a simple personalized financial advice based on the user's net savings, total income, and total expenses
-     * for the current month. It provides positive feedback for a positive net savings and suggests improvements
+     * for the period of the report. It provides positive feedback for a positive net savings and suggests improvements
      * for a negative net savings.
      *
      * @param netSavings The net savings calculated as the difference between total income and total expenses.
-     * @param totalIncome The total income for the current month.
-     * @param totalExpense The total expenses for the current month.
+     * @param totalIncome The total income for the period.
+     * @param totalExpense The total expenses for the period.
+     * @param period The period of the report.
      * @return A string containing tailored financial advice.
      */
-    private String getFinancialAdvice(double netSavings, double totalIncome, double totalExpense) {
-        if (totalIncome == 0 && totalExpense == 0) {
+    private String getFinancialAdvice(Money netSavings, Money totalIncome, Money totalExpense, Period period) {
+        if (totalIncome.isZero() && totalExpense.isZero()) {
             // No data available yet
             return ""; // Return an empty string or any message indicating no data is available
         }
-        if (netSavings > 0) {
-            return "Great Job! Your savings are on track for this month. Keep up the good work!";
+        if (netSavings.isPositive()) {
+            return "Great Job! Your savings are on track for " + period.toString().toLowerCase() + ". Keep up the good work!";
         } else {
-            return "Looks like you've spent more than your income this month. Try to save more next month.";
+            return "Looks like you've spent more than your income for " + period.toString().toLowerCase() + ". Try to save more next month.";
         }
     }
 
     /**
      * Updates the summary section with the latest financial data including total income, total expenses,
      * and net savings. It also refreshes the financial advice based on the updated figures.
+     *
+     * @param period The period of the report.
+     * @param totalIncome The total income for the period.
+     * @param totalExpense The total expenses for the period.
      */
-    private void updateSummaryValues() {
-        // Update values
-        int userId = app.getUserService().getCurrentUserId();
-        double totalIncome = incomeDAO.getTotalIncomeForCurrentMonth(userId);
-        double totalExpense = expenseDAO.getTotalExpenseForCurrentMonth(userId);
-        double netSavings = totalIncome - totalExpense;
-
-        totalIncomeLabel.setText("Total Income For This Month: €" + totalIncome);
-        totalExpenseLabel.setText("Total Expenses For This Month: €" + totalExpense);
-        netSavingsLabel.setText("Total Net Savings For This Month: €" + netSavings);
-        financialAdviceText.setText(getFinancialAdvice(netSavings, totalIncome, totalExpense));
+    private void updateSummaryValues(Period period, Money totalIncome, Money totalExpense) {
+        Money netSavings = totalIncome.minus(totalExpense);
+
+        totalIncomeLabel.setText("Total Income For " + period + ": €" + totalIncome);
+        totalExpenseLabel.setText("Total Expenses For " + period + ": €" + totalExpense);
+        netSavingsLabel.setText("Total Net Savings For " + period + ": €" + netSavings);
+        financialAdviceText.setText(getFinancialAdvice(netSavings, totalIncome, totalExpense, period));
     }
 
     /**
@@ -178,11 +276,11 @@ public class ReportScreen implements DataRefresh {
         categorySpendLabel.setId("category-label");
         VBox.setMargin(categorySpendLabel, new Insets(20, 0, 20,0));
 
-        spendingBreakdown = FXCollections.observableArrayList(getCategorySpending());
+        spendingBreakdown = FXCollections.observableArrayList();
         listView = new ListView<>(spendingBreakdown);
 
         // Custom cell factory to display each spending category with an associated icon.
-        listView.setCellFactory(lv -> new ListCell<String>() {
+        listView.setCellFactory(lv -> new ListCell<Category>() {
             private final ImageView imageView = new ImageView();
 
             {
@@ -191,16 +289,14 @@ public class ReportScreen implements DataRefresh {
             }
 
             @Override
-            protected void updateItem(String item, boolean empty) {
+            protected void updateItem(Category item, boolean empty) {
                 super.updateItem(item, empty);
                 if (empty || item == null) {
                     setText(null);
                     setGraphic(null);
                 } else {
-                    setText(item);
-                    String categoryName = item.split(":")[0].trim(); // This is to extract the category name from the amount
-                    Image icon = getCategoryIcon(categoryName);
-                    imageView.setImage(icon);
+                    setText(item + ": €" + categoryTotals.get(item));
+                    imageView.setImage(getCategoryIcon(item));
                     setGraphic(imageView);
                 }
             }
@@ -211,18 +307,32 @@ public class ReportScreen implements DataRefresh {
 
     /**
      * Refreshes the category-wise spending breakdown in the ListView to reflect the most current data.
+     *
+     * The categories are listed with the largest spending first, categories without spending are left out.
+     *
+     * @param spendingByCategory The total amount spent per category.
      */
-    private void updateCategorySpending() {
-        spendingBreakdown.setAll(getCategorySpending());
+    private void updateCategorySpending(CategoryTotals spendingByCategory) {
+        categoryTotals = spendingByCategory;
+        spendingBreakdown.setAll(spendingByCategory.byAmountDescending());
     }
 
     /**
-     * Retrieves an icon corresponding to a given spending category.
+     * Retrieves an icon corresponding to a given spending category. Each icon is only loaded once.
      *
-     * @param category The name of the spending category.
+     * @param category The spending category.
      * @return An Image object representing the icon associated with the specified category.
      */
-    private Image getCategoryIcon(String category) {
+    private Image getCategoryIcon(Category category) {
+        Image icon = categoryIcons[category.getId()];
+        if (icon == null) {
+            icon = loadCategoryIcon(category.getName());
+            categoryIcons[category.getId()] = icon;
+        }
+        return icon;
+    }
+
+    private Image loadCategoryIcon(String category) {
         String iconPath = "";
         switch (category) {
             case "Groceries":
@@ -253,21 +363,6 @@ public class ReportScreen implements DataRefresh {
         return new Image(getClass().getResourceAsStream(iconPath));
     }
 
-    /**
-     * Generates a list of strings representing the spending breakdown by category. Each string includes the category
-     * name and the total amount spent in that category for the current month.
-     *
-     * @return A list of strings each representing a category and its total spending.
-     */
-    private List<String> getCategorySpending() {
-        Map<String, Double> spendingByCategory = expenseDAO.getTotalSpentPerCategory(app.getUserService().getCurrentUserId());
-
-        return spendingByCategory.entrySet().stream()
-                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-                .map(entry -> String.format("%s: €%.2f", entry.getKey(), entry.getValue()))
-                .collect(Collectors.toList());
-    }
-
     private void addPrintButton() {
         Button printButton = new Button("Print");
         printButton.setOnAction(e -> {
@@ -297,6 +392,89 @@ public class ReportScreen implements DataRefresh {
         view.getChildren().add(printButton);
     }
 
+    /**
+     * Adds the export controls: the range to export and a button that asks for the file. The file type chosen in the
+     * dialog decides the format. The export runs in the background, since it may cover years of entries.
+     */
+    private void addExportSection() {
+        DatePicker fromPicker = new DatePicker(LocalDate.now().withDayOfYear(1));
+        DatePicker toPicker = new DatePicker(LocalDate.now());
+        Button exportButton = new Button("Export");
+        Label exportStatus = new Label();
+
+        FileChooser.ExtensionFilter csvFilter = new FileChooser.ExtensionFilter("CSV", "*.csv");
+        FileChooser.ExtensionFilter jsonLinesFilter = new FileChooser.ExtensionFilter("JSON Lines", "*.jsonl");
+
+        exportButton.setOnAction(e -> {
+            LocalDate from = fromPicker.getValue();
+            LocalDate to = toPicker.getValue();
+            if (from == null || to == null || to.isBefore(from)) {
+                exportStatus.setText("Choose a valid date range.");
+                return;
+            }
+            FileChooser fileChooser = new FileChooser();
+            fileChooser.getExtensionFilters().addAll(csvFilter, jsonLinesFilter);
+            fileChooser.setInitialFileName("pfm-report-" + from + "-" + to);
+            File file = fileChooser.showSaveDialog(primaryStage);
+            if (file == null) {
+                return;
+            }
+            ReportExportService.Format format = fileChooser.getSelectedExtensionFilter() == jsonLinesFilter
+                    ? ReportExportService.Format.JSON_LINES : ReportExportService.Format.CSV;
+
+            exportButton.setDisable(true);
+            exportStatus.setText("Exporting...");
+            dataService.whenDone(dataService.supply(() -> {
+                try {
+                    return exportService.export(userId, from, to.plusDays(1), format, file.toPath()); // The end date is inclusive on screen
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }).handle((result, error) -> {
+                if (error != null) {
+                    error.printStackTrace();
+                    deleteIncompleteExport(file);
+                    return null;
+                }
+                return result;
+            }), result -> {
+                exportButton.setDisable(false);
+                if (result == null) {
+                    exportStatus.setText("The export failed.");
+                    showAlert("Export Error", "Could not export the report to " + file.getName() + ".");
+                } else {
+                    exportStatus.setText("Exported " + result.expenses() + " expenses and " + result.incomes() + " incomes.");
+                }
+            });
+        });
+
+        HBox exportBox = new HBox(10, new Label("From"), fromPicker, new Label("To"), toPicker, exportButton);
+        exportBox.setAlignment(Pos.CENTER);
+        VBox.setMargin(exportBox, new Insets(20, 0, 0, 0));
+        view.getChildren().addAll(exportBox, exportStatus);
+    }
+
+    /**
+     * Deletes what a failed export left of its file, so a partial report isn't mistaken for a complete one.
+     */
+    private static void deleteIncompleteExport(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void showAlert(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+
+        alert.getDialogPane().getStylesheets().add(getClass().getResource("/com/example/pfm/stylesheets/report.css").toExternalForm());
+
+        alert.showAndWait();
+    }
 
     public VBox getView() {
         return view;
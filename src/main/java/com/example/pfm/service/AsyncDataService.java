@@ -0,0 +1,268 @@
+package com.example.pfm.service;
+
+import com.example.pfm.dao.BudgetDAO;
+import com.example.pfm.dao.ExpenseDAO;
+import com.example.pfm.dao.IncomeDAO;
+import com.example.pfm.model.Budget;
+import com.example.pfm.model.BudgetSnapshot;
+import com.example.pfm.model.CategoryTotals;
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Income;
+import com.example.pfm.model.Money;
+import com.example.pfm.model.PageKey;
+import javafx.application.Platform;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs the database work of the screens off the JavaFX Application Thread.
+ * Every DAO call is executed on a virtual thread and returns a CompletableFuture. Screens hand the future
+ * to {@link #deliver} to get the result back on the JavaFX thread, or the error if the request failed, so the
+ * screen can show a message instead of waiting forever. A newer request for the same screen and purpose supersedes
+ * the older one, whose result is then dropped.
+ */
+public class AsyncDataService {
+    private final IncomeDAO incomeDAO;
+    private final ExpenseDAO expenseDAO;
+    private final BudgetDAO budgetDAO;
+    private final ExecutorService executor;
+    private final Executor uiExecutor;
+
+    // The most recent request per screen and purpose.
+    private final Map<RequestKey, CompletableFuture<?>> latestRequests = new ConcurrentHashMap<>();
+
+    private record RequestKey(Object owner, String request) {
+    }
+
+    /**
+     * Constructs an AsyncDataService that delivers results on the JavaFX Application Thread.
+     *
+     * @param incomeDAO Data access object for income operations.
+     * @param expenseDAO Data access object for expense operations.
+     * @param budgetDAO Data access object for budget operations.
+     */
+    public AsyncDataService(IncomeDAO incomeDAO, ExpenseDAO expenseDAO, BudgetDAO budgetDAO) {
+        this(incomeDAO, expenseDAO, budgetDAO, Platform::runLater);
+    }
+
+    /**
+     * Constructs an AsyncDataService that delivers results with the given executor.
+     *
+     * @param incomeDAO Data access object for income operations.
+     * @param expenseDAO Data access object for expense operations.
+     * @param budgetDAO Data access object for budget operations.
+     * @param uiExecutor Executor that runs the result callbacks, normally Platform::runLater.
+     */
+    public AsyncDataService(IncomeDAO incomeDAO, ExpenseDAO expenseDAO, BudgetDAO budgetDAO, Executor uiExecutor) {
+        this.incomeDAO = incomeDAO;
+        this.expenseDAO = expenseDAO;
+        this.budgetDAO = budgetDAO;
+        this.uiExecutor = uiExecutor;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Runs a query on a virtual thread.
+     *
+     * @param query The database work to run.
+     * @return A future that completes with the result of the query.
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(query, executor);
+    }
+
+    /**
+     * Delivers the result of a request to a screen on the JavaFX thread. If the same screen starts a newer
+     * request with the same name before this one finishes, this one is cancelled and its result is dropped.
+     * A failed request is only logged.
+     *
+     * @param owner The screen that made the request.
+     * @param request The purpose of the request within the screen, e.g. "table" or "chart".
+     * @param future The running request.
+     * @param onResult Called on the JavaFX thread with the result, unless the request was superseded.
+     */
+    public <T> void deliver(Object owner, String request, CompletableFuture<T> future, Consumer<T> onResult) {
+        deliver(owner, request, future, onResult, error -> { });
+    }
+
+    /**
+     * Delivers the result of a request to a screen on the JavaFX thread, or the error if it failed. If the same
+     * screen starts a newer request with the same name before this one finishes, this one is cancelled and neither
+     * its result nor its error is delivered.
+     *
+     * @param owner The screen that made the request.
+     * @param request The purpose of the request within the screen, e.g. "table" or "chart".
+     * @param future The running request.
+     * @param onResult Called on the JavaFX thread with the result, unless the request was superseded.
+     * @param onError Called on the JavaFX thread with the cause if the request failed, unless it was superseded.
+     */
+    public <T> void deliver(Object owner, String request, CompletableFuture<T> future, Consumer<T> onResult,
+                            Consumer<Throwable> onError) {
+        RequestKey key = new RequestKey(owner, request);
+        CompletableFuture<?> previous = latestRequests.put(key, future);
+        if (previous != null && previous != future) {
+            previous.cancel(false);
+        }
+
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                return;
+            }
+            uiExecutor.execute(() -> {
+                // Checked on the UI thread, so a newer request can't slip in between the check and the update
+                if (!latestRequests.remove(key, future)) {
+                    return;
+                }
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    cause.printStackTrace();
+                    onError.accept(cause);
+                } else {
+                    onResult.accept(result);
+                }
+            });
+        });
+    }
+
+    /**
+     * Delivers the result of a request on the JavaFX thread. Unlike {@link #deliver}, the request is never superseded,
+     * which is what writes need.
+     *
+     * @param future The running request.
+     * @param onResult Called on the JavaFX thread with the result.
+     */
+    public <T> void whenDone(CompletableFuture<T> future, Consumer<T> onResult) {
+        future.whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+            } else {
+                onResult.accept(result);
+            }
+        }, uiExecutor);
+    }
+
+    /**
+     * @return The executor that runs the result callbacks, for screens that apply results themselves.
+     */
+    public Executor getUiExecutor() {
+        return uiExecutor;
+    }
+
+    /**
+     * Cancels all running requests of a screen, e.g. when it is no longer shown.
+     *
+     * @param owner The screen whose requests are cancelled.
+     */
+    public void cancelAll(Object owner) {
+        latestRequests.entrySet().removeIf(entry -> {
+            if (Objects.equals(entry.getKey().owner(), owner)) {
+                entry.getValue().cancel(false);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Stops the executor. Running queries are allowed to finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // Expenses
+
+    public CompletableFuture<Integer> countExpensesByUserId(int userId) {
+        return supply(() -> expenseDAO.countExpensesByUserId(userId));
+    }
+
+    public CompletableFuture<List<Expense>> getExpensesPage(int userId, PageKey after, int skip, int limit) {
+        return supply(() -> expenseDAO.getExpensesPage(userId, after, skip, limit));
+    }
+
+    public CompletableFuture<Money> getTotalExpenseForCurrentMonth(int userId) {
+        return supply(() -> expenseDAO.getTotalExpenseForCurrentMonth(userId));
+    }
+
+    public CompletableFuture<long[]> getMonthlyExpenseTotalsForYear(int userId, int year) {
+        return supply(() -> expenseDAO.getMonthlyTotalsForYear(userId, year));
+    }
+
+    public CompletableFuture<CategoryTotals> getTotalSpentPerCategory(int userId) {
+        return supply(() -> expenseDAO.getTotalSpentPerCategory(userId));
+    }
+
+    public CompletableFuture<Boolean> insertExpense(Expense expense) {
+        return supply(() -> expenseDAO.insertExpense(expense));
+    }
+
+    public CompletableFuture<Boolean> updateExpense(Expense expense) {
+        return supply(() -> expenseDAO.updateExpense(expense));
+    }
+
+    public CompletableFuture<Boolean> deleteExpense(int id, int userId) {
+        return supply(() -> expenseDAO.deleteExpense(id, userId));
+    }
+
+    // Incomes
+
+    public CompletableFuture<Integer> countIncomesByUserId(int userId) {
+        return supply(() -> incomeDAO.countIncomesByUserId(userId));
+    }
+
+    public CompletableFuture<List<Income>> getIncomesPage(int userId, PageKey after, int skip, int limit) {
+        return supply(() -> incomeDAO.getIncomesPage(userId, after, skip, limit));
+    }
+
+    public CompletableFuture<Money> getTotalIncomeForCurrentMonth(int userId) {
+        return supply(() -> incomeDAO.getTotalIncomeForCurrentMonth(userId));
+    }
+
+    public CompletableFuture<long[]> getMonthlyIncomeTotalsForYear(int userId, int year) {
+        return supply(() -> incomeDAO.getMonthlyTotalsForYear(userId, year));
+    }
+
+    public CompletableFuture<Boolean> insertIncome(Income income) {
+        return supply(() -> incomeDAO.insertIncome(income));
+    }
+
+    public CompletableFuture<Boolean> updateIncome(Income income) {
+        return supply(() -> incomeDAO.updateIncome(income));
+    }
+
+    public CompletableFuture<Boolean> deleteIncome(int id, int userId) {
+        return supply(() -> incomeDAO.deleteIncome(id, userId));
+    }
+
+    // Budgets
+
+    public CompletableFuture<List<Budget>> getAllBudgetsByUserId(int userId) {
+        return supply(() -> budgetDAO.getAllBudgetsByUserId(userId));
+    }
+
+    public CompletableFuture<BudgetSnapshot> getBudgetSnapshot(int userId) {
+        return supply(() -> budgetDAO.getBudgetSnapshot(userId));
+    }
+
+    public CompletableFuture<Boolean> insertBudget(Budget budget) {
+        return supply(() -> budgetDAO.insertBudget(budget));
+    }
+
+    public CompletableFuture<Boolean> updateBudget(Budget budget) {
+        return supply(() -> budgetDAO.updateBudget(budget));
+    }
+
+    public CompletableFuture<Boolean> deleteBudget(int id, int userId) {
+        return supply(() -> budgetDAO.deleteBudget(id, userId));
+    }
+}
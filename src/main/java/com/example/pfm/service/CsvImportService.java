@@ -0,0 +1,267 @@
+package com.example.pfm.service;
+
+import com.example.pfm.config.CategoryConfig;
+import com.example.pfm.dao.ExpenseDAO;
+import com.example.pfm.dao.IncomeDAO;
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Income;
+import com.example.pfm.model.Money;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Imports expenses and incomes from CSV files, for example an export of the bank history.
+ * Every line has the form {@code date,amount,category} for expenses or {@code date,amount,source} for incomes,
+ * with the date as yyyy-MM-dd. An optional header line starting with "date" is skipped.
+ * The file is read line by line while the rows are written in batches, so memory use does not depend on the file size.
+ * Rows that fail validation are skipped and reported in the result.
+ */
+public class CsvImportService {
+    // Only the first errors are kept, so a file full of invalid rows can't fill the memory.
+    static final int MAX_REPORTED_ERRORS = 50;
+
+    private final ExpenseDAO expenseDAO;
+    private final IncomeDAO incomeDAO;
+
+    /**
+     * The outcome of an import.
+     *
+     * @param imported The amount of rows written to the database.
+     * @param skipped The amount of rows that failed validation.
+     * @param errors A description of the first {@value #MAX_REPORTED_ERRORS} skipped rows.
+     */
+    public record ImportResult(int imported, int skipped, List<String> errors) {
+    }
+
+    /**
+     * Constructs a CsvImportService that writes with the given DAOs.
+     *
+     * @param expenseDAO Data access object for expense operations.
+     * @param incomeDAO Data access object for income operations.
+     */
+    public CsvImportService(ExpenseDAO expenseDAO, IncomeDAO incomeDAO) {
+        this.expenseDAO = expenseDAO;
+        this.incomeDAO = incomeDAO;
+    }
+
+    /**
+     * Imports the expenses of a CSV file for a user.
+     *
+     * @param userId The user the expenses belong to.
+     * @param file The CSV file to read.
+     * @return The outcome of the import.
+     * @throws IOException If the file can't be read.
+     */
+    public ImportResult importExpenses(int userId, Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importExpenses(userId, reader);
+        }
+    }
+
+    /**
+     * Imports the expenses read from a CSV source for a user. The category must be one of {@link CategoryConfig#CATEGORIES}.
+     *
+     * @param userId The user the expenses belong to.
+     * @param reader The CSV source, not closed by this method.
+     * @return The outcome of the import.
+     * @throws IOException If the source can't be read.
+     */
+    public ImportResult importExpenses(int userId, Reader reader) throws IOException {
+        RowIterator<Expense> rows = new RowIterator<>(reader, (fields) -> {
+            Row row = parseRow(fields, CategoryConfig.CATEGORIES, "category");
+            return new Expense(userId, row.amount(), row.label(), row.date());
+        });
+        int imported = runImport(() -> expenseDAO.insertExpenses(rows));
+        return rows.result(imported);
+    }
+
+    /**
+     * Imports the incomes of a CSV file for a user.
+     *
+     * @param userId The user the incomes belong to.
+     * @param file The CSV file to read.
+     * @return The outcome of the import.
+     * @throws IOException If the file can't be read.
+     */
+    public ImportResult importIncomes(int userId, Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importIncomes(userId, reader);
+        }
+    }
+
+    /**
+     * Imports the incomes read from a CSV source for a user. The source must be one of {@link CategoryConfig#INCOME_SOURCES}.
+     *
+     * @param userId The user the incomes belong to.
+     * @param reader The CSV source, not closed by this method.
+     * @return The outcome of the import.
+     * @throws IOException If the source can't be read.
+     */
+    public ImportResult importIncomes(int userId, Reader reader) throws IOException {
+        RowIterator<Income> rows = new RowIterator<>(reader, (fields) -> {
+            Row row = parseRow(fields, CategoryConfig.INCOME_SOURCES, "source");
+            return new Income(userId, row.amount(), row.label(), row.date());
+        });
+        int imported = runImport(() -> incomeDAO.insertIncomes(rows));
+        return rows.result(imported);
+    }
+
+    // Helper methods
+    private interface Insert {
+        int run();
+    }
+
+    private interface RowParser<T> {
+        T parse(List<String> fields);
+    }
+
+    private record Row(LocalDate date, Money amount, String label) {
+    }
+
+    /**
+     * Runs the batch insert, turning a read error from inside the iterator back into an IOException.
+     */
+    private static int runImport(Insert insert) throws IOException {
+        try {
+            return insert.run();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Validates the fields of a line the same way the entry screens validate their input.
+     *
+     * @throws IllegalArgumentException If the line is not a valid row.
+     */
+    private static Row parseRow(List<String> fields, List<String> labels, String labelName) {
+        if (fields.size() != 3) {
+            throw new IllegalArgumentException("expected 3 fields but found " + fields.size());
+        }
+        LocalDate date;
+        try {
+            date = LocalDate.parse(fields.get(0));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid date '" + fields.get(0) + "'");
+        }
+        Money amount;
+        try {
+            amount = Money.parse(fields.get(1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid amount '" + fields.get(1) + "'");
+        }
+        if (!amount.isPositive()) {
+            throw new IllegalArgumentException("amount must be a positive number");
+        }
+        if (amount.compareTo(Money.MAX_AMOUNT) > 0) {
+            throw new IllegalArgumentException("amount must be at most " + Money.MAX_AMOUNT);
+        }
+        String label = fields.get(2);
+        if (!labels.contains(label)) {
+            throw new IllegalArgumentException("unknown " + labelName + " '" + label + "'");
+        }
+        return new Row(date, amount, label);
+    }
+
+    /**
+     * Splits a CSV line into trimmed fields. Fields may be quoted, with "" for a quote inside a quoted field.
+     */
+    static List<String> splitLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    /**
+     * Reads the lines of a CSV source one at a time and produces the valid rows, skipping and recording invalid ones.
+     */
+    private static class RowIterator<T> implements Iterator<T> {
+        private final BufferedReader reader;
+        private final RowParser<T> parser;
+        private final List<String> errors = new ArrayList<>();
+        private int lineNumber;
+        private int skipped;
+        private T next;
+
+        RowIterator(Reader reader, RowParser<T> parser) {
+            this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+            this.parser = parser;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                String line;
+                try {
+                    line = reader.readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (line == null) {
+                    return false;
+                }
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && line.trim().toLowerCase().startsWith("date"))) {
+                    continue;
+                }
+                try {
+                    next = parser.parse(splitLine(line));
+                } catch (IllegalArgumentException e) {
+                    skipped++;
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add("Line " + lineNumber + ": " + e.getMessage());
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T row = next;
+            next = null;
+            return row;
+        }
+
+        ImportResult result(int imported) {
+            return new ImportResult(imported, skipped, List.copyOf(errors));
+        }
+    }
+}
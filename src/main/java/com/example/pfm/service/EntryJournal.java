@@ -0,0 +1,268 @@
+package com.example.pfm.service;
+
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Income;
+import com.example.pfm.model.Money;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Append-only file of the entries that still have to be written to the database, so an entry survives a crash or
+ * a lost connection between saving it on screen and the background writer inserting it.
+ * Every line is one record: an entry that was saved, or the key of an entry that was applied or given up on.
+ * Appending doesn't wait for the disk; {@link #sync()} forces everything appended so far in one go, so many entries
+ * share one fsync. When the journal is opened, the entries without a later record are returned, and the file is
+ * rewritten with only those. Entries that are given up on are copied to a dead-letter file next to the journal
+ * first, together with the reason, so they can still be entered again by hand.
+ */
+class EntryJournal implements AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(EntryJournal.class.getName());
+
+    private static final String SAVED = "S";
+    private static final String APPLIED = "A";
+    private static final String DROPPED = "D";
+    private static final String DEAD_LETTER_SUFFIX = ".refused";
+
+    /**
+     * The kinds of entries that are written behind.
+     */
+    enum Kind { EXPENSE, INCOME }
+
+    /**
+     * An entry that was saved on screen.
+     *
+     * @param key The idempotency key of the entry, which the database records with the row.
+     * @param label The category of an expense or the source of an income.
+     */
+    record Entry(String key, Kind kind, int userId, Money amount, LocalDate date, String label) {
+
+        static Entry of(String key, Expense expense) {
+            return new Entry(key, Kind.EXPENSE, expense.getUserId(), expense.getAmount(), expense.getDate(), expense.getCategory());
+        }
+
+        static Entry of(String key, Income income) {
+            return new Entry(key, Kind.INCOME, income.getUserId(), income.getAmount(), income.getDate(), income.getSource());
+        }
+
+        Expense toExpense() {
+            return new Expense(userId, amount, label, date);
+        }
+
+        Income toIncome() {
+            return new Income(userId, amount, label, date);
+        }
+
+        /**
+         * @return The entry as shown to the user, like "Expense of 12.50 for Groceries on 2024-03-15".
+         */
+        String describe() {
+            return switch (kind) {
+                case EXPENSE -> "Expense of " + amount + " for " + label + " on " + date;
+                case INCOME -> "Income of " + amount + " from " + label + " on " + date;
+            };
+        }
+    }
+
+    private final Path path;
+    private final Path deadLetterPath;
+    private final FileChannel channel;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final List<Entry> recovered;
+
+    /**
+     * Opens a journal, creating it if it doesn't exist.
+     *
+     * @param path The file of the journal.
+     * @throws IOException If the journal can't be read or rewritten.
+     */
+    EntryJournal(Path path) throws IOException {
+        this.path = path;
+        this.deadLetterPath = path.resolveSibling(path.getFileName() + DEAD_LETTER_SUFFIX);
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        this.recovered = List.copyOf(replay(path));
+        rewrite(recovered);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @return The entries that were saved but not applied when the journal was opened, in the order they were saved.
+     */
+    List<Entry> getRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Appends a saved entry. It is only durable after the next {@link #sync()}.
+     */
+    void append(Entry entry) throws IOException {
+        write(savedRecord(entry));
+    }
+
+    /**
+     * Records that entries are in the database. Not forced to disk: if the record is lost, the entries are written
+     * again and skipped by their keys.
+     */
+    void markApplied(Collection<Entry> entries) throws IOException {
+        writeKeys(APPLIED, entries);
+    }
+
+    /**
+     * Records that an entry was given up on, because the database refuses it. The entry and the reason are appended
+     * to the dead-letter file and forced to disk before the entry is marked, so it can't get lost in between.
+     *
+     * @param reason Why the database refuses the entry.
+     */
+    void markDropped(Entry entry, String reason) throws IOException {
+        String saved = savedRecord(entry);
+        String record = saved.substring(0, saved.length() - 1) + "\t" + escape(reason) + "\n";
+        try (FileChannel out = FileChannel.open(deadLetterPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(false);
+        }
+        writeKeys(DROPPED, List.of(entry));
+    }
+
+    /**
+     * @return The file with the entries that were given up on, in the format of the journal with the reason added.
+     */
+    Path getDeadLetterPath() {
+        return deadLetterPath;
+    }
+
+    /**
+     * Forces everything appended since the previous call to disk. Does nothing when nothing was appended.
+     */
+    void sync() throws IOException {
+        if (dirty.getAndSet(false)) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Empties the journal. Only called when every saved entry has been applied or dropped.
+     */
+    synchronized void clear() throws IOException {
+        channel.truncate(0);
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void writeKeys(String type, Collection<Entry> entries) throws IOException {
+        StringBuilder records = new StringBuilder();
+        for (Entry entry : entries) {
+            records.append(type).append('\t').append(entry.key()).append('\n');
+        }
+        write(records.toString());
+    }
+
+    // One write per record, so records of different threads never interleave
+    private synchronized void write(String records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        dirty.set(true);
+    }
+
+    /**
+     * Reads the saved entries without a later applied or dropped record. A line that can't be read, like the last
+     * one after a crash in the middle of a write, is skipped.
+     */
+    private static List<Entry> replay(Path path) throws IOException {
+        Map<String, Entry> pending = new LinkedHashMap<>();
+        if (!Files.exists(path)) {
+            return new ArrayList<>();
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                try {
+                    switch (fields[0]) {
+                        case SAVED -> pending.put(fields[1], new Entry(fields[1], Kind.valueOf(fields[2]),
+                                Integer.parseInt(fields[3]), Money.ofCents(Long.parseLong(fields[4])),
+                                LocalDate.parse(fields[5]), unescape(fields[6])));
+                        case APPLIED, DROPPED -> pending.remove(fields[1]);
+                        default -> throw new IllegalArgumentException("Unknown record " + fields[0]);
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.log(System.Logger.Level.WARNING, "Skipped unreadable journal record in " + path + ": " + line);
+                }
+            }
+        }
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * Replaces the file with one that only contains the given entries. The new file is written next to the old one
+     * and moved over it, so a crash leaves either of them.
+     */
+    private void rewrite(List<Entry> entries) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            StringBuilder records = new StringBuilder();
+            for (Entry entry : entries) {
+                records.append(savedRecord(entry));
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(false);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String savedRecord(Entry entry) {
+        return String.join("\t", SAVED, entry.key(), entry.kind().name(), Integer.toString(entry.userId()),
+                Long.toString(entry.amount().getCents()), entry.date().toString(), escape(entry.label())) + "\n";
+    }
+
+    // Labels are free text, so the separators of the format are escaped
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                result.append(switch (next) {
+                    case 't' -> '\t';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    default -> next;
+                });
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.pfm.service;
+
+import com.example.pfm.dao.UsernameIndex;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Throttles login attempts with a token bucket per username and per source of the attempts.
+ * Every attempt takes a token from both buckets before the password is checked, so concurrent attempts can't get
+ * past the limit between checking it and recording a failure. A successful login gives the tokens back.
+ * Usernames are folded like the database compares them, so "Alice" and "alice " share the bucket of the same user.
+ * Buckets refill over time on the monotonic clock, so changing the wall clock doesn't lift or extend a lockout.
+ *
+ * The buckets are immutable values in a ConcurrentHashMap that are swapped with compare-and-set, so attempts for
+ * different usernames never wait for each other. A bucket that has refilled completely carries no information and is
+ * removed, and the amount of buckets is bounded, so guessing with many different usernames can't grow the maps forever.
+ */
+public class LoginThrottle {
+    // Failed attempts per username before it is throttled, and how long it takes to get one attempt back.
+    static final int USERNAME_CAPACITY = 3;
+    static final long USERNAME_REFILL_NANOS = TimeUnit.MINUTES.toNanos(5);
+    // Failed attempts per source over all usernames, and how long it takes to get one attempt back.
+    static final int SOURCE_CAPACITY = 20;
+    static final long SOURCE_REFILL_NANOS = TimeUnit.SECONDS.toNanos(15);
+    static final int MAX_TRACKED_KEYS = 10_000;
+
+    private final LongSupplier clock;
+    private final Buckets usernames;
+    private final Buckets sources;
+    private final LongAdder throttledAttempts = new LongAdder();
+
+    /**
+     * The outcome of asking for an attempt.
+     */
+    public enum Result {
+        ALLOWED,
+        USERNAME_THROTTLED,
+        SOURCE_THROTTLED
+    }
+
+    /**
+     * @param tokens The tokens left, which may be a fraction while refilling.
+     * @param updatedAt The monotonic time the tokens were computed at.
+     */
+    private record Bucket(double tokens, long updatedAt) {
+    }
+
+    /**
+     * Constructs a LoginThrottle on System.nanoTime.
+     */
+    public LoginThrottle() {
+        this(System::nanoTime, MAX_TRACKED_KEYS);
+    }
+
+    /**
+     * Constructs a LoginThrottle with its own clock, so tests can move time forward.
+     *
+     * @param clock Monotonic time in nanoseconds.
+     * @param maxTrackedKeys The maximum amount of usernames and of sources that are tracked.
+     */
+    LoginThrottle(LongSupplier clock, int maxTrackedKeys) {
+        this.clock = clock;
+        this.usernames = new Buckets(USERNAME_CAPACITY, USERNAME_REFILL_NANOS, maxTrackedKeys);
+        this.sources = new Buckets(SOURCE_CAPACITY, SOURCE_REFILL_NANOS, maxTrackedKeys);
+    }
+
+    /**
+     * Takes a token for a login attempt. Must be followed by {@link #onSuccess} if the attempt turns out to be correct.
+     *
+     * @param username The username of the attempt.
+     * @param source Where the attempt comes from, e.g. the host.
+     * @return Whether the attempt may check the password.
+     */
+    public Result tryAcquire(String username, String source) {
+        long now = clock.getAsLong();
+        if (!sources.tryAcquire(source, now)) {
+            throttledAttempts.increment();
+            return Result.SOURCE_THROTTLED;
+        }
+        if (!usernames.tryAcquire(UsernameIndex.fold(username), now)) {
+            sources.release(source, now); // The attempt didn't happen
+            throttledAttempts.increment();
+            return Result.USERNAME_THROTTLED;
+        }
+        return Result.ALLOWED;
+    }
+
+    /**
+     * Forgets the failed attempts of a username after a successful login, and gives the source its token back.
+     *
+     * @param username The username that logged in.
+     * @param source Where the login came from.
+     */
+    public void onSuccess(String username, String source) {
+        usernames.reset(UsernameIndex.fold(username));
+        sources.release(source, clock.getAsLong());
+    }
+
+    /**
+     * @return The amount of attempts that were refused since the throttle was created.
+     */
+    public long getThrottledAttempts() {
+        return throttledAttempts.sum();
+    }
+
+    /**
+     * @return The amount of usernames with recent failed attempts.
+     */
+    public int getTrackedUsernames() {
+        return usernames.map.size();
+    }
+
+    /**
+     * @return The amount of sources with recent failed attempts.
+     */
+    public int getTrackedSources() {
+        return sources.map.size();
+    }
+
+    /**
+     * The token buckets of one kind of key.
+     */
+    private static final class Buckets {
+        private final int capacity;
+        private final long refillNanos;
+        private final int maxKeys;
+        private final Map<String, Bucket> map = new ConcurrentHashMap<>();
+
+        Buckets(int capacity, long refillNanos, int maxKeys) {
+            this.capacity = capacity;
+            this.refillNanos = refillNanos;
+            this.maxKeys = maxKeys;
+        }
+
+        boolean tryAcquire(String key, long now) {
+            while (true) {
+                Bucket current = map.get(key);
+                double tokens = current == null ? capacity : tokensAt(current, now);
+                if (tokens < 1) {
+                    return false;
+                }
+                Bucket next = new Bucket(tokens - 1, now);
+                if (current == null) {
+                    if (map.putIfAbsent(key, next) == null) {
+                        evictIfFull(now);
+                        return true;
+                    }
+                } else if (map.replace(key, current, next)) {
+                    return true;
+                }
+                // Another attempt for the same key changed the bucket in between, try again with its value
+            }
+        }
+
+        void release(String key, long now) {
+            while (true) {
+                Bucket current = map.get(key);
+                if (current == null) {
+                    return;
+                }
+                double tokens = Math.min(capacity, tokensAt(current, now) + 1);
+                boolean swapped = tokens >= capacity
+                        ? map.remove(key, current)
+                        : map.replace(key, current, new Bucket(tokens, now));
+                if (swapped) {
+                    return;
+                }
+            }
+        }
+
+        void reset(String key) {
+            map.remove(key);
+        }
+
+        private double tokensAt(Bucket bucket, long now) {
+            double refilled = (double) (now - bucket.updatedAt()) / refillNanos;
+            return Math.min(capacity, bucket.tokens() + refilled);
+        }
+
+        /**
+         * Removes the buckets that have refilled completely when there are too many. If that isn't enough, buckets are
+         * dropped in map order until the bound holds again, which loses their failed attempts but keeps the memory bounded.
+         */
+        private void evictIfFull(long now) {
+            if (map.size() <= maxKeys) {
+                return;
+            }
+            map.entrySet().removeIf(entry -> tokensAt(entry.getValue(), now) >= capacity);
+            Iterator<String> keys = map.keySet().iterator();
+            while (map.size() > maxKeys && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+    }
+}
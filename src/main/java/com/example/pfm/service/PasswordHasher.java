@@ -0,0 +1,204 @@
+package com.example.pfm.service;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hashes and checks passwords with BCrypt on its own small pool of threads.
+ * BCrypt is deliberately slow, so the pool is bounded and has a queue limit: when too many hashes are waiting,
+ * new ones fail with a RejectedExecutionException instead of piling up behind each other.
+ *
+ * The work factor is calibrated on the host with {@link #calibrate()} to the highest cost whose hash still takes
+ * at most the target time, but never below BCrypt's default. Stored hashes with a lower cost are reported by
+ * {@link #needsRehash}, so they can be upgraded when the user logs in with the password.
+ */
+public class PasswordHasher {
+    private static final System.Logger LOGGER = System.getLogger(PasswordHasher.class.getName());
+
+    // BCrypt's own default cost, the lowest that is used for new hashes.
+    static final int DEFAULT_LOG_ROUNDS = 10;
+    static final int MAX_LOG_ROUNDS = 16;
+    static final long DEFAULT_TARGET_MILLIS = 250;
+    static final int DEFAULT_QUEUE_LIMIT = 16;
+
+    private final ThreadPoolExecutor executor;
+    private final long targetNanos;
+    private final int minLogRounds;
+    private volatile int logRounds;
+
+    // Hashing metrics
+    private final AtomicLong hashCount = new AtomicLong();
+    private final AtomicLong totalHashNanos = new AtomicLong();
+    private final AtomicLong checkCount = new AtomicLong();
+    private final AtomicLong totalCheckNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Constructs a PasswordHasher with a thread per two processors, at most two, and BCrypt's default cost
+     * until it is calibrated.
+     */
+    public PasswordHasher() {
+        this(Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2)), DEFAULT_QUEUE_LIMIT,
+                DEFAULT_TARGET_MILLIS, DEFAULT_LOG_ROUNDS);
+    }
+
+    /**
+     * Constructs a PasswordHasher.
+     *
+     * @param threads The amount of passwords that are hashed at the same time.
+     * @param queueLimit The amount of passwords that may wait to be hashed.
+     * @param targetMillis How long a hash may take at the calibrated cost.
+     * @param minLogRounds The lowest cost for new hashes, and the cost until calibrated.
+     */
+    public PasswordHasher(int threads, int queueLimit, long targetMillis, int minLogRounds) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueLimit), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        this.minLogRounds = minLogRounds;
+        this.logRounds = minLogRounds;
+    }
+
+    /**
+     * Sets the cost to the highest one whose hash takes at most the target time on this host. Every extra round
+     * doubles the time, so one hash at the lowest cost is enough to estimate the others.
+     * Runs on the calling thread and takes a few hashes at the lowest cost, so it is called in the background.
+     *
+     * @return The new cost.
+     */
+    public int calibrate() {
+        BCrypt.hashpw("calibrate", BCrypt.gensalt(minLogRounds)); // The first hash also loads and seeds BCrypt
+        long start = System.nanoTime();
+        BCrypt.hashpw("calibrate", BCrypt.gensalt(minLogRounds));
+        long nanos = Math.max(1, System.nanoTime() - start);
+
+        int rounds = minLogRounds;
+        while (rounds < MAX_LOG_ROUNDS && nanos * 2 <= targetNanos) {
+            nanos *= 2;
+            rounds++;
+        }
+        logRounds = rounds;
+        LOGGER.log(System.Logger.Level.INFO, String.format("Password hashing calibrated to cost %d, about %d ms per hash",
+                rounds, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        return rounds;
+    }
+
+    /**
+     * Hashes a password with a new salt at the current cost.
+     *
+     * @param password The password.
+     * @return A future with the hash, failed with a RejectedExecutionException if too many hashes are waiting.
+     */
+    public CompletableFuture<String> hash(String password) {
+        int rounds = logRounds;
+        return submit(() -> BCrypt.hashpw(password, BCrypt.gensalt(rounds)), hashCount, totalHashNanos);
+    }
+
+    /**
+     * Checks a password against a stored hash.
+     *
+     * @param password The password.
+     * @param hash The stored hash.
+     * @return A future with whether the password matches, failed with a RejectedExecutionException if too many
+     * hashes are waiting.
+     */
+    public CompletableFuture<Boolean> check(String password, String hash) {
+        return submit(() -> BCrypt.checkpw(password, hash), checkCount, totalCheckNanos);
+    }
+
+    /**
+     * Hashes are only upgraded, never downgraded, so a slower host doesn't weaken the hashes made on a faster one.
+     *
+     * @param hash A stored hash.
+     * @return true if the hash has a lower cost than new hashes get.
+     */
+    public boolean needsRehash(String hash) {
+        return logRoundsOf(hash) < logRounds;
+    }
+
+    /**
+     * @param hash A BCrypt hash, like $2a$10$...
+     * @return The cost of the hash.
+     */
+    static int logRoundsOf(String hash) {
+        return Integer.parseInt(hash.substring(4, 6));
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work, AtomicLong count, AtomicLong totalNanos) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                T result = work.get();
+                long nanos = System.nanoTime() - start;
+                count.incrementAndGet();
+                totalNanos.addAndGet(nanos);
+                maxNanos.accumulateAndGet(nanos, Math::max);
+                return result;
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Stops the hashing threads. Hashes that are waiting still run.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public int getLogRounds() {
+        return logRounds;
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public long getHashCount() {
+        return hashCount.get();
+    }
+
+    public long getCheckCount() {
+        return checkCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public double getAverageHashMillis() {
+        long hashes = hashCount.get();
+        return hashes == 0 ? 0.0 : totalHashNanos.get() / (double) hashes / 1_000_000.0;
+    }
+
+    public double getAverageCheckMillis() {
+        long checks = checkCount.get();
+        return checks == 0 ? 0.0 : totalCheckNanos.get() / (double) checks / 1_000_000.0;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PasswordHasher[cost=%d, queued=%d, hashes=%d, avgHash=%.1fms, checks=%d, avgCheck=%.1fms, max=%.1fms, rejected=%d]",
+                logRounds, getQueuedCount(), getHashCount(), getAverageHashMillis(), getCheckCount(),
+                getAverageCheckMillis(), getMaxMillis(), getRejectedCount());
+    }
+}
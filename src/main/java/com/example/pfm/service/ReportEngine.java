@@ -0,0 +1,189 @@
+package com.example.pfm.service;
+
+import com.example.pfm.dao.ExpenseDAO;
+import com.example.pfm.dao.IncomeDAO;
+import com.example.pfm.model.Category;
+import com.example.pfm.model.CategoryTotals;
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Income;
+import com.example.pfm.model.Money;
+import com.example.pfm.model.MonthSummary;
+import com.example.pfm.model.Report;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Builds {@link Report}s over any range of months: a single month, the trailing twelve months, quarters, or a range
+ * compared with the same range a year earlier.
+ * The rows of the range are fetched once and partitioned by month while they are read. The months are then
+ * aggregated independently of each other, on the common fork-join pool when there are enough rows to make that pay off.
+ */
+public class ReportEngine {
+    // Below this amount of rows the months are aggregated on the calling thread, as splitting the work costs more than it saves.
+    static final int PARALLEL_THRESHOLD = 10_000;
+
+    private final ExpenseDAO expenseDAO;
+    private final IncomeDAO incomeDAO;
+
+    /**
+     * A report together with the report of the same months a year earlier.
+     *
+     * @param current The report of the requested range.
+     * @param previousYear The report of the same range a year earlier.
+     */
+    public record Comparison(Report current, Report previousYear) {
+
+        /**
+         * @return The change of the expenses in percent, or null if there were no expenses a year earlier.
+         */
+        public Double expenseChangePercent() {
+            return changePercent(previousYear.getExpenses(), current.getExpenses());
+        }
+
+        /**
+         * @return The change of the income in percent, or null if there was no income a year earlier.
+         */
+        public Double incomeChangePercent() {
+            return changePercent(previousYear.getIncome(), current.getIncome());
+        }
+
+        private static Double changePercent(Money before, Money after) {
+            if (before.isZero()) {
+                return null;
+            }
+            return (after.getCents() - before.getCents()) * 100.0 / before.getCents();
+        }
+    }
+
+    /**
+     * Constructs a ReportEngine that reads with the given DAOs.
+     *
+     * @param expenseDAO Data access object for expense operations.
+     * @param incomeDAO Data access object for income operations.
+     */
+    public ReportEngine(ExpenseDAO expenseDAO, IncomeDAO incomeDAO) {
+        this.expenseDAO = expenseDAO;
+        this.incomeDAO = incomeDAO;
+    }
+
+    /**
+     * Builds the report of a range of months.
+     *
+     * @param userId The user whose entries are reported.
+     * @param first The first month.
+     * @param last The last month (inclusive).
+     * @return The report, with all totals zero if the entries could not be read.
+     */
+    public Report build(int userId, YearMonth first, YearMonth last) {
+        if (last.isBefore(first)) {
+            throw new IllegalArgumentException("The last month of a report can't be before its first month");
+        }
+        int months = (int) ChronoUnit.MONTHS.between(first, last) + 1;
+        List<List<Expense>> expensesByMonth = emptyPartitions(months);
+        List<List<Income>> incomesByMonth = emptyPartitions(months);
+        LocalDate start = first.atDay(1);
+        LocalDate end = last.plusMonths(1).atDay(1);
+
+        try {
+            expenseDAO.forEachExpense(userId, start, end, expense -> expensesByMonth.get(monthIndex(first, expense.getDate())).add(expense));
+            incomeDAO.forEachIncome(userId, start, end, income -> incomesByMonth.get(monthIndex(first, income.getDate())).add(income));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return Report.empty(first, last);
+        }
+        return aggregate(first, expensesByMonth, incomesByMonth);
+    }
+
+    /**
+     * @param userId The user whose entries are reported.
+     * @return The report of the current month.
+     */
+    public Report currentMonth(int userId) {
+        YearMonth now = YearMonth.now();
+        return build(userId, now, now);
+    }
+
+    /**
+     * @param userId The user whose entries are reported.
+     * @return The report of the last twelve months, including the current month.
+     */
+    public Report trailingTwelveMonths(int userId) {
+        YearMonth now = YearMonth.now();
+        return build(userId, now.minusMonths(11), now);
+    }
+
+    /**
+     * Builds the report of a range and of the same range a year earlier, from a single fetch of both years.
+     *
+     * @param userId The user whose entries are reported.
+     * @param first The first month.
+     * @param last The last month (inclusive), at most twelve months after the first.
+     * @return Both reports.
+     */
+    public Comparison yearOverYear(int userId, YearMonth first, YearMonth last) {
+        Report both = build(userId, first.minusYears(1), last);
+        return new Comparison(both.slice(first, last), both.slice(first.minusYears(1), last.minusYears(1)));
+    }
+
+    /**
+     * Aggregates rows that are already partitioned by month into a report. Package-private, so the aggregation
+     * can be tested without a database.
+     *
+     * @param first The month of the first partition.
+     * @param expensesByMonth The expenses of each month, starting with the first.
+     * @param incomesByMonth The incomes of each month, with as many partitions as the expenses.
+     * @return The report.
+     */
+    static Report aggregate(YearMonth first, List<List<Expense>> expensesByMonth, List<List<Income>> incomesByMonth) {
+        long rows = 0;
+        for (int i = 0; i < expensesByMonth.size(); i++) {
+            rows += expensesByMonth.get(i).size() + incomesByMonth.get(i).size();
+        }
+        IntStream months = IntStream.range(0, expensesByMonth.size());
+        if (rows >= PARALLEL_THRESHOLD) {
+            months = months.parallel();
+        }
+        List<MonthSummary> summaries = months
+                .mapToObj(i -> summarize(first.plusMonths(i), expensesByMonth.get(i), incomesByMonth.get(i)))
+                .toList(); // Keeps the order of the months, also when run in parallel
+        return new Report(summaries);
+    }
+
+    private static MonthSummary summarize(YearMonth month, List<Expense> expenses, List<Income> incomes) {
+        CategoryTotals.Builder categories = new CategoryTotals.Builder();
+        long expenseCents = 0;
+        for (Expense expense : expenses) {
+            categories.add(Category.of(expense.getCategory()), expense.getAmount());
+            expenseCents = Math.addExact(expenseCents, expense.getAmount().getCents());
+        }
+        Map<String, Long> sources = new HashMap<>();
+        long incomeCents = 0;
+        for (Income income : incomes) {
+            sources.merge(income.getSource(), income.getAmount().getCents(), Math::addExact);
+            incomeCents = Math.addExact(incomeCents, income.getAmount().getCents());
+        }
+        Map<String, Money> incomePerSource = new HashMap<>();
+        sources.forEach((source, cents) -> incomePerSource.put(source, Money.ofCents(cents)));
+        return new MonthSummary(month, Money.ofCents(incomeCents), Money.ofCents(expenseCents), categories.build(), incomePerSource);
+    }
+
+    private static <T> List<List<T>> emptyPartitions(int months) {
+        List<List<T>> partitions = new ArrayList<>(months);
+        for (int i = 0; i < months; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        return partitions;
+    }
+
+    private static int monthIndex(YearMonth first, LocalDate date) {
+        return (int) ChronoUnit.MONTHS.between(first, YearMonth.from(date));
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.pfm.service;
+
+import com.example.pfm.dao.ExpenseDAO;
+import com.example.pfm.dao.IncomeDAO;
+import com.example.pfm.model.Category;
+import com.example.pfm.model.CategoryTotals;
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Income;
+import com.example.pfm.model.Money;
+import com.example.pfm.model.MonthSummary;
+import com.example.pfm.model.Report;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Exports the expenses and incomes of a user for any date range to a CSV or JSON Lines file.
+ * The rows are streamed from the database straight into the file, and the totals per category, income source
+ * and month are computed while they pass, so memory use does not depend on the amount of rows. The totals are
+ * collected into a {@link Report} and written by the same code that exports a report on its own.
+ *
+ * Every record has a type: "expense" and "income" for the rows, followed by "expense_category_total",
+ * "income_source_total" and "month_total" for the summaries. In CSV the columns are {@code type,date,amount,label},
+ * where the date of a month total is its month (yyyy-MM). The expense and income lines can be imported again with
+ * {@link CsvImportService} after filtering them by type.
+ */
+public class ReportExportService {
+    // The size of the byte buffer between the encoder and the file channel.
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ExpenseDAO expenseDAO;
+    private final IncomeDAO incomeDAO;
+
+    /**
+     * The file formats of an export.
+     */
+    public enum Format {
+        CSV,
+        JSON_LINES
+    }
+
+    /**
+     * The outcome of an export.
+     *
+     * @param expenses The amount of exported expenses.
+     * @param incomes The amount of exported incomes.
+     * @param report The totals that were written at the end of the file, covering every month of the range.
+     */
+    public record ExportResult(int expenses, int incomes, Report report) {
+    }
+
+    /**
+     * Constructs a ReportExportService that reads with the given DAOs.
+     *
+     * @param expenseDAO Data access object for expense operations.
+     * @param incomeDAO Data access object for income operations.
+     */
+    public ReportExportService(ExpenseDAO expenseDAO, IncomeDAO incomeDAO) {
+        this.expenseDAO = expenseDAO;
+        this.incomeDAO = incomeDAO;
+    }
+
+    /**
+     * Exports the expenses and incomes of a user to a file, which is replaced if it exists.
+     * The file is deleted again if the export fails halfway.
+     *
+     * @param userId The user whose entries are exported.
+     * @param start The first day of the range (inclusive).
+     * @param end The end of the range (exclusive).
+     * @param format The format of the file.
+     * @param file The file to write.
+     * @return The outcome of the export.
+     * @throws IOException If the file can't be written or the entries can't be read.
+     */
+    public ExportResult export(int userId, LocalDate start, LocalDate end, Format format, Path file) throws IOException {
+        boolean completed = false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             Writer out = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE)) {
+            ExportResult result = export(userId, start, end, format, out);
+            completed = true;
+            return result;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Exports the expenses and incomes of a user to a writer.
+     *
+     * @param userId The user whose entries are exported.
+     * @param start The first day of the range (inclusive).
+     * @param end The end of the range (exclusive).
+     * @param format The format of the records.
+     * @param out The destination, not closed by this method.
+     * @return The outcome of the export.
+     * @throws IOException If writing fails or the entries can't be read.
+     */
+    public ExportResult export(int userId, LocalDate start, LocalDate end, Format format, Writer out) throws IOException {
+        if (!end.isAfter(start)) {
+            throw new IllegalArgumentException("The end of the range must be after its start");
+        }
+        YearMonth firstMonth = YearMonth.from(start);
+        int months = (int) ChronoUnit.MONTHS.between(firstMonth, YearMonth.from(end.minusDays(1))) + 1;
+        MonthTotals[] totals = new MonthTotals[months];
+        for (int i = 0; i < months; i++) {
+            totals[i] = new MonthTotals(firstMonth.plusMonths(i));
+        }
+        RecordWriter records = new RecordWriter(out, format);
+
+        try {
+            records.header();
+            int expenses = expenseDAO.forEachExpense(userId, start, end, expense -> {
+                totals[monthIndex(firstMonth, expense.getDate())].add(expense);
+                records.write("expense", "date", expense.getDate().toString(), expense.getAmount(), "category", expense.getCategory());
+            });
+            int incomes = incomeDAO.forEachIncome(userId, start, end, income -> {
+                totals[monthIndex(firstMonth, income.getDate())].add(income);
+                records.write("income", "date", income.getDate().toString(), income.getAmount(), "source", income.getSource());
+            });
+
+            List<MonthSummary> summaries = new ArrayList<>(months);
+            for (MonthTotals month : totals) {
+                summaries.add(month.toSummary());
+            }
+            Report report = new Report(summaries);
+            writeSummary(report, records);
+            out.flush();
+            return new ExportResult(expenses, incomes, report);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (SQLException e) {
+            throw new IOException("The entries could not be read", e);
+        }
+    }
+
+    /**
+     * Exports only the totals of a report, in the same records that end a full export.
+     *
+     * @param report The report to export.
+     * @param format The format of the records.
+     * @param out The destination, not closed by this method.
+     * @throws IOException If writing fails.
+     */
+    public void exportSummary(Report report, Format format, Writer out) throws IOException {
+        RecordWriter records = new RecordWriter(out, format);
+        try {
+            records.header();
+            writeSummary(report, records);
+            out.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeSummary(Report report, RecordWriter records) {
+        CategoryTotals categoryTotals = report.getExpensesPerCategory();
+        for (Category category : categoryTotals.byAmountDescending()) {
+            records.write("expense_category_total", null, null, categoryTotals.get(category), "category", category.getName());
+        }
+        for (Map.Entry<String, Money> source : report.getIncomePerSource().entrySet()) {
+            records.write("income_source_total", null, null, source.getValue(), "source", source.getKey());
+        }
+        for (MonthSummary month : report.getMonths()) {
+            if (!month.income().isZero() || !month.expenses().isZero()) {
+                records.write("month_total", "month", month.month().toString(), month.expenses(), "label", "expenses");
+                records.write("month_total", "month", month.month().toString(), month.income(), "label", "incomes");
+            }
+        }
+    }
+
+    private static int monthIndex(YearMonth firstMonth, LocalDate date) {
+        return (int) ChronoUnit.MONTHS.between(firstMonth, YearMonth.from(date));
+    }
+
+    /**
+     * The totals of one month, collected while the rows pass.
+     */
+    private static class MonthTotals {
+        private final YearMonth month;
+        private final CategoryTotals.Builder categories = new CategoryTotals.Builder();
+        private final Map<String, Long> sources = new TreeMap<>();
+        private long expenseCents;
+        private long incomeCents;
+
+        MonthTotals(YearMonth month) {
+            this.month = month;
+        }
+
+        void add(Expense expense) {
+            categories.add(Category.of(expense.getCategory()), expense.getAmount());
+            expenseCents = Math.addExact(expenseCents, expense.getAmount().getCents());
+        }
+
+        void add(Income income) {
+            sources.merge(income.getSource(), income.getAmount().getCents(), Math::addExact);
+            incomeCents = Math.addExact(incomeCents, income.getAmount().getCents());
+        }
+
+        MonthSummary toSummary() {
+            Map<String, Money> incomePerSource = new TreeMap<>();
+            sources.forEach((source, cents) -> incomePerSource.put(source, Money.ofCents(cents)));
+            return new MonthSummary(month, Money.ofCents(incomeCents), Money.ofCents(expenseCents), categories.build(), incomePerSource);
+        }
+    }
+
+    /**
+     * Writes records in the format of the export. Write errors are thrown as UncheckedIOException, so records can be
+     * written from the row callbacks of the DAOs.
+     */
+    private static class RecordWriter {
+        private final Writer out;
+        private final Format format;
+        private final StringBuilder line = new StringBuilder(128);
+
+        RecordWriter(Writer out, Format format) {
+            this.out = out;
+            this.format = format;
+        }
+
+        void header() throws IOException {
+            if (format == Format.CSV) {
+                out.write("type,date,amount,label\n");
+            }
+        }
+
+        /**
+         * @param dateName The name of the date in JSON, "date" or "month".
+         * @param date The date or month of the record, or null if it has none.
+         * @param labelName The name of the label in JSON, like "category" or "source".
+         */
+        void write(String type, String dateName, String date, Money amount, String labelName, String label) {
+            line.setLength(0);
+            if (format == Format.CSV) {
+                line.append(type).append(',');
+                if (date != null) {
+                    line.append(date);
+                }
+                line.append(',').append(amount).append(',');
+                appendCsvField(label);
+            } else {
+                line.append("{\"type\":\"").append(type).append('"');
+                if (date != null) {
+                    line.append(",\"").append(dateName).append("\":\"").append(date).append('"');
+                }
+                line.append(",\"amount\":").append(amount);
+                line.append(",\"").append(labelName).append("\":");
+                appendJsonString(label);
+                line.append('}');
+            }
+            line.append('\n');
+            try {
+                out.append(line);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Quotes a field that contains a separator, quote or line break, the way {@link CsvImportService} reads it.
+         */
+        private void appendCsvField(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                line.append(value);
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    line.append('"');
+                }
+                line.append(c);
+            }
+            line.append('"');
+        }
+
+        private void appendJsonString(String value) {
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> line.append("\\\"");
+                    case '\\' -> line.append("\\\\");
+                    case '\n' -> line.append("\\n");
+                    case '\r' -> line.append("\\r");
+                    case '\t' -> line.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            line.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            line.append(c);
+                        }
+                    }
+                }
+            }
+            line.append('"');
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.pfm.service;
+
+import com.example.pfm.dao.AggregateCache;
+import com.example.pfm.dao.BudgetDAO;
+import com.example.pfm.dao.ExpenseDAO;
+import com.example.pfm.dao.IncomeDAO;
+import com.example.pfm.dao.LocalLedger;
+import com.example.pfm.dao.RunningTotals;
+import com.example.pfm.model.User;
+import com.example.pfm.util.ConnectionPool;
+import com.example.pfm.util.MetricsRegistry;
+import com.example.pfm.util.MySQLConnection;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The services of one logged-in user. Opened by the UserService when a login succeeds and closed when the user
+ * logs out, so everything the session loaded is released at that moment instead of when the application stops.
+ * A session owns one instance of each DAO, all on the session's own aggregate cache, the background executor of
+ * the screens, the queue that writes the entered expenses and incomes behind, the report services and a registry
+ * of their metrics. The connection pool is shared by the whole
+ * application; the session keeps the handle it was opened with so the pool is part of its metrics.
+ * The screens of the user receive the session when they are built, instead of creating services of their own.
+ */
+public class SessionContext implements AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(SessionContext.class.getName());
+    // The journals of the entries that are written behind, one file per user (-Dpfm.journalDir=...)
+    private static final Path JOURNAL_DIR = Path.of(System.getProperty("pfm.journalDir",
+            Path.of(System.getProperty("user.home"), ".pfm", "journal").toString()));
+
+    private final User user;
+    private final ConnectionPool pool;
+    private final AggregateCache cache;
+    private final IncomeDAO incomeDAO;
+    private final ExpenseDAO expenseDAO;
+    private final BudgetDAO budgetDAO;
+    private final AsyncDataService dataService;
+    private final WriteBehindQueue entryQueue;
+    private final ReportEngine reportEngine;
+    private final ReportExportService exportService;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Opens the session of a user after a successful login.
+     */
+    @FunctionalInterface
+    public interface Factory {
+        SessionContext open(User user);
+    }
+
+    /**
+     * Constructs a session from its components. The session closes the data service and the entry queue when it
+     * is closed.
+     *
+     * @param user The logged-in user.
+     * @param pool The connection pool the DAOs use.
+     * @param cache The aggregate cache of the DAOs.
+     * @param incomeDAO Data access object for income operations.
+     * @param expenseDAO Data access object for expense operations.
+     * @param budgetDAO Data access object for budget operations.
+     * @param dataService Service that runs the database work of the screens in the background.
+     * @param entryQueue Queue that writes the entered expenses and incomes with the DAOs.
+     */
+    public SessionContext(User user, ConnectionPool pool, AggregateCache cache, IncomeDAO incomeDAO,
+                          ExpenseDAO expenseDAO, BudgetDAO budgetDAO, AsyncDataService dataService,
+                          WriteBehindQueue entryQueue) {
+        this.user = user;
+        this.pool = pool;
+        this.cache = cache;
+        this.incomeDAO = incomeDAO;
+        this.expenseDAO = expenseDAO;
+        this.budgetDAO = budgetDAO;
+        this.dataService = dataService;
+        this.entryQueue = entryQueue;
+        this.reportEngine = new ReportEngine(expenseDAO, incomeDAO);
+        this.exportService = new ReportExportService(expenseDAO, incomeDAO);
+        metrics.register("pool", () -> pool);
+        metrics.register("cache", () -> cache);
+        metrics.register("entries", () -> entryQueue);
+    }
+
+    /**
+     * Opens a session on the shared connection pool with a new aggregate cache, and loads the entries of the user
+     * in local ledger mode. Entries of the user that were left in the journal by an earlier session are written.
+     *
+     * @param user The user that logged in.
+     * @return The session of the user.
+     */
+    public static SessionContext open(User user) {
+        AggregateCache cache = new AggregateCache();
+        IncomeDAO incomeDAO = new IncomeDAO(cache);
+        ExpenseDAO expenseDAO = new ExpenseDAO(cache);
+        BudgetDAO budgetDAO = new BudgetDAO(cache);
+        WriteBehindQueue entryQueue;
+        try {
+            entryQueue = WriteBehindQueue.open(JOURNAL_DIR.resolve("user-" + user.getId() + ".journal"), expenseDAO, incomeDAO);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        SessionContext session = new SessionContext(user, MySQLConnection.getPool(), cache, incomeDAO, expenseDAO,
+                budgetDAO, new AsyncDataService(incomeDAO, expenseDAO, budgetDAO), entryQueue);
+        LocalLedger.getDefault().load(user.getId()); // Only loads anything in local ledger mode
+        return session;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public int getUserId() {
+        return user.getId();
+    }
+
+    public String getUsername() {
+        return user.getUsername();
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public AggregateCache getCache() {
+        return cache;
+    }
+
+    public IncomeDAO getIncomeDAO() {
+        return incomeDAO;
+    }
+
+    public ExpenseDAO getExpenseDAO() {
+        return expenseDAO;
+    }
+
+    public BudgetDAO getBudgetDAO() {
+        return budgetDAO;
+    }
+
+    public AsyncDataService getDataService() {
+        return dataService;
+    }
+
+    /**
+     * @return The queue that saves the expenses and incomes entered on screen without waiting for the database.
+     */
+    public WriteBehindQueue getEntryQueue() {
+        return entryQueue;
+    }
+
+    public ReportEngine getReportEngine() {
+        return reportEngine;
+    }
+
+    public ReportExportService getExportService() {
+        return exportService;
+    }
+
+    /**
+     * @return The registry of the metrics of this session, to which other components of the session can be added.
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Writes the queued entries, stops the background queries of the screens and forgets the entries and totals
+     * that were loaded for the user. Queued entries that can't be written in time stay in the journal for the next
+     * session. The pool is shared by the application and stays open. Closing a session a second time does nothing.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        entryQueue.close();
+        dataService.shutdown();
+        LocalLedger.getDefault().unload(user.getId());
+        RunningTotals.getDefault().forgetUser(user.getId());
+        LOGGER.log(System.Logger.Level.DEBUG, "Session of user " + user.getId() + " closed, " + metrics);
+    }
+}
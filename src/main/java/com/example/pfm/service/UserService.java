@@ -1,54 +1,60 @@
 package com.example.pfm.service;
 
-import com.example.pfm.dao.ExpenseDAO;
-import com.example.pfm.dao.IncomeDAO;
 import com.example.pfm.dao.UserDAO;
-import com.example.pfm.model.Expense;
-import com.example.pfm.model.Income;
 import com.example.pfm.model.User;
 
-import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
-import org.mindrot.jbcrypt.BCrypt;
+import java.util.concurrent.CompletionException;
 
 /**
  * Service class for user-related operations, including registration, authentication,
- * and managing user sessions.
+ * and managing user sessions. A successful login opens the {@link SessionContext} of the user, which owns the
+ * services of the user's screens, and logging out closes it.
  */
 public class UserService {
     private UserDAO userDAO;
-    private IncomeDAO incomeDAO;
-    private ExpenseDAO expenseDAO;
-    private User loggedInUser;
-
-    // Maximum login attempts before locking the account temporarily.
-    private static final int MAX_ATTEMPTS = 3;
-    // Duration in minutes for which the account is locked after exceeding max login attempts.
-    private static final int LOCKOUT_DURATION_MINUTES = 5;
-    // Tracks the number of failed login attempts for usernames.
-    private Map<String, Integer> loginAttempts = new HashMap<>();
-    // Tracks lockout expiry time for usernames.
-    private Map<String, LocalDateTime> lockoutExpiry = new HashMap<>();
+    // Opens the session of a user that logged in.
+    private final SessionContext.Factory sessionFactory;
+    // The session of the logged-in user, null while nobody is logged in.
+    private volatile SessionContext session;
+    // Limits the failed login attempts per username and per source.
+    private final LoginThrottle loginThrottle;
+    // Hashes and checks the passwords on its own threads.
+    private final PasswordHasher passwordHasher;
+
+    // The source of the logins made in this application, as all of them come from the same machine.
+    static final String LOCAL_SOURCE = "local";
 
     /**
-     * Constructor initializing DAOs for user, income, and expense entities.
+     * Constructor initializing the user DAO, and opening sessions on the shared connection pool.
      */
     public UserService() {
-        this.userDAO = new UserDAO();
-        incomeDAO = new IncomeDAO();
-        expenseDAO = new ExpenseDAO();
+        this(new UserDAO(), SessionContext::open);
     }
 
-    public UserService(UserDAO userDAO, IncomeDAO incomeDAO, ExpenseDAO expenseDAO) {
+    public UserService(UserDAO userDAO, SessionContext.Factory sessionFactory) {
+        this(userDAO, sessionFactory, new LoginThrottle(), new PasswordHasher());
+    }
+
+    public UserService(UserDAO userDAO, SessionContext.Factory sessionFactory, LoginThrottle loginThrottle,
+                       PasswordHasher passwordHasher) {
         this.userDAO = userDAO;
-        this.incomeDAO = incomeDAO;
-        this.expenseDAO = expenseDAO;
+        this.sessionFactory = sessionFactory;
+        this.loginThrottle = loginThrottle;
+        this.passwordHasher = passwordHasher;
+    }
+
+    /**
+     * Calibrates the cost of the password hashes on this host, which also loads BCrypt and seeds its SecureRandom
+     * before the first login or registration. Called in the background while the login screen is shown.
+     */
+    public void warmUp() {
+        passwordHasher.calibrate();
     }
 
     /**
      * Registers a new user with the provided username and password.
      * The password is hashed before storage for (extra) security purposes.
+     * Waits for the hash, so it must not be called on the JavaFX thread.
      *
      * @param username The desired username for the new account.
      * @param password The desired password for the new account.
@@ -59,7 +65,7 @@ public class UserService {
             return "Username and password cannot be empty.";
         }
 
-        if (userDAO.getUserByUsername(username) != null) {
+        if (userDAO.usernameExists(username)) {
             return "Username already exists.";
         }
 
@@ -67,7 +73,13 @@ public class UserService {
             return "Password must be at least 8 characters long.";
         }
 
-        String hashedPassword = BCrypt.hashpw(password, BCrypt.gensalt());
+        String hashedPassword;
+        try {
+            hashedPassword = passwordHasher.hash(password).join();
+        } catch (CompletionException e) {
+            e.printStackTrace(); // Too many passwords are being hashed at the moment
+            return "Registration failed. Please try again.";
+        }
 
         boolean success = userDAO.insertUser(new User(username, hashedPassword));
         if (!success) {
@@ -86,76 +98,116 @@ public class UserService {
      */
 
     public String authenticateUser(String username, String password) {
+        return authenticateUser(username, password, LOCAL_SOURCE);
+    }
+
+    /**
+     * Attempts to authenticate a user, and opens the session of the user if it succeeds. A session that was still
+     * open is closed. Failed attempts are limited per username and per source, and an attempt that
+     * is over either limit is refused without looking up the user or checking the password.
+     * Safe to call from several threads at the same time. Waits for the password check, so it must not be called on
+     * the JavaFX thread.
+     *
+     * @param username The username of the account attempting to log in.
+     * @param password The password of the account attempting to log in.
+     * @param source Where the attempt comes from.
+     * @return A message indicating the outcome of the login attempt, or null if the login succeeded.
+     */
+    public String authenticateUser(String username, String password, String source) {
         if (username.trim().isEmpty() || password.trim().isEmpty()) {
             return "Username and password cannot be empty.";
         }
-        if (isAccountLocked(username)) {
-            return "Account is temporarily locked due to multiple failed login attempts. Please try again later.";
+        switch (loginThrottle.tryAcquire(username, source)) {
+            case USERNAME_THROTTLED:
+                return "Account is temporarily locked due to multiple failed login attempts. Please try again later.";
+            case SOURCE_THROTTLED:
+                return "Too many failed login attempts. Please try again later.";
+            default:
+                break;
         }
         User user = userDAO.getUserByUsername(username);
-        if (user == null || !BCrypt.checkpw(password, user.getPassword())) {
-            incrementLoginAttempts(username);
+        boolean correct;
+        try {
+            correct = user != null && passwordHasher.check(password, user.getPassword()).join();
+        } catch (CompletionException e) {
+            e.printStackTrace(); // Too many passwords are being checked at the moment
+            return "Login failed. Please try again.";
+        }
+        if (!correct) {
             return "Incorrect username and/or password.";
         }
 
-        resetLoginAttempts(username);
+        loginThrottle.onSuccess(username, source);
+        if (passwordHasher.needsRehash(user.getPassword())) {
+            rehash(user, password);
+        }
 
-        loggedInUser = user;
+        replaceSession(sessionFactory.open(user));
         return null;
     }
 
+    /**
+     * Upgrades the stored hash of a user to the current cost in the background. The login doesn't wait for it,
+     * and if it fails the hash is upgraded at the next login.
+     */
+    private void rehash(User user, String password) {
+        String oldHash = user.getPassword();
+        passwordHasher.hash(password).thenAccept(newHash -> {
+            if (userDAO.updatePassword(user.getUsername(), oldHash, newHash)) {
+                user.setPassword(newHash);
+            }
+        }).exceptionally(e -> {
+            e.printStackTrace();
+            return null;
+        });
+    }
 
-    // Helper methods
-    private void incrementLoginAttempts(String username) {
-        int attempts = loginAttempts.getOrDefault(username, 0);
-        attempts++;
-        loginAttempts.put(username, attempts);
-
-        if (attempts >= MAX_ATTEMPTS) {
-            lockoutExpiry.put(username, LocalDateTime.now().plusMinutes(LOCKOUT_DURATION_MINUTES));
-        }
+    /**
+     * @return The hasher of the passwords, e.g. for its metrics.
+     */
+    public PasswordHasher getPasswordHasher() {
+        return passwordHasher;
     }
 
-    private boolean isAccountLocked(String username) {
-        if (lockoutExpiry.containsKey(username)) {
-            LocalDateTime expiryTime = lockoutExpiry.get(username);
-            if (expiryTime.isAfter(LocalDateTime.now())) {
-                return true;
-            } else {
-                // Lockout period has expired
-                lockoutExpiry.remove(username);
-                resetLoginAttempts(username);
-                return false;
-            }
-        }
-        return false;
+    /**
+     * @return The throttle of the login attempts, e.g. for its counters.
+     */
+    public LoginThrottle getLoginThrottle() {
+        return loginThrottle;
     }
 
-    private void resetLoginAttempts(String username) {
-        loginAttempts.remove(username);
-        lockoutExpiry.remove(username);
+    /**
+     * @return The session of the logged-in user, or null if nobody is logged in.
+     */
+    public SessionContext getSession() {
+        return session;
     }
 
     public int getCurrentUserId() {
-        return loggedInUser != null ? loggedInUser.getId() : -1;
+        SessionContext current = session;
+        return current != null ? current.getUserId() : -1;
     }
 
-    public boolean addIncome(Income income) {
-        return incomeDAO.insertIncome(income);
-    }
-    public boolean addExpense(Expense expense) {
-        return expenseDAO.insertExpense(expense);
-    }
     public String getCurrentUsername() {
-        return loggedInUser != null ? loggedInUser.getUsername() : null;
+        SessionContext current = session;
+        return current != null ? current.getUsername() : null;
     }
 
     /**
-     * Method for logging out a user.
+     * Method for logging out a user. Closes the session of the user.
      */
     public void logoutUser() {
-        loggedInUser = null;
-        loginAttempts.clear();
-        lockoutExpiry.clear();
+        replaceSession(null);
+    }
+
+    private void replaceSession(SessionContext next) {
+        SessionContext previous;
+        synchronized (this) {
+            previous = session;
+            session = next;
+        }
+        if (previous != null) {
+            previous.close();
+        }
     }
 }
@@ -0,0 +1,476 @@
+package com.example.pfm.service;
+
+import com.example.pfm.dao.ExpenseDAO;
+import com.example.pfm.dao.IncomeDAO;
+import com.example.pfm.model.DataChangeEvent;
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Income;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.DataTruncation;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Saves the expenses and incomes entered on screen without waiting for the database.
+ * A saved entry is appended to a local {@link EntryJournal} and queued; a background writer forces the journal to
+ * disk for all entries saved since its previous round, then inserts them into the database in batches. Every entry
+ * has an idempotency key that the database records with the row, so a batch that is retried after an error never
+ * inserts an entry twice. When the database can't be reached the writer retries with a growing delay, and the
+ * entries stay in the journal until they are written, also across a restart of the application.
+ * An entry the database refuses because of its data is moved to the dead-letter file of the journal, and the
+ * user is told about it, instead of being retried forever.
+ *
+ * The queue holds a bounded amount of entries. When it is full, {@link #submit} refuses new entries instead of
+ * letting them pile up while the database is down.
+ */
+public class WriteBehindQueue implements AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(WriteBehindQueue.class.getName());
+
+    static final int DEFAULT_CAPACITY = 1_000;
+    static final int BATCH_SIZE = 100;
+    // How long the writer waits for more entries before it writes a batch that isn't full.
+    static final long LINGER_MILLIS = 50;
+    static final long MIN_RETRY_MILLIS = 500;
+    static final long MAX_RETRY_MILLIS = 60_000;
+    // How long closing waits for the writer to write the last entries.
+    static final long CLOSE_TIMEOUT_MILLIS = 2_000;
+
+    /**
+     * An entry that the database refused and that was moved to the dead-letter file.
+     *
+     * @param description The entry as shown to the user.
+     * @param reason Why the database refused it.
+     * @param deadLetterFile The file the entry was moved to.
+     */
+    public record RejectedEntry(String description, String reason, Path deadLetterFile) {
+    }
+
+    /**
+     * Writes a batch of entries to the database.
+     */
+    @FunctionalInterface
+    interface Sink {
+        /**
+         * @param entries The entries, in the order they were saved.
+         * @return The amount of inserted entries, without the ones whose key was applied before.
+         * @throws SQLException If the batch fails. None of it may be applied, except entries that are skipped
+         * by their key when the batch is retried.
+         */
+        int write(List<EntryJournal.Entry> entries) throws SQLException;
+    }
+
+    private final EntryJournal journal;
+    private final Sink sink;
+    private final int capacity;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long minRetryNanos;
+    private final long maxRetryNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Signalled when an entry is queued or the queue is closed.
+    private final Condition changed = lock.newCondition();
+    private final ArrayDeque<EntryJournal.Entry> pending = new ArrayDeque<>();
+    private boolean closed;
+    private final Thread writer;
+    private volatile Consumer<DataChangeEvent> listener = event -> { };
+    private volatile Consumer<RejectedEntry> rejectionListener = entry -> { };
+
+    // Metrics
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Opens the queue of a journal file and starts writing the entries that were left in it.
+     *
+     * @param journalFile The journal of the entries.
+     * @param expenseDAO Data access object that inserts the expenses.
+     * @param incomeDAO Data access object that inserts the incomes.
+     * @return The queue.
+     * @throws IOException If the journal can't be opened.
+     */
+    public static WriteBehindQueue open(Path journalFile, ExpenseDAO expenseDAO, IncomeDAO incomeDAO) throws IOException {
+        return new WriteBehindQueue(new EntryJournal(journalFile), toDatabase(expenseDAO, incomeDAO), DEFAULT_CAPACITY,
+                BATCH_SIZE, LINGER_MILLIS, MIN_RETRY_MILLIS, MAX_RETRY_MILLIS);
+    }
+
+    /**
+     * Constructs a queue and starts its writer.
+     *
+     * @param journal The journal, whose recovered entries are queued first.
+     * @param sink Writes the batches.
+     * @param capacity The amount of entries that may wait to be written.
+     * @param batchSize The maximum amount of entries per batch.
+     * @param lingerMillis How long to wait for more entries before writing a batch that isn't full.
+     * @param minRetryMillis The delay before the first retry of a failed batch.
+     * @param maxRetryMillis The maximum delay between retries.
+     */
+    WriteBehindQueue(EntryJournal journal, Sink sink, int capacity, int batchSize, long lingerMillis,
+                     long minRetryMillis, long maxRetryMillis) {
+        this.journal = journal;
+        this.sink = sink;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.minRetryNanos = TimeUnit.MILLISECONDS.toNanos(minRetryMillis);
+        this.maxRetryNanos = TimeUnit.MILLISECONDS.toNanos(maxRetryMillis);
+        // Recovered entries are queued even beyond the capacity, they were accepted before
+        pending.addAll(journal.getRecovered());
+        if (!pending.isEmpty()) {
+            LOGGER.log(System.Logger.Level.INFO, "Writing " + pending.size() + " entries left in the journal");
+        }
+        this.writer = new Thread(this::run, "entry-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writes the expenses and incomes of a batch with the DAOs, each kind in one transaction.
+     */
+    private static Sink toDatabase(ExpenseDAO expenseDAO, IncomeDAO incomeDAO) {
+        return entries -> {
+            Map<String, Expense> expenses = new LinkedHashMap<>();
+            Map<String, Income> incomes = new LinkedHashMap<>();
+            for (EntryJournal.Entry entry : entries) {
+                switch (entry.kind()) {
+                    case EXPENSE -> expenses.put(entry.key(), entry.toExpense());
+                    case INCOME -> incomes.put(entry.key(), entry.toIncome());
+                }
+            }
+            int inserted = 0;
+            if (!expenses.isEmpty()) {
+                inserted += expenseDAO.insertExpensesOnce(expenses);
+            }
+            if (!incomes.isEmpty()) {
+                inserted += incomeDAO.insertIncomesOnce(incomes);
+            }
+            return inserted;
+        };
+    }
+
+    /**
+     * Sets the listener that is told about every entry that reached the database, on the writer thread.
+     *
+     * @param listener Receives the change of every written entry.
+     */
+    public void setListener(Consumer<DataChangeEvent> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the listener that is told about every entry the database refused, on the writer thread.
+     *
+     * @param rejectionListener Receives every entry that was moved to the dead-letter file.
+     */
+    public void setRejectionListener(Consumer<RejectedEntry> rejectionListener) {
+        this.rejectionListener = rejectionListener;
+    }
+
+    /**
+     * Saves an expense. Returns as soon as it is appended to the journal; it reaches the database shortly after.
+     *
+     * @param expense The expense to save.
+     * @return true if the expense was saved, false if too many entries are waiting or the journal can't be written.
+     */
+    public boolean submit(Expense expense) {
+        return submit(EntryJournal.Entry.of(UUID.randomUUID().toString(), expense));
+    }
+
+    /**
+     * Saves an income. Returns as soon as it is appended to the journal; it reaches the database shortly after.
+     *
+     * @param income The income to save.
+     * @return true if the income was saved, false if too many entries are waiting or the journal can't be written.
+     */
+    public boolean submit(Income income) {
+        return submit(EntryJournal.Entry.of(UUID.randomUUID().toString(), income));
+    }
+
+    private boolean submit(EntryJournal.Entry entry) {
+        lock.lock();
+        try {
+            if (closed || pending.size() >= capacity) {
+                refused.incrementAndGet();
+                return false;
+            }
+            journal.append(entry);
+            pending.addLast(entry);
+            submitted.incrementAndGet();
+            changed.signal();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            refused.incrementAndGet();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        long retryNanos = minRetryNanos;
+        try {
+            while (true) {
+                List<EntryJournal.Entry> batch = nextBatch();
+                if (batch == null) {
+                    return;
+                }
+                try {
+                    journal.sync(); // One fsync for everything saved since the previous batch
+                    write(batch);
+                    retryNanos = minRetryNanos;
+                } catch (SQLException | IOException e) {
+                    retries.incrementAndGet();
+                    LOGGER.log(System.Logger.Level.WARNING, String.format("Writing %d entries failed, retrying in %d ms: %s",
+                            batch.size(), TimeUnit.NANOSECONDS.toMillis(retryNanos), e));
+                    if (!pause(retryNanos)) {
+                        return; // Closed while the database is unavailable, the journal keeps the entries
+                    }
+                    retryNanos = Math.min(maxRetryNanos, retryNanos * 2);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for entries and lingers a moment for more, unless a full batch is waiting or the queue is closing.
+     *
+     * @return The oldest entries, which stay queued until they are written, or null when closed and empty.
+     */
+    private List<EntryJournal.Entry> nextBatch() throws InterruptedException {
+        lock.lock();
+        try {
+            while (pending.isEmpty()) {
+                if (closed) {
+                    return null;
+                }
+                changed.await();
+            }
+            long remaining = lingerNanos;
+            while (!closed && pending.size() < batchSize && remaining > 0) {
+                remaining = changed.awaitNanos(remaining);
+            }
+            List<EntryJournal.Entry> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+            for (EntryJournal.Entry entry : pending) {
+                if (batch.size() == batchSize) {
+                    break;
+                }
+                batch.add(entry);
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes a batch. If the database refuses its data, the entries are written one by one, and the ones it refuses
+     * are moved to the dead-letter file, so one bad entry doesn't hold up all the others.
+     */
+    private void write(List<EntryJournal.Entry> batch) throws SQLException, IOException {
+        try {
+            int inserted = sink.write(batch);
+            applied(batch, inserted);
+        } catch (SQLException e) {
+            if (!isRefused(e)) {
+                throw e;
+            }
+            for (EntryJournal.Entry entry : batch) {
+                try {
+                    applied(List.of(entry), sink.write(List.of(entry)));
+                } catch (SQLException refusedEntry) {
+                    if (!isRefused(refusedEntry)) {
+                        throw refusedEntry;
+                    }
+                    reject(entry, refusedEntry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the database refuses the data of an entry, which a retry won't change: a data exception (SQLState
+     * class 22), like a value that is out of range or truncated, or an integrity constraint violation (class 23).
+     * Any other error, like a missing table or privilege (class 42) or a lost connection, may be fixed while the
+     * entry waits, so it is retried.
+     */
+    static boolean isRefused(SQLException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataTruncation) {
+                return true; // A warning with SQLState 01004 when it is not raised by a write
+            }
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null) {
+                String state = sqlException.getSQLState();
+                return state.startsWith("22") || state.startsWith("23");
+            }
+        }
+        return false;
+    }
+
+    private void reject(EntryJournal.Entry entry, SQLException reason) throws IOException {
+        LOGGER.log(System.Logger.Level.ERROR, "Moved entry the database refuses to " + journal.getDeadLetterPath() + ": " + entry, reason);
+        journal.markDropped(entry, reason.toString());
+        dropped.incrementAndGet();
+        remove(List.of(entry));
+        rejectionListener.accept(new RejectedEntry(entry.describe(), reason.getMessage(), journal.getDeadLetterPath()));
+    }
+
+    private void applied(List<EntryJournal.Entry> entries, int inserted) throws IOException {
+        journal.markApplied(entries);
+        remove(entries);
+        batches.incrementAndGet();
+        applied.addAndGet(inserted);
+        duplicates.addAndGet(entries.size() - inserted);
+        Consumer<DataChangeEvent> current = listener;
+        for (EntryJournal.Entry entry : entries) {
+            current.accept(entry.kind() == EntryJournal.Kind.EXPENSE
+                    ? DataChangeEvent.expense(entry.userId(), entry.date())
+                    : DataChangeEvent.income(entry.userId(), entry.date()));
+        }
+    }
+
+    /**
+     * Removes written entries from the head of the queue, and empties the journal when nothing is left to write.
+     */
+    private void remove(List<EntryJournal.Entry> entries) throws IOException {
+        lock.lock();
+        try {
+            for (int i = 0; i < entries.size(); i++) {
+                pending.pollFirst();
+            }
+            if (pending.isEmpty()) {
+                journal.clear(); // No entry can be appended meanwhile, submit holds the same lock
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits before a retry. Entries saved meanwhile are still forced to disk as they come in.
+     *
+     * @return false if the queue was closed while waiting.
+     */
+    private boolean pause(long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        while (true) {
+            try {
+                journal.sync();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            lock.lock();
+            try {
+                long remaining = deadline - System.nanoTime();
+                if (closed) {
+                    return false;
+                }
+                if (remaining <= 0) {
+                    return true;
+                }
+                changed.awaitNanos(remaining);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting entries and gives the writer a moment to write the queued ones. Entries that aren't written
+     * by then stay in the journal and are written when it is opened again.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join(CLOSE_TIMEOUT_MILLIS);
+            journal.sync();
+            journal.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /**
+     * @return The amount of entries that were refused because the queue was full or the journal failed.
+     */
+    public long getRefusedCount() {
+        return refused.get();
+    }
+
+    public long getAppliedCount() {
+        return applied.get();
+    }
+
+    /**
+     * @return The amount of written entries that were skipped by their key, because an earlier attempt inserted them.
+     */
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * @return The amount of entries the database refused, which were moved to the dead-letter file.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WriteBehindQueue[pending=%d/%d, submitted=%d, applied=%d, batches=%d, duplicates=%d, retries=%d, refused=%d, dropped=%d]",
+                getPendingCount(), capacity, getSubmittedCount(), getAppliedCount(), getBatchCount(), getDuplicateCount(),
+                getRetryCount(), getRefusedCount(), getDroppedCount());
+    }
+}
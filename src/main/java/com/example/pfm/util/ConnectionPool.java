@@ -0,0 +1,376 @@
+package com.example.pfm.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small bounded JDBC connection pool.
+ * Connections are opened once and handed out again instead of doing a new handshake with the
+ * database for every query. Callers use the returned connection exactly like a normal one;
+ * calling close() hands it back to the pool instead of closing the physical connection.
+ */
+public class ConnectionPool {
+    private static final System.Logger LOGGER = System.getLogger(ConnectionPool.class.getName());
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final long leakThresholdMillis;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> active = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown;
+
+    // Pool metrics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    /**
+     * Creates a pool and pre-warms it with the minimum amount of connections.
+     *
+     * @param url The JDBC url of the database.
+     * @param user The database user.
+     * @param password The password of the database user.
+     * @param minSize The amount of connections that are always kept open.
+     * @param maxSize The maximum amount of connections that can be open at the same time.
+     * @param idleTimeoutMillis How long a connection above the minimum may stay unused before it is closed.
+     * @param borrowTimeoutMillis How long a caller waits for a free connection before giving up.
+     * @param leakThresholdMillis How long a connection may be borrowed before it is reported as a possible leak, 0 to disable.
+     */
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long idleTimeoutMillis, long borrowTimeoutMillis, long leakThresholdMillis) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pfm-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        fillToMinimum();
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, 30_000) / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool. Idle connections are validated before they are handed out,
+     * broken ones are thrown away and replaced.
+     *
+     * @return A connection which goes back to the pool when it is closed.
+     * @throws SQLException If the pool is shut down, no connection became free in time or the database can't be reached.
+     */
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down.");
+        }
+
+        long waitStart = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + " ms waiting for a database connection.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+
+        try {
+            PooledConnection pooled = takeValidIdleConnection();
+            if (pooled == null) {
+                pooled = openConnection();
+            }
+            recordWait(System.nanoTime() - waitStart);
+            pooled.borrowedAt = System.nanoTime();
+            pooled.borrowTrace = leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            active.add(pooled);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeValidIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+        return null;
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            return !pooled.physical.isClosed() && pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        totalConnections.incrementAndGet();
+        createdCount.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * Called when a borrowed connection is closed by the caller. Open transactions are rolled back
+     * and the connection is put back so it can be reused.
+     */
+    private void giveBack(PooledConnection pooled) {
+        active.remove(pooled);
+        try {
+            if (shutdown || pooled.physical.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.lastUsed = System.nanoTime();
+            idle.offerFirst(pooled); // most recently used first, so the oldest ones can go idle and be evicted
+        } catch (SQLException e) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            // The connection is already broken, nothing left to do.
+        }
+    }
+
+    /**
+     * Periodic maintenance: closes connections that have been idle too long, opens new ones
+     * up to the minimum and reports connections that have been borrowed for too long.
+     */
+    private void housekeep() {
+        if (shutdown) {
+            return;
+        }
+        long now = System.nanoTime();
+        long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+
+        PooledConnection oldest;
+        while (totalConnections.get() > minSize && (oldest = idle.peekLast()) != null
+                && now - oldest.lastUsed > idleTimeoutNanos) {
+            if (idle.removeLastOccurrence(oldest)) {
+                discard(oldest);
+                evictedCount.incrementAndGet();
+            }
+        }
+
+        fillToMinimum();
+
+        if (leakThresholdMillis > 0) {
+            long leakNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+            for (PooledConnection pooled : active) {
+                if (!pooled.leakReported && now - pooled.borrowedAt > leakNanos) {
+                    pooled.leakReported = true;
+                    leakCount.incrementAndGet();
+                    LOGGER.log(System.Logger.Level.WARNING,
+                            "Possible connection leak: connection borrowed for more than " + leakThresholdMillis + " ms",
+                            pooled.borrowTrace);
+                }
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!shutdown && totalConnections.get() < minSize) {
+            if (!permits.tryAcquire()) {
+                return;
+            }
+            try {
+                PooledConnection pooled = openConnection();
+                pooled.lastUsed = System.nanoTime();
+                idle.offerLast(pooled);
+            } catch (SQLException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Could not pre-open a database connection: " + e.getMessage());
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops the pool. Connections that are still borrowed are
+     * closed as soon as they are given back.
+     */
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    // Metrics
+
+    public int getActiveCount() {
+        return active.size();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getTotalCount() {
+        return totalConnections.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getWaitingThreads() {
+        return permits.getQueueLength();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    public long getLeakCount() {
+        return leakCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0.0 : totalWaitNanos.get() / (double) borrows / 1_000_000.0;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool[active=%d, idle=%d, total=%d/%d, waiting=%d, borrows=%d, avgWait=%.3fms, leaks=%d]",
+                getActiveCount(), getIdleCount(), getTotalCount(), maxSize, getWaitingThreads(),
+                getBorrowCount(), getAverageWaitMillis(), getLeakCount());
+    }
+
+    /**
+     * A physical connection owned by the pool, together with its bookkeeping.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private volatile long lastUsed;
+        private volatile long borrowedAt;
+        private volatile Throwable borrowTrace;
+        private volatile boolean leakReported;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        /**
+         * Wraps the physical connection in a proxy whose close() gives it back to the pool.
+         * Each borrow gets its own handle, so closing an old handle twice can't return the connection again.
+         */
+        private Connection newHandle() {
+            AtomicBoolean closed = new AtomicBoolean();
+            InvocationHandler handler = (proxy, method, args) -> invoke(closed, proxy, method, args);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, handler);
+        }
+
+        private Object invoke(AtomicBoolean closed, Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (closed.compareAndSet(false, true)) {
+                        giveBack(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed.get() || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + "]";
+                default:
+                    if (closed.get()) {
+                        throw new SQLException("Connection has already been returned to the pool.");
+                    }
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.pfm.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Supplier;
+
+/**
+ * Collects the metrics of the components of a session, like the connection pool and the caches, under a name each.
+ * The components keep their own counters; the registry only reads their summaries when a snapshot is taken, so
+ * registering a component costs nothing while it is used.
+ */
+public class MetricsRegistry {
+    private final Map<String, Supplier<?>> sources = new LinkedHashMap<>();
+
+    /**
+     * Registers a component, replacing the one registered under the same name.
+     *
+     * @param name The name of the component.
+     * @param source Returns the current metrics of the component, usually the component itself with its toString.
+     */
+    public synchronized void register(String name, Supplier<?> source) {
+        sources.put(name, source);
+    }
+
+    /**
+     * Removes a component, e.g. when it is closed before the session ends.
+     *
+     * @param name The name of the component.
+     */
+    public synchronized void unregister(String name) {
+        sources.remove(name);
+    }
+
+    /**
+     * @return The current metrics of every component by name, in the order they were registered.
+     */
+    public synchronized Map<String, String> snapshot() {
+        Map<String, String> snapshot = new LinkedHashMap<>();
+        sources.forEach((name, source) -> snapshot.put(name, String.valueOf(source.get())));
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "MetricsRegistry[", "]");
+        snapshot().forEach((name, metrics) -> joiner.add(name + "=" + metrics));
+        return joiner.toString();
+    }
+}
@@ -1,18 +1,78 @@
 package com.example.pfm.util;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
  * Utility class for creating connections to the MySQL database.
+ * Connections are handed out by a shared {@link ConnectionPool}, so closing a connection
+ * returns it to the pool instead of closing it.
  */
 public class MySQLConnection {
-    private static final String DATABASE_URL = "jdbc:mysql://adainforma.tk:3306/bp2_pfm";
+    // rewriteBatchedStatements makes the driver send a batch of inserts as multi-row INSERT statements.
+    // useServerPrepStmts and cachePrepStmts make the driver prepare each SQL string once per connection on the server
+    // and reuse it whenever the DAOs prepare the same SQL again, since pooled connections stay open.
+    // useCursorFetch makes a statement with a fetch size read its rows in chunks, for exports of any size.
+    private static final String DATABASE_URL = "jdbc:mysql://adainforma.tk:3306/bp2_pfm?rewriteBatchedStatements=true"
+            + "&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=256&prepStmtCacheSqlLimit=2048"
+            + "&useCursorFetch=true";
     private static final String DATABASE_USER = "pfm";
     private static final String DATABASE_PASSWORD = "8t9&Zf1t9";
 
+    // Pool settings
+    private static final int POOL_MIN_SIZE = 2;
+    private static final int POOL_MAX_SIZE = 10;
+    private static final long POOL_IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    private static final long POOL_BORROW_TIMEOUT_MILLIS = 10 * 1000;
+    private static final long POOL_LEAK_THRESHOLD_MILLIS = 60 * 1000;
+
+    private static volatile ConnectionPool pool;
+
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DATABASE_URL, DATABASE_USER, DATABASE_PASSWORD);
+        return getPool().getConnection();
+    }
+
+    /**
+     * Returns the shared connection pool, creating it on first use.
+     *
+     * @return The connection pool used for all database access.
+     */
+    public static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (MySQLConnection.class) {
+                current = pool;
+                if (current == null) {
+                    current = new ConnectionPool(DATABASE_URL, DATABASE_USER, DATABASE_PASSWORD,
+                            POOL_MIN_SIZE, POOL_MAX_SIZE, POOL_IDLE_TIMEOUT_MILLIS,
+                            POOL_BORROW_TIMEOUT_MILLIS, POOL_LEAK_THRESHOLD_MILLIS);
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Replaces the shared pool, e.g. with one on an embedded database for benchmarks.
+     * The previous pool is shut down.
+     *
+     * @param newPool The pool to use for all database access from now on.
+     */
+    public static synchronized void setPool(ConnectionPool newPool) {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = newPool;
+    }
+
+    /**
+     * Closes all pooled connections. Called when the application stops.
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
     }
 }
@@ -0,0 +1,119 @@
+package com.example.pfm.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies the versioned SQL migrations in /db/migration to the database.
+ * Applied versions are recorded in the schema_version table, so every migration runs only once.
+ */
+public class SchemaMigrator {
+    private static final String MIGRATION_PATH = "/db/migration/";
+
+    // Migrations in the order they have to be applied. New migrations are added at the end.
+    private static final String[] MIGRATIONS = {
+            "V1__date_range_indexes.sql",
+            "V2__monthly_totals.sql",
+            "V3__applied_entries.sql"
+    };
+
+    /**
+     * Applies all migrations that have not been applied yet.
+     *
+     * @param conn The connection to run the migrations on.
+     * @return The amount of migrations that were applied.
+     * @throws SQLException If a migration fails. Earlier migrations stay applied.
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY, " +
+                    "script VARCHAR(255) NOT NULL, " +
+                    "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        }
+
+        Set<Integer> applied = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version")) {
+            while (rs.next()) {
+                applied.add(rs.getInt("version"));
+            }
+        }
+
+        int count = 0;
+        for (String script : MIGRATIONS) {
+            int version = parseVersion(script);
+            if (applied.contains(version)) {
+                continue;
+            }
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : readStatements(script)) {
+                    stmt.execute(sql);
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO schema_version (version, script) VALUES (?, ?)")) {
+                stmt.setInt(1, version);
+                stmt.setString(2, script);
+                stmt.executeUpdate();
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Applies the migrations using a connection from {@link MySQLConnection}.
+     * Errors are printed instead of thrown, so the application can still start when the database is unreachable.
+     */
+    public static void migrate() {
+        try (Connection conn = MySQLConnection.getConnection()) {
+            migrate(conn);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static int parseVersion(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    /**
+     * Reads a migration script and splits it into separate statements. Comment lines are skipped.
+     */
+    private static List<String> readStatements(String script) throws SQLException {
+        String content;
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream(MIGRATION_PATH + script)) {
+            if (in == null) {
+                throw new SQLException("Migration script not found: " + script);
+            }
+            content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Could not read migration script: " + script, e);
+        }
+
+        StringBuilder withoutComments = new StringBuilder();
+        for (String line : content.split("\\R")) {
+            if (!line.trim().startsWith("--")) {
+                withoutComments.append(line).append('\n');
+            }
+        }
+
+        List<String> statements = new ArrayList<>();
+        for (String sql : withoutComments.toString().split(";")) {
+            if (!sql.isBlank()) {
+                statements.add(sql.trim());
+            }
+        }
+        return statements;
+    }
+}
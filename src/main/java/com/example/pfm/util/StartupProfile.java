@@ -0,0 +1,71 @@
+package com.example.pfm.util;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the phases of the application startup, when started with -Dpfm.startupProfile=true.
+ * Every phase is recorded with the time since the JVM started and the amount of classes loaded by then, which shows
+ * where the time between launching, the login screen and the first frame of the dashboard goes.
+ * Without the property nothing is recorded, so the marks can stay in the startup code.
+ */
+public final class StartupProfile {
+    private static final System.Logger LOGGER = System.getLogger(StartupProfile.class.getName());
+    private static final boolean ENABLED = Boolean.getBoolean("pfm.startupProfile");
+
+    private static final List<Phase> phases = new ArrayList<>();
+
+    private record Phase(String name, long millisSinceJvmStart, long loadedClasses, String thread) {
+    }
+
+    private StartupProfile() {
+    }
+
+    /**
+     * @return true if the startup is being profiled.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Records that a phase of the startup has been reached.
+     *
+     * @param phase The name of the phase, e.g. "login screen shown".
+     */
+    public static void mark(String phase) {
+        if (!ENABLED) {
+            return;
+        }
+        long millis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        synchronized (phases) {
+            phases.add(new Phase(phase, millis, classLoading.getTotalLoadedClassCount(), Thread.currentThread().getName()));
+        }
+    }
+
+    /**
+     * Logs the phases recorded so far, with the time and classes loaded since the previous phase.
+     */
+    public static void report() {
+        if (!ENABLED) {
+            return;
+        }
+        StringBuilder report = new StringBuilder("Startup profile:");
+        synchronized (phases) {
+            long previousMillis = 0;
+            long previousClasses = 0;
+            for (Phase phase : phases) {
+                report.append(String.format("%n  %6d ms (+%5d ms) %6d classes (+%5d)  %s [%s]",
+                        phase.millisSinceJvmStart(), phase.millisSinceJvmStart() - previousMillis,
+                        phase.loadedClasses(), phase.loadedClasses() - previousClasses,
+                        phase.name(), phase.thread()));
+                previousMillis = phase.millisSinceJvmStart();
+                previousClasses = phase.loadedClasses();
+            }
+        }
+        LOGGER.log(System.Logger.Level.INFO, report.toString());
+    }
+}
@@ -0,0 +1,7 @@
+-- Composite indexes for the per-user date range queries in ExpenseDAO, IncomeDAO and BudgetDAO.
+-- The DAOs filter with "user_id = ? AND date >= ? AND date < ?", which can use these as range scans.
+
+CREATE INDEX idx_expense_user_date ON expense (user_id, date);
+CREATE INDEX idx_expense_user_category_date ON expense (user_id, category, date);
+CREATE INDEX idx_income_user_date ON income (user_id, date);
+CREATE INDEX idx_budget_user_date ON budget (user_id, date);
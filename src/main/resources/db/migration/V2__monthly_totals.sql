@@ -0,0 +1,28 @@
+-- Monthly totals per user and category, maintained by the DAOs on every write (see RunningTotals).
+-- Income rows use the income source as category. The existing rows are summed once here.
+
+CREATE TABLE expense_monthly_total (
+    user_id INT NOT NULL,
+    period_year INT NOT NULL,
+    period_month INT NOT NULL,
+    category VARCHAR(50) NOT NULL,
+    total DECIMAL(14,2) NOT NULL,
+    PRIMARY KEY (user_id, period_year, period_month, category)
+);
+
+CREATE TABLE income_monthly_total (
+    user_id INT NOT NULL,
+    period_year INT NOT NULL,
+    period_month INT NOT NULL,
+    category VARCHAR(50) NOT NULL,
+    total DECIMAL(14,2) NOT NULL,
+    PRIMARY KEY (user_id, period_year, period_month, category)
+);
+
+INSERT INTO expense_monthly_total (user_id, period_year, period_month, category, total)
+SELECT user_id, YEAR(date), MONTH(date), category, SUM(amount) FROM expense
+GROUP BY user_id, YEAR(date), MONTH(date), category;
+
+INSERT INTO income_monthly_total (user_id, period_year, period_month, category, total)
+SELECT user_id, YEAR(date), MONTH(date), source, SUM(amount) FROM income
+GROUP BY user_id, YEAR(date), MONTH(date), source;
@@ -0,0 +1,8 @@
+-- Idempotency keys of the entries written from the local write-behind journal (see WriteBehindQueue).
+-- A key is inserted in the same transaction as its expense or income, so a batch that is retried after its commit
+-- went through can't insert the entries a second time.
+
+CREATE TABLE applied_entry (
+    entry_key VARCHAR(36) NOT NULL PRIMARY KEY,
+    applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,97 @@
+package com.example.pfm.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregateCacheTest {
+
+    private static final YearMonth MARCH = YearMonth.of(2024, 3);
+    private static final YearMonth APRIL = YearMonth.of(2024, 4);
+
+    private AggregateCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new AggregateCache(4, 60_000);
+        loads = new AtomicInteger();
+    }
+
+    private double load(AggregateCache.Kind kind, int userId, YearMonth month) throws SQLException {
+        return cache.get(kind, userId, month, null, () -> (double) loads.incrementAndGet());
+    }
+
+    @Test
+    void secondLookupIsServedFromCache() throws SQLException {
+        assertEquals(1.0, load(AggregateCache.Kind.EXPENSE_TOTAL, 1, MARCH));
+        assertEquals(1.0, load(AggregateCache.Kind.EXPENSE_TOTAL, 1, MARCH));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void expenseWriteInvalidatesOnlyThatUserAndMonth() throws SQLException {
+        load(AggregateCache.Kind.EXPENSE_TOTAL, 1, MARCH);
+        load(AggregateCache.Kind.EXPENSE_TOTAL, 1, APRIL);
+        load(AggregateCache.Kind.EXPENSE_TOTAL, 2, MARCH);
+        load(AggregateCache.Kind.INCOME_TOTAL, 1, MARCH);
+
+        cache.invalidateExpenses(1, LocalDate.of(2024, 3, 15));
+
+        assertEquals(3, cache.size());
+        load(AggregateCache.Kind.EXPENSE_TOTAL, 1, MARCH);
+        assertEquals(5, loads.get(), "Only the invalidated entry should be loaded again");
+    }
+
+    @Test
+    void expenseWriteInvalidatesYearlyTotalsAndBudgets() throws SQLException {
+        load(AggregateCache.Kind.EXPENSE_MONTHLY_TOTALS, 1, YearMonth.of(2024, 1));
+        load(AggregateCache.Kind.EXPENSE_MONTHLY_TOTALS, 1, YearMonth.of(2023, 1));
+        load(AggregateCache.Kind.BUDGETS, 1, null);
+
+        cache.invalidateExpenses(1, LocalDate.of(2024, 3, 15));
+
+        assertEquals(1, cache.size(), "Only the 2023 totals should be left");
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() throws SQLException {
+        for (int month = 1; month <= 4; month++) {
+            load(AggregateCache.Kind.EXPENSE_TOTAL, 1, YearMonth.of(2024, month));
+        }
+        load(AggregateCache.Kind.EXPENSE_TOTAL, 1, YearMonth.of(2024, 1)); // January is used again
+        load(AggregateCache.Kind.EXPENSE_TOTAL, 1, YearMonth.of(2024, 5)); // evicts February
+
+        assertEquals(4, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        load(AggregateCache.Kind.EXPENSE_TOTAL, 1, YearMonth.of(2024, 1));
+        assertEquals(5, loads.get(), "January should still be cached");
+    }
+
+    @Test
+    void expiredEntryIsLoadedAgain() throws SQLException, InterruptedException {
+        cache = new AggregateCache(4, 1);
+        load(AggregateCache.Kind.INCOME_TOTAL, 1, MARCH);
+        Thread.sleep(5);
+        load(AggregateCache.Kind.INCOME_TOTAL, 1, MARCH);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        assertThrows(SQLException.class, () -> cache.get(AggregateCache.Kind.INCOME_TOTAL, 1, MARCH, null, () -> {
+            throw new SQLException("database down");
+        }));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.pfm.dao;
+
+import com.example.pfm.config.CategoryConfig;
+import com.example.pfm.model.Money;
+import com.example.pfm.util.ConnectionPool;
+import com.example.pfm.util.MySQLConnection;
+import com.example.pfm.util.SchemaMigrator;
+import com.example.pfm.util.TestDatabase;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Random;
+
+/**
+ * An embedded H2 database in MySQL mode with a seeded, reproducible dataset, installed as the pool
+ * behind {@link MySQLConnection} so the DAOs can be benchmarked without the remote database.
+ * All expenses belong to user 1 and are spread over the last ten years, including the current month.
+ */
+public class BenchmarkDatabase {
+    public static final int USER_ID = 1;
+    private static final int SEED = 42;
+
+    /**
+     * Creates the schema, seeds it and points {@link MySQLConnection} at it.
+     *
+     * @param expenses The amount of expenses to seed.
+     */
+    public static void start(int expenses) throws SQLException {
+        String url = "jdbc:h2:mem:pfm_benchmark_" + expenses + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+        ConnectionPool pool = new ConnectionPool(url, "sa", "", 1, 4, 60_000, 10_000, 0);
+        MySQLConnection.setPool(pool);
+
+        try (Connection conn = pool.getConnection()) {
+            TestDatabase.createBaselineTables(conn);
+            seedExpenses(conn, expenses);
+            seedBudgets(conn);
+            SchemaMigrator.migrate(conn);
+        }
+    }
+
+    /**
+     * Drops the seeded data and shuts the pool down.
+     */
+    public static void stop() throws SQLException {
+        try (Connection conn = MySQLConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        MySQLConnection.shutdown();
+    }
+
+    private static void seedExpenses(Connection conn, int expenses) throws SQLException {
+        Random random = new Random(SEED);
+        LocalDate firstDay = LocalDate.now().minusYears(10);
+        int days = (int) (LocalDate.now().toEpochDay() - firstDay.toEpochDay()) + 1;
+
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO expense (user_id, amount, date, category) VALUES (?, ?, ?, ?)")) {
+            for (int i = 0; i < expenses; i++) {
+                stmt.setInt(1, USER_ID);
+                stmt.setBigDecimal(2, Money.ofCents(random.nextInt(20_000)).toBigDecimal());
+                stmt.setDate(3, Date.valueOf(firstDay.plusDays(random.nextInt(days))));
+                stmt.setString(4, CategoryConfig.CATEGORIES.get(random.nextInt(CategoryConfig.CATEGORIES.size())));
+                stmt.addBatch();
+                if (i % 10_000 == 9_999) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+        conn.commit();
+        conn.setAutoCommit(true);
+    }
+
+    /**
+     * Seeds one budget per category for each of the last twelve months.
+     */
+    private static void seedBudgets(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO budget (user_id, category, budget_limit, date) VALUES (?, ?, ?, ?)")) {
+            YearMonth month = YearMonth.now();
+            for (int i = 0; i < 12; i++) {
+                for (String category : CategoryConfig.CATEGORIES) {
+                    stmt.setInt(1, USER_ID);
+                    stmt.setString(2, category);
+                    stmt.setBigDecimal(3, Money.ofCents(50_000).toBigDecimal());
+                    stmt.setDate(4, Date.valueOf(month.minusMonths(i).atDay(1)));
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+    }
+}
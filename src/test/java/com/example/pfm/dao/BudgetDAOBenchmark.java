@@ -0,0 +1,59 @@
+package com.example.pfm.dao;
+
+import com.example.pfm.model.BudgetSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the budget status query, which joins every budget with the expenses spent in it,
+ * on an embedded database seeded with 96 budgets and 1k, 100k and 1M expenses.
+ * Run with: mvn -P benchmark verify
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BudgetDAOBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int expenses;
+
+    private BudgetDAO budgetDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.start(expenses);
+        // A cache whose entries expire right away, so every call reaches the database
+        budgetDAO = new BudgetDAO(new AggregateCache(1, 0));
+        // The DAO reports query errors by returning no budgets, which would make the results meaningless
+        if (budgetDAO.getBudgetSnapshot(BenchmarkDatabase.USER_ID).isEmpty()) {
+            throw new IllegalStateException("The budget query returned no budgets on the embedded database");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public BudgetSnapshot getBudgetSnapshot() {
+        return budgetDAO.getBudgetSnapshot(BenchmarkDatabase.USER_ID);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.pfm.dao;
+
+import com.example.pfm.util.SchemaMigrator;
+import com.example.pfm.util.TestDatabase;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Compares the old MONTH(date)/YEAR(date) predicate with the half-open date range predicate on a
+ * seeded in-memory table, before and after the V1 index migration. Prints the query plan and the
+ * average query time of both variants.
+ *
+ * This is not a unit test. Run the main method from the IDE, optionally with the amount of rows
+ * as the first argument (default 1,000,000).
+ */
+public class DateRangeQueryBenchmark {
+    private static final int USERS = 100;
+    private static final int ITERATIONS = 50;
+    private static final String[] CATEGORIES = {"Groceries", "Shopping", "Utilities", "Entertainment", "Insurance", "Hobbies", "Travel", "Other"};
+
+    private static final String FUNCTION_SQL =
+            "SELECT SUM(amount) AS total FROM expense WHERE user_id = ? AND MONTH(date) = ? AND YEAR(date) = ?";
+    private static final String RANGE_SQL =
+            "SELECT SUM(amount) AS total FROM expense WHERE user_id = ? AND date >= ? AND date < ?";
+
+    public static void main(String[] args) throws SQLException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        try (Connection conn = TestDatabase.openBaseline("benchmark")) {
+            seed(conn, rows);
+
+            System.out.println("== Without indexes ==");
+            run(conn);
+
+            SchemaMigrator.migrate(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE");
+            }
+
+            System.out.println("== With (user_id, date) indexes ==");
+            run(conn);
+        }
+    }
+
+    private static void seed(Connection conn, int rows) throws SQLException {
+        long start = System.nanoTime();
+        Random random = new Random(42);
+        LocalDate firstDay = LocalDate.now().minusYears(10);
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO expense (user_id, amount, date, category) VALUES (?, ?, ?, ?)")) {
+            for (int i = 0; i < rows; i++) {
+                stmt.setInt(1, 1 + random.nextInt(USERS));
+                stmt.setDouble(2, random.nextInt(20_000) / 100.0);
+                stmt.setDate(3, Date.valueOf(firstDay.plusDays(random.nextInt(3650))));
+                stmt.setString(4, CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                stmt.addBatch();
+                if (i % 10_000 == 9_999) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+        conn.commit();
+        conn.setAutoCommit(true);
+        System.out.printf("Seeded %,d expenses for %d users in %d ms%n", rows, USERS, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void run(Connection conn) throws SQLException {
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+
+        try (PreparedStatement function = conn.prepareStatement(FUNCTION_SQL);
+             PreparedStatement range = conn.prepareStatement(RANGE_SQL)) {
+            function.setInt(1, 1);
+            function.setInt(2, month.getMonthValue());
+            function.setInt(3, month.getYear());
+            range.setInt(1, 1);
+            range.setDate(2, Date.valueOf(month));
+            range.setDate(3, Date.valueOf(month.plusMonths(1)));
+
+            System.out.println("MONTH()/YEAR() plan: " + explain(conn, FUNCTION_SQL, month, false));
+            System.out.println("Date range plan:     " + explain(conn, RANGE_SQL, month, true));
+            System.out.printf("MONTH()/YEAR() avg: %.3f ms%n", time(function));
+            System.out.printf("Date range avg:     %.3f ms%n", time(range));
+        }
+    }
+
+    private static String explain(Connection conn, String sql, LocalDate month, boolean range) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            stmt.setInt(1, 1);
+            if (range) {
+                stmt.setDate(2, Date.valueOf(month));
+                stmt.setDate(3, Date.valueOf(month.plusMonths(1)));
+            } else {
+                stmt.setInt(2, month.getMonthValue());
+                stmt.setInt(3, month.getYear());
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1).replaceAll("\\s+", " ") : "";
+            }
+        }
+    }
+
+    private static double time(PreparedStatement stmt) throws SQLException {
+        // Warm-up. The user changes every run so H2's query result cache can't answer it.
+        for (int i = 0; i < 5; i++) {
+            stmt.setInt(1, 1 + i % USERS);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+            }
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            stmt.setInt(1, 1 + i % USERS);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+            }
+        }
+        return (System.nanoTime() - start) / (double) ITERATIONS / 1_000_000.0;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.pfm.dao;
+
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Money;
+import com.example.pfm.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseBatchInsertTest {
+
+    private Connection conn;
+    private ExpenseDAO expenseDAO;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = TestDatabase.open("batchtest");
+        expenseDAO = new ExpenseDAO(new AggregateCache(16, 60_000), new LocalLedger(false), new RunningTotals());
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        TestDatabase.close(conn);
+    }
+
+    private int countRows() throws SQLException {
+        return queryInt("SELECT COUNT(*) FROM expense");
+    }
+
+    private int queryInt(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    void expensesAreInsertedAcrossSeveralBatches() throws SQLException {
+        List<Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < ExpenseDAO.BATCH_SIZE * 2 + 1; i++) {
+            expenses.add(new Expense(1, Money.ofCents(1000), "Food", LocalDate.of(2024, 1, 1).plusDays(i % 365)));
+        }
+
+        assertEquals(expenses.size(), expenseDAO.insertExpenses(conn, expenses.iterator()));
+        assertEquals(expenses.size(), countRows());
+        assertEquals(expenses.size() * 10, queryInt("SELECT SUM(total) FROM expense_monthly_total"), "The running totals should include every expense");
+        assertTrue(conn.getAutoCommit(), "The original auto-commit mode should be restored");
+    }
+
+    @Test
+    void failedBatchRollsBackEveryExpense() throws SQLException {
+        List<Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < ExpenseDAO.BATCH_SIZE; i++) {
+            expenses.add(new Expense(1, Money.ofCents(1000), "Food", LocalDate.of(2024, 1, 1)));
+        }
+        expenses.add(new Expense(1, Money.ofCents(1000), null, LocalDate.of(2024, 1, 1))); // violates NOT NULL in the second batch
+
+        Iterator<Expense> iterator = expenses.iterator();
+        assertThrows(SQLException.class, () -> expenseDAO.insertExpenses(conn, iterator));
+        assertEquals(0, countRows(), "The first batch should be rolled back as well");
+        assertEquals(0, queryInt("SELECT COUNT(*) FROM expense_monthly_total"), "The running totals should not change either");
+    }
+
+    @Test
+    void journalEntriesAreInsertedOnlyOnce() throws SQLException {
+        Map<String, Expense> first = new LinkedHashMap<>();
+        first.put("key-1", new Expense(1, Money.ofCents(1000), "Food", LocalDate.of(2024, 1, 1)));
+        first.put("key-2", new Expense(1, Money.ofCents(2000), "Rent", LocalDate.of(2024, 1, 2)));
+        assertEquals(2, expenseDAO.insertExpensesOnce(conn, first));
+
+        // A retry of the same batch with one new entry only inserts the new one
+        Map<String, Expense> retry = new LinkedHashMap<>(first);
+        retry.put("key-3", new Expense(1, Money.ofCents(500), "Food", LocalDate.of(2024, 1, 3)));
+        assertEquals(1, expenseDAO.insertExpensesOnce(conn, retry));
+
+        assertEquals(3, countRows());
+        assertEquals(3, queryInt("SELECT COUNT(*) FROM applied_entry"));
+        assertEquals(35, queryInt("SELECT SUM(total) FROM expense_monthly_total"));
+        assertEquals(0, expenseDAO.insertExpensesOnce(conn, retry), "A batch that was applied completely inserts nothing");
+    }
+
+    @Test
+    void insertedExpensesAreAddedToTheLedger() throws SQLException {
+        LocalLedger ledger = new LocalLedger(true);
+        ledger.load(conn, 1);
+        ExpenseDAO dao = new ExpenseDAO(new AggregateCache(16, 60_000), ledger, new RunningTotals());
+        Map<String, Expense> expenses = new LinkedHashMap<>();
+        expenses.put("key-1", new Expense(1, Money.ofCents(1000), "Food", LocalDate.of(2024, 1, 1)));
+        expenses.put("key-2", new Expense(1, Money.ofCents(2000), "Rent", LocalDate.of(2024, 1, 2)));
+        expenses.put("key-3", new Expense(2, Money.ofCents(500), "Food", LocalDate.of(2024, 1, 3)));
+
+        assertEquals(3, dao.insertExpensesOnce(conn, expenses));
+
+        assertEquals(queryInt("SELECT id FROM expense WHERE amount = 20.00"), expenses.get("key-2").getId(), "The generated ids should be read back");
+        // No MySQL database is reachable in the tests, so the total can only come from the written rows, not a reload
+        assertEquals(Money.ofCents(3000), ledger.get(1).expenseTotal(YearMonth.of(2024, 1)));
+        assertFalse(ledger.isLoaded(2));
+    }
+
+    @Test
+    void failedJournalBatchRecordsNoKeys() throws SQLException {
+        Map<String, Expense> expenses = new LinkedHashMap<>();
+        expenses.put("key-1", new Expense(1, Money.ofCents(1000), "Food", LocalDate.of(2024, 1, 1)));
+        expenses.put("key-2", new Expense(1, Money.ofCents(1000), null, LocalDate.of(2024, 1, 1))); // violates NOT NULL
+
+        assertThrows(SQLException.class, () -> expenseDAO.insertExpensesOnce(conn, expenses));
+        assertEquals(0, countRows());
+        assertEquals(0, queryInt("SELECT COUNT(*) FROM applied_entry"), "The keys should be rolled back with the rows");
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.pfm.dao;
+
+import com.example.pfm.model.Category;
+import com.example.pfm.model.CategoryTotals;
+import com.example.pfm.model.Expense;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the expense queries on an embedded database seeded with 1k, 100k and 1M expenses.
+ * Run with: mvn -P benchmark verify
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpenseDAOBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int expenses;
+
+    private ExpenseDAO expenseDAO;
+    private List<Expense> loadedExpenses;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.start(expenses);
+        // A cache whose entries expire right away, so every call reaches the database
+        expenseDAO = new ExpenseDAO(new AggregateCache(1, 0));
+        loadedExpenses = expenseDAO.getAllExpensesByUserId(BenchmarkDatabase.USER_ID);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        BenchmarkDatabase.stop();
+    }
+
+    /**
+     * Reading and mapping every row of the user to Expense objects.
+     */
+    @Benchmark
+    public List<Expense> getAllExpensesByUserId() {
+        return expenseDAO.getAllExpensesByUserId(BenchmarkDatabase.USER_ID);
+    }
+
+    /**
+     * Per-category totals of the current month, aggregated by the database.
+     */
+    @Benchmark
+    public CategoryTotals getTotalSpentPerCategory() {
+        return expenseDAO.getTotalSpentPerCategory(BenchmarkDatabase.USER_ID);
+    }
+
+    /**
+     * Per-category totals of all loaded expenses, aggregated in memory into the category-indexed array.
+     */
+    @Benchmark
+    public CategoryTotals aggregatePerCategoryInMemory() {
+        CategoryTotals.Builder totals = new CategoryTotals.Builder();
+        for (Expense expense : loadedExpenses) {
+            totals.add(Category.of(expense.getCategory()), expense.getAmount());
+        }
+        return totals.build();
+    }
+
+    /**
+     * The twelve monthly totals of the current year in one grouped query.
+     */
+    @Benchmark
+    public long[] getMonthlyTotalsForYear() {
+        LocalDate firstDay = LocalDate.now().withDayOfYear(1);
+        return expenseDAO.getMonthlyTotals(BenchmarkDatabase.USER_ID, firstDay, firstDay.plusYears(1));
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.pfm.dao;
+
+import com.example.pfm.model.Category;
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Income;
+import com.example.pfm.model.Money;
+import com.example.pfm.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalLedgerTest {
+
+    private Connection conn;
+    private LocalLedger ledger;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = TestDatabase.open("ledgertest");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO expense (user_id, amount, date, category) VALUES " +
+                    "(1, 10.50, '2024-03-01', 'Groceries'), (1, 4.50, '2024-03-31', 'Groceries'), " +
+                    "(1, 100.00, '2024-03-15', 'Travel'), (1, 7.00, '2024-04-01', 'Groceries'), " +
+                    "(1, 2.00, '2024-03-10', 'Removed category'), (2, 999.00, '2024-03-01', 'Travel')");
+            stmt.execute("INSERT INTO income (user_id, amount, source, date) VALUES " +
+                    "(1, 2500.00, 'Salary', '2024-03-25'), (1, 2500.00, 'Salary', '2024-04-25')");
+        }
+        ledger = new LocalLedger(true);
+        ledger.load(conn, 1);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        TestDatabase.close(conn);
+    }
+
+    @Test
+    void answersTotalsOfTheLoadedUser() {
+        LocalLedger.UserLedger loaded = ledger.get(1);
+        YearMonth march = YearMonth.of(2024, 3);
+
+        assertTrue(ledger.isLoaded(1));
+        assertNull(ledger.get(2), "Users that are not loaded should be queried from the database");
+        assertEquals(Money.parse("117.00"), loaded.expenseTotal(march));
+        assertEquals(Money.parse("15.00"), loaded.expenseTotal(march, Category.of("Groceries")));
+        assertEquals(Money.parse("2.00"), loaded.expenseCategoryTotals(march).get(Category.OTHER));
+        assertEquals(Money.parse("2500.00"), loaded.incomeTotal(march));
+        assertArrayEquals(new long[]{11700, 700, 0}, loaded.monthlyExpenseTotals(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 6, 1)));
+    }
+
+    @Test
+    void totalsOverADateRangeMatchTheBudgetWindow() {
+        LocalLedger.UserLedger loaded = ledger.get(1);
+        Category groceries = Category.of("Groceries");
+
+        // A budget set on the 15th counts the expenses until the 14th of the next month, like the query does
+        assertEquals(Money.parse("11.50"), loaded.expenseTotal(LocalDate.of(2024, 3, 15), LocalDate.of(2024, 4, 15), groceries));
+        assertEquals(Money.parse("15.00"), loaded.expenseTotal(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 4, 1), groceries));
+    }
+
+    @Test
+    void writesAreAppliedOnce() {
+        Expense expense = new Expense(1, Money.parse("20.00"), "Travel", LocalDate.of(2024, 3, 20));
+        expense.setId(100);
+        ledger.expenseWritten(expense);
+        ledger.expenseWritten(expense); // e.g. a write that was already read while loading
+
+        assertEquals(Money.parse("137.00"), ledger.get(1).expenseTotal(YearMonth.of(2024, 3)));
+
+        expense.setDate(LocalDate.of(2024, 4, 2));
+        ledger.expenseWritten(expense);
+        assertEquals(Money.parse("117.00"), ledger.get(1).expenseTotal(YearMonth.of(2024, 3)));
+        assertEquals(Money.parse("27.00"), ledger.get(1).expenseTotal(YearMonth.of(2024, 4)));
+
+        ledger.expenseDeleted(1, 100);
+        assertEquals(Money.parse("7.00"), ledger.get(1).expenseTotal(YearMonth.of(2024, 4)));
+    }
+
+    @Test
+    void writesOfOtherUsersAreIgnored() {
+        Income income = new Income(2, Money.parse("50.00"), "Salary", LocalDate.of(2024, 3, 1));
+        income.setId(100);
+        ledger.incomeWritten(income);
+
+        assertFalse(ledger.isLoaded(2));
+    }
+
+    @Test
+    void daosAnswerFromTheLedger() {
+        ExpenseDAO expenseDAO = new ExpenseDAO(new AggregateCache(16, 60_000), ledger);
+
+        // No MySQL database is reachable in the tests, so these totals can only come from the ledger
+        assertEquals(Money.parse("117.00"), expenseDAO.getTotalExpenseForMonth(1, 3, 2024));
+        assertEquals(1050 + 450 + 200 + 10000, expenseDAO.getMonthlyTotalsForYear(1, 2024)[2]);
+    }
+
+    @Test
+    void unloadedUsersAreForgotten() {
+        ledger.unload(1);
+
+        assertFalse(ledger.isLoaded(1));
+        assertNull(ledger.get(1));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.pfm.dao;
+
+import com.example.pfm.model.Budget;
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Money;
+import com.example.pfm.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowMappersTest {
+
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = TestDatabase.open("rowmapperstest");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO expense (user_id, amount, date, category) VALUES " +
+                    "(1, 10.50, '2024-03-01', 'Groceries'), (1, 7.00, '2024-04-01', 'Travel'), (2, 3.00, '2024-03-02', 'Travel')");
+            stmt.execute("INSERT INTO budget (user_id, category, budget_limit, date) VALUES (1, 'Groceries', 200.00, '2024-03-01')");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        TestDatabase.close(conn);
+    }
+
+    @Test
+    void mapsRowsWithBoundParameters() throws SQLException {
+        String sql = "SELECT " + RowMappers.EXPENSE_COLUMNS + " FROM expense WHERE user_id = ? AND date >= ? ORDER BY id";
+        List<Expense> expenses = Jdbc.queryList(conn, sql, RowMappers.EXPENSE, 1, LocalDate.of(2024, 3, 1));
+
+        assertEquals(2, expenses.size());
+        Expense first = expenses.get(0);
+        assertEquals(1, first.getUserId());
+        assertEquals(Money.parse("10.50"), first.getAmount());
+        assertEquals("Groceries", first.getCategory());
+        assertEquals(LocalDate.of(2024, 3, 1), first.getDate());
+        assertTrue(first.getId() > 0);
+    }
+
+    @Test
+    void queryOneReturnsNullWithoutRow() throws SQLException {
+        String sql = "SELECT " + RowMappers.EXPENSE_COLUMNS + " FROM expense WHERE id = ?";
+        assertNull(Jdbc.queryOne(conn, sql, RowMappers.EXPENSE, 999));
+    }
+
+    @Test
+    void mapsColumnsByNameInAnyOrder() throws SQLException {
+        String sql = "SELECT category, date, amount, user_id, id FROM expense WHERE user_id = ?";
+        Expense expense = Jdbc.queryOne(conn, sql, RowMappers.EXPENSE, 2);
+
+        assertEquals("Travel", expense.getCategory());
+        assertEquals(Money.parse("3.00"), expense.getAmount());
+    }
+
+    @Test
+    void budgetUsesOptionalSpentColumn() throws SQLException {
+        Budget withoutSpent = Jdbc.queryOne(conn, "SELECT " + RowMappers.BUDGET_COLUMNS + " FROM budget", RowMappers.BUDGET);
+        assertEquals(Money.ZERO, withoutSpent.getSpentAmount());
+
+        Budget withSpent = Jdbc.queryOne(conn, "SELECT " + RowMappers.BUDGET_COLUMNS + ", 12.50 AS spent FROM budget", RowMappers.BUDGET);
+        assertEquals(Money.parse("12.50"), withSpent.getSpentAmount());
+        assertEquals(Money.parse("200.00"), withSpent.getBudgetLimit());
+    }
+
+    @Test
+    void sumOfNoRowsIsZero() throws SQLException {
+        Money total = Jdbc.queryOne(conn, "SELECT SUM(amount) FROM expense WHERE user_id = ?", RowMappers.MONEY, 42);
+        assertEquals(Money.ZERO, total);
+    }
+}
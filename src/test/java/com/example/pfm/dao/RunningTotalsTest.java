@@ -0,0 +1,114 @@
+package com.example.pfm.dao;
+
+import com.example.pfm.model.Money;
+import com.example.pfm.util.ConnectionPool;
+import com.example.pfm.util.MySQLConnection;
+import com.example.pfm.util.SchemaMigrator;
+import com.example.pfm.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunningTotalsTest {
+
+    private Connection conn;
+    private RunningTotals runningTotals;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = TestDatabase.openBaseline("runningtotalstest");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO expense (user_id, amount, date, category) VALUES " +
+                    "(1, 10.50, '2024-03-01', 'Groceries'), (1, 4.50, '2024-03-31', 'Groceries'), (1, 7.00, '2024-04-01', 'Travel')");
+            stmt.execute("INSERT INTO income (user_id, amount, source, date) VALUES (1, 2500.00, 'Salary', '2024-03-25')");
+        }
+        SchemaMigrator.migrate(conn); // Sums the existing rows into the summary tables
+        runningTotals = new RunningTotals();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        TestDatabase.close(conn);
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    @Test
+    void migrationSumsExistingRows() throws SQLException {
+        assertTrue(runningTotals.verify(conn).isEmpty());
+    }
+
+    @Test
+    void writesAddTheirDeltasInTheSameTransaction() throws SQLException {
+        runningTotals.write(conn, deltas -> {
+            execute("INSERT INTO expense (user_id, amount, date, category) VALUES (1, 20.00, '2024-03-15', 'Travel')");
+            deltas.add(RunningTotals.Table.EXPENSE, 1, LocalDate.of(2024, 3, 15), "Travel", Money.parse("20.00"));
+            execute("DELETE FROM expense WHERE amount = 4.50");
+            deltas.add(RunningTotals.Table.EXPENSE, 1, LocalDate.of(2024, 3, 31), "Groceries", Money.parse("-4.50"));
+            return 2;
+        });
+
+        assertTrue(runningTotals.verify(conn).isEmpty());
+        assertTrue(conn.getAutoCommit(), "The original auto-commit mode should be restored");
+    }
+
+    @Test
+    void failedWritesAreRolledBack() throws SQLException {
+        assertThrows(SQLException.class, () -> runningTotals.write(conn, deltas -> {
+            execute("INSERT INTO expense (user_id, amount, date, category) VALUES (1, 20.00, '2024-03-15', 'Travel')");
+            deltas.add(RunningTotals.Table.EXPENSE, 1, LocalDate.of(2024, 3, 15), "Travel", Money.parse("20.00"));
+            throw new SQLException("write failed");
+        }));
+
+        assertTrue(runningTotals.verify(conn).isEmpty());
+    }
+
+    @Test
+    void totalsWrittenByAnotherClientAreReadOnceTheMirrorExpires() throws SQLException {
+        MySQLConnection.setPool(new ConnectionPool(TestDatabase.url("runningtotalstest"), "sa", "", 0, 2, 60_000, 1_000, 0));
+        try {
+            AtomicLong now = new AtomicLong();
+            RunningTotals mirrored = new RunningTotals(now::get, 60_000);
+            assertEquals(Money.parse("15.00"), mirrored.getTotal(RunningTotals.Table.EXPENSE, 1, YearMonth.of(2024, 3)));
+
+            runningTotals.write(conn, deltas -> { // Another client of the database
+                execute("INSERT INTO expense (user_id, amount, date, category) VALUES (1, 5.00, '2024-03-20', 'Travel')");
+                deltas.add(RunningTotals.Table.EXPENSE, 1, LocalDate.of(2024, 3, 20), "Travel", Money.parse("5.00"));
+                return 1;
+            });
+            assertEquals(Money.parse("15.00"), mirrored.getTotal(RunningTotals.Table.EXPENSE, 1, YearMonth.of(2024, 3)));
+
+            now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+            assertEquals(Money.parse("20.00"), mirrored.getTotal(RunningTotals.Table.EXPENSE, 1, YearMonth.of(2024, 3)));
+        } finally {
+            MySQLConnection.shutdown();
+        }
+    }
+
+    @Test
+    void driftIsReportedAndRebuilt() throws SQLException {
+        execute("UPDATE expense SET amount = 12.00 WHERE amount = 10.50"); // changed outside the DAOs
+
+        List<RunningTotals.Drift> drift = runningTotals.verify(conn);
+        assertEquals(1, drift.size());
+        assertEquals(new RunningTotals.Drift(RunningTotals.Table.EXPENSE, 1, YearMonth.of(2024, 3), "Groceries", 1650, 1500), drift.get(0));
+
+        runningTotals.rebuild(conn);
+        assertTrue(runningTotals.verify(conn).isEmpty());
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.pfm.dao;
+
+import com.example.pfm.util.ConnectionPool;
+import com.example.pfm.util.MySQLConnection;
+import com.example.pfm.util.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsernameIndexTest {
+
+    private Connection conn;
+    private AtomicLong now;
+    private UsernameIndex index;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = TestDatabase.open("usernameindextest");
+        try (Statement stmt = conn.createStatement()) {
+            for (int i = 0; i < 500; i++) {
+                stmt.execute("INSERT INTO users (username, password) VALUES ('user" + i + "', 'hash')");
+            }
+            stmt.execute("INSERT INTO users (username, password) VALUES ('José', 'hash')");
+        }
+        now = new AtomicLong();
+        index = new UsernameIndex(now::get, 4, 60_000, 1_000);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        TestDatabase.close(conn);
+    }
+
+    @Test
+    void everyUsernameMightExistBeforeLoading() {
+        assertTrue(index.mightExist("nobody"));
+        assertEquals(0, index.getFilteredCount());
+    }
+
+    @Test
+    void loadedUsernamesAreNeverRuledOut() throws SQLException {
+        index.load(conn);
+
+        for (int i = 0; i < 500; i++) {
+            assertTrue(index.mightExist("user" + i));
+        }
+        // Folded like a case and accent insensitive collation
+        assertTrue(index.mightExist("USER7"));
+        assertTrue(index.mightExist("jose"));
+        assertTrue(index.mightExist("user7  "));
+    }
+
+    @Test
+    void mostUnknownUsernamesAreRuledOut() throws SQLException {
+        index.load(conn);
+
+        int ruledOut = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (!index.mightExist("unknown" + i)) {
+                ruledOut++;
+            }
+        }
+        assertTrue(ruledOut > 9_500, "ruled out " + ruledOut);
+        assertEquals(ruledOut, index.getFilteredCount());
+    }
+
+    @Test
+    void addedUsernamesMightExist() throws SQLException {
+        index.load(conn);
+        index.recordAbsent("newuser");
+        assertFalse(index.mightExist("newuser"));
+
+        index.recordAdded("newuser");
+
+        assertTrue(index.mightExist("newuser"));
+    }
+
+    @Test
+    void filterIsNotTrustedOnceStale() throws SQLException {
+        index.load(conn);
+        assertFalse(index.mightExist("registered elsewhere"));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+
+        assertTrue(index.mightExist("registered elsewhere"));
+    }
+
+    @Test
+    void usersTheIndexRulesOutAreStillFoundForALogin() throws SQLException {
+        index.load(conn);
+        index.recordAbsent("late");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO users (username, password) VALUES ('late', 'hash')"); // by another client
+        }
+        assertFalse(index.mightExist("late"));
+
+        MySQLConnection.setPool(new ConnectionPool(TestDatabase.url("usernameindextest"), "sa", "", 0, 2, 60_000, 1_000, 0));
+        try {
+            assertNotNull(new UserDAO(index).getUserByUsername("late"));
+        } finally {
+            MySQLConnection.shutdown();
+        }
+        assertTrue(index.mightExist("late"), "A user found by a login should no longer be ruled out");
+    }
+
+    @Test
+    void absentUsernamesExpire() {
+        index.recordAbsent("deleted");
+        assertFalse(index.mightExist("DELETED"));
+        assertEquals(1, index.getAbsentHitCount());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertTrue(index.mightExist("deleted"));
+    }
+
+    @Test
+    void absentUsernamesAreBounded() {
+        for (int i = 0; i < 5; i++) {
+            index.recordAbsent("missing" + i);
+        }
+
+        // The oldest one was evicted
+        assertTrue(index.mightExist("missing0"));
+        assertFalse(index.mightExist("missing4"));
+    }
+}
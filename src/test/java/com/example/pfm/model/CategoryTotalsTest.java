@@ -0,0 +1,44 @@
+package com.example.pfm.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategoryTotalsTest {
+
+    @Test
+    void categoriesAreInterned() {
+        assertSame(Category.of("Travel"), Category.of("Travel"));
+        assertEquals("Travel", Category.of("Travel").getName());
+        assertSame(Category.OTHER, Category.of("Removed category"), "Unknown names should be counted as Other");
+        assertEquals(Category.count(), Category.values().size());
+    }
+
+    @Test
+    void sumsPerCategory() {
+        CategoryTotals totals = new CategoryTotals.Builder()
+                .add(Category.of("Groceries"), Money.parse("10.25"))
+                .add(Category.of("Groceries"), Money.parse("4.75"))
+                .add(Category.of("Travel"), Money.parse("120"))
+                .build();
+
+        assertEquals(Money.parse("15.00"), totals.get(Category.of("Groceries")));
+        assertEquals(12000, totals.getCents(Category.of("Travel")));
+        assertEquals(Money.ZERO, totals.get(Category.of("Hobbies")));
+        assertEquals(Money.parse("135.00"), totals.getTotal());
+    }
+
+    @Test
+    void listsCategoriesWithSpendingLargestFirst() {
+        CategoryTotals totals = new CategoryTotals.Builder()
+                .add(Category.of("Groceries"), Money.parse("15"))
+                .add(Category.of("Travel"), Money.parse("120"))
+                .add(Category.OTHER, Money.parse("3"))
+                .build();
+
+        assertEquals(List.of(Category.of("Travel"), Category.of("Groceries"), Category.OTHER), totals.byAmountDescending());
+        assertTrue(CategoryTotals.EMPTY.byAmountDescending().isEmpty());
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.pfm.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void sumsAreExact() {
+        Money total = Money.ZERO;
+        for (int i = 0; i < 10; i++) {
+            total = total.plus(Money.parse("0.10"));
+        }
+
+        assertEquals(Money.parse("1.00"), total, "Ten times 0.10 should be exactly 1.00, unlike with doubles");
+    }
+
+    @Test
+    void parsesUserInput() {
+        assertEquals(1250, Money.parse("12.5").getCents());
+        assertEquals(1200, Money.parse(" 12 ").getCents());
+        assertThrows(NumberFormatException.class, () -> Money.parse("12.345"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+    }
+
+    @Test
+    void mapsDecimalColumns() {
+        assertEquals(Money.ofCents(1999), Money.of(new BigDecimal("19.99")));
+        assertEquals(Money.ZERO, Money.of(null), "A SUM over no rows is NULL");
+        assertEquals(new BigDecimal("19.99"), Money.ofCents(1999).toBigDecimal());
+    }
+
+    @Test
+    void formatsWithTwoDecimals() {
+        assertEquals("12.50", Money.ofCents(1250).toString());
+        assertEquals("0.05", Money.ofCents(5).toString());
+        assertEquals("-3.05", Money.ofCents(-305).toString());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.pfm.screens;
+
+import com.example.pfm.config.CategoryConfig;
+import com.example.pfm.model.Budget;
+import com.example.pfm.model.BudgetSnapshot;
+import com.example.pfm.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of computing the chart models of ExpenseScreen and BudgetScreen, the work that runs on the
+ * background threads before the charts are updated. The models hold no JavaFX objects, so no toolkit is needed.
+ * Run with: mvn -P benchmark verify
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChartSeriesBenchmark {
+
+    @Param({"8", "96"})
+    private int budgets;
+
+    private long[] monthlyTotals;
+    private BudgetSnapshot snapshot;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        monthlyTotals = new long[12];
+        for (int month = 0; month < 12; month++) {
+            monthlyTotals[month] = random.nextInt(500_000);
+        }
+
+        List<Budget> budgetList = new ArrayList<>();
+        for (int i = 0; i < budgets; i++) {
+            String category = CategoryConfig.CATEGORIES.get(i % CategoryConfig.CATEGORIES.size());
+            Budget budget = new Budget(i + 1, 1, category, Money.ofCents(50_000), LocalDate.now().minusMonths(i / CategoryConfig.CATEGORIES.size()).withDayOfMonth(1));
+            budget.setSpentAmount(Money.ofCents(random.nextInt(60_000)));
+            budgetList.add(budget);
+        }
+        snapshot = new BudgetSnapshot(budgetList);
+    }
+
+    @Benchmark
+    public List<ChartUpdater.Point> expenseMonthlyBars() {
+        return ExpenseScreen.createMonthlyBars(monthlyTotals);
+    }
+
+    @Benchmark
+    public BudgetScreen.BudgetChartModel budgetChartModel() {
+        return BudgetScreen.createBudgetChartModel(snapshot);
+    }
+}
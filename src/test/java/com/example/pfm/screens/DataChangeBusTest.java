@@ -0,0 +1,107 @@
+package com.example.pfm.screens;
+
+import com.example.pfm.model.DataChangeEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataChangeBusTest {
+
+    private DataChangeBus bus;
+
+    @BeforeEach
+    void setUp() {
+        // Runs the refreshes on the bus thread instead of the JavaFX thread
+        bus = new DataChangeBus(20, Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bus.shutdown();
+    }
+
+    /**
+     * A screen that counts its refreshes and is only interested in the expenses of one user.
+     */
+    private static class ExpenseListener implements DataRefresh {
+        private final AtomicInteger refreshes = new AtomicInteger();
+        private final CountDownLatch refreshed = new CountDownLatch(1);
+
+        @Override
+        public void refreshData() {
+            refreshes.incrementAndGet();
+            refreshed.countDown();
+        }
+
+        @Override
+        public boolean isAffectedBy(DataChangeEvent event) {
+            return event.concerns(1, DataChangeEvent.Type.EXPENSE);
+        }
+    }
+
+    @Test
+    void burstOfChangesRefreshesOnce() throws InterruptedException {
+        ExpenseListener listener = new ExpenseListener();
+        bus.register(listener);
+
+        for (int i = 0; i < 10; i++) {
+            bus.post(DataChangeEvent.expense(1, LocalDate.of(2024, 1 + i % 12, 1)));
+        }
+
+        assertTrue(listener.refreshed.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100); // Gives a second, unwanted flush the chance to happen
+        assertEquals(1, listener.refreshes.get());
+        assertEquals(1, bus.getFlushCount());
+    }
+
+    @Test
+    void unaffectedListenerIsNotRefreshed() throws InterruptedException {
+        ExpenseListener expenses = new ExpenseListener();
+        ExpenseListener otherChanges = new ExpenseListener() {
+            @Override
+            public boolean isAffectedBy(DataChangeEvent event) {
+                return event.concerns(1, DataChangeEvent.Type.INCOME);
+            }
+        };
+        bus.register(expenses);
+        bus.register(otherChanges);
+
+        bus.post(DataChangeEvent.expense(1, LocalDate.now()));
+        bus.post(DataChangeEvent.income(2, LocalDate.now())); // Another user
+
+        assertTrue(expenses.refreshed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, otherChanges.refreshes.get());
+    }
+
+    @Test
+    void listenerIsRegisteredOnlyOnce() throws InterruptedException {
+        ExpenseListener listener = new ExpenseListener();
+        assertTrue(bus.register(listener));
+        assertFalse(bus.register(listener));
+        assertEquals(1, bus.getListenerCount());
+
+        bus.post(DataChangeEvent.all(1));
+
+        assertTrue(listener.refreshed.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(1, listener.refreshes.get());
+    }
+
+    @Test
+    void unregisteredListenerIsNotRefreshed() throws InterruptedException {
+        ExpenseListener listener = new ExpenseListener();
+        bus.register(listener);
+        bus.unregister(listener);
+
+        bus.post(DataChangeEvent.all(1));
+
+        assertFalse(listener.refreshed.await(200, TimeUnit.MILLISECONDS));
+    }
+}
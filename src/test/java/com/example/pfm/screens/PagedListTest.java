@@ -0,0 +1,104 @@
+package com.example.pfm.screens;
+
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Money;
+import com.example.pfm.model.PageKey;
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PagedListTest {
+
+    private static final int PAGE_SIZE = 10;
+
+    private List<Expense> rows;
+    private List<String> requests;
+
+    @BeforeEach
+    void setUp() {
+        rows = new ArrayList<>();
+        for (int id = 1; id <= 95; id++) {
+            Expense expense = new Expense(1, Money.ofCents(id * 100L), "Food", LocalDate.of(2024, 1, 1).plusDays(id / 3));
+            expense.setId(id);
+            rows.add(expense);
+        }
+        requests = new ArrayList<>();
+    }
+
+    /**
+     * Serves the rows after a key like the keyset query does, and completes right away on the calling thread.
+     */
+    private PagedList<Expense> createList(int maxPages) {
+        return new PagedList<>(rows.size(), PAGE_SIZE, maxPages, (after, skip, limit) -> {
+            requests.add((after == null ? "start" : String.valueOf(after.id())) + "+" + skip);
+            int start = after == null ? 0 : rows.indexOf(rows.stream().filter(e -> e.getId() == after.id()).findFirst().orElseThrow()) + 1;
+            int from = Math.min(start + skip, rows.size());
+            return CompletableFuture.completedFuture(new ArrayList<>(rows.subList(from, Math.min(from + limit, rows.size()))));
+        }, expense -> new PageKey(expense.getDate(), expense.getId()), Runnable::run);
+    }
+
+    @Test
+    void rowIsNullUntilItsPageIsLoaded() {
+        CompletableFuture<List<Expense>> pending = new CompletableFuture<>();
+        PagedList<Expense> list = new PagedList<>(rows.size(), PAGE_SIZE, 3, (after, skip, limit) -> pending,
+                expense -> new PageKey(expense.getDate(), expense.getId()), Runnable::run);
+        AtomicInteger replaced = new AtomicInteger();
+        list.addListener((ListChangeListener<Expense>) change -> {
+            while (change.next()) {
+                if (change.wasReplaced()) {
+                    replaced.addAndGet(change.getAddedSize());
+                }
+            }
+        });
+
+        assertNull(list.get(3));
+        pending.complete(rows.subList(0, PAGE_SIZE));
+
+        assertSame(rows.get(3), list.get(3));
+        assertEquals(PAGE_SIZE, replaced.get(), "Every row of the page should be reported as changed");
+    }
+
+    @Test
+    void nextPageStartsAfterTheLastKeyOfThePreviousPage() {
+        PagedList<Expense> list = createList(3);
+
+        list.get(0);
+        assertSame(rows.get(PAGE_SIZE), list.get(PAGE_SIZE));
+
+        assertEquals(List.of("start+0", "10+0"), requests);
+    }
+
+    @Test
+    void jumpSkipsFromTheNearestKnownKey() {
+        PagedList<Expense> list = createList(3);
+
+        list.get(0);
+        assertSame(rows.get(45), list.get(45));
+
+        assertEquals(List.of("start+0", "10+30"), requests);
+    }
+
+    @Test
+    void onlyTheMostRecentPagesAreKept() {
+        PagedList<Expense> list = createList(3);
+
+        for (int index = 0; index < rows.size(); index++) {
+            list.get(index);
+        }
+
+        assertEquals(3, list.getLoadedPageCount());
+        assertSame(rows.get(94), list.get(94));
+        requests.clear();
+        assertSame(rows.get(0), list.get(0));
+        assertEquals(List.of("start+0"), requests, "The first page should have been evicted and loaded again");
+        assertEquals(3, list.getLoadedPageCount());
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.pfm.service;
+
+import com.example.pfm.dao.BudgetDAO;
+import com.example.pfm.dao.ExpenseDAO;
+import com.example.pfm.dao.IncomeDAO;
+import com.example.pfm.model.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AsyncDataServiceTest {
+
+    private AsyncDataService dataService;
+    private ExpenseDAO expenseDAO;
+
+    @BeforeEach
+    void setUp() {
+        expenseDAO = Mockito.mock(ExpenseDAO.class);
+        // Runs the callbacks on the completing thread instead of the JavaFX thread
+        dataService = new AsyncDataService(Mockito.mock(IncomeDAO.class), expenseDAO, Mockito.mock(BudgetDAO.class), Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataService.shutdown();
+    }
+
+    @Test
+    void queriesRunOffTheCallingThread() throws Exception {
+        Thread caller = Thread.currentThread();
+        when(expenseDAO.getTotalExpenseForCurrentMonth(1)).thenAnswer(invocation -> {
+            assertNotSame(caller, Thread.currentThread());
+            return Money.ofCents(4200);
+        });
+
+        assertEquals(Money.ofCents(4200), dataService.getTotalExpenseForCurrentMonth(1).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void supersededRequestIsDropped() {
+        List<String> delivered = new ArrayList<>();
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+
+        dataService.deliver(this, "table", first, delivered::add);
+        dataService.deliver(this, "table", second, delivered::add);
+        first.complete("old");
+        second.complete("new");
+
+        assertTrue(first.isCancelled(), "The older request should be cancelled");
+        assertEquals(List.of("new"), delivered);
+    }
+
+    @Test
+    void failedRequestDeliversItsError() throws Exception {
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        CountDownLatch failed = new CountDownLatch(2);
+        IllegalStateException failure = new IllegalStateException("Connection pool exhausted");
+
+        dataService.deliver(this, "table", dataService.<String>supply(() -> {
+            throw failure;
+        }), delivered::add, error -> {
+            errors.add(error);
+            failed.countDown();
+        });
+        dataService.deliver(this, "chart", CompletableFuture.<String>failedFuture(failure), delivered::add, error -> {
+            errors.add(error);
+            failed.countDown();
+        });
+
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        assertTrue(delivered.isEmpty());
+        assertEquals(List.of(failure, failure), errors, "The cause should be delivered, not the CompletionException");
+    }
+
+    @Test
+    void requestsWithDifferentNamesDoNotSupersedeEachOther() {
+        List<String> delivered = new ArrayList<>();
+        CompletableFuture<String> table = new CompletableFuture<>();
+        CompletableFuture<String> chart = new CompletableFuture<>();
+
+        dataService.deliver(this, "table", table, delivered::add);
+        dataService.deliver(this, "chart", chart, delivered::add);
+        chart.complete("chart");
+        table.complete("table");
+
+        assertEquals(List.of("chart", "table"), delivered);
+    }
+
+    @Test
+    void cancelAllDropsPendingResults() {
+        List<String> delivered = new ArrayList<>();
+        CompletableFuture<String> request = new CompletableFuture<>();
+
+        dataService.deliver(this, "table", request, delivered::add);
+        dataService.cancelAll(this);
+        request.complete("late");
+
+        assertTrue(delivered.isEmpty());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.pfm.service;
+
+import com.example.pfm.dao.ExpenseDAO;
+import com.example.pfm.dao.IncomeDAO;
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Income;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CsvImportServiceTest {
+
+    private ExpenseDAO expenseDAO;
+    private IncomeDAO incomeDAO;
+    private CsvImportService importService;
+    private List<Expense> insertedExpenses;
+    private List<Income> insertedIncomes;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        expenseDAO = Mockito.mock(ExpenseDAO.class);
+        incomeDAO = Mockito.mock(IncomeDAO.class);
+        insertedExpenses = new ArrayList<>();
+        insertedIncomes = new ArrayList<>();
+        // Drains the iterator the way the batch insert does
+        when(expenseDAO.insertExpenses(any(Iterator.class))).thenAnswer(invocation -> {
+            Iterator<Expense> rows = invocation.getArgument(0);
+            rows.forEachRemaining(insertedExpenses::add);
+            return insertedExpenses.size();
+        });
+        when(incomeDAO.insertIncomes(any(Iterator.class))).thenAnswer(invocation -> {
+            Iterator<Income> rows = invocation.getArgument(0);
+            rows.forEachRemaining(insertedIncomes::add);
+            return insertedIncomes.size();
+        });
+        importService = new CsvImportService(expenseDAO, incomeDAO);
+    }
+
+    @Test
+    void validExpensesAreImported() throws IOException {
+        String csv = "date,amount,category\n2024-03-01,12.50,Groceries\n\n2024-03-02,\"1,000.00\",Utilities\n2024-03-03,40,Travel\n";
+
+        CsvImportService.ImportResult result = importService.importExpenses(1, new StringReader(csv));
+
+        assertEquals(2, result.imported());
+        assertEquals(1, result.skipped(), "The amount with a thousands separator is not a valid number");
+        assertEquals("Groceries", insertedExpenses.get(0).getCategory());
+        assertEquals(LocalDate.of(2024, 3, 3), insertedExpenses.get(1).getDate());
+        assertEquals(1, insertedExpenses.get(1).getUserId());
+    }
+
+    @Test
+    void invalidRowsAreSkippedAndReported() throws IOException {
+        String csv = "2024-13-01,10,Travel\n2024-03-01,-5,Travel\n2024-03-01,10,Food\n2024-03-01,10\n";
+
+        CsvImportService.ImportResult result = importService.importExpenses(1, new StringReader(csv));
+
+        assertEquals(0, result.imported());
+        assertEquals(4, result.skipped());
+        assertEquals("Line 3: unknown category 'Food'", result.errors().get(2));
+    }
+
+    @Test
+    void amountsThatDontFitTheDatabaseAreSkipped() throws IOException {
+        String csv = "2024-03-01,99999999.99,Travel\n2024-03-02,100000000.00,Travel\n";
+
+        CsvImportService.ImportResult result = importService.importExpenses(1, new StringReader(csv));
+
+        assertEquals(1, result.imported());
+        assertEquals("Line 2: amount must be at most 99999999.99", result.errors().get(0));
+    }
+
+    @Test
+    void reportedErrorsAreLimited() throws IOException {
+        String csv = "2024-03-01,10,Unknown\n".repeat(CsvImportService.MAX_REPORTED_ERRORS + 10);
+
+        CsvImportService.ImportResult result = importService.importExpenses(1, new StringReader(csv));
+
+        assertEquals(CsvImportService.MAX_REPORTED_ERRORS + 10, result.skipped());
+        assertEquals(CsvImportService.MAX_REPORTED_ERRORS, result.errors().size());
+    }
+
+    @Test
+    void incomeSourcesAreValidated() throws IOException {
+        String csv = "2024-03-25,2500,Salary\n2024-03-26,100,Lottery\n";
+
+        CsvImportService.ImportResult result = importService.importIncomes(1, new StringReader(csv));
+
+        assertEquals(1, result.imported());
+        assertEquals(1, result.skipped());
+        assertEquals("Salary", insertedIncomes.get(0).getSource());
+        verify(expenseDAO, never()).insertExpenses(Mockito.<Iterator<Expense>>any());
+    }
+
+    @Test
+    void quotedFieldsAreSplitCorrectly() {
+        assertEquals(List.of("a", "b,c", "say \"hi\""), CsvImportService.splitLine("a,\"b,c\",\"say \"\"hi\"\"\""));
+    }
+}
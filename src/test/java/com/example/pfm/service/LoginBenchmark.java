@@ -0,0 +1,79 @@
+package com.example.pfm.service;
+
+import com.example.pfm.dao.AggregateCache;
+import com.example.pfm.dao.BudgetDAO;
+import com.example.pfm.dao.ExpenseDAO;
+import com.example.pfm.dao.IncomeDAO;
+import com.example.pfm.dao.UserDAO;
+import com.example.pfm.model.User;
+import org.mindrot.jbcrypt.BCrypt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the BCrypt cost of a login, for the default work factor and its neighbours.
+ * The user lookup is answered from memory, so only the password check is measured.
+ * Run with: mvn -P benchmark verify
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginBenchmark {
+    private static final String USERNAME = "benchmark";
+    private static final String PASSWORD = "correct horse battery";
+
+    @Param({"8", "10", "12"})
+    private int logRounds;
+
+    private String hash;
+    private UserService userService;
+
+    @Setup
+    public void setUp() throws IOException {
+        hash = BCrypt.hashpw(PASSWORD, BCrypt.gensalt(logRounds));
+        User user = new User(USERNAME, hash);
+        UserDAO userDAO = new UserDAO() {
+            @Override
+            public User getUserByUsername(String username) {
+                return USERNAME.equals(username) ? user : null;
+            }
+        };
+        // Every login gets the same session, so the benchmark measures the login and not opening a journal
+        IncomeDAO incomeDAO = new IncomeDAO();
+        ExpenseDAO expenseDAO = new ExpenseDAO();
+        BudgetDAO budgetDAO = new BudgetDAO();
+        SessionContext session = new SessionContext(user, null, AggregateCache.getDefault(), incomeDAO, expenseDAO,
+                budgetDAO, new AsyncDataService(incomeDAO, expenseDAO, budgetDAO, Runnable::run),
+                WriteBehindQueue.open(Files.createTempFile("login-benchmark", ".journal"), expenseDAO, incomeDAO));
+        userService = new UserService(userDAO, sessionUser -> session);
+    }
+
+    @Benchmark
+    public boolean checkpw() {
+        return BCrypt.checkpw(PASSWORD, hash);
+    }
+
+    /**
+     * A successful login through UserService, including the bookkeeping of the login attempts.
+     */
+    @Benchmark
+    public String authenticateUser() {
+        return userService.authenticateUser(USERNAME, PASSWORD);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.pfm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginThrottleTest {
+
+    private AtomicLong now;
+    private LoginThrottle throttle;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong();
+        throttle = new LoginThrottle(now::get, 100);
+    }
+
+    private void fail(String username, String source, int times) {
+        for (int i = 0; i < times; i++) {
+            assertEquals(LoginThrottle.Result.ALLOWED, throttle.tryAcquire(username, source));
+        }
+    }
+
+    @Test
+    void usernameIsThrottledAfterCapacityFailures() {
+        fail("alice", "local", LoginThrottle.USERNAME_CAPACITY);
+
+        assertEquals(LoginThrottle.Result.USERNAME_THROTTLED, throttle.tryAcquire("alice", "local"));
+        assertEquals(LoginThrottle.Result.ALLOWED, throttle.tryAcquire("bob", "local"));
+        assertEquals(1, throttle.getThrottledAttempts());
+    }
+
+    @Test
+    void spellingsOfTheSameUsernameShareABucket() {
+        fail("alice", "local", 1);
+        fail("ALICE", "local", 1);
+        fail("Alícé  ", "local", 1);
+
+        assertEquals(LoginThrottle.Result.USERNAME_THROTTLED, throttle.tryAcquire("Alice", "local"));
+        assertEquals(1, throttle.getTrackedUsernames());
+
+        throttle.onSuccess("ALICE ", "local");
+        assertEquals(0, throttle.getTrackedUsernames());
+    }
+
+    @Test
+    void usernameGetsAnAttemptBackAfterRefill() {
+        fail("alice", "local", LoginThrottle.USERNAME_CAPACITY);
+
+        now.addAndGet(LoginThrottle.USERNAME_REFILL_NANOS - 1);
+        assertEquals(LoginThrottle.Result.USERNAME_THROTTLED, throttle.tryAcquire("alice", "local"));
+        now.addAndGet(1);
+        assertEquals(LoginThrottle.Result.ALLOWED, throttle.tryAcquire("alice", "local"));
+        assertEquals(LoginThrottle.Result.USERNAME_THROTTLED, throttle.tryAcquire("alice", "local"));
+    }
+
+    @Test
+    void successForgetsFailedAttempts() {
+        fail("alice", "local", LoginThrottle.USERNAME_CAPACITY - 1);
+        assertEquals(LoginThrottle.Result.ALLOWED, throttle.tryAcquire("alice", "local"));
+        throttle.onSuccess("alice", "local");
+
+        assertEquals(0, throttle.getTrackedUsernames());
+        fail("alice", "local", LoginThrottle.USERNAME_CAPACITY);
+    }
+
+    @Test
+    void sourceIsThrottledOverAllUsernames() {
+        for (int i = 0; i < LoginThrottle.SOURCE_CAPACITY; i++) {
+            assertEquals(LoginThrottle.Result.ALLOWED, throttle.tryAcquire("user" + i, "attacker"));
+        }
+
+        assertEquals(LoginThrottle.Result.SOURCE_THROTTLED, throttle.tryAcquire("another", "attacker"));
+        assertEquals(LoginThrottle.Result.ALLOWED, throttle.tryAcquire("another", "local"));
+    }
+
+    @Test
+    void throttledUsernameDoesNotUseUpTheSource() {
+        fail("alice", "local", LoginThrottle.USERNAME_CAPACITY);
+        for (int i = 0; i < 50; i++) {
+            throttle.tryAcquire("alice", "local");
+        }
+
+        fail("bob", "local", LoginThrottle.USERNAME_CAPACITY);
+    }
+
+    @Test
+    void trackedKeysStayBounded() {
+        for (int i = 0; i < 1_000; i++) {
+            throttle.tryAcquire("user" + i, "source" + i);
+        }
+
+        assertTrue(throttle.getTrackedUsernames() <= 100);
+        assertTrue(throttle.getTrackedSources() <= 100);
+    }
+
+    @Test
+    void concurrentAttemptsNeverExceedCapacity() throws Exception {
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Callable<Integer> attempts = () -> {
+                start.await();
+                int allowed = 0;
+                for (int i = 0; i < 1_000; i++) {
+                    if (throttle.tryAcquire("alice", "thread" + i % 4) == LoginThrottle.Result.ALLOWED) {
+                        allowed++;
+                    }
+                }
+                return allowed;
+            };
+            results.add(executor.submit(attempts));
+        }
+        start.countDown();
+
+        int allowed = 0;
+        for (Future<Integer> result : results) {
+            allowed += result.get();
+        }
+        executor.shutdown();
+
+        assertEquals(LoginThrottle.USERNAME_CAPACITY, allowed);
+        assertEquals(threads * 1_000L - LoginThrottle.USERNAME_CAPACITY, throttle.getThrottledAttempts());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.pfm.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTest {
+
+    private PasswordHasher hasher;
+
+    @AfterEach
+    void tearDown() {
+        hasher.shutdown();
+    }
+
+    @Test
+    void hashIsCheckedAgainstItsPassword() {
+        hasher = new PasswordHasher(1, 4, 250, 4);
+
+        String hash = hasher.hash("secret password").join();
+
+        assertTrue(hasher.check("secret password", hash).join());
+        assertFalse(hasher.check("wrong password", hash).join());
+        assertEquals(4, PasswordHasher.logRoundsOf(hash));
+        assertEquals(1, hasher.getHashCount());
+        assertEquals(2, hasher.getCheckCount());
+        assertTrue(hasher.getMaxMillis() > 0);
+    }
+
+    @Test
+    void onlyLowerCostsNeedRehash() {
+        hasher = new PasswordHasher(1, 4, 250, 5);
+
+        assertTrue(hasher.needsRehash(BCrypt.hashpw("password", BCrypt.gensalt(4))));
+        assertFalse(hasher.needsRehash(BCrypt.hashpw("password", BCrypt.gensalt(5))));
+        assertFalse(hasher.needsRehash(BCrypt.hashpw("password", BCrypt.gensalt(6))));
+    }
+
+    @Test
+    void calibrationStaysWithinBounds() {
+        hasher = new PasswordHasher(1, 4, 50, 4);
+
+        int rounds = hasher.calibrate();
+
+        assertTrue(rounds >= 4 && rounds <= PasswordHasher.MAX_LOG_ROUNDS);
+        assertEquals(rounds, hasher.getLogRounds());
+        assertEquals(rounds, PasswordHasher.logRoundsOf(hasher.hash("password").join()));
+    }
+
+    @Test
+    void calibrationNeverGoesBelowTheMinimum() {
+        hasher = new PasswordHasher(1, 4, 0, 6);
+
+        assertEquals(6, hasher.calibrate());
+    }
+
+    @Test
+    void hashesOverTheQueueLimitAreRejected() {
+        hasher = new PasswordHasher(1, 1, 250, 12);
+
+        List<CompletableFuture<String>> hashes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            hashes.add(hasher.hash("password" + i));
+        }
+
+        // One hash runs, one waits and the others don't fit
+        assertEquals(3, hasher.getRejectedCount());
+        for (CompletableFuture<String> hash : hashes.subList(2, 5)) {
+            CompletionException e = assertThrows(CompletionException.class, hash::join);
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        }
+        hashes.get(0).join();
+        hashes.get(1).join();
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.pfm.service;
+
+import com.example.pfm.dao.ExpenseDAO;
+import com.example.pfm.dao.IncomeDAO;
+import com.example.pfm.model.Category;
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Income;
+import com.example.pfm.model.Money;
+import com.example.pfm.model.Report;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class ReportEngineTest {
+
+    private ExpenseDAO expenseDAO;
+    private IncomeDAO incomeDAO;
+    private ReportEngine reportEngine;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws SQLException {
+        expenseDAO = Mockito.mock(ExpenseDAO.class);
+        incomeDAO = Mockito.mock(IncomeDAO.class);
+        List<Expense> expenses = List.of(
+                new Expense(1, Money.parse("100.00"), "Groceries", LocalDate.of(2023, 2, 10)),
+                new Expense(1, Money.parse("150.00"), "Groceries", LocalDate.of(2024, 2, 10)),
+                new Expense(1, Money.parse("30.00"), "Travel", LocalDate.of(2024, 4, 2)));
+        List<Income> incomes = List.of(
+                new Income(1, Money.parse("2000.00"), "Salary", LocalDate.of(2023, 3, 25)),
+                new Income(1, Money.parse("2000.00"), "Salary", LocalDate.of(2024, 3, 25)),
+                new Income(1, Money.parse("50.00"), "Gift", LocalDate.of(2024, 3, 26)));
+        // Hands the rows within the requested range to the callback, like the streamed query
+        when(expenseDAO.forEachExpense(anyInt(), any(), any(), any(Consumer.class))).thenAnswer(invocation -> {
+            LocalDate start = invocation.getArgument(1);
+            LocalDate end = invocation.getArgument(2);
+            Consumer<Expense> action = invocation.getArgument(3);
+            expenses.stream().filter(e -> !e.getDate().isBefore(start) && e.getDate().isBefore(end)).forEach(action);
+            return expenses.size();
+        });
+        when(incomeDAO.forEachIncome(anyInt(), any(), any(), any(Consumer.class))).thenAnswer(invocation -> {
+            LocalDate start = invocation.getArgument(1);
+            LocalDate end = invocation.getArgument(2);
+            Consumer<Income> action = invocation.getArgument(3);
+            incomes.stream().filter(i -> !i.getDate().isBefore(start) && i.getDate().isBefore(end)).forEach(action);
+            return incomes.size();
+        });
+        reportEngine = new ReportEngine(expenseDAO, incomeDAO);
+    }
+
+    @Test
+    void buildsMonthsAndTotals() {
+        Report report = reportEngine.build(1, YearMonth.of(2024, 1), YearMonth.of(2024, 6));
+
+        assertEquals(6, report.getMonths().size());
+        assertEquals(Money.parse("180.00"), report.getExpenses());
+        assertEquals(Money.parse("2050.00"), report.getIncome());
+        assertEquals(Money.parse("1870.00"), report.getNetSavings());
+        assertEquals(Money.parse("150.00"), report.getMonth(YearMonth.of(2024, 2)).expenses());
+        assertEquals(Money.parse("50.00"), report.getIncomePerSource().get("Gift"));
+        assertEquals(Money.parse("30.00"), report.getExpensesPerCategory().get(Category.of("Travel")));
+    }
+
+    @Test
+    void splitsIntoQuarters() {
+        Report report = reportEngine.build(1, YearMonth.of(2024, 2), YearMonth.of(2024, 6));
+
+        List<Report> quarters = report.quarters();
+        assertEquals(2, quarters.size());
+        assertEquals(YearMonth.of(2024, 2), quarters.get(0).getFirstMonth(), "The first quarter starts with the range");
+        assertEquals(Money.parse("150.00"), quarters.get(0).getExpenses());
+        assertEquals(Money.parse("30.00"), quarters.get(1).getExpenses());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void comparesWithAYearEarlierFromOneFetch() throws SQLException {
+        ReportEngine.Comparison comparison = reportEngine.yearOverYear(1, YearMonth.of(2024, 1), YearMonth.of(2024, 3));
+
+        assertEquals(Money.parse("150.00"), comparison.current().getExpenses());
+        assertEquals(Money.parse("100.00"), comparison.previousYear().getExpenses());
+        assertEquals(50.0, comparison.expenseChangePercent(), 0.001);
+        assertEquals(2.5, comparison.incomeChangePercent(), 0.001);
+        verify(expenseDAO, times(1)).forEachExpense(eq(1), eq(LocalDate.of(2023, 1, 1)), eq(LocalDate.of(2024, 4, 1)), any(Consumer.class));
+    }
+
+    @Test
+    void parallelAggregationMatchesTheRows() {
+        int months = 24;
+        List<List<Expense>> expensesByMonth = new ArrayList<>();
+        List<List<Income>> incomesByMonth = new ArrayList<>();
+        YearMonth first = YearMonth.of(2022, 1);
+        for (int i = 0; i < months; i++) {
+            List<Expense> expenses = new ArrayList<>();
+            for (int row = 0; row < ReportEngine.PARALLEL_THRESHOLD / months + 1; row++) {
+                expenses.add(new Expense(1, Money.ofCents(row + 1), row % 2 == 0 ? "Groceries" : "Travel", first.plusMonths(i).atDay(1)));
+            }
+            expensesByMonth.add(expenses);
+            incomesByMonth.add(List.of());
+        }
+
+        Report report = ReportEngine.aggregate(first, expensesByMonth, incomesByMonth);
+
+        long expected = 0;
+        for (List<Expense> month : expensesByMonth) {
+            for (Expense expense : month) {
+                expected += expense.getAmount().getCents();
+            }
+        }
+        assertEquals(Money.ofCents(expected), report.getExpenses());
+        for (int i = 0; i < months; i++) {
+            assertEquals(first.plusMonths(i), report.getMonths().get(i).month(), "The months stay in order");
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.pfm.service;
+
+import com.example.pfm.dao.ExpenseDAO;
+import com.example.pfm.dao.IncomeDAO;
+import com.example.pfm.model.Category;
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Income;
+import com.example.pfm.model.Money;
+import com.example.pfm.model.Report;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class ReportExportServiceTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 3, 1);
+    private static final LocalDate END = LocalDate.of(2024, 5, 1);
+
+    private ExpenseDAO expenseDAO;
+    private IncomeDAO incomeDAO;
+    private ReportExportService exportService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws SQLException {
+        expenseDAO = Mockito.mock(ExpenseDAO.class);
+        incomeDAO = Mockito.mock(IncomeDAO.class);
+        List<Expense> expenses = List.of(
+                new Expense(1, Money.parse("10.50"), "Groceries", LocalDate.of(2024, 3, 1)),
+                new Expense(1, Money.parse("4.50"), "Groceries", LocalDate.of(2024, 3, 31)),
+                new Expense(1, Money.parse("7.00"), "Travel", LocalDate.of(2024, 4, 1)));
+        List<Income> incomes = List.of(new Income(1, Money.parse("2500.00"), "Salary", LocalDate.of(2024, 3, 25)));
+        // Hands the rows to the callback the way the streamed query does
+        when(expenseDAO.forEachExpense(anyInt(), any(), any(), any(Consumer.class))).thenAnswer(invocation -> {
+            Consumer<Expense> action = invocation.getArgument(3);
+            expenses.forEach(action);
+            return expenses.size();
+        });
+        when(incomeDAO.forEachIncome(anyInt(), any(), any(), any(Consumer.class))).thenAnswer(invocation -> {
+            Consumer<Income> action = invocation.getArgument(3);
+            incomes.forEach(action);
+            return incomes.size();
+        });
+        exportService = new ReportExportService(expenseDAO, incomeDAO);
+    }
+
+    @Test
+    void csvContainsRowsAndSummaries() throws IOException {
+        StringWriter out = new StringWriter();
+
+        exportService.export(1, START, END, ReportExportService.Format.CSV, out);
+
+        assertEquals(String.join("\n",
+                "type,date,amount,label",
+                "expense,2024-03-01,10.50,Groceries",
+                "expense,2024-03-31,4.50,Groceries",
+                "expense,2024-04-01,7.00,Travel",
+                "income,2024-03-25,2500.00,Salary",
+                "expense_category_total,,15.00,Groceries",
+                "expense_category_total,,7.00,Travel",
+                "income_source_total,,2500.00,Salary",
+                "month_total,2024-03,15.00,expenses",
+                "month_total,2024-03,2500.00,incomes",
+                "month_total,2024-04,7.00,expenses",
+                "month_total,2024-04,0.00,incomes") + "\n", out.toString());
+    }
+
+    @Test
+    void jsonLinesHaveOneObjectPerRecord() throws IOException {
+        StringWriter out = new StringWriter();
+
+        exportService.export(1, START, END, ReportExportService.Format.JSON_LINES, out);
+
+        List<String> lines = out.toString().lines().toList();
+        assertEquals("{\"type\":\"expense\",\"date\":\"2024-03-01\",\"amount\":10.50,\"category\":\"Groceries\"}", lines.get(0));
+        assertEquals("{\"type\":\"income\",\"date\":\"2024-03-25\",\"amount\":2500.00,\"source\":\"Salary\"}", lines.get(3));
+        assertEquals("{\"type\":\"month_total\",\"month\":\"2024-04\",\"amount\":7.00,\"label\":\"expenses\"}", lines.get(9));
+    }
+
+    @Test
+    void summariesAreComputedInTheSamePass() throws IOException, SQLException {
+        ReportExportService.ExportResult result = exportService.export(1, START, END, ReportExportService.Format.CSV, new StringWriter());
+
+        assertEquals(3, result.expenses());
+        assertEquals(1, result.incomes());
+        Report report = result.report();
+        assertEquals(Money.parse("15.00"), report.getExpensesPerCategory().get(Category.of("Groceries")));
+        assertEquals(Money.parse("2500.00"), report.getIncomePerSource().get("Salary"));
+        assertEquals(YearMonth.of(2024, 3), report.getFirstMonth());
+        assertEquals(Money.parse("15.00"), report.getMonth(YearMonth.of(2024, 3)).expenses());
+        assertEquals(Money.parse("7.00"), report.getMonth(YearMonth.of(2024, 4)).expenses());
+        assertEquals(Money.ZERO, report.getMonth(YearMonth.of(2024, 4)).income());
+        verify(expenseDAO).forEachExpense(eq(1), eq(START), eq(END), any());
+    }
+
+    @Test
+    void summaryOfAReportMatchesTheEndOfAFullExport() throws IOException {
+        StringWriter full = new StringWriter();
+        Report report = exportService.export(1, START, END, ReportExportService.Format.CSV, full).report();
+        StringWriter summary = new StringWriter();
+
+        exportService.exportSummary(report, ReportExportService.Format.CSV, summary);
+
+        List<String> fullLines = full.toString().lines().toList();
+        List<String> summaryLines = summary.toString().lines().toList();
+        assertEquals(fullLines.subList(fullLines.size() - summaryLines.size() + 1, fullLines.size()),
+                summaryLines.subList(1, summaryLines.size()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedExportDeletesTheFile(@TempDir Path dir) throws SQLException {
+        when(incomeDAO.forEachIncome(anyInt(), any(), any(), any(Consumer.class))).thenThrow(new SQLException("connection lost"));
+        Path file = dir.resolve("report.csv");
+
+        assertThrows(IOException.class, () -> exportService.export(1, START, END, ReportExportService.Format.CSV, file));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void exportWritesTheFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("report.jsonl");
+
+        exportService.export(1, START, END, ReportExportService.Format.JSON_LINES, file);
+
+        assertEquals(11, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+    }
+}
@@ -1,7 +1,5 @@
 package com.example.pfm.service;
 
-import com.example.pfm.dao.ExpenseDAO;
-import com.example.pfm.dao.IncomeDAO;
 import com.example.pfm.dao.UserDAO;
 import com.example.pfm.model.User;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,17 +14,15 @@ class UserServiceTest {
 
     private UserService userService;
     private UserDAO userDAO;
-    private IncomeDAO incomeDAO;
-    private ExpenseDAO expenseDAO;
+    private SessionContext session;
 
     @BeforeEach
     void setUp() {
 
         userDAO = Mockito.mock(UserDAO.class);
-        incomeDAO = Mockito.mock(IncomeDAO.class);
-        expenseDAO = Mockito.mock(ExpenseDAO.class);
+        session = Mockito.mock(SessionContext.class);
 
-        userService = new UserService(userDAO, incomeDAO, expenseDAO);
+        userService = new UserService(userDAO, user -> session);
     }
 
     @Test
@@ -49,6 +45,24 @@ class UserServiceTest {
         assertNull(result, "Expected null for successful login but got: " + result);
     }
 
+    @Test
+    void testLoginOpensSessionAndLogoutClosesIt() {
+        String username = "testgebruiker";
+        String password = "correctWachtwoord!123";
+        when(userDAO.getUserByUsername(username)).thenReturn(new User(username, BCrypt.hashpw(password, BCrypt.gensalt())));
+        when(session.getUserId()).thenReturn(42);
+
+        assertNull(userService.authenticateUser(username, password));
+        assertSame(session, userService.getSession());
+        assertEquals(42, userService.getCurrentUserId());
+
+        userService.logoutUser();
+
+        verify(session).close();
+        assertNull(userService.getSession());
+        assertEquals(-1, userService.getCurrentUserId());
+    }
+
     @Test
     void testIncorrectPassword() {
         String correctPassword = "correctPassword!123";
@@ -85,14 +99,44 @@ class UserServiceTest {
         assertEquals("Account is temporarily locked due to multiple failed login attempts. Please try again later.", result);
     }
 
+    @Test
+    void testLogoutKeepsOtherAccountsLocked() {
+        String username = "testgebruiker";
+        User fakeUser = new User(username, BCrypt.hashpw("correctPassword!123", BCrypt.gensalt()));
+        when(userDAO.getUserByUsername(username)).thenReturn(fakeUser);
+        for (int i = 0; i < 3; i++) {
+            userService.authenticateUser(username, "nogEenVerkeerdWachtwoord!789");
+        }
+
+        userService.logoutUser();
+        String result = userService.authenticateUser(username, "correctPassword!123");
+
+        assertEquals("Account is temporarily locked due to multiple failed login attempts. Please try again later.", result);
+        assertEquals(1, userService.getLoginThrottle().getThrottledAttempts());
+    }
+
+    @Test
+    void testLoginUpgradesHashWithLowerCost() {
+        String username = "testgebruiker";
+        String password = "correctPassword!123";
+        String oldHash = BCrypt.hashpw(password, BCrypt.gensalt(4));
+        when(userDAO.getUserByUsername(username)).thenReturn(new User(username, oldHash));
+        when(userDAO.updatePassword(eq(username), eq(oldHash), anyString())).thenReturn(true);
+        userService = new UserService(userDAO, user -> session, new LoginThrottle(), new PasswordHasher(1, 4, 250, 5));
+
+        assertNull(userService.authenticateUser(username, password));
+
+        verify(userDAO, timeout(5_000)).updatePassword(eq(username), eq(oldHash),
+                argThat(newHash -> PasswordHasher.logRoundsOf(newHash) == 5 && BCrypt.checkpw(password, newHash)));
+    }
+
     @Test
     void testRegisterUser_ExistingUsername() {
         String existingUsername = "bestaandeGebruiker";
         String password = "willekeurigWachtwoord123";
-        User existingUser = new User(existingUsername, password);
 
         // Mock the behavior to simulate the existing user in the database
-        when(userDAO.getUserByUsername(existingUsername)).thenReturn(existingUser);
+        when(userDAO.usernameExists(existingUsername)).thenReturn(true);
 
         // Act
         String result = userService.registerUser(existingUsername, password);
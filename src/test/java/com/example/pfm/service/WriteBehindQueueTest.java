@@ -0,0 +1,219 @@
+package com.example.pfm.service;
+
+import com.example.pfm.model.DataChangeEvent;
+import com.example.pfm.model.Expense;
+import com.example.pfm.model.Income;
+import com.example.pfm.model.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.BatchUpdateException;
+import java.sql.DataTruncation;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTransientConnectionException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindQueueTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 3, 15);
+
+    @TempDir
+    Path dir;
+
+    private final Set<String> appliedKeys = ConcurrentHashMap.newKeySet();
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+    private WriteBehindQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    /**
+     * A database that records the labels of every batch and skips keys it has seen before.
+     */
+    private int write(List<EntryJournal.Entry> entries) {
+        List<String> labels = new ArrayList<>();
+        int inserted = 0;
+        for (EntryJournal.Entry entry : entries) {
+            labels.add(entry.label());
+            if (appliedKeys.add(entry.key())) {
+                inserted++;
+            }
+        }
+        batches.add(labels);
+        return inserted;
+    }
+
+    private WriteBehindQueue open(WriteBehindQueue.Sink sink, int capacity) throws IOException {
+        return new WriteBehindQueue(new EntryJournal(dir.resolve("user-1.journal")), sink, capacity, 3, 20, 10, 40);
+    }
+
+    private static void awaitApplied(WriteBehindQueue queue, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.getAppliedCount() + queue.getDuplicateCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, queue.getAppliedCount() + queue.getDuplicateCount());
+    }
+
+    @Test
+    void entriesAreWrittenInBatches() throws Exception {
+        queue = open(this::write, 100);
+        List<DataChangeEvent> events = new CopyOnWriteArrayList<>();
+        queue.setListener(events::add);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(queue.submit(new Expense(1, Money.ofCents(100), "Food " + i, DATE)));
+        }
+        awaitApplied(queue, 5);
+
+        assertEquals(List.of(List.of("Food 0", "Food 1", "Food 2"), List.of("Food 3", "Food 4")), batches);
+        assertEquals(5, events.size());
+        assertTrue(events.get(0).concerns(1, DataChangeEvent.Type.EXPENSE));
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(0, Files.size(dir.resolve("user-1.journal")), "The journal should be emptied once everything is written");
+    }
+
+    @Test
+    void failedBatchIsRetried() throws Exception {
+        AtomicInteger failures = new AtomicInteger(2);
+        queue = open(entries -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new SQLTransientConnectionException("Database unavailable");
+            }
+            return write(entries);
+        }, 100);
+
+        queue.submit(new Income(1, Money.ofCents(5000), "Salary", DATE));
+        awaitApplied(queue, 1);
+
+        assertEquals(2, queue.getRetryCount());
+        assertEquals(List.of(List.of("Salary")), batches);
+    }
+
+    @Test
+    void entriesLeftInTheJournalAreWrittenAfterReopening() throws Exception {
+        queue = open(entries -> {
+            throw new SQLTransientConnectionException("Database unavailable");
+        }, 100);
+        queue.submit(new Expense(1, Money.ofCents(100), "Rent\twith a tab", DATE));
+        queue.submit(new Income(1, Money.ofCents(200), "Gift", DATE));
+        queue.close();
+
+        queue = open(this::write, 100);
+        awaitApplied(queue, 2);
+
+        assertEquals(List.of(List.of("Rent\twith a tab", "Gift")), batches);
+    }
+
+    @Test
+    void retriedEntriesAreNotAppliedTwice() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        queue = open(entries -> {
+            int inserted = write(entries);
+            if (attempts.incrementAndGet() == 1) {
+                throw new SQLTransientConnectionException("Connection lost after the commit");
+            }
+            return inserted;
+        }, 100);
+
+        queue.submit(new Expense(1, Money.ofCents(100), "Food", DATE));
+        awaitApplied(queue, 1);
+
+        assertEquals(0, queue.getAppliedCount());
+        assertEquals(1, queue.getDuplicateCount(), "The retry should find the entry already applied");
+        assertEquals(1, appliedKeys.size());
+    }
+
+    @Test
+    void fullQueueRefusesEntries() throws Exception {
+        CountDownLatch databaseBack = new CountDownLatch(1);
+        queue = open(entries -> {
+            try {
+                databaseBack.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return write(entries);
+        }, 2);
+
+        assertTrue(queue.submit(new Expense(1, Money.ofCents(100), "Food", DATE)));
+        assertTrue(queue.submit(new Expense(1, Money.ofCents(100), "Food", DATE)));
+        assertFalse(queue.submit(new Expense(1, Money.ofCents(100), "Food", DATE)));
+        assertEquals(1, queue.getRefusedCount());
+
+        databaseBack.countDown();
+        awaitApplied(queue, 2);
+        assertTrue(queue.submit(new Expense(1, Money.ofCents(100), "Food", DATE)), "Entries are accepted again once written");
+    }
+
+    @Test
+    void refusedEntryIsMovedToTheDeadLetterFileWithoutHoldingUpTheOthers() throws Exception {
+        queue = open(entries -> {
+            if (entries.stream().anyMatch(entry -> entry.label().equals("Invalid"))) {
+                throw new SQLIntegrityConstraintViolationException("Category too long", "23000");
+            }
+            return write(entries);
+        }, 100);
+        List<WriteBehindQueue.RejectedEntry> rejected = new CopyOnWriteArrayList<>();
+        queue.setRejectionListener(rejected::add);
+
+        queue.submit(new Expense(1, Money.ofCents(100), "Food", DATE));
+        queue.submit(new Expense(1, Money.ofCents(100), "Invalid", DATE));
+        queue.submit(new Expense(1, Money.ofCents(100), "Rent", DATE));
+        awaitApplied(queue, 2);
+
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(List.of(List.of("Food"), List.of("Rent")), batches);
+        assertEquals(List.of(new WriteBehindQueue.RejectedEntry("Expense of 1.00 for Invalid on 2024-03-15", "Category too long",
+                dir.resolve("user-1.journal.refused"))), rejected);
+        String deadLetters = Files.readString(dir.resolve("user-1.journal.refused"));
+        assertTrue(deadLetters.contains("\tInvalid\t") && deadLetters.contains("Category too long"), deadLetters);
+    }
+
+    @Test
+    void schemaErrorsAreRetriedInsteadOfRefused() throws Exception {
+        AtomicInteger failures = new AtomicInteger(2);
+        queue = open(entries -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new SQLSyntaxErrorException("Table 'pfm.applied_entry' doesn't exist", "42S02");
+            }
+            return write(entries);
+        }, 100);
+
+        queue.submit(new Expense(1, Money.ofCents(100), "Food", DATE));
+        awaitApplied(queue, 1);
+
+        assertEquals(0, queue.getDroppedCount());
+        assertEquals(2, queue.getRetryCount());
+    }
+
+    @Test
+    void dataErrorsAreRefused() {
+        assertTrue(WriteBehindQueue.isRefused(new DataTruncation(1, true, false, 10, 12)));
+        assertTrue(WriteBehindQueue.isRefused(new SQLException("Out of range value for column 'amount'", "22003")));
+        assertTrue(WriteBehindQueue.isRefused(new BatchUpdateException(new SQLException("Duplicate entry", "23000"))));
+        assertFalse(WriteBehindQueue.isRefused(new SQLException("Access denied", "42000")));
+        assertFalse(WriteBehindQueue.isRefused(new SQLException("Communications link failure", "08S01")));
+        assertFalse(WriteBehindQueue.isRefused(new SQLException("No state")));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.pfm.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1";
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ConnectionPool(URL, "sa", "", 2, 3, 60_000, 200, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void poolIsPreWarmedWithMinimumSize() {
+        assertEquals(2, pool.getTotalCount());
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    void closedConnectionIsReused() throws SQLException {
+        Connection first = pool.getConnection();
+        assertEquals(1, pool.getActiveCount());
+        first.close();
+        try (Connection conn = pool.getConnection()) {
+            assertFalse(conn.isClosed());
+        }
+        assertEquals(2, pool.getCreatedCount(), "No extra connection should have been opened");
+        assertEquals(2, pool.getBorrowCount());
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    void borrowTimesOutWhenPoolIsExhausted() throws SQLException {
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        Connection third = pool.getConnection();
+
+        assertThrows(SQLException.class, () -> pool.getConnection());
+        assertEquals(1, pool.getTimeoutCount());
+
+        first.close();
+        second.close();
+        third.close();
+        assertEquals(3, pool.getIdleCount());
+    }
+
+    @Test
+    void closedHandleCannotBeUsedAnymore() throws SQLException {
+        Connection conn = pool.getConnection();
+        conn.close();
+        conn.close(); // closing twice must not return the connection twice
+
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::createStatement);
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    void brokenIdleConnectionIsReplacedOnBorrow() throws SQLException {
+        Connection physical;
+        try (Connection conn = pool.getConnection()) {
+            physical = conn.unwrap(Connection.class);
+        }
+        // Break the connection while it sits idle in the pool
+        physical.close();
+
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+            assertTrue(stmt.execute("SELECT 1"));
+        }
+        assertEquals(1, pool.getTotalCount(), "The broken connection should have been thrown away");
+    }
+
+    @Test
+    void uncommittedTransactionIsRolledBackOnReturn() throws SQLException {
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS tx (id INT)");
+        }
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT INTO tx VALUES (1)");
+            }
+        }
+        try (Connection conn = pool.getConnection(); Statement stmt = conn.createStatement()) {
+            assertTrue(conn.getAutoCommit());
+            var rs = stmt.executeQuery("SELECT COUNT(*) FROM tx");
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+}
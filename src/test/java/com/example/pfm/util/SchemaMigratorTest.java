@@ -0,0 +1,45 @@
+package com.example.pfm.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigratorTest {
+
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = TestDatabase.openBaseline("migratortest");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        TestDatabase.close(conn);
+    }
+
+    @Test
+    void migrationsAreAppliedOnlyOnce() throws SQLException {
+        assertTrue(SchemaMigrator.migrate(conn) > 0);
+        assertEquals(0, SchemaMigrator.migrate(conn), "Already applied migrations should be skipped");
+    }
+
+    @Test
+    void dateIndexesAreCreated() throws SQLException {
+        SchemaMigrator.migrate(conn);
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES " +
+                     "WHERE INDEX_NAME IN ('IDX_EXPENSE_USER_DATE', 'IDX_EXPENSE_USER_CATEGORY_DATE', 'IDX_INCOME_USER_DATE', 'IDX_BUDGET_USER_DATE')")) {
+            rs.next();
+            assertEquals(4, rs.getInt(1));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.pfm.util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * In-memory H2 databases in MySQL mode for the tests and benchmarks. Only the tables that existed before the
+ * versioned migrations are declared here; everything added since is created by running {@link SchemaMigrator},
+ * so the tests use the same schema as the application.
+ */
+public final class TestDatabase {
+
+    private TestDatabase() {
+    }
+
+    /**
+     * Opens a new in-memory database with the baseline tables and all migrations applied.
+     *
+     * @param name The name of the database, unique per test class.
+     * @return A connection to the database. The database is gone once it is closed.
+     */
+    public static Connection open(String name) throws SQLException {
+        Connection conn = openBaseline(name);
+        SchemaMigrator.migrate(conn);
+        return conn;
+    }
+
+    /**
+     * Opens a new in-memory database with only the baseline tables, for tests that add rows before migrating.
+     *
+     * @param name The name of the database, unique per test class.
+     * @return A connection to the database. The database is gone once it is closed.
+     */
+    public static Connection openBaseline(String name) throws SQLException {
+        Connection conn = DriverManager.getConnection(url(name), "sa", "");
+        createBaselineTables(conn);
+        return conn;
+    }
+
+    /**
+     * @param name The name of the database.
+     * @return The URL of an in-memory database in MySQL mode.
+     */
+    public static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL";
+    }
+
+    /**
+     * Creates the tables of the schema before the first migration, if they don't exist yet.
+     *
+     * @param conn The connection to create the tables on.
+     */
+    public static void createBaselineTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS users (id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(50), password VARCHAR(100))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS expense (id INT AUTO_INCREMENT PRIMARY KEY, user_id INT, amount DECIMAL(10,2), date DATE, category VARCHAR(50) NOT NULL)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS income (id INT AUTO_INCREMENT PRIMARY KEY, user_id INT, amount DECIMAL(10,2), source VARCHAR(50), date DATE)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS budget (id INT AUTO_INCREMENT PRIMARY KEY, user_id INT, category VARCHAR(50), budget_limit DECIMAL(10,2), date DATE)");
+        }
+    }
+
+    /**
+     * Drops all tables and closes the connection, so the next test starts from an empty database.
+     *
+     * @param conn The connection to the database.
+     */
+    public static void close(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        conn.close();
+    }
+}